@@ -37,8 +37,11 @@ import android.util.Log;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.applications.ProcStatsData;
+import com.android.settings.core.PreferenceXmlMetadataCache;
 import com.android.settings.datausage.lib.DataUsageLib;
 import com.android.settings.network.MobileNetworkRepository;
+import com.android.settings.search.NonIndexableKeysCache;
+import com.android.settings.search.SearchIndexableProviderStats;
 import com.android.settingslib.net.DataUsageController;
 
 import org.json.JSONArray;
@@ -67,6 +70,12 @@ public class SettingsDumpService extends Service {
     @VisibleForTesting
     static final String KEY_ANOMALY_DETECTION = "anomaly_detection";
     @VisibleForTesting
+    static final String KEY_PREFERENCE_XML_CACHE = "preference_xml_cache";
+    @VisibleForTesting
+    static final String KEY_SEARCH_INDEXING = "search_indexing";
+    @VisibleForTesting
+    static final String KEY_NON_INDEXABLE_KEYS_CACHE = "non_indexable_keys_cache";
+    @VisibleForTesting
     static final Intent BROWSER_INTENT =
             new Intent("android.intent.action.VIEW", Uri.parse("http://"));
 
@@ -98,6 +107,10 @@ public class SettingsDumpService extends Service {
                 dump.put(KEY_DATAUSAGE, dumpDataUsage());
                 dump.put(KEY_MEMORY, dumpMemory());
                 dump.put(KEY_DEFAULT_BROWSER_APP, dumpDefaultBrowser());
+                dump.put(KEY_PREFERENCE_XML_CACHE, PreferenceXmlMetadataCache.dump());
+                dump.put(KEY_SEARCH_INDEXING, SearchIndexableProviderStats.getInstance().dump());
+                dump.put(KEY_NON_INDEXABLE_KEYS_CACHE,
+                        NonIndexableKeysCache.getInstance(this).dump());
             } catch (Exception e) {
                 Log.w(TAG, "exception in dump: ", e);
             }
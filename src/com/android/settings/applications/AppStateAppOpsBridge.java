@@ -29,15 +29,15 @@ import android.util.ArrayMap;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.internal.util.ArrayUtils;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 /*
  * Connects app ops info to the ApplicationsState. Makes use of AppOpsManager to
@@ -55,6 +55,10 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
     private final int[] mAppOpsOpCodes;
     private final String[] mPermissions;
 
+    // While loading all extra info on the background thread, created by the first lookup.
+    private volatile boolean mUsePermissionSnapshot;
+    private volatile PermissionSnapshot mPermissionSnapshot;
+
     public AppStateAppOpsBridge(Context context, ApplicationsState appState, Callback callback,
             int appOpsOpCode, String[] permissions) {
         this(context, appState, callback, appOpsOpCode, permissions,
@@ -84,6 +88,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
         mAppOpsOpCodes = appOpsOpCodes;
         mPermissions = permissions;
+        enableExtraInfoCache(context, appOpsOpCodes);
     }
 
     private boolean isThisUserAProfileOfCurrentUser(final int userId) {
@@ -98,16 +103,22 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
 
     protected abstract void updateExtraInfo(AppEntry app, String pkg, int uid);
 
-    private boolean doesAnyPermissionMatch(String permissionToMatch, String[] permissions) {
-        for (String permission : permissions) {
-            if (permissionToMatch.equals(permission)) {
-                return true;
-            }
-        }
-        return false;
+    @Override
+    @Nullable
+    protected Object copyExtraInfo(Object extraInfo) {
+        // Subclasses listing their own PermissionState type copy it themselves.
+        return extraInfo.getClass() == PermissionState.class
+                ? new PermissionState((PermissionState) extraInfo) : null;
     }
 
     public PermissionState getPermissionInfo(String pkg, int uid) {
+        final PermissionSnapshot snapshot = getPermissionSnapshot();
+        if (snapshot != null) {
+            final PermissionState permissionState = snapshot.get(pkg, uid);
+            if (permissionState != null) {
+                return permissionState;
+            }
+        }
         PermissionState permissionState = new PermissionState(pkg, new UserHandle(UserHandle
                 .getUserId(uid)));
         try {
@@ -116,20 +127,7 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
                     permissionState.userHandle.getIdentifier());
             if (permissionState.packageInfo != null) {
                 // Check static permission state (whatever that is declared in package manifest)
-                String[] requestedPermissions = permissionState.packageInfo.requestedPermissions;
-                int[] permissionFlags = permissionState.packageInfo.requestedPermissionsFlags;
-                if (requestedPermissions != null) {
-                    for (int i = 0; i < requestedPermissions.length; i++) {
-                        if (doesAnyPermissionMatch(requestedPermissions[i], mPermissions)) {
-                            permissionState.permissionDeclared = true;
-                            if ((permissionFlags[i] & PackageInfo.REQUESTED_PERMISSION_GRANTED)
-                                    != 0) {
-                                permissionState.staticPermissionGranted = true;
-                                break;
-                            }
-                        }
-                    }
-                }
+                loadStaticPermissionState(permissionState, mPermissions);
             }
             // Check app op state.
             List<PackageOps> ops = mAppOpsManager.getOpsForPackage(uid, pkg, mAppOpsOpCodes);
@@ -143,160 +141,165 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
     }
 
     @Override
-    protected void loadAllExtraInfo() {
-        SparseArray<ArrayMap<String, PermissionState>> entries = getEntries();
+    protected void performLoadAllExtraInfo() {
+        // Serve every getPermissionInfo() of this batch, including the ones made by subclasses,
+        // from a single snapshot, fetched only if some app isn't served by the shared cache.
+        mUsePermissionSnapshot = true;
+        try {
+            super.performLoadAllExtraInfo();
+        } finally {
+            mUsePermissionSnapshot = false;
+            mPermissionSnapshot = null;
+        }
+    }
+
+    private PermissionSnapshot getPermissionSnapshot() {
+        if (mUsePermissionSnapshot && mPermissionSnapshot == null) {
+            mPermissionSnapshot = createPermissionSnapshot();
+        }
+        return mPermissionSnapshot;
+    }
 
-        // Load state info.
-        loadPermissionsStates(entries);
-        loadAppOpsStates(entries);
+    @Override
+    protected void loadAllExtraInfo() {
+        final PermissionSnapshot snapshot = mUsePermissionSnapshot
+                ? getPermissionSnapshot() : createPermissionSnapshot();
 
         // Map states to application info.
         List<AppEntry> apps = mAppSession.getAllApps();
         final int N = apps.size();
         for (int i = 0; i < N; i++) {
             AppEntry app = apps.get(i);
-            int userId = UserHandle.getUserId(app.info.uid);
-            if (entries != null) {
-                ArrayMap<String, PermissionState> userMap = entries.get(userId);
-                app.extraInfo = userMap != null ? userMap.get(app.info.packageName) : null;
-            } else {
-                app.extraInfo = null;
-            }
+            final PermissionState permissionState =
+                    snapshot.get(app.info.packageName, app.info.uid);
+            // Only packages requesting one of mPermissions are listed.
+            app.extraInfo = permissionState != null && permissionState.permissionDeclared
+                    && !shouldIgnorePackage(app.info.packageName) ? permissionState : null;
         }
     }
 
-    /*
-     * Gets a sparse array that describes every user on the device and all the associated packages
-     * of each user, together with the packages available for that user.
+    /**
+     * Fetches the requested permissions of every package installed in the current user's
+     * profiles, with one package manager call per profile, and the modes of
+     * {@link #mAppOpsOpCodes} for all packages with a single app ops call.
      */
-    private SparseArray<ArrayMap<String, PermissionState>> getEntries() {
+    @VisibleForTesting
+    PermissionSnapshot createPermissionSnapshot() {
+        final PermissionSnapshot snapshot = new PermissionSnapshot(mPermissions);
         try {
-            // Create a sparse array that maps profileIds to an ArrayMap that maps package names to
-            // an associated PermissionState object
-            SparseArray<ArrayMap<String, PermissionState>> entries = new SparseArray<>();
             for (final UserHandle profile : mProfiles) {
                 final int profileId = profile.getIdentifier();
-                final Set<String> packagesSet = new HashSet<>();
-                for (String permission : mPermissions) {
-                    final String[] pkgs = mIPackageManager.getAppOpPermissionPackages(
-                            permission, profileId);
-                    if (pkgs != null) {
-                        packagesSet.addAll(Arrays.asList(pkgs));
-                    }
-                }
-                if (packagesSet.isEmpty()) {
-                    // No packages are requesting permission as specified by mPermissions.
-                    continue;
-                }
-
-                final ArrayMap<String, PermissionState> entriesForProfile = new ArrayMap<>();
-                entries.put(profileId, entriesForProfile);
-                for (final String packageName : packagesSet) {
-                    final boolean isAvailable = mIPackageManager.isPackageAvailable(packageName,
-                            profileId);
-                    if (!shouldIgnorePackage(packageName) && isAvailable) {
-                        final PermissionState newEntry = new PermissionState(packageName, profile);
-                        entriesForProfile.put(packageName, newEntry);
-                    }
-                }
-            }
-            if (entries.size() == 0) {
-                return null;
+                @SuppressWarnings("unchecked") final List<PackageInfo> packageInfos =
+                        mIPackageManager.getInstalledPackages(PackageManager.GET_PERMISSIONS,
+                                profileId).getList();
+                snapshot.putPackages(profileId, packageInfos);
             }
-
-            return entries;
         } catch (RemoteException e) {
             Log.w(TAG, "PackageManager is dead. Can't get list of packages requesting "
-                    + mPermissions[0], e);
-            return null;
+                    + Arrays.toString(mPermissions), e);
         }
+
+        final List<AppOpsManager.PackageOps> packageOps = mAppOpsManager.getPackagesForOps(
+                mAppOpsOpCodes);
+        final int packageOpsCount = packageOps != null ? packageOps.size() : 0;
+        for (int i = 0; i < packageOpsCount; i++) {
+            final AppOpsManager.PackageOps packageOp = packageOps.get(i);
+            if (!isThisUserAProfileOfCurrentUser(UserHandle.getUserId(packageOp.getUid()))
+                    || packageOp.getOps().isEmpty()) {
+                continue;
+            }
+            snapshot.putAppOpMode(packageOp.getPackageName(), packageOp.getUid(),
+                    packageOp.getOps().get(0).getMode());
+        }
+        return snapshot;
     }
 
     /*
-     * This method will set the packageInfo and staticPermissionGranted field of the associated
-     * PermissionState, which describes a particular package.
+     * Sets the permissionDeclared and staticPermissionGranted fields from the packageInfo of the
+     * given PermissionState.
      */
-    private void loadPermissionsStates(SparseArray<ArrayMap<String, PermissionState>> entries) {
-        // Load the packages that have been granted the permission specified in mPermission.
-        if (entries == null) {
+    private static void loadStaticPermissionState(PermissionState permissionState,
+            String[] permissions) {
+        String[] requestedPermissions = permissionState.packageInfo.requestedPermissions;
+        int[] permissionFlags = permissionState.packageInfo.requestedPermissionsFlags;
+        if (requestedPermissions == null) {
             return;
         }
-
-        try {
-            for (final UserHandle profile : mProfiles) {
-                final int profileId = profile.getIdentifier();
-                final ArrayMap<String, PermissionState> entriesForProfile = entries.get(profileId);
-                if (entriesForProfile == null) {
-                    continue;
-                }
-                @SuppressWarnings("unchecked") final List<PackageInfo> packageInfos =
-                        mIPackageManager
-                                .getPackagesHoldingPermissions(mPermissions, 0,
-                                        profileId).getList();
-                final int packageInfoCount = packageInfos != null ? packageInfos.size() : 0;
-                for (int i = 0; i < packageInfoCount; i++) {
-                    final PackageInfo packageInfo = packageInfos.get(i);
-                    final PermissionState pe = entriesForProfile.get(packageInfo.packageName);
-                    if (pe != null) {
-                        pe.packageInfo = packageInfo;
-                        pe.staticPermissionGranted = true;
-                    }
+        for (int i = 0; i < requestedPermissions.length; i++) {
+            if (ArrayUtils.contains(permissions, requestedPermissions[i])) {
+                permissionState.permissionDeclared = true;
+                if ((permissionFlags[i] & PackageInfo.REQUESTED_PERMISSION_GRANTED) != 0) {
+                    permissionState.staticPermissionGranted = true;
+                    break;
                 }
             }
-        } catch (RemoteException e) {
-            Log.w(TAG, "PackageManager is dead. Can't get list of packages granted "
-                    + Arrays.toString(mPermissions), e);
         }
     }
 
     /*
-     * This method will set the appOpMode field of the associated PermissionState, which describes
-     * a particular package.
+     * Check for packages that should be ignored for further processing
      */
-    private void loadAppOpsStates(SparseArray<ArrayMap<String, PermissionState>> entries) {
-        if (entries == null) {
-            return;
+    private boolean shouldIgnorePackage(String packageName) {
+        return packageName.equals("android") || packageName.equals(mContext.getPackageName());
+    }
+
+    /**
+     * Requested permissions and app op modes of all packages, fetched in a few batched calls.
+     */
+    @VisibleForTesting
+    static class PermissionSnapshot {
+        private final String[] mPermissions;
+        // userId -> package name -> package info
+        private final SparseArray<ArrayMap<String, PackageInfo>> mPackages = new SparseArray<>();
+        // uid -> package name -> app op mode
+        private final SparseArray<ArrayMap<String, Integer>> mAppOpModes = new SparseArray<>();
+
+        PermissionSnapshot(String[] permissions) {
+            mPermissions = permissions;
         }
 
-        // Find out which packages have been granted permission from AppOps.
-        final List<AppOpsManager.PackageOps> packageOps = mAppOpsManager.getPackagesForOps(
-                mAppOpsOpCodes);
-        final int packageOpsCount = packageOps != null ? packageOps.size() : 0;
-        for (int i = 0; i < packageOpsCount; i++) {
-            final AppOpsManager.PackageOps packageOp = packageOps.get(i);
-            final int userId = UserHandle.getUserId(packageOp.getUid());
-            if (!isThisUserAProfileOfCurrentUser(userId)) {
-                // This AppOp does not belong to any of this user's profiles.
-                continue;
+        void putPackages(int userId, List<PackageInfo> packageInfos) {
+            final int count = packageInfos != null ? packageInfos.size() : 0;
+            final ArrayMap<String, PackageInfo> packages = new ArrayMap<>(count);
+            for (int i = 0; i < count; i++) {
+                packages.put(packageInfos.get(i).packageName, packageInfos.get(i));
             }
+            mPackages.put(userId, packages);
+        }
 
-            final ArrayMap<String, PermissionState> entriesForProfile = entries.get(userId);
-            if (entriesForProfile == null) {
-                continue;
-            }
-            final PermissionState pe = entriesForProfile.get(packageOp.getPackageName());
-            if (pe == null) {
-                Log.w(TAG, "AppOp permission exists for package " + packageOp.getPackageName()
-                        + " of user " + userId + " but package doesn't exist or did not request "
-                        + Arrays.toString(mPermissions) + " access");
-                continue;
+        void putAppOpMode(String packageName, int uid, int mode) {
+            ArrayMap<String, Integer> modes = mAppOpModes.get(uid);
+            if (modes == null) {
+                modes = new ArrayMap<>();
+                mAppOpModes.put(uid, modes);
             }
+            modes.put(packageName, mode);
+        }
 
-            if (packageOp.getOps().size() < 1) {
-                Log.w(TAG, "No AppOps permission exists for package " + packageOp.getPackageName());
-                continue;
+        /**
+         * @return a new PermissionState for the package, or {@code null} if it isn't installed
+         * for the user of {@code uid}.
+         */
+        PermissionState get(String packageName, int uid) {
+            final int userId = UserHandle.getUserId(uid);
+            final ArrayMap<String, PackageInfo> packages = mPackages.get(userId);
+            final PackageInfo packageInfo = packages != null ? packages.get(packageName) : null;
+            if (packageInfo == null) {
+                return null;
+            }
+            final PermissionState permissionState =
+                    new PermissionState(packageName, UserHandle.of(userId));
+            permissionState.packageInfo = packageInfo;
+            loadStaticPermissionState(permissionState, mPermissions);
+            final ArrayMap<String, Integer> modes = mAppOpModes.get(uid);
+            final Integer mode = modes != null ? modes.get(packageName) : null;
+            if (mode != null) {
+                permissionState.appOpMode = mode;
             }
-            pe.appOpMode = packageOp.getOps().get(0).getMode();
+            return permissionState;
         }
     }
 
-    /*
-     * Check for packages that should be ignored for further processing
-     */
-    private boolean shouldIgnorePackage(String packageName) {
-        return packageName.equals("android") || packageName.equals(mContext.getPackageName());
-    }
-
     public static class PermissionState {
         public final String packageName;
         public final UserHandle userHandle;
@@ -311,6 +314,17 @@ public abstract class AppStateAppOpsBridge extends AppStateBaseBridge {
             this.userHandle = userHandle;
         }
 
+        /**
+         * Copies {@code permissionState}. The package info is shared, it is never modified.
+         */
+        public PermissionState(PermissionState permissionState) {
+            this(permissionState.packageName, permissionState.userHandle);
+            this.packageInfo = permissionState.packageInfo;
+            this.staticPermissionGranted = permissionState.staticPermissionGranted;
+            this.permissionDeclared = permissionState.permissionDeclared;
+            this.appOpMode = permissionState.appOpMode;
+        }
+
         public boolean isPermissible() {
             // defining the default behavior as permissible as long as the package requested this
             // permission (this means pre-M gets approval during install time; M apps gets approval
@@ -15,15 +15,19 @@
  */
 package com.android.settings.applications;
 
+import android.content.Context;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 
+import androidx.annotation.Nullable;
+
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 import com.android.settingslib.applications.ApplicationsState.Session;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Common base class for bridging information to ApplicationsState.
@@ -37,6 +41,7 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
     protected final MainHandler mMainHandler;
 
     private boolean mForceLoadAllApps;
+    private AppStateExtraInfoCache mExtraInfoCache;
 
     public AppStateBaseBridge(ApplicationsState appState, Callback callback) {
         mAppState = appState;
@@ -115,6 +120,71 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         // No op.
     }
 
+    /**
+     * Shares the extra info computed by this bridge type with other screens through
+     * {@link AppStateExtraInfoCache}. Only for extra info that depends on nothing but package
+     * state, permissions and the mode of {@code appOps}, and that {@link #copyExtraInfo} copies.
+     */
+    protected void enableExtraInfoCache(Context context, int... appOps) {
+        if (mAppSession == null) {
+            return;
+        }
+        mExtraInfoCache = AppStateExtraInfoCache.getInstance(context);
+        mExtraInfoCache.watchAppOps(appOps);
+    }
+
+    /**
+     * Loads the extra info of every app on the background thread. Subclasses may override to set
+     * up state shared by the whole batch around {@link #loadAllExtraInfo()}.
+     */
+    protected void performLoadAllExtraInfo() {
+        if (mExtraInfoCache == null) {
+            loadAllExtraInfo();
+            return;
+        }
+        final String type = getClass().getName();
+        final long generation = mExtraInfoCache.getGeneration();
+        final List<AppEntry> apps = mAppSession.getAllApps();
+        boolean missing = false;
+        for (AppEntry app : apps) {
+            if (mExtraInfoCache.contains(type, app.info.packageName, app.info.uid)) {
+                final Object extraInfo =
+                        mExtraInfoCache.get(type, app.info.packageName, app.info.uid);
+                app.extraInfo = extraInfo != null ? copyExtraInfo(extraInfo) : null;
+            } else {
+                missing = true;
+            }
+        }
+        if (!missing) {
+            return;
+        }
+        // Only the output of loadAllExtraInfo() is cached: subclasses apply there the rules of
+        // which apps are listed at all, which updateExtraInfo() doesn't always repeat.
+        loadAllExtraInfo();
+        for (AppEntry app : apps) {
+            if (app.extraInfo == null) {
+                mExtraInfoCache.put(type, app.info.packageName, app.info.uid,
+                        null /* extraInfo */, generation);
+                continue;
+            }
+            final Object extraInfo = copyExtraInfo(app.extraInfo);
+            if (extraInfo != null) {
+                mExtraInfoCache.put(type, app.info.packageName, app.info.uid, extraInfo,
+                        generation);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of {@code extraInfo} sharing no mutable state with it, or {@code null} if it
+     * can't be copied, in which case it isn't cached. Bridges calling
+     * {@link #enableExtraInfoCache} must override this.
+     */
+    @Nullable
+    protected Object copyExtraInfo(Object extraInfo) {
+        return null;
+    }
+
     protected abstract void loadAllExtraInfo();
 
     protected abstract void updateExtraInfo(AppEntry app, String pkg, int uid);
@@ -148,7 +218,7 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_LOAD_ALL:
-                    loadAllExtraInfo();
+                    performLoadAllExtraInfo();
                     mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
                     break;
                 case MSG_FORCE_LOAD_PKG:
@@ -160,6 +230,10 @@ public abstract class AppStateBaseBridge implements ApplicationsState.Callbacks
                         AppEntry app = apps.get(i);
                         if (app.info.uid == uid && pkg.equals(app.info.packageName)) {
                             updateExtraInfo(app, pkg, uid);
+                            if (mExtraInfoCache != null) {
+                                // Reloaded with the next full load, see performLoadAllExtraInfo.
+                                mExtraInfoCache.remove(getClass().getName(), pkg, uid);
+                            }
                         }
                     }
                     mMainHandler.sendEmptyMessage(MainHandler.MSG_INFO_UPDATED);
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import android.app.AppOpsManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.util.ArrayMap;
+import android.util.ArraySet;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide cache of the {@link com.android.settingslib.applications.ApplicationsState.AppEntry}
+ * extra info computed by {@link AppStateBaseBridge} subclasses, so that going back and forth
+ * between special app access pages doesn't query every package again.
+ *
+ * Entries are kept per bridge type and keyed by package and uid. The whole cache is dropped when
+ * any package is added, removed, replaced or changed, so entries of uninstalled packages don't
+ * accumulate. Entries of a package are dropped when its permissions change, and when the mode of
+ * a watched app op changes for it.
+ *
+ * Bridges only put and get copies of extra info, see {@link AppStateBaseBridge#copyExtraInfo},
+ * so a cached value is never mutated by the screen that computed or read it.
+ */
+public class AppStateExtraInfoCache {
+
+    private static final String TAG = "AppStateExtraInfoCache";
+
+    private static AppStateExtraInfoCache sInstance;
+
+    // bridge type -> (uid:package) -> extra info
+    private final Map<String, Map<String, Object>> mEntries = new ArrayMap<>();
+    private final Set<Integer> mWatchedOps = new ArraySet<>();
+    private final AppOpsManager mAppOpsManager;
+    private long mGeneration;
+
+    private final AppOpsManager.OnOpChangedListener mOpChangedListener =
+            (op, packageName) -> invalidatePackage(packageName);
+
+    /**
+     * @return the shared cache, registering for package and permission changes on first use.
+     */
+    public static synchronized AppStateExtraInfoCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AppStateExtraInfoCache(context.getApplicationContext());
+            sInstance.registerInvalidationSignals(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    AppStateExtraInfoCache(Context context) {
+        mAppOpsManager = context.getSystemService(AppOpsManager.class);
+    }
+
+    /**
+     * Drops the entries of a package whenever the mode of {@code appOps} changes for it.
+     */
+    public void watchAppOps(int... appOps) {
+        for (int appOp : appOps) {
+            synchronized (this) {
+                if (!mWatchedOps.add(appOp)) {
+                    continue;
+                }
+            }
+            if (mAppOpsManager != null) {
+                mAppOpsManager.startWatchingMode(appOp, null /* packageName */,
+                        mOpChangedListener);
+            }
+        }
+    }
+
+    /**
+     * @return a token to pass to {@link #put}, taken before computing extra info.
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @return whether an entry is cached for the package, its value being returned by
+     * {@link #get} and possibly {@code null}.
+     */
+    public synchronized boolean contains(String type, String packageName, int uid) {
+        final Map<String, Object> entries = mEntries.get(type);
+        return entries != null && entries.containsKey(getKey(packageName, uid));
+    }
+
+    @Nullable
+    public synchronized Object get(String type, String packageName, int uid) {
+        final Map<String, Object> entries = mEntries.get(type);
+        return entries != null ? entries.get(getKey(packageName, uid)) : null;
+    }
+
+    /**
+     * Caches {@code extraInfo}, unless something was invalidated since {@code generation} was
+     * obtained, in which case it may already be stale.
+     */
+    public synchronized void put(String type, String packageName, int uid,
+            @Nullable Object extraInfo, long generation) {
+        if (generation != mGeneration) {
+            return;
+        }
+        Map<String, Object> entries = mEntries.get(type);
+        if (entries == null) {
+            entries = new ArrayMap<>();
+            mEntries.put(type, entries);
+        }
+        entries.put(getKey(packageName, uid), extraInfo);
+    }
+
+    /**
+     * Drops the entry of the package for bridge type {@code type} only.
+     */
+    public synchronized void remove(String type, String packageName, int uid) {
+        mGeneration++;
+        final Map<String, Object> entries = mEntries.get(type);
+        if (entries != null) {
+            entries.remove(getKey(packageName, uid));
+        }
+    }
+
+    /**
+     * Drops the entries of {@code packageName} for all users and bridge types, or every entry if
+     * {@code packageName} is {@code null}.
+     */
+    public synchronized void invalidatePackage(@Nullable String packageName) {
+        mGeneration++;
+        if (packageName == null) {
+            mEntries.clear();
+            return;
+        }
+        final String suffix = ":" + packageName;
+        for (Map<String, Object> entries : mEntries.values()) {
+            entries.keySet().removeIf(key -> key.endsWith(suffix));
+        }
+    }
+
+    /**
+     * Drops the entries of every package of {@code uid}.
+     */
+    public synchronized void invalidateUid(int uid) {
+        mGeneration++;
+        final String prefix = uid + ":";
+        for (Map<String, Object> entries : mEntries.values()) {
+            entries.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void clear() {
+        mEntries.clear();
+        mGeneration++;
+    }
+
+    private static String getKey(String packageName, int uid) {
+        return uid + ":" + packageName;
+    }
+
+    private void registerInvalidationSignals(Context context) {
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                invalidatePackage(null /* packageName */);
+            }
+        }, packageFilter);
+
+        try {
+            context.getPackageManager().addOnPermissionsChangeListener(this::invalidateUid);
+        } catch (SecurityException e) {
+            Log.w(TAG, "Unable to watch permission changes", e);
+        }
+    }
+}
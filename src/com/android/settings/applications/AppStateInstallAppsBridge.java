@@ -25,6 +25,8 @@ import android.os.RemoteException;
 import android.os.UserHandle;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import com.android.internal.util.ArrayUtils;
 import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
@@ -49,6 +51,7 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
         super(appState, callback);
         mIpm = AppGlobals.getPackageManager();
         mAppOpsManager = (AppOpsManager) context.getSystemService(Context.APP_OPS_SERVICE);
+        enableExtraInfoCache(context, AppOpsManager.OP_REQUEST_INSTALL_PACKAGES);
     }
 
     @Override
@@ -56,6 +59,19 @@ public class AppStateInstallAppsBridge extends AppStateBaseBridge {
         app.extraInfo = createInstallAppsStateFor(packageName, uid);
     }
 
+    @Override
+    @Nullable
+    protected Object copyExtraInfo(Object extraInfo) {
+        if (!(extraInfo instanceof InstallAppsState)) {
+            return null;
+        }
+        final InstallAppsState installAppsState = (InstallAppsState) extraInfo;
+        final InstallAppsState copy = new InstallAppsState();
+        copy.permissionRequested = installAppsState.permissionRequested;
+        copy.appOpMode = installAppsState.appOpMode;
+        return copy;
+    }
+
     @Override
     protected void loadAllExtraInfo() {
         // TODO: consider making this a batch operation with a single binder call
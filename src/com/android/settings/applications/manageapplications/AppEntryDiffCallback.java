@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.text.TextUtils;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A DiffCallback to calculate the difference between two app lists shown by
+ * {@link ManageApplications}.
+ *
+ * {@link AppEntry} instances are shared and mutated across rebuilds, so the lists are compared
+ * through {@link EntryState} snapshots taken when each list is published.
+ */
+public class AppEntryDiffCallback extends DiffUtil.Callback {
+
+    /**
+     * Payload for a row whose size changed and nothing else, only its summary needs rebinding.
+     */
+    public static final Object PAYLOAD_SIZE = new Object();
+
+    private final List<EntryState> mOldStates;
+    private final List<EntryState> mNewStates;
+
+    public AppEntryDiffCallback(List<EntryState> oldStates, List<EntryState> newStates) {
+        mOldStates = oldStates;
+        mNewStates = newStates;
+    }
+
+    /**
+     * Snapshots what a row displays for each of {@code entries}.
+     *
+     * @param displayConfig    adapter wide state affecting every row, e.g. the sort mode. Any
+     *                         change rebinds all rows.
+     * @param extraInfoDisplay what a row shows from {@link AppEntry#extraInfo}, compared by value
+     *                         since extraInfo objects don't implement equals.
+     */
+    @WorkerThread
+    public static List<EntryState> captureStates(List<AppEntry> entries, int displayConfig,
+            Function<AppEntry, String> extraInfoDisplay) {
+        final List<EntryState> states = new ArrayList<>(entries.size());
+        for (AppEntry entry : entries) {
+            states.add(new EntryState(entry, displayConfig, extraInfoDisplay));
+        }
+        return states;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return mOldStates.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return mNewStates.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldPosition, int newPosition) {
+        final EntryState oldState = mOldStates.get(oldPosition);
+        final EntryState newState = mNewStates.get(newPosition);
+        return oldState.mUid == newState.mUid
+                && TextUtils.equals(oldState.mPackageName, newState.mPackageName);
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldPosition, int newPosition) {
+        final EntryState oldState = mOldStates.get(oldPosition);
+        final EntryState newState = mNewStates.get(newPosition);
+        return oldState.isDisplaySame(newState) && oldState.isSizeSame(newState);
+    }
+
+    @Override
+    @Nullable
+    public Object getChangePayload(int oldPosition, int newPosition) {
+        return mOldStates.get(oldPosition).isDisplaySame(mNewStates.get(newPosition))
+                ? PAYLOAD_SIZE : null;
+    }
+
+    /**
+     * The displayed values of an {@link AppEntry} at some point in time.
+     */
+    public static class EntryState {
+        private final String mPackageName;
+        private final int mUid;
+        private final int mDisplayConfig;
+        private final String mLabel;
+        private final boolean mEnabled;
+        private final boolean mMounted;
+        private final String mExtraInfoDisplay;
+        private final String mSizeStr;
+        private final String mInternalSizeStr;
+        private final String mExternalSizeStr;
+
+        EntryState(AppEntry entry, int displayConfig,
+                Function<AppEntry, String> extraInfoDisplay) {
+            synchronized (entry) {
+                mPackageName = entry.info != null ? entry.info.packageName : null;
+                mUid = entry.info != null ? entry.info.uid : -1;
+                mEnabled = entry.info != null && entry.info.enabled;
+                mDisplayConfig = displayConfig;
+                mLabel = entry.label;
+                mMounted = entry.mounted;
+                mExtraInfoDisplay = extraInfoDisplay.apply(entry);
+                mSizeStr = entry.sizeStr;
+                mInternalSizeStr = entry.internalSizeStr;
+                mExternalSizeStr = entry.externalSizeStr;
+            }
+        }
+
+        private boolean isDisplaySame(EntryState other) {
+            return mDisplayConfig == other.mDisplayConfig
+                    && mEnabled == other.mEnabled
+                    && mMounted == other.mMounted
+                    && TextUtils.equals(mExtraInfoDisplay, other.mExtraInfoDisplay)
+                    && TextUtils.equals(mLabel, other.mLabel);
+        }
+
+        private boolean isSizeSame(EntryState other) {
+            return Objects.equals(mSizeStr, other.mSizeStr)
+                    && Objects.equals(mInternalSizeStr, other.mInternalSizeStr)
+                    && Objects.equals(mExternalSizeStr, other.mExternalSizeStr);
+        }
+    }
+}
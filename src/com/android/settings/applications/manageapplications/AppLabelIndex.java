@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.text.TextUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Substring index over the labels of an app list, used to filter the list while the user types.
+ *
+ * Labels are normalized once (lowercased for the given locale, accents on Latin letters removed)
+ * and indexed by trigram, so that a query only verifies the labels sharing its rarest trigram.
+ * When a query extends the previous one, only the previous matches are searched.
+ *
+ * The index is built lazily by the first {@link #search(CharSequence)}, off the main thread.
+ */
+class AppLabelIndex {
+
+    @VisibleForTesting
+    static final int GRAM_LENGTH = 3;
+
+    private static final int[] NO_MATCH = new int[0];
+
+    private final ArrayList<AppEntry> mEntries;
+    private final Locale mLocale;
+
+    private String[] mLabels;
+    private Map<String, int[]> mGrams;
+
+    private String mLastQuery;
+    private int[] mLastMatches;
+
+    AppLabelIndex(@NonNull ArrayList<AppEntry> entries, @NonNull Locale locale) {
+        mEntries = entries;
+        mLocale = locale;
+    }
+
+    /**
+     * @return the entry list this index was built for.
+     */
+    ArrayList<AppEntry> getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * @return the entries whose label contains {@code query}, ignoring case and accents on Latin
+     * letters, in the order of the indexed list.
+     */
+    @WorkerThread
+    synchronized ArrayList<AppEntry> search(CharSequence query) {
+        if (TextUtils.isEmpty(query)) {
+            return mEntries;
+        }
+        ensureIndex();
+        final String normalized = normalize(query, mLocale);
+        final int[] matches;
+        if (mLastQuery != null && normalized.contains(mLastQuery)) {
+            // Anything matching the longer query also matched the previous one.
+            matches = filter(mLastMatches, normalized);
+        } else {
+            matches = filter(getCandidates(normalized), normalized);
+        }
+        mLastQuery = normalized;
+        mLastMatches = matches;
+
+        final ArrayList<AppEntry> result = new ArrayList<>(matches.length);
+        for (int index : matches) {
+            result.add(mEntries.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Lowercases {@code text} and strips the accents of Latin letters, so that "Café" matches
+     * "cafe". Marks of other scripts are kept: they change the letter in Japanese kana, Cyrillic,
+     * Indic and Thai scripts, and carry the vowels in Hebrew and Arabic.
+     */
+    @VisibleForTesting
+    static String normalize(CharSequence text, Locale locale) {
+        final String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        final StringBuilder folded = new StringBuilder(decomposed.length());
+        boolean afterLatinLetter = false;
+        for (int i = 0; i < decomposed.length(); ) {
+            final int codePoint = decomposed.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+                if (afterLatinLetter && isLatinAccent(codePoint)) {
+                    continue;
+                }
+            } else {
+                afterLatinLetter =
+                        Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.LATIN;
+            }
+            folded.appendCodePoint(codePoint);
+        }
+        return Normalizer.normalize(folded, Normalizer.Form.NFC).toLowerCase(locale);
+    }
+
+    private static boolean isLatinAccent(int codePoint) {
+        final Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        return block == Character.UnicodeBlock.COMBINING_DIACRITICAL_MARKS
+                || block == Character.UnicodeBlock.COMBINING_DIACRITICAL_MARKS_SUPPLEMENT
+                || block == Character.UnicodeBlock.COMBINING_DIACRITICAL_MARKS_EXTENDED;
+    }
+
+    private void ensureIndex() {
+        if (mLabels != null) {
+            return;
+        }
+        final int size = mEntries.size();
+        mLabels = new String[size];
+        final Map<String, List<Integer>> grams = new ArrayMap<>();
+        for (int i = 0; i < size; i++) {
+            final String label = mEntries.get(i).label;
+            mLabels[i] = label == null ? "" : normalize(label, mLocale);
+            for (int start = 0; start + GRAM_LENGTH <= mLabels[i].length(); start++) {
+                final String gram = mLabels[i].substring(start, start + GRAM_LENGTH);
+                List<Integer> postings = grams.get(gram);
+                if (postings == null) {
+                    postings = new ArrayList<>();
+                    grams.put(gram, postings);
+                }
+                // Labels are visited in order, so postings stay sorted and unique.
+                if (postings.isEmpty() || postings.get(postings.size() - 1) != i) {
+                    postings.add(i);
+                }
+            }
+        }
+        mGrams = new ArrayMap<>(grams.size());
+        for (Map.Entry<String, List<Integer>> entry : grams.entrySet()) {
+            final List<Integer> postings = entry.getValue();
+            final int[] indices = new int[postings.size()];
+            for (int i = 0; i < indices.length; i++) {
+                indices[i] = postings.get(i);
+            }
+            mGrams.put(entry.getKey(), indices);
+        }
+        mLastQuery = null;
+        mLastMatches = null;
+    }
+
+    /**
+     * @return indices of the labels that may contain {@code query}: the postings of its rarest
+     * trigram, or every label if the query is shorter than a trigram.
+     */
+    private int[] getCandidates(String query) {
+        if (query.length() < GRAM_LENGTH) {
+            final int[] all = new int[mLabels.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] candidates = null;
+        for (int start = 0; start + GRAM_LENGTH <= query.length(); start++) {
+            final int[] postings = mGrams.get(query.substring(start, start + GRAM_LENGTH));
+            if (postings == null) {
+                return NO_MATCH;
+            }
+            if (candidates == null || postings.length < candidates.length) {
+                candidates = postings;
+            }
+        }
+        return candidates;
+    }
+
+    private int[] filter(int[] candidates, String query) {
+        final int[] matches = new int[candidates.length];
+        int count = 0;
+        for (int index : candidates) {
+            if (mLabels[index].contains(query)) {
+                matches[count++] = index;
+            }
+        }
+        final int[] result = new int[count];
+        System.arraycopy(matches, 0, result, 0, count);
+        return result;
+    }
+}
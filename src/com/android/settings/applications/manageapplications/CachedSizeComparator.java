@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import android.content.Context;
+import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.SparseArray;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.settings.deviceinfo.storage.StorageCacheHelper;
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts apps by total size like {@link ApplicationsState#SIZE_COMPARATOR}, using the size cached
+ * by {@link #cacheSizes(Context, List)} for apps whose size isn't computed yet, so that the size
+ * sort doesn't start from an alphabetical list.
+ */
+class CachedSizeComparator implements Comparator<AppEntry> {
+
+    private final Context mContext;
+    // user id -> package name -> size
+    private final SparseArray<Map<String, Long>> mCachedSizes = new SparseArray<>();
+
+    CachedSizeComparator(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    @Override
+    public int compare(AppEntry object1, AppEntry object2) {
+        final long size1 = getSize(object1);
+        final long size2 = getSize(object2);
+        if (size1 != size2) {
+            return size1 < size2 ? 1 : -1;
+        }
+        return ApplicationsState.ALPHA_COMPARATOR.compare(object1, object2);
+    }
+
+    /**
+     * Replaces the sizes cached for the users of {@code entries} with the sizes of those entries,
+     * so that apps no longer listed are dropped. An app whose size isn't computed yet keeps its
+     * cached size.
+     */
+    @WorkerThread
+    static void cacheSizes(Context context, List<AppEntry> entries) {
+        final SparseArray<StorageCacheHelper> helpers = new SparseArray<>();
+        final SparseArray<Map<String, Long>> sizes = new SparseArray<>();
+        for (AppEntry entry : entries) {
+            if (entry.info == null) {
+                continue;
+            }
+            final int userId = UserHandle.getUserId(entry.info.uid);
+            StorageCacheHelper helper = helpers.get(userId);
+            Map<String, Long> userSizes = sizes.get(userId);
+            if (helper == null) {
+                helper = new StorageCacheHelper(context, userId);
+                helpers.put(userId, helper);
+                userSizes = new ArrayMap<>();
+                sizes.put(userId, userSizes);
+            }
+            final String packageName = entry.info.packageName;
+            if (entry.size >= 0) {
+                userSizes.put(packageName, entry.size);
+            } else {
+                final Long cachedSize = helper.retrieveAppSizes().get(packageName);
+                if (cachedSize != null) {
+                    userSizes.put(packageName, cachedSize);
+                }
+            }
+        }
+        for (int i = 0; i < helpers.size(); i++) {
+            helpers.valueAt(i).cacheAppSizes(sizes.valueAt(i));
+        }
+    }
+
+    private synchronized long getSize(AppEntry entry) {
+        if (entry.size >= 0 || entry.info == null) {
+            return entry.size;
+        }
+        final int userId = UserHandle.getUserId(entry.info.uid);
+        Map<String, Long> sizes = mCachedSizes.get(userId);
+        if (sizes == null) {
+            sizes = new StorageCacheHelper(mContext, userId).retrieveAppSizes();
+            mCachedSizes.put(userId, sizes);
+        }
+        final Long size = sizes.get(entry.info.packageName);
+        return size != null ? size : entry.size;
+    }
+}
@@ -76,6 +76,7 @@ import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.AdapterView;
 import android.widget.AdapterView.OnItemSelectedListener;
+import android.widget.CompoundButton;
 import android.widget.Filter;
 import android.widget.FrameLayout;
 import android.widget.SearchView;
@@ -88,6 +89,7 @@ import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 import androidx.coordinatorlayout.widget.CoordinatorLayout;
 import androidx.core.view.ViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -179,7 +181,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.Function;
 
 /**
  * Activity to pick an application that will be used to display installation information and
@@ -1236,6 +1244,14 @@ public class ManageApplications extends InstrumentedFragment
         private boolean mHasReceivedLoadEntries;
         private boolean mHasReceivedBridgeCallback;
         private SearchFilter mSearchFilter;
+        private volatile AppLabelIndex mLabelIndex;
+        // Snapshot of mEntries as last dispatched to the RecyclerView, base of the next diff.
+        private volatile List<AppEntryDiffCallback.EntryState> mEntryStates;
+        // What rows show from extraInfo, by entry, until the bridge reports new extra info.
+        // Replaced rather than cleared, so captures reading the old extra info can't refill it.
+        private volatile Map<AppEntry, CachedExtraInfoDisplay> mExtraInfoDisplays =
+                newExtraInfoDisplays();
+        private int mRebuildGeneration;
         private PowerAllowlistBackend mBackend;
 
         // This is to remember and restore the last scroll position when this
@@ -1483,7 +1499,7 @@ public class ManageApplications extends InstrumentedFragment
                         comparatorObj = ApplicationsState.EXTERNAL_SIZE_COMPARATOR;
                         break;
                     default:
-                        comparatorObj = ApplicationsState.SIZE_COMPARATOR;
+                        comparatorObj = new CachedSizeComparator(mContext);
                         break;
                 }
             } else if (mLastSortMode == R.id.sort_order_recent_notification) {
@@ -1531,6 +1547,9 @@ public class ManageApplications extends InstrumentedFragment
                 Log.w(TAG, "Apps haven't loaded completely yet, so nothing can be filtered");
                 return;
             }
+            if (mLabelIndex == null || mLabelIndex.getEntries() != mOriginalEntries) {
+                mLabelIndex = new AppLabelIndex(mOriginalEntries, Locale.getDefault());
+            }
             mSearchFilter.filter(query);
         }
 
@@ -1579,20 +1598,89 @@ public class ManageApplications extends InstrumentedFragment
                     || filterType == FILTER_APPS_POWER_ALLOWLIST_ALL) {
                 entries = removeDuplicateIgnoringUser(entries);
             }
-            mEntries = entries;
             mOriginalEntries = entries;
+            final AppLabelIndex labelIndex = new AppLabelIndex(entries, Locale.getDefault());
+            mLabelIndex = labelIndex;
+            // Any rebuild, applied now or later, supersedes the diffs still being computed.
+            final int generation = ++mRebuildGeneration;
+            final List<AppEntryDiffCallback.EntryState> baseStates = mEntryStates;
+            if (baseStates == null || entries == null || hasListHeader()) {
+                setEntries(entries, null /* baseStates */, null /* diff */);
+                onEntriesApplied(null /* appliedQuery */);
+                return;
+            }
+            // Diff against what is on screen in background, then dispatch fine-grained updates.
+            // While searching, the screen shows the matching entries, so diff those.
+            final CharSequence query = getSearchQuery();
+            final int displayConfig = getDisplayConfig();
+            ThreadUtils.postOnBackgroundThread(() -> {
+                final ArrayList<AppEntry> newEntries = labelIndex.search(query);
+                final List<AppEntryDiffCallback.EntryState> states =
+                        AppEntryDiffCallback.captureStates(newEntries, displayConfig,
+                                getCachedExtraInfoDisplay(displayConfig));
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(
+                        new AppEntryDiffCallback(baseStates, states));
+                ThreadUtils.postOnMainThread(() -> {
+                    if (generation != mRebuildGeneration) {
+                        // A newer rebuild will be dispatched instead.
+                        return;
+                    }
+                    setEntries(newEntries, baseStates, new DiffState(states, diff));
+                    onEntriesApplied(query);
+                });
+            });
+        }
+
+        /**
+         * @return the query typed in the visible search view, or {@code null} if not searching.
+         */
+        @Nullable
+        private CharSequence getSearchQuery() {
+            final SearchView searchView = mManageApplications.mSearchView;
+            if (searchView == null || !searchView.isVisibleToUser()) {
+                return null;
+            }
+            final CharSequence query = searchView.getQuery();
+            return TextUtils.isEmpty(query) ? null : query.toString();
+        }
+
+        /**
+         * Publishes {@code entries}, dispatching {@code diff} if it was computed against the
+         * entries currently displayed, or a full refresh otherwise.
+         */
+        private void setEntries(ArrayList<AppEntry> entries,
+                @Nullable List<AppEntryDiffCallback.EntryState> baseStates,
+                @Nullable DiffState diff) {
+            mEntries = entries;
+            if (diff != null && baseStates == mEntryStates && !hasListHeader()) {
+                mEntryStates = diff.mStates;
+                diff.mDiff.dispatchUpdatesTo(this);
+                return;
+            }
+            final int displayConfig = getDisplayConfig();
+            mEntryStates = entries != null
+                    ? AppEntryDiffCallback.captureStates(entries, displayConfig,
+                            getCachedExtraInfoDisplay(displayConfig))
+                    : null;
             notifyDataSetChanged();
-            if (getItemCount() == 0) {
+        }
+
+        /**
+         * @param appliedQuery the search query the applied entries were already filtered with, or
+         *                     {@code null} if they are the full list.
+         */
+        private void onEntriesApplied(@Nullable CharSequence appliedQuery) {
+            final boolean empty = appliedQuery == null
+                    ? getItemCount() == 0
+                    : mOriginalEntries == null || mOriginalEntries.isEmpty();
+            if (empty) {
                 mLoadingViewController.showEmpty(false /* animate */);
             } else {
                 mLoadingViewController.showContent(false /* animate */);
 
-                if (mManageApplications.mSearchView != null
-                        && mManageApplications.mSearchView.isVisibleToUser()) {
-                    final CharSequence query = mManageApplications.mSearchView.getQuery();
-                    if (!TextUtils.isEmpty(query)) {
-                        filterSearch(query.toString());
-                    }
+                final CharSequence query = getSearchQuery();
+                if (query != null && !TextUtils.equals(query, appliedQuery)) {
+                    filterSearch(query.toString());
                 }
             }
             // Restore the last scroll position if the number of entries added so far is bigger than
@@ -1611,6 +1699,22 @@ public class ManageApplications extends InstrumentedFragment
             mManageApplications.setHasInstant(mState.haveInstantApps());
         }
 
+        /**
+         * Lists with a header shift positions by one, and show it only when not empty. They are
+         * always fully refreshed.
+         */
+        private boolean hasListHeader() {
+            return mManageApplications.mListType == LIST_TYPE_APPS_LOCALE
+                    || mManageApplications.mListType == LIST_TYPE_CLONED_APPS;
+        }
+
+        /**
+         * @return a value that changes whenever every row needs rebinding.
+         */
+        private int getDisplayConfig() {
+            return Objects.hash(mLastSortMode, mWhichSize, mManageApplications.mListType);
+        }
+
         @VisibleForTesting
         void updateLoading() {
             final boolean appLoaded = mHasReceivedLoadEntries && mSession.getAllApps().size() != 0;
@@ -1624,6 +1728,7 @@ public class ManageApplications extends InstrumentedFragment
         @Override
         public void onExtraInfoUpdated() {
             mHasReceivedBridgeCallback = true;
+            mExtraInfoDisplays = newExtraInfoDisplays();
             rebuild();
         }
 
@@ -1659,7 +1764,7 @@ public class ManageApplications extends InstrumentedFragment
             for (int i = 0; i < size; i++) {
                 final AppEntry entry = mEntries.get(i);
                 final ApplicationInfo info = entry.info;
-                if (info == null && !TextUtils.equals(packageName, info.packageName)) {
+                if (info == null || !TextUtils.equals(packageName, info.packageName)) {
                     continue;
                 }
                 if (TextUtils.equals(mManageApplications.mCurrentPkgName, info.packageName)) {
@@ -1670,7 +1775,7 @@ public class ManageApplications extends InstrumentedFragment
                     rebuild();
                     return;
                 } else {
-                    mOnScrollListener.postNotifyItemChange(i);
+                    mOnScrollListener.postNotifyItemChange(i, AppEntryDiffCallback.PAYLOAD_SIZE);
                 }
             }
         }
@@ -1684,6 +1789,11 @@ public class ManageApplications extends InstrumentedFragment
 
         @Override
         public void onAllSizesComputed() {
+            if (mWhichSize == SIZE_TOTAL && mEntries != null) {
+                final ArrayList<AppEntry> entries = mEntries;
+                ThreadUtils.postOnBackgroundThread(
+                        () -> CachedSizeComparator.cacheSizes(mContext, entries));
+            }
             if (mLastSortMode == R.id.sort_order_size) {
                 rebuild();
             }
@@ -1749,6 +1859,31 @@ public class ManageApplications extends InstrumentedFragment
                     && !mBackend.isDefaultActiveApp(entry.info.packageName, entry.info.uid);
         }
 
+        @Override
+        public void onBindViewHolder(@NonNull ApplicationViewHolder holder, int position,
+                @NonNull List<Object> payloads) {
+            if (payloads.isEmpty() || getItemViewType(position) == VIEW_TYPE_APP_HEADER) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            for (Object payload : payloads) {
+                if (payload != AppEntryDiffCallback.PAYLOAD_SIZE) {
+                    onBindViewHolder(holder, position);
+                    return;
+                }
+            }
+            final int applicationPosition =
+                    getApplicationPosition(mManageApplications.mListType, position);
+            if (applicationPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
+            // Only the size changed, rebind the summary alone.
+            final ApplicationsState.AppEntry entry = mEntries.get(applicationPosition);
+            synchronized (entry) {
+                updateSummary(holder, entry);
+            }
+        }
+
         @Override
         public void onBindViewHolder(ApplicationViewHolder holder, int position) {
             if (getItemViewType(position) == VIEW_TYPE_APP_HEADER) {
@@ -1794,80 +1929,148 @@ public class ManageApplications extends InstrumentedFragment
         }
 
         private void updateSummary(ApplicationViewHolder holder, AppEntry entry) {
+            if (showsSizeSummary()) {
+                holder.updateSizeText(entry, mManageApplications.mInvalidSizeStr, mWhichSize);
+            } else {
+                holder.setSummary(getSummary(entry));
+            }
+        }
+
+        /**
+         * @return {@code true} if rows show the app size, {@code false} if they show
+         * {@link #getSummary(AppEntry)}.
+         */
+        private boolean showsSizeSummary() {
+            switch (mManageApplications.mListType) {
+                case LIST_TYPE_NOTIFICATION:
+                case LIST_TYPE_USAGE_ACCESS:
+                case LIST_TYPE_HIGH_POWER:
+                case LIST_TYPE_OVERLAY:
+                case LIST_TYPE_WRITE_SETTINGS:
+                case LIST_TYPE_MANAGE_SOURCES:
+                case LIST_TYPE_WIFI_ACCESS:
+                case LIST_MANAGE_EXTERNAL_STORAGE:
+                case LIST_TYPE_ALARMS_AND_REMINDERS:
+                case LIST_TYPE_MEDIA_MANAGEMENT_APPS:
+                case LIST_TYPE_APPS_LOCALE:
+                case LIST_TYPE_BATTERY_OPTIMIZATION:
+                case LIST_TYPE_LONG_BACKGROUND_TASKS:
+                case LIST_TYPE_CLONED_APPS:
+                case LIST_TYPE_NFC_TAG_APPS:
+                case LIST_TYPE_TURN_SCREEN_ON:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+
+        /**
+         * @return the summary of {@code entry} for lists that don't show the app size. May be
+         * called off the main thread.
+         */
+        @Nullable
+        private CharSequence getSummary(AppEntry entry) {
             switch (mManageApplications.mListType) {
                 case LIST_TYPE_NOTIFICATION:
                     if (entry.extraInfo != null
                             && entry.extraInfo instanceof NotificationsSentState) {
-                        holder.setSummary(AppStateNotificationBridge.getSummary(mContext,
-                                (NotificationsSentState) entry.extraInfo, mLastSortMode));
-                    } else {
-                        holder.setSummary(null);
+                        return AppStateNotificationBridge.getSummary(mContext,
+                                (NotificationsSentState) entry.extraInfo, mLastSortMode);
                     }
-                    break;
+                    return null;
                 case LIST_TYPE_USAGE_ACCESS:
                     if (entry.extraInfo != null) {
-                        holder.setSummary(
+                        return mContext.getString(
                                 (new UsageState((PermissionState) entry.extraInfo)).isPermissible()
                                         ? R.string.app_permission_summary_allowed
                                         : R.string.app_permission_summary_not_allowed);
-                    } else {
-                        holder.setSummary(null);
                     }
-                    break;
+                    return null;
                 case LIST_TYPE_HIGH_POWER:
-                    holder.setSummary(HighPowerDetail.getSummary(mContext, entry));
-                    break;
+                    return HighPowerDetail.getSummary(mContext, entry);
                 case LIST_TYPE_OVERLAY:
-                    holder.setSummary(DrawOverlayDetails.getSummary(mContext, entry));
-                    break;
+                    return DrawOverlayDetails.getSummary(mContext, entry);
                 case LIST_TYPE_WRITE_SETTINGS:
-                    holder.setSummary(WriteSettingsDetails.getSummary(mContext, entry));
-                    break;
+                    return WriteSettingsDetails.getSummary(mContext, entry);
                 case LIST_TYPE_MANAGE_SOURCES:
-                    holder.setSummary(ExternalSourcesDetails.getPreferenceSummary(mContext, entry));
-                    break;
+                    return ExternalSourcesDetails.getPreferenceSummary(mContext, entry);
                 case LIST_TYPE_WIFI_ACCESS:
-                    holder.setSummary(ChangeWifiStateDetails.getSummary(mContext, entry));
-                    break;
+                    return ChangeWifiStateDetails.getSummary(mContext, entry);
                 case LIST_MANAGE_EXTERNAL_STORAGE:
-                    holder.setSummary(ManageExternalStorageDetails.getSummary(mContext, entry));
-                    break;
+                    return ManageExternalStorageDetails.getSummary(mContext, entry);
                 case LIST_TYPE_ALARMS_AND_REMINDERS:
-                    holder.setSummary(AlarmsAndRemindersDetails.getSummary(mContext, entry));
-                    break;
+                    return AlarmsAndRemindersDetails.getSummary(mContext, entry);
                 case LIST_TYPE_MEDIA_MANAGEMENT_APPS:
-                    holder.setSummary(MediaManagementAppsDetails.getSummary(mContext, entry));
-                    break;
+                    return MediaManagementAppsDetails.getSummary(mContext, entry);
                 case LIST_TYPE_APPS_LOCALE:
-                    holder.setSummary(AppLocaleDetails.getSummary(mContext, entry.info));
-                    break;
-                case LIST_TYPE_BATTERY_OPTIMIZATION:
-                    holder.setSummary(null);
-                    break;
+                    return AppLocaleDetails.getSummary(mContext, entry.info);
                 case LIST_TYPE_LONG_BACKGROUND_TASKS:
-                    holder.setSummary(LongBackgroundTasksDetails.getSummary(mContext, entry));
-                    break;
-                case LIST_TYPE_CLONED_APPS:
-                    holder.setSummary(null);
-                    break;
+                    return LongBackgroundTasksDetails.getSummary(mContext, entry);
                 case LIST_TYPE_NFC_TAG_APPS:
-                    holder.setSummary(
-                            ChangeNfcTagAppsStateDetails.getSummary(mContext, entry));
-                    break;
+                    return ChangeNfcTagAppsStateDetails.getSummary(mContext, entry);
                 case LIST_TYPE_TURN_SCREEN_ON:
-                    holder.setSummary(TurnScreenOnDetails.getSummary(mContext, entry));
-                    break;
+                    return TurnScreenOnDetails.getSummary(mContext, entry);
                 default:
-                    holder.updateSizeText(entry, mManageApplications.mInvalidSizeStr, mWhichSize);
-                    break;
+                    return null;
             }
         }
 
+        /**
+         * @return what a row shows from {@code entry.extraInfo}. Bridges may either replace or
+         * mutate extraInfo, so rows are compared on this value rather than on the object.
+         */
+        @VisibleForTesting
+        @Nullable
+        String getExtraInfoDisplay(AppEntry entry) {
+            if (showsSizeSummary()) {
+                return null;
+            }
+            final CharSequence summary = getSummary(entry);
+            final String display = summary != null ? summary.toString() : null;
+            if (mManageApplications.mListType == LIST_TYPE_NOTIFICATION) {
+                return display + '/' + AppStateNotificationBridge.enableSwitch(entry)
+                        + '/' + AppStateNotificationBridge.checkSwitch(entry);
+            }
+            return display;
+        }
+
+        /**
+         * @return {@link #getExtraInfoDisplay(AppEntry)} computed only for entries whose extraInfo
+         * was replaced, or updated by the bridge, since it was last computed for
+         * {@code displayConfig}.
+         */
+        @VisibleForTesting
+        Function<AppEntry, String> getCachedExtraInfoDisplay(int displayConfig) {
+            final Map<AppEntry, CachedExtraInfoDisplay> displays = mExtraInfoDisplays;
+            return entry -> {
+                final Object extraInfo = entry.extraInfo;
+                final CachedExtraInfoDisplay cached = displays.get(entry);
+                if (cached != null && cached.mExtraInfo == extraInfo
+                        && cached.mDisplayConfig == displayConfig) {
+                    return cached.mDisplay;
+                }
+                final String display = getExtraInfoDisplay(entry);
+                displays.put(entry,
+                        new CachedExtraInfoDisplay(extraInfo, displayConfig, display));
+                return display;
+            };
+        }
+
+        private static Map<AppEntry, CachedExtraInfoDisplay> newExtraInfoDisplays() {
+            return Collections.synchronizedMap(new WeakHashMap<>());
+        }
+
         private void updateSwitch(ApplicationViewHolder holder, AppEntry entry) {
             switch (mManageApplications.mListType) {
                 case LIST_TYPE_NOTIFICATION:
-                    holder.updateSwitch(((AppStateNotificationBridge) mExtraInfoBridge)
-                                    .getSwitchOnCheckedListener(entry),
+                    final CompoundButton.OnCheckedChangeListener listener =
+                            ((AppStateNotificationBridge) mExtraInfoBridge)
+                                    .getSwitchOnCheckedListener(entry);
+                    holder.updateSwitch((buttonView, isChecked) -> {
+                                listener.onCheckedChanged(buttonView, isChecked);
+                                // The listener updates extraInfo in place.
+                                mExtraInfoDisplays.remove(entry);
+                            },
                             AppStateNotificationBridge.enableSwitch(entry),
                             AppStateNotificationBridge.checkSwitch(entry));
                     if (entry.extraInfo != null
@@ -1943,8 +2146,20 @@ public class ManageApplications extends InstrumentedFragment
             }
 
             public void postNotifyItemChange(int index) {
+                postNotifyItemChange(index, null /* payload */);
+            }
+
+            /**
+             * Notifies the item at {@code index} changed with {@code payload}, or the whole data
+             * set once scrolling stops.
+             */
+            public void postNotifyItemChange(int index, @Nullable Object payload) {
                 if (mScrollState == SCROLL_STATE_IDLE) {
-                    mAdapter.notifyItemChanged(index);
+                    if (payload == null) {
+                        mAdapter.notifyItemChanged(index);
+                    } else {
+                        mAdapter.notifyItemChanged(index, payload);
+                    }
                 } else {
                     mDelayNotifyDataChange = true;
                 }
@@ -1954,32 +2169,69 @@ public class ManageApplications extends InstrumentedFragment
         /**
          * An array filter that constrains the content of the array adapter with a substring.
          * Item that does not contains the specified substring will be removed from the list.</p>
+         * Matching ignores case and diacritics, see {@link AppLabelIndex}.
          */
         private class SearchFilter extends Filter {
             @WorkerThread
             @Override
             protected FilterResults performFiltering(CharSequence query) {
-                final ArrayList<ApplicationsState.AppEntry> matchedEntries;
-                if (TextUtils.isEmpty(query)) {
-                    matchedEntries = mOriginalEntries;
-                } else {
-                    matchedEntries = new ArrayList<>();
-                    for (ApplicationsState.AppEntry entry : mOriginalEntries) {
-                        if (entry.label.toLowerCase().contains(query.toString().toLowerCase())) {
-                            matchedEntries.add(entry);
-                        }
-                    }
+                final ArrayList<ApplicationsState.AppEntry> matchedEntries =
+                        mLabelIndex.search(query);
+                final List<AppEntryDiffCallback.EntryState> baseStates = mEntryStates;
+                DiffState diff = null;
+                if (baseStates != null) {
+                    final int displayConfig = getDisplayConfig();
+                    final List<AppEntryDiffCallback.EntryState> states =
+                            AppEntryDiffCallback.captureStates(matchedEntries, displayConfig,
+                                    getCachedExtraInfoDisplay(displayConfig));
+                    diff = new DiffState(states, DiffUtil.calculateDiff(
+                            new AppEntryDiffCallback(baseStates, states)));
                 }
                 final FilterResults results = new FilterResults();
-                results.values = matchedEntries;
+                results.values = new SearchResult(matchedEntries, baseStates, diff);
                 results.count = matchedEntries.size();
                 return results;
             }
 
             @Override
             protected void publishResults(CharSequence constraint, FilterResults results) {
-                mEntries = (ArrayList<ApplicationsState.AppEntry>) results.values;
-                notifyDataSetChanged();
+                final SearchResult result = (SearchResult) results.values;
+                setEntries(result.mEntries, result.mBaseStates, result.mDiff);
+            }
+        }
+
+        private static class SearchResult {
+            final ArrayList<ApplicationsState.AppEntry> mEntries;
+            final List<AppEntryDiffCallback.EntryState> mBaseStates;
+            final DiffState mDiff;
+
+            SearchResult(ArrayList<ApplicationsState.AppEntry> entries,
+                    List<AppEntryDiffCallback.EntryState> baseStates, DiffState diff) {
+                mEntries = entries;
+                mBaseStates = baseStates;
+                mDiff = diff;
+            }
+        }
+
+        private static class CachedExtraInfoDisplay {
+            final Object mExtraInfo;
+            final int mDisplayConfig;
+            final String mDisplay;
+
+            CachedExtraInfoDisplay(Object extraInfo, int displayConfig, String display) {
+                mExtraInfo = extraInfo;
+                mDisplayConfig = displayConfig;
+                mDisplay = display;
+            }
+        }
+
+        private static class DiffState {
+            final List<AppEntryDiffCallback.EntryState> mStates;
+            final DiffUtil.DiffResult mDiff;
+
+            DiffState(List<AppEntryDiffCallback.EntryState> states, DiffUtil.DiffResult diff) {
+                mStates = states;
+                mDiff = diff;
             }
         }
     }
@@ -415,6 +415,25 @@ public abstract class BasePreferenceController extends AbstractPreferenceControl
     public interface UiBlocker {
     }
 
+    /**
+     * Used for {@link BasePreferenceController} whose {@link #getAvailabilityStatus()} is safe to
+     * call from a background thread.
+     *
+     * When the hosting {@link com.android.settings.dashboard.DashboardFragment} opts in to
+     * asynchronous preference states, availability of such controllers is evaluated on a worker
+     * pool, followed by {@link #loadStateInBackground()}, and only
+     * {@link #updateState(Preference)} runs on the main thread.
+     */
+    public interface BackgroundSafe {
+        /**
+         * Called on a background thread when the controller is available, right before
+         * {@link #updateState(Preference)} is posted to the main thread. Use it to pre-compute
+         * anything slow that updateState needs; it must not touch the {@link Preference}.
+         */
+        default void loadStateInBackground() {
+        }
+    }
+
     /**
      * Set the metrics category of the parent fragment.
      *
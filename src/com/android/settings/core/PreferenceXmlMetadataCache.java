@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.os.Bundle;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the metadata returned by
+ * {@link PreferenceXmlParserUtils#extractMetadata(Context, int, int)}.
+ *
+ * Entries are keyed by xml resource, metadata flags and the parts of the configuration that can
+ * change which resource or value gets resolved, including the set of applied resource overlays.
+ */
+public class PreferenceXmlMetadataCache {
+
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 512;
+
+    private static final LruCache<String, List<Bundle>> sCache = new LruCache<>(MAX_ENTRIES);
+
+    private static final AtomicLong sHits = new AtomicLong();
+    private static final AtomicLong sMisses = new AtomicLong();
+
+    private PreferenceXmlMetadataCache() {
+    }
+
+    /**
+     * @return the cache key for the given extraction, or {@code null} if the context doesn't
+     * expose enough configuration to build a reliable key.
+     */
+    @Nullable
+    static String getKey(Context context, int xmlResId, int flags) {
+        final Resources resources = context.getResources();
+        final Configuration config = resources != null ? resources.getConfiguration() : null;
+        if (config == null) {
+            return null;
+        }
+        return context.getPackageName()
+                + '/' + xmlResId
+                + '/' + flags
+                + '/' + config.getLocales().toLanguageTags()
+                + '/' + config.mcc + '-' + config.mnc
+                + '/' + config.uiMode
+                + '/' + config.densityDpi
+                + '/' + config.screenWidthDp + 'x' + config.screenHeightDp
+                + '/' + config.smallestScreenWidthDp
+                + '/' + config.screenLayout
+                + '/' + config.orientation
+                + '/' + config.getLayoutDirection()
+                + '/' + config.fontScale
+                // Bumped whenever resource overlays are enabled or disabled.
+                + '/' + config.assetsSeq;
+    }
+
+    /**
+     * @return a copy of the cached metadata for {@code key}, or {@code null} on a miss.
+     */
+    @Nullable
+    static List<Bundle> get(@NonNull String key) {
+        final List<Bundle> metadata = sCache.get(key);
+        if (metadata == null) {
+            sMisses.incrementAndGet();
+            return null;
+        }
+        sHits.incrementAndGet();
+        return copyOf(metadata);
+    }
+
+    static void put(@NonNull String key, @NonNull List<Bundle> metadata) {
+        sCache.put(key, copyOf(metadata));
+    }
+
+    /**
+     * @return hit/miss counters and size of the in-memory cache, for dumpsys.
+     */
+    public static JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("hits", sHits.get());
+        obj.put("misses", sMisses.get());
+        obj.put("evictions", sCache.evictionCount());
+        obj.put("size", sCache.size());
+        obj.put("maxSize", sCache.maxSize());
+        return obj;
+    }
+
+    @VisibleForTesting
+    static void clear() {
+        sCache.evictAll();
+        sHits.set(0);
+        sMisses.set(0);
+    }
+
+    private static List<Bundle> copyOf(List<Bundle> metadata) {
+        final List<Bundle> copy = new ArrayList<>(metadata.size());
+        for (Bundle bundle : metadata) {
+            copy.add(new Bundle(bundle));
+        }
+        return copy;
+    }
+}
@@ -109,6 +109,7 @@ public class PreferenceXmlParserUtils {
 
     /**
      * Extracts metadata from preference xml and put them into a {@link Bundle}.
+     * Results are served from {@link PreferenceXmlMetadataCache} when available.
      *
      * @param xmlResId xml res id of a preference screen
      * @param flags    Should be one or more of {@link MetadataFlag}.
@@ -116,11 +117,27 @@ public class PreferenceXmlParserUtils {
     @NonNull
     public static List<Bundle> extractMetadata(Context context, @XmlRes int xmlResId, int flags)
             throws IOException, XmlPullParserException {
-        final List<Bundle> metadata = new ArrayList<>();
         if (xmlResId <= 0) {
             Log.d(TAG, xmlResId + " is invalid.");
-            return metadata;
+            return new ArrayList<>();
+        }
+        final String cacheKey = PreferenceXmlMetadataCache.getKey(context, xmlResId, flags);
+        if (cacheKey != null) {
+            final List<Bundle> cached = PreferenceXmlMetadataCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
         }
+        final List<Bundle> metadata = parseMetadata(context, xmlResId, flags);
+        if (cacheKey != null) {
+            PreferenceXmlMetadataCache.put(cacheKey, metadata);
+        }
+        return metadata;
+    }
+
+    private static List<Bundle> parseMetadata(Context context, @XmlRes int xmlResId, int flags)
+            throws IOException, XmlPullParserException {
+        final List<Bundle> metadata = new ArrayList<>();
         final XmlResourceParser parser = context.getResources().getXml(xmlResId);
 
         int type;
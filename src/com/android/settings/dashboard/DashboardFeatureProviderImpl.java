@@ -286,9 +286,12 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
             final Map<String, IContentProvider> providerMap = new ArrayMap<>();
             final String titleFromUri = TileUtils.getTextFromUri(
                     mContext, uri, providerMap, META_DATA_PREFERENCE_TITLE);
-            if (!TextUtils.equals(titleFromUri, preference.getTitle())) {
-                observer.post(() -> preference.setTitle(titleFromUri));
-            }
+            // Always post, so that the observer knows its data is loaded.
+            observer.post(() -> {
+                if (!TextUtils.equals(titleFromUri, preference.getTitle())) {
+                    preference.setTitle(titleFromUri);
+                }
+            });
         });
     }
 
@@ -316,9 +319,12 @@ public class DashboardFeatureProviderImpl implements DashboardFeatureProvider {
             final Map<String, IContentProvider> providerMap = new ArrayMap<>();
             final String summaryFromUri = TileUtils.getTextFromUri(
                     mContext, uri, providerMap, META_DATA_PREFERENCE_SUMMARY);
-            if (!TextUtils.equals(summaryFromUri, preference.getSummary())) {
-                observer.post(() -> preference.setSummary(summaryFromUri));
-            }
+            // Always post, so that the observer knows its data is loaded.
+            observer.post(() -> {
+                if (!TextUtils.equals(summaryFromUri, preference.getSummary())) {
+                    preference.setSummary(summaryFromUri);
+                }
+            });
         });
     }
 
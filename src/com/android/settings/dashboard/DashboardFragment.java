@@ -20,7 +20,11 @@ import android.app.settings.SettingsEnums;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.preference.PreferenceManager.OnActivityResultListener;
 import android.text.TextUtils;
 import android.util.ArrayMap;
@@ -53,6 +57,7 @@ import com.android.settingslib.core.lifecycle.Lifecycle;
 import com.android.settingslib.drawer.DashboardCategory;
 import com.android.settingslib.drawer.Tile;
 import com.android.settingslib.search.Indexable;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -63,8 +68,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Base fragment for dashboard style UI containing a list of static and dynamic setting items.
@@ -74,7 +83,15 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
         BasePreferenceController.UiBlockListener {
     public static final String CATEGORY = "category";
     private static final String TAG = "DashboardFragment";
-    private static final long TIMEOUT_MILLIS = 50L;
+    /**
+     * Injected tiles whose dynamic data takes longer than this to load are reported.
+     */
+    @VisibleForTesting
+    static final long TILE_DATA_DEADLINE_MILLIS = 1000L;
+    private static final Object TILE_DATA_DEADLINE_TOKEN = new Object();
+    private static final long PREFERENCE_STATE_KEEP_ALIVE_SECONDS = 30L;
+
+    private static ExecutorService sPreferenceStateExecutor;
 
     @VisibleForTesting
     final ArrayMap<String, List<DynamicDataObserver>> mDashboardTilePrefKeys = new ArrayMap<>();
@@ -88,6 +105,14 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
     private DashboardTilePlaceholderPreferenceController mPlaceholderPreferenceController;
     private boolean mListeningToCategoryChange;
     private List<String> mSuppressInjectedTileKeys;
+    // Availability of background-safe controllers, as of the last applied background update.
+    // Cleared on each refresh, so it is never older than the current updatePreferenceStates().
+    private final Map<AbstractPreferenceController, Boolean> mBackgroundAvailability =
+            new ArrayMap<>();
+    private int mPreferenceStateGeneration;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    @VisibleForTesting
+    int mTimedOutTileObserverCount;
 
     @Override
     public void onAttach(Context context) {
@@ -269,6 +294,10 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             }
             mListeningToCategoryChange = false;
         }
+        // Drops background preference states still in flight, onResume computes fresh ones.
+        mPreferenceStateGeneration++;
+        mBackgroundAvailability.clear();
+        mHandler.removeCallbacksAndMessages(TILE_DATA_DEADLINE_TOKEN);
     }
 
     @Override
@@ -387,33 +416,132 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
 
     /**
      * Update state of each preference managed by PreferenceController.
+     *
+     * When {@link #isAsyncPreferenceStateEnabled()} is {@code true}, controllers implementing
+     * {@link BasePreferenceController.BackgroundSafe} are evaluated off the main thread and their
+     * states applied later in a single batch.
      */
     protected void updatePreferenceStates() {
         final PreferenceScreen screen = getPreferenceScreen();
+        final boolean async = isAsyncPreferenceStateEnabled();
+        mBackgroundAvailability.clear();
+        final List<AbstractPreferenceController> backgroundControllers = new ArrayList<>();
         Collection<List<AbstractPreferenceController>> controllerLists =
                 mPreferenceControllers.values();
         for (List<AbstractPreferenceController> controllerList : controllerLists) {
             for (AbstractPreferenceController controller : controllerList) {
-                if (!controller.isAvailable()) {
+                if (async && controller instanceof BasePreferenceController.BackgroundSafe) {
+                    backgroundControllers.add(controller);
                     continue;
                 }
-
-                final String key = controller.getPreferenceKey();
-                if (TextUtils.isEmpty(key)) {
-                    Log.d(TAG, String.format("Preference key is %s in Controller %s",
-                            key, controller.getClass().getSimpleName()));
+                if (!controller.isAvailable()) {
                     continue;
                 }
+                updatePreferenceState(screen, controller);
+            }
+        }
+        if (!backgroundControllers.isEmpty()) {
+            updatePreferenceStatesInBackground(backgroundControllers);
+        }
+    }
 
-                final Preference preference = screen.findPreference(key);
-                if (preference == null) {
-                    Log.d(TAG, String.format("Cannot find preference with key %s in Controller %s",
-                            key, controller.getClass().getSimpleName()));
-                    continue;
+    /**
+     * Returns {@code true} to evaluate availability and state inputs of
+     * {@link BasePreferenceController.BackgroundSafe} controllers on a worker pool.
+     */
+    protected boolean isAsyncPreferenceStateEnabled() {
+        return false;
+    }
+
+    private void updatePreferenceState(PreferenceScreen screen,
+            AbstractPreferenceController controller) {
+        final String key = controller.getPreferenceKey();
+        if (TextUtils.isEmpty(key)) {
+            Log.d(TAG, String.format("Preference key is %s in Controller %s",
+                    key, controller.getClass().getSimpleName()));
+            return;
+        }
+
+        final Preference preference = screen.findPreference(key);
+        if (preference == null) {
+            Log.d(TAG, String.format("Cannot find preference with key %s in Controller %s",
+                    key, controller.getClass().getSimpleName()));
+            return;
+        }
+        controller.updateState(preference);
+    }
+
+    private void updatePreferenceStatesInBackground(
+            List<AbstractPreferenceController> controllers) {
+        final int generation = ++mPreferenceStateGeneration;
+        final Map<AbstractPreferenceController, Boolean> availability =
+                new ConcurrentHashMap<>();
+        final AtomicInteger remaining = new AtomicInteger(controllers.size());
+        final ExecutorService executor = getPreferenceStateExecutor();
+        for (AbstractPreferenceController controller : controllers) {
+            executor.execute(() -> {
+                try {
+                    final boolean available = controller.isAvailable();
+                    if (available) {
+                        ((BasePreferenceController.BackgroundSafe) controller)
+                                .loadStateInBackground();
+                    }
+                    availability.put(controller, available);
+                } catch (RuntimeException e) {
+                    // Falls back to evaluating the controller on the main thread.
+                    Log.w(TAG, "Failed to evaluate " + controller.getClass().getSimpleName()
+                            + " in background", e);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        ThreadUtils.postOnMainThread(() -> applyBackgroundPreferenceStates(
+                                generation, controllers, availability));
+                    }
                 }
-                controller.updateState(preference);
+            });
+        }
+    }
+
+    @VisibleForTesting
+    void applyBackgroundPreferenceStates(int generation,
+            List<AbstractPreferenceController> controllers,
+            Map<AbstractPreferenceController, Boolean> availability) {
+        final PreferenceScreen screen = getPreferenceScreen();
+        if (generation != mPreferenceStateGeneration || screen == null) {
+            // A newer update is in flight, or the page was stopped.
+            return;
+        }
+        for (AbstractPreferenceController controller : controllers) {
+            final Boolean result = availability.get(controller);
+            final boolean available = result != null ? result : controller.isAvailable();
+            mBackgroundAvailability.put(controller, available);
+            if (available) {
+                updatePreferenceState(screen, controller);
             }
         }
+        if (mBlockerController != null) {
+            updatePreferenceVisibility(mPreferenceControllers);
+        }
+    }
+
+    /**
+     * @return the last availability computed in background for {@code controller}, or a fresh
+     * {@link AbstractPreferenceController#isAvailable()} if there is none.
+     */
+    private boolean isControllerAvailable(AbstractPreferenceController controller) {
+        final Boolean available = mBackgroundAvailability.get(controller);
+        return available != null ? available : controller.isAvailable();
+    }
+
+    private static synchronized ExecutorService getPreferenceStateExecutor() {
+        if (sPreferenceStateExecutor == null) {
+            final int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors());
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    PREFERENCE_STATE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sPreferenceStateExecutor = executor;
+        }
+        return sPreferenceStateExecutor;
     }
 
     /**
@@ -486,9 +614,10 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
                 if (controller instanceof BasePreferenceController.UiBlocker) {
                     final boolean prefVisible =
                             ((BasePreferenceController) controller).getSavedPrefVisibility();
-                    preference.setVisible(visible && controller.isAvailable() && prefVisible);
+                    preference.setVisible(visible && isControllerAvailable(controller)
+                            && prefVisible);
                 } else {
-                    preference.setVisible(visible && controller.isAvailable());
+                    preference.setVisible(visible && isControllerAvailable(controller));
                 }
             }
         }
@@ -571,19 +700,36 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             unregisterDynamicDataObservers(entry.getValue());
         }
 
-        // Wait for pending observers to update UI.
+        // Tiles are shown with their placeholders right away, each observer applies its data on
+        // the main thread once loaded.
         if (!pendingObservers.isEmpty()) {
-            final CountDownLatch mainLatch = new CountDownLatch(1);
-            new Thread(() -> {
-                pendingObservers.forEach(observer ->
-                        awaitObserverLatch(observer.getCountDownLatch()));
-                mainLatch.countDown();
-            }).start();
-            Log.d(tag, "Start waiting observers");
-            awaitObserverLatch(mainLatch);
-            Log.d(tag, "Stop waiting observers");
             pendingObservers.forEach(DynamicDataObserver::updateUi);
+            mHandler.removeCallbacksAndMessages(TILE_DATA_DEADLINE_TOKEN);
+            mHandler.postAtTime(() -> reportTimedOutObservers(tag, pendingObservers),
+                    TILE_DATA_DEADLINE_TOKEN,
+                    SystemClock.uptimeMillis() + TILE_DATA_DEADLINE_MILLIS);
+        }
+    }
+
+    /**
+     * Reports the observers whose data was not loaded within {@link #TILE_DATA_DEADLINE_MILLIS}.
+     * Their tiles keep the placeholder until the data arrives.
+     */
+    @VisibleForTesting
+    void reportTimedOutObservers(String tag, List<DynamicDataObserver> observers) {
+        final List<Uri> timedOut = new ArrayList<>();
+        for (DynamicDataObserver observer : observers) {
+            if (!observer.isDataLoaded()) {
+                timedOut.add(observer.getUri());
+            }
+        }
+        if (timedOut.isEmpty()) {
+            return;
         }
+        mTimedOutTileObserverCount += timedOut.size();
+        Log.w(tag, timedOut.size() + "/" + observers.size() + " tile observers not loaded within "
+                + TILE_DATA_DEADLINE_MILLIS + "ms (total " + mTimedOutTileObserverCount + "): "
+                + timedOut);
     }
 
     @Override
@@ -646,12 +792,4 @@ public abstract class DashboardFragment extends SettingsPreferenceFragment
             resolver.unregisterContentObserver(observer);
         });
     }
-
-    private void awaitObserverLatch(CountDownLatch latch) {
-        try {
-            latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            // Do nothing
-        }
-    }
 }
@@ -59,6 +59,11 @@ public abstract class DynamicDataObserver extends ContentObserver {
         return mCountDownLatch;
     }
 
+    /** Returns whether data was loaded at least once. */
+    public boolean isDataLoaded() {
+        return mCountDownLatch.getCount() == 0;
+    }
+
     @Override
     public void onChange(boolean selfChange) {
         onDataChanged();
@@ -69,7 +74,7 @@ public abstract class DynamicDataObserver extends ContentObserver {
             ThreadUtils.postOnMainThread(runnable);
         } else {
             mUpdateRunnable = runnable;
-            mCountDownLatch.countDown();
         }
+        mCountDownLatch.countDown();
     }
 }
@@ -478,10 +478,17 @@ public class StorageDashboardFragment extends DashboardFragment
     public Loader<SparseArray<StorageAsyncLoader.StorageResult>> onCreateLoader(int id,
             Bundle args) {
         final Context context = getContext();
-        return new StorageAsyncLoader(context, mUserManager,
+        final StorageAsyncLoader loader = new StorageAsyncLoader(context, mUserManager,
                 mSelectedStorageEntry.getFsUuid(),
                 new StorageStatsSource(context),
                 context.getPackageManager());
+        // Other users only need their external stats, show them before the slower categories.
+        loader.setPartialResultHandler(partialResult -> {
+            if (mAppsResult == null && mNonCurrentUsers != null) {
+                updateNonCurrentUserControllers(mNonCurrentUsers, partialResult);
+            }
+        });
+        return loader;
     }
 
     @Override
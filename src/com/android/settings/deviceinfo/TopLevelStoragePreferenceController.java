@@ -65,14 +65,18 @@ public class TopLevelStoragePreferenceController extends BasePreferenceControlle
     protected Future refreshSummaryThread(Preference preference) {
         int userId = Utils.getCurrentUserIdOfType(
                 mContext.getSystemService(UserManager.class), ProfileType.PERSONAL);
-        final StorageCacheHelper storageCacheHelper = new StorageCacheHelper(mContext, userId);
-        long cachedUsedSize = storageCacheHelper.retrieveUsedSize();
-        long cachedTotalSize = storageCacheHelper.retrieveCachedSize().totalSize;
-        if (cachedUsedSize != 0 && cachedTotalSize != 0) {
-            preference.setSummary(getSummary(cachedUsedSize, cachedTotalSize));
-        }
 
         return ThreadUtils.postOnBackgroundThread(() -> {
+            // Creating the helper may read the cache from disk.
+            final StorageCacheHelper storageCacheHelper =
+                    new StorageCacheHelper(mContext, userId);
+            long cachedUsedSize = storageCacheHelper.retrieveUsedSize();
+            long cachedTotalSize = storageCacheHelper.retrieveCachedSize().totalSize;
+            if (cachedUsedSize != 0 && cachedTotalSize != 0) {
+                ThreadUtils.postOnMainThread(() -> preference.setSummary(
+                        getSummary(cachedUsedSize, cachedTotalSize)));
+            }
+
             final PrivateStorageInfo info = PrivateStorageInfo.getPrivateStorageInfo(
                     getStorageManagerVolumeProvider());
 
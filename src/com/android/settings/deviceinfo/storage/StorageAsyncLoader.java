@@ -35,16 +35,28 @@ import android.os.UserManager;
 import android.provider.MediaStore;
 import android.provider.MediaStore.Files.FileColumns;
 import android.provider.MediaStore.MediaColumns;
+import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Log;
 import android.util.SparseArray;
 
+import androidx.annotation.Nullable;
+
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * StorageAsyncLoader is a Loader which loads categorized app information and external stats for all
@@ -55,10 +67,17 @@ public class StorageAsyncLoader
     private UserManager mUserManager;
     private static final String TAG = "StorageAsyncLoader";
 
+    // Bounds the binder and MediaStore queries running at once.
+    private static final int MAX_QUERY_THREADS = 4;
+    private static final long QUERY_KEEP_ALIVE_SECONDS = 30L;
+
+    private static ThreadPoolExecutor sQueryExecutor;
+
     private String mUuid;
     private StorageStatsSource mStatsManager;
     private PackageManager mPackageManager;
-    private ArraySet<String> mSeenPackages;
+    @Nullable
+    private volatile ResultHandler mPartialResultHandler;
 
     public StorageAsyncLoader(Context context, UserManager userManager,
             String uuid, StorageStatsSource source, PackageManager pm) {
@@ -69,13 +88,21 @@ public class StorageAsyncLoader
         mPackageManager = pm;
     }
 
+    /**
+     * Sets a handler receiving, on the main thread, a copy of the results loaded so far each time
+     * a user's category finishes loading. Categories not loaded yet are zero, and
+     * {@link StorageResult#externalStats} is {@code null} until loaded.
+     */
+    public void setPartialResultHandler(@Nullable ResultHandler handler) {
+        mPartialResultHandler = handler;
+    }
+
     @Override
     public SparseArray<StorageResult> loadInBackground() {
         return getStorageResultsForUsers();
     }
 
     private SparseArray<StorageResult> getStorageResultsForUsers() {
-        mSeenPackages = new ArraySet<>();
         final SparseArray<StorageResult> results = new SparseArray<>();
         final List<UserInfo> infos = mUserManager.getUsers();
 
@@ -83,39 +110,134 @@ public class StorageAsyncLoader
         Collections.sort(infos,
                 (userInfo, otherUser) -> Integer.compare(userInfo.id, otherUser.id));
 
+        final Bundle media = new Bundle();
+        media.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MediaColumns.VOLUME_NAME
+                + "= '" + MediaStore.VOLUME_EXTERNAL_PRIMARY + "'");
+        final Bundle documentsAndOtherQueryArgs = new Bundle();
+        documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
+                + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
+                + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
+        final Bundle trashQueryArgs = new Bundle();
+        trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
+        final Uri filesUri = MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY);
+
+        // Fan out every user and category, each task fills its own fields of the user's result.
+        final ExecutorService executor = getQueryExecutor();
+        final List<Future<?>> futures = new ArrayList<>();
+        final SparseArray<AppsSize> appsSizes = new SparseArray<>();
         for (UserInfo info : infos) {
-            final StorageResult result = getAppsAndGamesSize(info.id);
-            final Bundle media = new Bundle();
-            media.putString(ContentResolver.QUERY_ARG_SQL_SELECTION, MediaColumns.VOLUME_NAME
-                    + "= '" + MediaStore.VOLUME_EXTERNAL_PRIMARY + "'");
-            result.imagesSize = getFilesSize(info.id, MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-            result.videosSize = getFilesSize(info.id, MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-            result.audioSize = getFilesSize(info.id, MediaStore.Audio.Media.EXTERNAL_CONTENT_URI,
-                    media /* queryArgs */);
-
-            final Bundle documentsAndOtherQueryArgs = new Bundle();
-            documentsAndOtherQueryArgs.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
-                    FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_IMAGE
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_VIDEO
-                    + " AND " + FileColumns.MEDIA_TYPE + "!=" + FileColumns.MEDIA_TYPE_AUDIO
-                    + " AND " + FileColumns.MIME_TYPE + " IS NOT NULL");
-            result.documentsAndOtherSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
-                    documentsAndOtherQueryArgs);
-
-            final Bundle trashQueryArgs = new Bundle();
-            trashQueryArgs.putInt(MediaStore.QUERY_ARG_MATCH_TRASHED, MediaStore.MATCH_ONLY);
-            result.trashSize = getFilesSize(info.id,
-                    MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY),
-                    trashQueryArgs);
-
-            results.put(info.id, result);
+            final int userId = info.id;
+            final StorageResult result = new StorageResult();
+            results.put(userId, result);
+
+            futures.add(executor.submit(() -> {
+                final StorageStatsSource.ExternalStorageStats externalStats =
+                        getExternalStats(userId);
+                publish(results, () -> result.externalStats = externalStats);
+            }));
+            futures.add(executor.submit(() -> {
+                final AppsSize appsSize = getAppsAndGamesSize(userId);
+                synchronized (appsSizes) {
+                    appsSizes.put(userId, appsSize);
+                }
+                publish(results, () -> {
+                    result.gamesSize = appsSize.mGamesSize;
+                    result.allAppsExceptGamesSize = appsSize.mAllAppsExceptGamesSize;
+                });
+            }));
+            futures.add(executor.submit(() -> {
+                final long size = getFilesSize(userId,
+                        MediaStore.Images.Media.EXTERNAL_CONTENT_URI, media /* queryArgs */);
+                publish(results, () -> result.imagesSize = size);
+            }));
+            futures.add(executor.submit(() -> {
+                final long size = getFilesSize(userId,
+                        MediaStore.Video.Media.EXTERNAL_CONTENT_URI, media /* queryArgs */);
+                publish(results, () -> result.videosSize = size);
+            }));
+            futures.add(executor.submit(() -> {
+                final long size = getFilesSize(userId,
+                        MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, media /* queryArgs */);
+                publish(results, () -> result.audioSize = size);
+            }));
+            futures.add(executor.submit(() -> {
+                final long size = getFilesSize(userId, filesUri, documentsAndOtherQueryArgs);
+                publish(results, () -> result.documentsAndOtherSize = size);
+            }));
+            futures.add(executor.submit(() -> {
+                final long size = getFilesSize(userId, filesUri, trashQueryArgs);
+                publish(results, () -> result.trashSize = size);
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Log.w(TAG, "Failed to load storage category", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(pending -> pending.cancel(true /* mayInterruptIfRunning */));
+                break;
+            }
+        }
+
+        // Code bytes may share between different profiles. Attribute them to the lowest user id
+        // having the package, as when users were loaded one after another.
+        final Set<String> seenPackages = new ArraySet<>();
+        synchronized (results) {
+            for (int i = 0; i < results.size(); i++) {
+                final AppsSize appsSize;
+                synchronized (appsSizes) {
+                    appsSize = appsSizes.get(results.keyAt(i));
+                }
+                if (appsSize == null) {
+                    continue;
+                }
+                for (int j = 0; j < appsSize.mCodeBytes.size(); j++) {
+                    if (!seenPackages.add(appsSize.mCodeBytes.keyAt(j))) {
+                        results.valueAt(i).duplicateCodeSize += appsSize.mCodeBytes.valueAt(j);
+                    }
+                }
+            }
         }
         return results;
     }
 
+    /**
+     * Applies {@code update} to the results and sends a copy to the partial result handler.
+     */
+    private void publish(SparseArray<StorageResult> results, Runnable update) {
+        final SparseArray<StorageResult> copy;
+        synchronized (results) {
+            update.run();
+            if (mPartialResultHandler == null) {
+                return;
+            }
+            copy = new SparseArray<>(results.size());
+            for (int i = 0; i < results.size(); i++) {
+                copy.put(results.keyAt(i), results.valueAt(i).copy());
+            }
+        }
+        ThreadUtils.postOnMainThread(() -> {
+            final ResultHandler handler = mPartialResultHandler;
+            if (handler != null && !isAbandoned() && !isReset()) {
+                handler.handleResult(copy);
+            }
+        });
+    }
+
+    private static synchronized ExecutorService getQueryExecutor() {
+        if (sQueryExecutor == null) {
+            sQueryExecutor = new ThreadPoolExecutor(MAX_QUERY_THREADS, MAX_QUERY_THREADS,
+                    QUERY_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            sQueryExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sQueryExecutor;
+    }
+
     private long getFilesSize(int userId, Uri uri, Bundle queryArgs) {
         final Context perUserContext;
         try {
@@ -140,11 +262,11 @@ public class StorageAsyncLoader
         }
     }
 
-    private StorageResult getAppsAndGamesSize(int userId) {
+    private AppsSize getAppsAndGamesSize(int userId) {
         Log.d(TAG, "Loading apps");
         final List<ApplicationInfo> applicationInfos =
                 mPackageManager.getInstalledApplicationsAsUser(0, userId);
-        final StorageResult result = new StorageResult();
+        final AppsSize result = new AppsSize();
         final UserHandle myUser = UserHandle.of(userId);
         for (int i = 0, size = applicationInfos.size(); i < size; i++) {
             final ApplicationInfo app = applicationInfos.get(i);
@@ -170,43 +292,42 @@ public class StorageAsyncLoader
                 blamedSize = blamedSize - cacheBytes + cacheQuota;
             }
 
-            // Code bytes may share between different profiles. To know all the duplicate code size
-            // and we can get a reasonable system size in StorageItemPreferenceController.
-            if (mSeenPackages.contains(app.packageName)) {
-                result.duplicateCodeSize += stats.getCodeBytes();
-            } else {
-                mSeenPackages.add(app.packageName);
-            }
+            // Code bytes may share between different profiles, duplicates are counted once all
+            // users are loaded.
+            result.mCodeBytes.put(app.packageName, stats.getCodeBytes());
 
             switch (app.category) {
                 case CATEGORY_GAME:
-                    result.gamesSize += blamedSize;
+                    result.mGamesSize += blamedSize;
                     break;
                 case CATEGORY_AUDIO:
                 case CATEGORY_VIDEO:
                 case CATEGORY_IMAGE:
-                    result.allAppsExceptGamesSize += blamedSize;
+                    result.mAllAppsExceptGamesSize += blamedSize;
                     break;
                 default:
                     // The deprecated game flag does not set the category.
                     if ((app.flags & ApplicationInfo.FLAG_IS_GAME) != 0) {
-                        result.gamesSize += blamedSize;
+                        result.mGamesSize += blamedSize;
                         break;
                     }
-                    result.allAppsExceptGamesSize += blamedSize;
+                    result.mAllAppsExceptGamesSize += blamedSize;
                     break;
             }
         }
+        Log.d(TAG, "Obtaining apps result completed");
+        return result;
+    }
 
+    @Nullable
+    private StorageStatsSource.ExternalStorageStats getExternalStats(int userId) {
         Log.d(TAG, "Loading external stats");
         try {
-            result.externalStats = mStatsManager.getExternalStorageStats(mUuid,
-                    UserHandle.of(userId));
+            return mStatsManager.getExternalStorageStats(mUuid, UserHandle.of(userId));
         } catch (IOException e) {
             Log.w(TAG, e);
+            return null;
         }
-        Log.d(TAG, "Obtaining result completed");
-        return result;
     }
 
     @Override
@@ -229,6 +350,29 @@ public class StorageAsyncLoader
         public long cacheSize;
         public long duplicateCodeSize;
         public StorageStatsSource.ExternalStorageStats externalStats;
+
+        StorageResult copy() {
+            final StorageResult copy = new StorageResult();
+            copy.gamesSize = gamesSize;
+            copy.allAppsExceptGamesSize = allAppsExceptGamesSize;
+            copy.audioSize = audioSize;
+            copy.imagesSize = imagesSize;
+            copy.videosSize = videosSize;
+            copy.documentsAndOtherSize = documentsAndOtherSize;
+            copy.trashSize = trashSize;
+            copy.cacheSize = cacheSize;
+            copy.duplicateCodeSize = duplicateCodeSize;
+            copy.externalStats = externalStats;
+            return copy;
+        }
+    }
+
+    /** App sizes of a single user. */
+    private static class AppsSize {
+        long mGamesSize;
+        long mAllAppsExceptGamesSize;
+        // Code bytes per package name.
+        final ArrayMap<String, Long> mCodeBytes = new ArrayMap<>();
     }
 
     /**
@@ -18,37 +18,94 @@ package com.android.settings.deviceinfo.storage;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * A utility class to cache and restore the storage size information.
+ *
+ * The sizes of a user are kept in a binary snapshot file, read once per process on first use
+ * and shared by every helper of the same user. Updates apply to the shared snapshot immediately
+ * and are written to disk in the background. Sizes cached by earlier
+ * releases in SharedPreferences are moved into the snapshot the first time it is read.
+ *
+ * The first helper created for a user reads the snapshot file, so create it off the main thread
+ * where possible.
  */
 public class StorageCacheHelper {
 
-    private static final String SHARED_PREFERENCE_NAME = "StorageCache";
-    private static final String TOTAL_SIZE_KEY = "total_size_key";
-    private static final String TOTAL_USED_SIZE_KEY = "total_used_size_key";
-    private static final String IMAGES_SIZE_KEY = "images_size_key";
-    private static final String VIDEOS_SIZE_KEY = "videos_size_key";
-    private static final String AUDIO_SIZE_KEY = "audio_size_key";
-    private static final String APPS_SIZE_KEY = "apps_size_key";
-    private static final String GAMES_SIZE_KEY = "games_size_key";
-    private static final String DOCUMENTS_AND_OTHER_SIZE_KEY = "documents_and_other_size_key";
-    private static final String TRASH_SIZE_KEY = "trash_size_key";
-    private static final String SYSTEM_SIZE_KEY = "system_size_key";
-    private static final String USED_SIZE_KEY = "used_size_key";
-
-    private final SharedPreferences mSharedPreferences;
+    private static final String TAG = "StorageCacheHelper";
+
+    private static final String SNAPSHOT_DIR = "storage_cache";
+    // Replaced by the snapshot, migrated on first read.
+    private static final String LEGACY_SHARED_PREFERENCE_NAME = "StorageCache";
+    private static final String LEGACY_TOTAL_SIZE_KEY = "total_size_key";
+    private static final String LEGACY_TOTAL_USED_SIZE_KEY = "total_used_size_key";
+    private static final String LEGACY_IMAGES_SIZE_KEY = "images_size_key";
+    private static final String LEGACY_VIDEOS_SIZE_KEY = "videos_size_key";
+    private static final String LEGACY_AUDIO_SIZE_KEY = "audio_size_key";
+    private static final String LEGACY_APPS_SIZE_KEY = "apps_size_key";
+    private static final String LEGACY_GAMES_SIZE_KEY = "games_size_key";
+    private static final String LEGACY_DOCUMENTS_AND_OTHER_SIZE_KEY =
+            "documents_and_other_size_key";
+    private static final String LEGACY_TRASH_SIZE_KEY = "trash_size_key";
+    private static final String LEGACY_SYSTEM_SIZE_KEY = "system_size_key";
+    private static final String LEGACY_USED_SIZE_KEY = "used_size_key";
+
+    @VisibleForTesting
+    static final int SCHEMA_VERSION = 1;
+
+    // Sections of the snapshot, flagged once cached.
+    private static final int SECTION_SIZE_INFO = 1 << 0;
+    private static final int SECTION_TOTAL_SIZE = 1 << 1;
+    private static final int SECTION_USED_SIZE = 1 << 2;
+    private static final int SECTION_APP_SIZES = 1 << 3;
+
+    @Retention(RetentionPolicy.SOURCE)
+    @IntDef(flag = true, value = {
+            SECTION_SIZE_INFO, SECTION_TOTAL_SIZE, SECTION_USED_SIZE, SECTION_APP_SIZES})
+    private @interface Section {}
+
+    // Snapshot file path -> snapshot.
+    private static final Map<String, Snapshot> sSnapshots = new ArrayMap<>();
+
+    private final Snapshot mSnapshot;
 
     public StorageCacheHelper(Context context, int userId) {
-        String sharedPrefName = SHARED_PREFERENCE_NAME + userId;
-        mSharedPreferences = context.getSharedPreferences(sharedPrefName, Context.MODE_PRIVATE);
+        final Context appContext = context.getApplicationContext() != null
+                ? context.getApplicationContext() : context;
+        mSnapshot = getSnapshot(appContext, userId);
     }
 
     /**
      * Returns true if there's a cached size info.
      */
     public boolean hasCachedSizeInfo() {
-        return mSharedPreferences.getAll().size() > 0;
+        synchronized (mSnapshot) {
+            return mSnapshot.mCachedSections != 0;
+        }
     }
 
     /**
@@ -56,60 +113,273 @@ public class StorageCacheHelper {
      * @param data a data about the file size info.
      */
     public void cacheSizeInfo(StorageCache data) {
-        mSharedPreferences
-                .edit()
-                .putLong(IMAGES_SIZE_KEY, data.imagesSize)
-                .putLong(VIDEOS_SIZE_KEY, data.videosSize)
-                .putLong(AUDIO_SIZE_KEY, data.audioSize)
-                .putLong(APPS_SIZE_KEY, data.allAppsExceptGamesSize)
-                .putLong(GAMES_SIZE_KEY, data.gamesSize)
-                .putLong(DOCUMENTS_AND_OTHER_SIZE_KEY, data.documentsAndOtherSize)
-                .putLong(TRASH_SIZE_KEY, data.trashSize)
-                .putLong(SYSTEM_SIZE_KEY, data.systemSize)
-                .apply();
+        synchronized (mSnapshot) {
+            final StorageCache cache = mSnapshot.mStorageCache;
+            cache.imagesSize = data.imagesSize;
+            cache.videosSize = data.videosSize;
+            cache.audioSize = data.audioSize;
+            cache.allAppsExceptGamesSize = data.allAppsExceptGamesSize;
+            cache.gamesSize = data.gamesSize;
+            cache.documentsAndOtherSize = data.documentsAndOtherSize;
+            cache.trashSize = data.trashSize;
+            cache.systemSize = data.systemSize;
+            markCached(SECTION_SIZE_INFO);
+        }
     }
 
     /**
      * Cache total size and total used size
      */
     public void cacheTotalSizeAndTotalUsedSize(long totalSize, long totalUsedSize) {
-        mSharedPreferences
-                .edit()
-                .putLong(TOTAL_SIZE_KEY, totalSize)
-                .putLong(TOTAL_USED_SIZE_KEY, totalUsedSize)
-                .apply();
+        synchronized (mSnapshot) {
+            mSnapshot.mStorageCache.totalSize = totalSize;
+            mSnapshot.mStorageCache.totalUsedSize = totalUsedSize;
+            markCached(SECTION_TOTAL_SIZE);
+        }
     }
 
     /**
      * Cache used size info when a user is treated as a secondary user.
      */
     public void cacheUsedSize(long usedSize) {
-        mSharedPreferences.edit().putLong(USED_SIZE_KEY, usedSize).apply();
+        synchronized (mSnapshot) {
+            mSnapshot.mUsedSize = usedSize;
+            markCached(SECTION_USED_SIZE);
+        }
+    }
+
+    /**
+     * Cache the size of each app, keyed by package name.
+     */
+    public void cacheAppSizes(Map<String, Long> appSizes) {
+        synchronized (mSnapshot) {
+            mSnapshot.mAppSizes = Collections.unmodifiableMap(new ArrayMap<>(appSizes));
+            markCached(SECTION_APP_SIZES);
+        }
     }
 
     /**
      * Returns used size for secondary user.
      */
     public long retrieveUsedSize() {
-        return mSharedPreferences.getLong(USED_SIZE_KEY, 0);
+        synchronized (mSnapshot) {
+            return mSnapshot.mUsedSize;
+        }
     }
 
     /**
      * Returns a cached data about all file size information.
      */
     public StorageCache retrieveCachedSize() {
-        StorageCache result = new StorageCache();
-        result.totalSize = mSharedPreferences.getLong(TOTAL_SIZE_KEY, 0);
-        result.totalUsedSize = mSharedPreferences.getLong(TOTAL_USED_SIZE_KEY, 0);
-        result.imagesSize = mSharedPreferences.getLong(IMAGES_SIZE_KEY, 0);
-        result.videosSize = mSharedPreferences.getLong(VIDEOS_SIZE_KEY, 0);
-        result.audioSize = mSharedPreferences.getLong(AUDIO_SIZE_KEY, 0);
-        result.allAppsExceptGamesSize = mSharedPreferences.getLong(APPS_SIZE_KEY, 0);
-        result.gamesSize = mSharedPreferences.getLong(GAMES_SIZE_KEY, 0);
-        result.documentsAndOtherSize = mSharedPreferences.getLong(DOCUMENTS_AND_OTHER_SIZE_KEY, 0);
-        result.trashSize = mSharedPreferences.getLong(TRASH_SIZE_KEY, 0);
-        result.systemSize = mSharedPreferences.getLong(SYSTEM_SIZE_KEY, 0);
-        return result;
+        synchronized (mSnapshot) {
+            return mSnapshot.mStorageCache.copy();
+        }
+    }
+
+    /**
+     * Returns the cached size of each app keyed by package name, empty if not cached.
+     */
+    public Map<String, Long> retrieveAppSizes() {
+        synchronized (mSnapshot) {
+            return mSnapshot.mAppSizes;
+        }
+    }
+
+    /**
+     * Writes the snapshot to disk now instead of in the background.
+     */
+    @VisibleForTesting
+    @WorkerThread
+    void flush() {
+        writeSnapshot(mSnapshot);
+    }
+
+    // Called with the snapshot lock held.
+    private void markCached(@Section int section) {
+        mSnapshot.mCachedSections |= section;
+        scheduleWrite(mSnapshot, null /* onWritten */);
+    }
+
+    private static void scheduleWrite(Snapshot snapshot, @Nullable Runnable onWritten) {
+        if (snapshot.mWritePending) {
+            return;
+        }
+        snapshot.mWritePending = true;
+        ThreadUtils.postOnBackgroundThread(() -> {
+            if (writeSnapshot(snapshot) && onWritten != null) {
+                onWritten.run();
+            }
+        });
+    }
+
+    private static Snapshot getSnapshot(Context context, int userId) {
+        final File file = new File(new File(context.getFilesDir(), SNAPSHOT_DIR),
+                String.valueOf(userId));
+        synchronized (sSnapshots) {
+            Snapshot snapshot = sSnapshots.get(file.getPath());
+            if (snapshot == null) {
+                snapshot = readSnapshot(new AtomicFile(file));
+                if (!snapshot.mRead) {
+                    migrateLegacyPreferences(context, userId, snapshot);
+                }
+                sSnapshots.put(file.getPath(), snapshot);
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Moves the sizes cached in SharedPreferences by earlier releases into {@code snapshot},
+     * deleting the preferences once the snapshot is written.
+     */
+    private static void migrateLegacyPreferences(Context context, int userId,
+            Snapshot snapshot) {
+        final String name = LEGACY_SHARED_PREFERENCE_NAME + userId;
+        final SharedPreferences prefs = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+        if (prefs.getAll().isEmpty()) {
+            return;
+        }
+        synchronized (snapshot) {
+            final StorageCache cache = snapshot.mStorageCache;
+            if (prefs.contains(LEGACY_IMAGES_SIZE_KEY)) {
+                cache.imagesSize = prefs.getLong(LEGACY_IMAGES_SIZE_KEY, 0);
+                cache.videosSize = prefs.getLong(LEGACY_VIDEOS_SIZE_KEY, 0);
+                cache.audioSize = prefs.getLong(LEGACY_AUDIO_SIZE_KEY, 0);
+                cache.allAppsExceptGamesSize = prefs.getLong(LEGACY_APPS_SIZE_KEY, 0);
+                cache.gamesSize = prefs.getLong(LEGACY_GAMES_SIZE_KEY, 0);
+                cache.documentsAndOtherSize =
+                        prefs.getLong(LEGACY_DOCUMENTS_AND_OTHER_SIZE_KEY, 0);
+                cache.trashSize = prefs.getLong(LEGACY_TRASH_SIZE_KEY, 0);
+                cache.systemSize = prefs.getLong(LEGACY_SYSTEM_SIZE_KEY, 0);
+                snapshot.mCachedSections |= SECTION_SIZE_INFO;
+            }
+            if (prefs.contains(LEGACY_TOTAL_SIZE_KEY)) {
+                cache.totalSize = prefs.getLong(LEGACY_TOTAL_SIZE_KEY, 0);
+                cache.totalUsedSize = prefs.getLong(LEGACY_TOTAL_USED_SIZE_KEY, 0);
+                snapshot.mCachedSections |= SECTION_TOTAL_SIZE;
+            }
+            if (prefs.contains(LEGACY_USED_SIZE_KEY)) {
+                snapshot.mUsedSize = prefs.getLong(LEGACY_USED_SIZE_KEY, 0);
+                snapshot.mCachedSections |= SECTION_USED_SIZE;
+            }
+            scheduleWrite(snapshot, () -> context.deleteSharedPreferences(name));
+        }
+    }
+
+    @VisibleForTesting
+    static void clearSnapshots() {
+        synchronized (sSnapshots) {
+            sSnapshots.clear();
+        }
+    }
+
+    private static Snapshot readSnapshot(AtomicFile file) {
+        final Snapshot snapshot = new Snapshot(file);
+        final long startTime = SystemClock.elapsedRealtime();
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(file.readFully()))) {
+            if (in.readInt() != SCHEMA_VERSION) {
+                Log.d(TAG, "Discarding storage snapshot of another schema");
+                return snapshot;
+            }
+            final Snapshot read = new Snapshot(file);
+            read.mCachedSections = in.readInt();
+            final StorageCache cache = read.mStorageCache;
+            cache.totalSize = in.readLong();
+            cache.totalUsedSize = in.readLong();
+            cache.gamesSize = in.readLong();
+            cache.allAppsExceptGamesSize = in.readLong();
+            cache.audioSize = in.readLong();
+            cache.imagesSize = in.readLong();
+            cache.videosSize = in.readLong();
+            cache.documentsAndOtherSize = in.readLong();
+            cache.trashSize = in.readLong();
+            cache.systemSize = in.readLong();
+            read.mUsedSize = in.readLong();
+            final int appCount = in.readInt();
+            final Map<String, Long> appSizes = new ArrayMap<>(appCount);
+            for (int i = 0; i < appCount; i++) {
+                appSizes.put(in.readUTF(), in.readLong());
+            }
+            read.mAppSizes = Collections.unmodifiableMap(appSizes);
+            read.mRead = true;
+            Log.d(TAG, "Read storage snapshot in "
+                    + (SystemClock.elapsedRealtime() - startTime) + " ms");
+            return read;
+        } catch (FileNotFoundException e) {
+            // Nothing cached yet.
+            return snapshot;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read storage snapshot", e);
+            return snapshot;
+        }
+    }
+
+    /**
+     * @return whether the snapshot was written.
+     */
+    @WorkerThread
+    private static boolean writeSnapshot(Snapshot snapshot) {
+        final AtomicFile file = snapshot.mFile;
+        // Writes of the same file run one at a time.
+        synchronized (file) {
+            FileOutputStream out = null;
+            try {
+                // Serialized under the snapshot lock, the main thread doesn't wait on disk I/O.
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final DataOutputStream data = new DataOutputStream(bytes);
+                synchronized (snapshot) {
+                    snapshot.mWritePending = false;
+                    data.writeInt(SCHEMA_VERSION);
+                    data.writeInt(snapshot.mCachedSections);
+                    final StorageCache cache = snapshot.mStorageCache;
+                    data.writeLong(cache.totalSize);
+                    data.writeLong(cache.totalUsedSize);
+                    data.writeLong(cache.gamesSize);
+                    data.writeLong(cache.allAppsExceptGamesSize);
+                    data.writeLong(cache.audioSize);
+                    data.writeLong(cache.imagesSize);
+                    data.writeLong(cache.videosSize);
+                    data.writeLong(cache.documentsAndOtherSize);
+                    data.writeLong(cache.trashSize);
+                    data.writeLong(cache.systemSize);
+                    data.writeLong(snapshot.mUsedSize);
+                    data.writeInt(snapshot.mAppSizes.size());
+                    for (Map.Entry<String, Long> entry : snapshot.mAppSizes.entrySet()) {
+                        data.writeUTF(entry.getKey());
+                        data.writeLong(entry.getValue());
+                    }
+                }
+                file.getBaseFile().getParentFile().mkdirs();
+                out = file.startWrite();
+                out.write(bytes.toByteArray());
+                file.finishWrite(out);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to write storage snapshot", e);
+                file.failWrite(out);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The cached sizes of a user, guarded by its own lock.
+     */
+    private static class Snapshot {
+        final AtomicFile mFile;
+        @Section
+        int mCachedSections;
+        final StorageCache mStorageCache = new StorageCache();
+        long mUsedSize;
+        Map<String, Long> mAppSizes = Collections.emptyMap();
+        boolean mWritePending;
+        // Whether the snapshot was read from disk.
+        boolean mRead;
+
+        Snapshot(AtomicFile file) {
+            mFile = file;
+        }
     }
 
     /**
@@ -126,5 +396,20 @@ public class StorageCacheHelper {
         public long documentsAndOtherSize;
         public long trashSize;
         public long systemSize;
+
+        StorageCache copy() {
+            final StorageCache copy = new StorageCache();
+            copy.totalSize = totalSize;
+            copy.totalUsedSize = totalUsedSize;
+            copy.gamesSize = gamesSize;
+            copy.allAppsExceptGamesSize = allAppsExceptGamesSize;
+            copy.audioSize = audioSize;
+            copy.imagesSize = imagesSize;
+            copy.videosSize = videosSize;
+            copy.documentsAndOtherSize = documentsAndOtherSize;
+            copy.trashSize = trashSize;
+            copy.systemSize = systemSize;
+            return copy;
+        }
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import android.os.BatteryStats.HistoryItem;
+
+import java.util.Arrays;
+
+/**
+ * Compact copy of the battery history records fed to {@link BatteryInfo.BatteryDataParser}s, so
+ * that the history is decoded only once.
+ *
+ * <p>Only the command, the times, the battery level, status and plug type and the state flags of a
+ * record are kept. A run of data records carrying the same values is stored as its first and last
+ * records, which doesn't change what the parsers compute from it.
+ *
+ * <p>A record takes 28 bytes over parallel primitive arrays, instead of a {@link HistoryItem}
+ * object per record. The arrays start with room for {@link #INITIAL_CAPACITY} records and double
+ * when full, so a long history briefly holds both the old and the grown arrays while being copied.
+ */
+final class BatteryHistoryRecords {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] mCmds = new byte[INITIAL_CAPACITY];
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+    private long[] mCurrentTimes = new long[INITIAL_CAPACITY];
+    private byte[] mBatteryLevels = new byte[INITIAL_CAPACITY];
+    private byte[] mBatteryStatuses = new byte[INITIAL_CAPACITY];
+    private byte[] mBatteryPlugTypes = new byte[INITIAL_CAPACITY];
+    private int[] mStates = new int[INITIAL_CAPACITY];
+    private int[] mStates2 = new int[INITIAL_CAPACITY];
+    private int mSize;
+
+    /** Appends a copy of {@code record}. */
+    void add(HistoryItem record) {
+        if (record.isDeltaData()
+                && mSize >= 2
+                && hasSameData(mSize - 1, record)
+                && hasSameData(mSize - 2, record)) {
+            // Moves the end of the run instead of keeping its middle records.
+            mTimes[mSize - 1] = record.time;
+            mCurrentTimes[mSize - 1] = record.currentTime;
+            return;
+        }
+        if (mSize == mCmds.length) {
+            grow();
+        }
+        mCmds[mSize] = record.cmd;
+        mTimes[mSize] = record.time;
+        mCurrentTimes[mSize] = record.currentTime;
+        mBatteryLevels[mSize] = record.batteryLevel;
+        mBatteryStatuses[mSize] = record.batteryStatus;
+        mBatteryPlugTypes[mSize] = record.batteryPlugType;
+        mStates[mSize] = record.states;
+        mStates2[mSize] = record.states2;
+        mSize++;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /** Fills {@code record} with the kept values of the record at {@code index}. */
+    HistoryItem get(int index, HistoryItem record) {
+        record.cmd = mCmds[index];
+        record.time = mTimes[index];
+        record.currentTime = mCurrentTimes[index];
+        record.batteryLevel = mBatteryLevels[index];
+        record.batteryStatus = mBatteryStatuses[index];
+        record.batteryPlugType = mBatteryPlugTypes[index];
+        record.states = mStates[index];
+        record.states2 = mStates2[index];
+        return record;
+    }
+
+    private boolean hasSameData(int index, HistoryItem record) {
+        return mCmds[index] == HistoryItem.CMD_UPDATE
+                && mBatteryLevels[index] == record.batteryLevel
+                && mBatteryStatuses[index] == record.batteryStatus
+                && mBatteryPlugTypes[index] == record.batteryPlugType
+                && mStates[index] == record.states
+                && mStates2[index] == record.states2;
+    }
+
+    private void grow() {
+        final int capacity = mCmds.length * 2;
+        mCmds = Arrays.copyOf(mCmds, capacity);
+        mTimes = Arrays.copyOf(mTimes, capacity);
+        mCurrentTimes = Arrays.copyOf(mCurrentTimes, capacity);
+        mBatteryLevels = Arrays.copyOf(mBatteryLevels, capacity);
+        mBatteryStatuses = Arrays.copyOf(mBatteryStatuses, capacity);
+        mBatteryPlugTypes = Arrays.copyOf(mBatteryPlugTypes, capacity);
+        mStates = Arrays.copyOf(mStates, capacity);
+        mStates2 = Arrays.copyOf(mStates2, capacity);
+    }
+}
@@ -74,11 +74,25 @@ public class BatteryInfo {
                     long mStartTime;
                     int mLastTime = -1;
                     byte mLastLevel;
+                    // Time covered by a pixel of the graph.
+                    long mPixelTime;
+                    boolean mHasSkippedPoint;
 
                     @Override
                     public void onParsingStarted(long startTime, long endTime) {
                         this.mStartTime = startTime;
                         timePeriod = endTime - startTime;
+                        // The graph is narrower than the display once laid out.
+                        final int graphWidth = view.getGraphWidth();
+                        mPixelTime =
+                                timePeriod
+                                        / Math.max(
+                                                1,
+                                                graphWidth > 0
+                                                        ? graphWidth
+                                                        : context.getResources()
+                                                                .getDisplayMetrics()
+                                                                .widthPixels);
                         view.clearPaths();
                         // Initially configure the graph for history only.
                         view.configureGraph((int) timePeriod, 100);
@@ -88,11 +102,25 @@ public class BatteryInfo {
                     public void onDataPoint(long time, HistoryItem record) {
                         mLastTime = (int) time;
                         mLastLevel = record.batteryLevel;
+                        // Skips the points of the same level drawn on the same pixel.
+                        final int size = mPoints.size();
+                        if (size > 0
+                                && mPoints.valueAt(size - 1) == mLastLevel
+                                && mLastTime - mPoints.keyAt(size - 1) < mPixelTime) {
+                            mHasSkippedPoint = true;
+                            return;
+                        }
                         mPoints.put(mLastTime, mLastLevel);
+                        mHasSkippedPoint = false;
                     }
 
                     @Override
                     public void onDataGap() {
+                        // Keeps the end of the path.
+                        if (mHasSkippedPoint) {
+                            mPoints.put(mLastTime, mLastLevel);
+                            mHasSkippedPoint = false;
+                        }
                         if (mPoints.size() > 1) {
                             view.addPath(mPoints);
                         }
@@ -428,6 +456,9 @@ public class BatteryInfo {
     /**
      * Iterates over battery history included in the BatteryUsageStats that this object was
      * initialized with.
+     *
+     * <p>The history is decoded once into {@link BatteryHistoryRecords}, which keeps what is needed
+     * to compute the wall clock times and to feed the parsers afterwards.
      */
     public void parseBatteryHistory(BatteryDataParser... parsers) {
         long startWalltime = 0;
@@ -438,13 +469,12 @@ public class BatteryInfo {
         long lastWallTime = 0;
         long lastRealtime = 0;
         int lastInteresting = 0;
-        int pos = 0;
         boolean first = true;
-        final BatteryStatsHistoryIterator iterator1 =
+        final BatteryHistoryRecords records = new BatteryHistoryRecords();
+        final BatteryStatsHistoryIterator iterator =
                 mBatteryUsageStats.iterateBatteryStatsHistory();
         HistoryItem rec;
-        while ((rec = iterator1.next()) != null) {
-            pos++;
+        while ((rec = iterator.next()) != null) {
             if (first) {
                 first = false;
                 historyStart = rec.time;
@@ -468,56 +498,56 @@ public class BatteryInfo {
                     startWalltime = lastWallTime - (lastRealtime - historyStart);
                 }
             }
+            // Overflow records are never passed to the parsers.
+            if (rec.cmd != HistoryItem.CMD_OVERFLOW) {
+                records.add(rec);
+            }
             if (rec.isDeltaData()) {
-                lastInteresting = pos;
+                lastInteresting = records.size();
                 historyEnd = rec.time;
             }
         }
 
         endWalltime = lastWallTime + historyEnd - lastRealtime;
 
-        int i = 0;
-        final int N = lastInteresting;
-
         for (int j = 0; j < parsers.length; j++) {
             parsers[j].onParsingStarted(startWalltime, endWalltime);
         }
 
         if (endWalltime > startWalltime) {
-            final BatteryStatsHistoryIterator iterator2 =
-                    mBatteryUsageStats.iterateBatteryStatsHistory();
-            while ((rec = iterator2.next()) != null && i < N) {
-                if (rec.isDeltaData()) {
-                    curWalltime += rec.time - lastRealtime;
-                    lastRealtime = rec.time;
+            // Parsers only read the record during the callbacks, the same one is reused.
+            final HistoryItem record = new HistoryItem();
+            for (int i = 0; i < lastInteresting; i++) {
+                records.get(i, record);
+                if (record.isDeltaData()) {
+                    curWalltime += record.time - lastRealtime;
+                    lastRealtime = record.time;
                     long x = (curWalltime - startWalltime);
                     if (x < 0) {
                         x = 0;
                     }
                     for (int j = 0; j < parsers.length; j++) {
-                        parsers[j].onDataPoint(x, rec);
+                        parsers[j].onDataPoint(x, record);
                     }
                 } else {
                     long lastWalltime = curWalltime;
-                    if (rec.cmd == HistoryItem.CMD_CURRENT_TIME
-                            || rec.cmd == HistoryItem.CMD_RESET) {
-                        if (rec.currentTime >= startWalltime) {
-                            curWalltime = rec.currentTime;
+                    if (record.cmd == HistoryItem.CMD_CURRENT_TIME
+                            || record.cmd == HistoryItem.CMD_RESET) {
+                        if (record.currentTime >= startWalltime) {
+                            curWalltime = record.currentTime;
                         } else {
-                            curWalltime = startWalltime + (rec.time - historyStart);
+                            curWalltime = startWalltime + (record.time - historyStart);
                         }
-                        lastRealtime = rec.time;
+                        lastRealtime = record.time;
                     }
 
-                    if (rec.cmd != HistoryItem.CMD_OVERFLOW
-                            && (rec.cmd != HistoryItem.CMD_CURRENT_TIME
-                                    || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000))) {
+                    if (record.cmd != HistoryItem.CMD_CURRENT_TIME
+                            || Math.abs(lastWalltime - curWalltime) > (60 * 60 * 1000)) {
                         for (int j = 0; j < parsers.length; j++) {
                             parsers[j].onDataGap();
                         }
                     }
                 }
-                i++;
             }
         }
 
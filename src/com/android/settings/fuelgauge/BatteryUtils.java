@@ -368,11 +368,24 @@ public class BatteryUtils {
         if (serializedProto == null || serializedProto.isEmpty()) {
             return (T) protoClass.getDefaultInstanceForType();
         }
+        return parseProtoFromBytes(Base64.decode(serializedProto, Base64.DEFAULT), protoClass);
+    }
+
+    /**
+     * Parses proto object from bytes.
+     *
+     * @param serializedProto the serialized proto bytes
+     * @param protoClass class of the proto
+     * @return instance of the proto class parsed from the bytes
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends MessageLite> T parseProtoFromBytes(
+            byte[] serializedProto, T protoClass) {
+        if (serializedProto == null || serializedProto.length == 0) {
+            return (T) protoClass.getDefaultInstanceForType();
+        }
         try {
-            return (T)
-                    protoClass
-                            .getParserForType()
-                            .parseFrom(Base64.decode(serializedProto, Base64.DEFAULT));
+            return (T) protoClass.getParserForType().parseFrom(serializedProto);
         } catch (InvalidProtocolBufferException e) {
             Log.e(TAG, "Failed to deserialize proto class", e);
             return (T) protoClass.getDefaultInstanceForType();
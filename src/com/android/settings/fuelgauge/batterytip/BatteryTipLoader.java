@@ -18,58 +18,163 @@ package com.android.settings.fuelgauge.batterytip;
 
 import android.content.Context;
 import android.os.BatteryUsageStats;
+import android.util.ArrayMap;
+import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.fuelgauge.BatteryInfo;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batterytip.detectors.BatteryDefenderDetector;
+import com.android.settings.fuelgauge.batterytip.detectors.BatteryTipDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.HighUsageDetector;
 import com.android.settings.fuelgauge.batterytip.detectors.IncompatibleChargerDetector;
 import com.android.settings.fuelgauge.batterytip.tips.BatteryTip;
 import com.android.settings.overlay.FeatureFactory;
 import com.android.settingslib.utils.AsyncLoaderCompat;
+import com.android.settingslib.utils.ThreadUtils;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Loader to compute and return a battery tip list. It will always return a full length list even
- * though some tips may have state {@code BaseBatteryTip.StateType.INVISIBLE}.
+ * though some tips may have state {@code BaseBatteryTip.StateType.INVISIBLE}, or null when the
+ * loading thread gets interrupted.
+ *
+ * <p>The detectors share the same {@link BatteryInfo} and {@link BatteryUsageStats}, which they
+ * only read. {@link HighUsageDetector} walks the battery history, so it runs on another thread
+ * while the other detectors run, and their tips are published to the {@link
+ * OnPartialTipsLoadedListener} without waiting for it.
  */
 public class BatteryTipLoader extends AsyncLoaderCompat<List<BatteryTip>> {
     private static final String TAG = "BatteryTipLoader";
+    private static final String FEATURE_PROVIDER_DETECTORS = "BatterySettingsFeatureProvider";
+
+    /** Callback for the tips detected before the slower detectors complete. */
+    public interface OnPartialTipsLoadedListener {
+        /** Called on the main thread with the tips detected so far, sorted. */
+        void onPartialTipsLoaded(List<BatteryTip> batteryTips);
+    }
 
     private BatteryUsageStats mBatteryUsageStats;
+    @Nullable private final OnPartialTipsLoadedListener mOnPartialTipsLoadedListener;
+    // Detector name -> latency of the latest detection in milliseconds.
+    private final Map<String, Long> mDetectorLatencies = new ArrayMap<>();
 
     @VisibleForTesting BatteryUtils mBatteryUtils;
 
     public BatteryTipLoader(Context context, BatteryUsageStats batteryUsageStats) {
+        this(context, batteryUsageStats, /* onPartialTipsLoadedListener= */ null);
+    }
+
+    public BatteryTipLoader(
+            Context context,
+            BatteryUsageStats batteryUsageStats,
+            @Nullable OnPartialTipsLoadedListener onPartialTipsLoadedListener) {
         super(context);
         mBatteryUsageStats = batteryUsageStats;
+        mOnPartialTipsLoadedListener = onPartialTipsLoadedListener;
         mBatteryUtils = BatteryUtils.getInstance(context);
     }
 
     @Override
+    @Nullable
     public List<BatteryTip> loadInBackground() {
+        final long startTime = System.currentTimeMillis();
         final List<BatteryTip> tips = new ArrayList<>();
         final BatteryTipPolicy batteryTipPolicy = new BatteryTipPolicy(getContext());
         final BatteryInfo batteryInfo = mBatteryUtils.getBatteryInfo(TAG);
         final Context context = getContext().getApplicationContext();
+        synchronized (mDetectorLatencies) {
+            mDetectorLatencies.clear();
+        }
+
+        // Walks the battery history, so it runs alongside the other detectors.
+        final HighUsageDetector highUsageDetector =
+                new HighUsageDetector(context, batteryTipPolicy, mBatteryUsageStats, batteryInfo);
+        final Future<BatteryTip> highUsageTipFuture =
+                (Future<BatteryTip>)
+                        ThreadUtils.postOnBackgroundThread(() -> detect(highUsageDetector));
 
-        tips.add(
-                new HighUsageDetector(context, batteryTipPolicy, mBatteryUsageStats, batteryInfo)
-                        .detect());
-        tips.add(new BatteryDefenderDetector(batteryInfo, context).detect());
-        tips.add(new IncompatibleChargerDetector(context).detect());
+        tips.add(detect(new BatteryDefenderDetector(batteryInfo, context)));
+        tips.add(detect(new IncompatibleChargerDetector(context)));
+        final long featureProviderStartTime = System.currentTimeMillis();
         FeatureFactory.getFeatureFactory()
                 .getBatterySettingsFeatureProvider()
                 .addBatteryTipDetector(context, tips, batteryInfo, batteryTipPolicy);
+        recordLatency(
+                FEATURE_PROVIDER_DETECTORS, System.currentTimeMillis() - featureProviderStartTime);
+        publishPartialTips(tips);
+
+        try {
+            tips.add(highUsageTipFuture.get());
+        } catch (InterruptedException e) {
+            Log.w(TAG, "interrupted while detecting high usage", e);
+            Thread.currentThread().interrupt();
+            highUsageTipFuture.cancel(/* mayInterruptIfRunning= */ true);
+            return null;
+        } catch (ExecutionException e) {
+            // Fails the load as the detector would have on this thread.
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("failed to detect high usage", cause);
+        }
         Collections.sort(tips);
+        Log.d(
+                TAG,
+                String.format(
+                        "loadInBackground() in %d/ms, detectors latency: %s",
+                        System.currentTimeMillis() - startTime, getDetectorLatencies()));
         return tips;
     }
 
     @Override
     protected void onDiscardResult(List<BatteryTip> result) {}
+
+    @VisibleForTesting
+    Map<String, Long> getDetectorLatencies() {
+        synchronized (mDetectorLatencies) {
+            return new ArrayMap<>(mDetectorLatencies);
+        }
+    }
+
+    private BatteryTip detect(BatteryTipDetector detector) {
+        final long startTime = System.currentTimeMillis();
+        final BatteryTip batteryTip = detector.detect();
+        recordLatency(
+                detector.getClass().getSimpleName(), System.currentTimeMillis() - startTime);
+        return batteryTip;
+    }
+
+    private void recordLatency(String name, long latency) {
+        synchronized (mDetectorLatencies) {
+            mDetectorLatencies.put(name, latency);
+        }
+    }
+
+    private void publishPartialTips(List<BatteryTip> tips) {
+        if (mOnPartialTipsLoadedListener == null) {
+            return;
+        }
+        final List<BatteryTip> partialTips = new ArrayList<>(tips);
+        Collections.sort(partialTips);
+        ThreadUtils.postOnMainThread(
+                () -> {
+                    // Drops the tips once the result of this loader isn't wanted anymore.
+                    if (!isReset() && !isAbandoned()) {
+                        mOnPartialTipsLoadedListener.onPartialTipsLoaded(partialTips);
+                    }
+                });
+    }
 }
@@ -98,19 +98,38 @@ public class BatteryTipPreferenceController extends BasePreferenceController {
             return;
         }
         mBatteryTips = batteryTips;
+        updateCardPreference(batteryTips, /* logTip= */ true);
+    }
+
+    /**
+     * Shows the tips detected before the full list is loaded. The shown tip isn't logged and the
+     * tips aren't kept, since {@link #updateBatteryTips(List)} follows with the full list.
+     *
+     * @return the shown tip, null if none is visible.
+     */
+    @Nullable
+    public BatteryTip updatePartialBatteryTips(List<BatteryTip> batteryTips) {
+        return updateCardPreference(batteryTips, /* logTip= */ false);
+    }
+
+    @Nullable
+    private BatteryTip updateCardPreference(List<BatteryTip> batteryTips, boolean logTip) {
         mCardPreference.setVisible(false);
         for (int i = 0, size = batteryTips.size(); i < size; i++) {
-            final BatteryTip batteryTip = mBatteryTips.get(i);
+            final BatteryTip batteryTip = batteryTips.get(i);
             batteryTip.validateCheck(mContext);
             if (batteryTip.getState() != BatteryTip.StateType.INVISIBLE) {
                 mCardPreference.setVisible(true);
                 batteryTip.updatePreference(mCardPreference);
                 mBatteryTipMap.put(mCardPreference.getKey(), batteryTip);
-                batteryTip.log(mContext, mMetricsFeatureProvider);
+                if (logTip) {
+                    batteryTip.log(mContext, mMetricsFeatureProvider);
+                }
                 mNeedUpdate = batteryTip.needUpdate();
-                break;
+                return batteryTip;
             }
         }
+        return null;
     }
 
     @Override
@@ -50,7 +50,6 @@ import com.android.settingslib.core.lifecycle.events.OnSaveInstanceState;
 import com.google.common.base.Objects;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
 
@@ -545,20 +544,8 @@ public class BatteryChartPreferenceController extends AbstractPreferenceControll
 
     /** Used for {@link AppBatteryPreferenceController}. */
     public static List<BatteryDiffEntry> getAppBatteryUsageData(Context context) {
-        final long start = System.currentTimeMillis();
-        final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap =
-                DatabaseUtils.getHistoryMapSinceLastFullCharge(context, Calendar.getInstance());
-        if (batteryHistoryMap == null || batteryHistoryMap.isEmpty()) {
-            return null;
-        }
-        Log.d(
-                TAG,
-                String.format(
-                        "getBatterySinceLastFullChargeUsageData() size=%d time=%d/ms",
-                        batteryHistoryMap.size(), (System.currentTimeMillis() - start)));
-
         final Map<Integer, Map<Integer, BatteryDiffData>> batteryUsageData =
-                DataProcessor.getBatteryUsageData(context, batteryHistoryMap);
+                DataProcessor.getBatteryUsageDataSinceLastFullCharge(context);
         if (batteryUsageData == null) {
             return null;
         }
@@ -34,7 +34,6 @@ public class BatteryHistEntry {
     public static final String KEY_CONSUMER_TYPE = "consumerType";
     public static final String KEY_IS_FULL_CHARGE_CYCLE_START = "isFullChargeCycleStart";
     public static final String KEY_BATTERY_INFORMATION = "batteryInformation";
-    public static final String KEY_BATTERY_INFORMATION_DEBUG = "batteryInformationDebug";
 
     public final long mUid;
     public final long mUserId;
@@ -20,8 +20,10 @@ import android.content.ContentProvider;
 import android.content.ContentValues;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.CursorWrapper;
 import android.net.Uri;
 import android.text.TextUtils;
+import android.util.Base64;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -44,6 +46,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 /** {@link ContentProvider} class to fetch battery usage data. */
 public class BatteryUsageContentProvider extends ContentProvider {
@@ -188,6 +191,38 @@ public class BatteryUsageContentProvider extends ContentProvider {
         return uri;
     }
 
+    /** Inserts all the {@code values} of a table in a single database transaction. */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        try {
+            switch (sUriMatcher.match(uri)) {
+                case BATTERY_STATE_CODE:
+                    mBatteryStateDao.insertAll(createEntities(values, BatteryState::create));
+                    break;
+                case APP_USAGE_EVENT_CODE:
+                    mAppUsageEventDao.insertAll(
+                            createEntities(values, AppUsageEventEntity::create));
+                    break;
+                case BATTERY_EVENT_CODE:
+                    mBatteryEventDao.insertAll(createEntities(values, BatteryEventEntity::create));
+                    break;
+                case BATTERY_USAGE_SLOT_CODE:
+                    mBatteryUsageSlotDao.insertAll(
+                            createEntities(values, BatteryUsageSlotEntity::create));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown URI: " + uri);
+            }
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            Log.e(TAG, "bulkInsert() from:" + uri + " error:", e);
+            return 0;
+        }
+        return values.length;
+    }
+
     @Override
     public int delete(@NonNull Uri uri, @Nullable String s, @Nullable String[] strings) {
         throw new UnsupportedOperationException("unsupported!");
@@ -202,6 +237,15 @@ public class BatteryUsageContentProvider extends ContentProvider {
         throw new UnsupportedOperationException("unsupported!");
     }
 
+    private static <T> List<T> createEntities(
+            ContentValues[] values, Function<ContentValues, T> creator) {
+        final List<T> entities = new ArrayList<>(values.length);
+        for (ContentValues contentValues : values) {
+            entities.add(creator.apply(contentValues));
+        }
+        return entities;
+    }
+
     private Cursor getLastFullChargeTimestamp(Uri uri) {
         final long timestamp = mClock.millis();
         Cursor cursor = null;
@@ -248,6 +292,11 @@ public class BatteryUsageContentProvider extends ContentProvider {
                 String.format(
                         "getBatteryStates() after %d in %d/ms",
                         queryTimestamp, mClock.millis() - timestamp));
+        final long version =
+                getQueryValueFromUri(uri, DatabaseUtils.QUERY_KEY_VERSION, /* defaultValue= */ 1);
+        if (cursor != null && version < DatabaseUtils.BATTERY_STATE_BLOB_VERSION) {
+            return new LegacyBatteryStateCursor(cursor);
+        }
         return cursor;
     }
 
@@ -387,4 +436,34 @@ public class BatteryUsageContentProvider extends ContentProvider {
             return defaultValue;
         }
     }
+
+    /**
+     * Returns the batteryInformation column as a Base64 encoded string, for clients of the
+     * contract before {@link DatabaseUtils#BATTERY_STATE_BLOB_VERSION}.
+     */
+    private static final class LegacyBatteryStateCursor extends CursorWrapper {
+        private final int mBatteryInformationIndex;
+
+        LegacyBatteryStateCursor(Cursor cursor) {
+            super(cursor);
+            mBatteryInformationIndex =
+                    cursor.getColumnIndex(BatteryHistEntry.KEY_BATTERY_INFORMATION);
+        }
+
+        @Override
+        public int getType(int columnIndex) {
+            if (columnIndex == mBatteryInformationIndex && !isNull(columnIndex)) {
+                return FIELD_TYPE_STRING;
+            }
+            return super.getType(columnIndex);
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            if (columnIndex == mBatteryInformationIndex && !isNull(columnIndex)) {
+                return Base64.encodeToString(getBlob(columnIndex), Base64.DEFAULT);
+            }
+            return super.getString(columnIndex);
+        }
+    }
 }
@@ -24,7 +24,6 @@ import android.content.Context;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
 import android.os.BatteryUsageStats;
-import android.os.Build;
 import android.os.LocaleList;
 import android.os.UserHandle;
 import android.text.TextUtils;
@@ -130,14 +129,7 @@ public final class ConvertUtils {
                         batteryStatus,
                         batteryHealth,
                         bootTimestamp);
-        values.put(
-                BatteryHistEntry.KEY_BATTERY_INFORMATION,
-                convertBatteryInformationToString(batteryInformation));
-        // Save the BatteryInformation unencoded string into database for debugging.
-        if (Build.TYPE.equals("userdebug")) {
-            values.put(
-                    BatteryHistEntry.KEY_BATTERY_INFORMATION_DEBUG, batteryInformation.toString());
-        }
+        values.put(BatteryHistEntry.KEY_BATTERY_INFORMATION, batteryInformation.toByteArray());
         return values;
     }
 
@@ -180,23 +172,34 @@ public final class ConvertUtils {
         return Base64.encodeToString(batteryInformation.toByteArray(), Base64.DEFAULT);
     }
 
-    /** Gets the {@link BatteryInformation} instance from {@link ContentValues}. */
+    /**
+     * Gets the {@link BatteryInformation} instance from {@link ContentValues}, which holds either
+     * the serialized bytes or the legacy Base64 encoded string.
+     */
     public static BatteryInformation getBatteryInformation(
             final ContentValues values, final String key) {
         final BatteryInformation defaultInstance = BatteryInformation.getDefaultInstance();
         if (values != null && values.containsKey(key)) {
-            return BatteryUtils.parseProtoFromString(values.getAsString(key), defaultInstance);
+            final Object value = values.get(key);
+            return value instanceof byte[]
+                    ? BatteryUtils.parseProtoFromBytes((byte[]) value, defaultInstance)
+                    : BatteryUtils.parseProtoFromString(values.getAsString(key), defaultInstance);
         }
         return defaultInstance;
     }
 
-    /** Gets the {@link BatteryInformation} instance from {@link Cursor}. */
+    /**
+     * Gets the {@link BatteryInformation} instance from {@link Cursor}, the column holding either
+     * the serialized bytes or the legacy Base64 encoded string.
+     */
     public static BatteryInformation getBatteryInformation(final Cursor cursor, final String key) {
         final BatteryInformation defaultInstance = BatteryInformation.getDefaultInstance();
         final int columnIndex = cursor.getColumnIndex(key);
         if (columnIndex >= 0) {
-            return BatteryUtils.parseProtoFromString(
-                    cursor.getString(columnIndex), defaultInstance);
+            return cursor.getType(columnIndex) == Cursor.FIELD_TYPE_BLOB
+                    ? BatteryUtils.parseProtoFromBytes(cursor.getBlob(columnIndex), defaultInstance)
+                    : BatteryUtils.parseProtoFromString(
+                            cursor.getString(columnIndex), defaultInstance);
         }
         return defaultInstance;
     }
@@ -18,9 +18,10 @@ package com.android.settings.fuelgauge.batteryusage;
 
 import android.app.usage.UsageEvents;
 import android.content.Context;
-import android.os.AsyncTask;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Process;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.util.ArrayMap;
@@ -32,16 +33,26 @@ import androidx.annotation.Nullable;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.settings.Utils;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
- * Manages the async tasks to process battery and app usage data.
+ * Manages the async stages to process battery and app usage data.
  *
- * <p>For now, there exist 4 async tasks in this manager:
+ * <p>For now, there exist 6 loading stages in this manager:
  *
  * <ul>
  *   <li>loadCurrentBatteryHistoryMap: load the latest battery history data from battery stats
@@ -50,33 +61,62 @@ import java.util.Set;
  *       from usage stats service.
  *   <li>loadDatabaseAppUsageList: load the necessary app usage data (after last full charge) from
  *       database
+ *   <li>loadPowerConnectionBatteryEventList: load the power connection events (after last full
+ *       charge) from database.
+ *   <li>loadBatteryUsageSlotList: load the stored hourly battery usage slots from database.
  *   <li>loadAndApplyBatteryMapFromServiceOnly: load all the battery history data (should be after
  *       last full charge) from battery stats service and apply the callback function directly
  * </ul>
  *
- * If there is battery level data, the first 3 async tasks will be started at the same time.
+ * If there is battery level data, the first 5 stages will be started at the same time on a
+ * dedicated bounded executor, so they overlap instead of queuing behind each other.
  *
  * <ul>
- *   <li>After loadCurrentAppUsageList and loadDatabaseAppUsageList complete, which means all app
- *       usage data has been loaded, the intermediate usage result will be generated.
- *   <li>Then after all 3 async tasks complete, the battery history data and app usage data will be
+ *   <li>After loadCurrentAppUsageList, loadDatabaseAppUsageList and
+ *       loadPowerConnectionBatteryEventList complete, which means all app usage data has been
+ *       loaded, the intermediate usage result will be generated.
+ *   <li>Then after all the stages complete, the battery history data and app usage data will be
  *       combined to generate final data used for UI rendering. And the callback function will be
  *       applied.
  *   <li>If current user is locked, which means we couldn't get the latest app usage data, screen-on
  *       time will not be shown in the UI and empty screen-on time data will be returned.
+ *   <li>If one of the first 5 stages fails, the final data is generated from the data loaded by
+ *       the other stages. If generating the final data fails, the callback function is applied
+ *       with no usage data.
  * </ul>
  *
- * If there is no battery level data, the 4th async task will be started only and the usage map
+ * If there is no battery level data, the last stage will be started only and the usage map
  * callback function will be applied directly to show the app list on the UI.
+ *
+ * <p>The pending stages are dropped and the callback is not applied once {@link #cancel()} is
+ * called. The latency of each stage of the latest loading is kept for {@link #dump}.
  */
 public class DataProcessManager {
     private static final String TAG = "DataProcessManager";
     private static final List<BatteryEventType> POWER_CONNECTION_EVENTS =
             List.of(BatteryEventType.POWER_CONNECTED, BatteryEventType.POWER_DISCONNECTED);
+    private static final int MAX_LOADING_THREADS = 4;
+    private static final long LOADING_THREAD_KEEP_ALIVE_SECONDS = 30L;
+
+    private static final String STAGE_CURRENT_BATTERY_HISTORY = "loadCurrentBatteryHistoryMap";
+    private static final String STAGE_CURRENT_APP_USAGE = "loadCurrentAppUsageList";
+    private static final String STAGE_DATABASE_APP_USAGE = "loadDatabaseAppUsageList";
+    private static final String STAGE_BATTERY_EVENT = "loadPowerConnectionBatteryEventList";
+    private static final String STAGE_BATTERY_USAGE_SLOT = "loadBatteryUsageSlotList";
+    private static final String STAGE_SERVICE_ONLY = "loadAndApplyBatteryMapFromServiceOnly";
+    private static final String STAGE_APP_USAGE_PERIOD = "processAppUsageData";
+    private static final String STAGE_FINAL_DATA = "generateFinalData";
+
+    // Shared by all the managers, so that the loading of a page doesn't queue behind unrelated
+    // AsyncTasks in the process.
+    @VisibleForTesting static Executor sExecutor = createLoadingExecutor();
 
     // For testing only.
     @VisibleForTesting static Map<Long, Map<String, BatteryHistEntry>> sFakeBatteryHistoryMap;
 
+    // Stage latencies of the latest completed loading, for dumpsys.
+    private static String sLastLoadingStats;
+
     // Raw start timestamp with round to the nearest hour.
     private final long mRawStartTimestamp;
     private final long mLastFullChargeTimestamp;
@@ -89,12 +129,16 @@ public class DataProcessManager {
     private final List<BatteryUsageSlot> mBatteryUsageSlotList = new ArrayList<>();
     private final List<BatteryLevelData.PeriodBatteryLevelData> mHourlyBatteryLevelsPerDay;
     private final Map<Long, Map<String, BatteryHistEntry>> mBatteryHistoryMap;
-
-    private boolean mIsCurrentBatteryHistoryLoaded = false;
-    private boolean mIsCurrentAppUsageLoaded = false;
-    private boolean mIsDatabaseAppUsageLoaded = false;
-    private boolean mIsBatteryEventLoaded = false;
-    private boolean mIsBatteryUsageSlotLoaded = false;
+    private final List<CompletableFuture<?>> mFutures = new ArrayList<>();
+    private final Map<String, Long> mStageLatencies = new LinkedHashMap<>();
+
+    private volatile boolean mIsCurrentBatteryHistoryLoaded = false;
+    private volatile boolean mIsCurrentAppUsageLoaded = false;
+    private volatile boolean mIsDatabaseAppUsageLoaded = false;
+    private volatile boolean mIsBatteryEventLoaded = false;
+    private volatile boolean mIsBatteryUsageSlotLoaded = false;
+    private volatile boolean mIsCancelled = false;
+    private long mStartTimestamp;
     // Used to identify whether screen-on time data should be shown in the UI.
     private boolean mShowScreenOnTime = true;
     private Set<String> mSystemAppsPackageNames = null;
@@ -162,30 +206,108 @@ public class DataProcessManager {
     }
 
     /** Starts the async tasks to load battery history data and app usage data. */
-    public void start(boolean isFromPeriodJob) {
-        // If we have battery level data, load the battery history map and app usage simultaneously.
-        if (mHourlyBatteryLevelsPerDay != null) {
-            if (isFromPeriodJob) {
-                mIsCurrentBatteryHistoryLoaded = true;
-                mIsCurrentAppUsageLoaded = true;
-                mIsBatteryUsageSlotLoaded = true;
-            } else {
-                // Loads the latest battery history data from the service.
-                loadCurrentBatteryHistoryMap();
-                // Loads the latest app usage list from the service.
-                loadCurrentAppUsageList();
-                // Loads existing battery usage slots from database.
-                loadBatteryUsageSlotList();
-            }
-            // Loads app usage list from database.
-            loadDatabaseAppUsageList();
-            // Loads the battery event list from database.
-            loadPowerConnectionBatteryEventList();
+    public synchronized void start(boolean isFromPeriodJob) {
+        if (mIsCancelled) {
+            Log.d(TAG, "start() ignored, already cancelled");
+            return;
+        }
+        mStartTimestamp = System.currentTimeMillis();
+        // If there is no battery level data, only load the battery history data from service and
+        // show it as the app list directly.
+        if (mHourlyBatteryLevelsPerDay == null) {
+            trackFuture(
+                    runStage(STAGE_SERVICE_ONLY, this::loadAndApplyBatteryMapFromServiceOnly)
+                            .thenAccept(this::applyCallback)
+                            .whenComplete(this::onLoadingCompleted));
+            return;
+        }
+        final CompletableFuture<Void> currentBatteryHistoryFuture;
+        final CompletableFuture<Void> currentAppUsageFuture;
+        final CompletableFuture<Void> batteryUsageSlotFuture;
+        if (isFromPeriodJob) {
+            mIsCurrentBatteryHistoryLoaded = true;
+            mIsCurrentAppUsageLoaded = true;
+            mIsBatteryUsageSlotLoaded = true;
+            currentBatteryHistoryFuture = CompletableFuture.completedFuture(null);
+            currentAppUsageFuture = CompletableFuture.completedFuture(null);
+            batteryUsageSlotFuture = CompletableFuture.completedFuture(null);
         } else {
-            // If there is no battery level data, only load the battery history data from service
-            // and show it as the app list directly.
-            loadAndApplyBatteryMapFromServiceOnly();
+            // Loads the latest battery history data from the service.
+            currentBatteryHistoryFuture =
+                    runLoadingStage(
+                                    STAGE_CURRENT_BATTERY_HISTORY,
+                                    this::loadCurrentBatteryHistoryMap)
+                            .thenAccept(this::onCurrentBatteryHistoryMapLoaded);
+            // Loads the latest app usage list from the service.
+            currentAppUsageFuture =
+                    runLoadingStage(STAGE_CURRENT_APP_USAGE, this::loadCurrentAppUsageList)
+                            .thenAccept(this::onCurrentAppUsageListLoaded);
+            // Loads existing battery usage slots from database.
+            batteryUsageSlotFuture =
+                    runLoadingStage(STAGE_BATTERY_USAGE_SLOT, this::loadBatteryUsageSlotList)
+                            .thenAccept(this::onBatteryUsageSlotListLoaded);
         }
+        // Loads app usage list from database.
+        final CompletableFuture<Void> databaseAppUsageFuture =
+                runLoadingStage(STAGE_DATABASE_APP_USAGE, this::loadDatabaseAppUsageList)
+                        .thenAccept(this::onDatabaseAppUsageListLoaded);
+        // Loads the battery event list from database.
+        final CompletableFuture<Void> batteryEventFuture =
+                runLoadingStage(STAGE_BATTERY_EVENT, this::loadPowerConnectionBatteryEventList)
+                        .thenAccept(this::onPowerConnectionBatteryEventListLoaded);
+
+        // Generates the app usage periods once all app usage data is loaded.
+        final CompletableFuture<Void> appUsagePeriodFuture =
+                CompletableFuture.allOf(
+                                currentAppUsageFuture, databaseAppUsageFuture, batteryEventFuture)
+                        .thenRun(
+                                () -> timeStage(STAGE_APP_USAGE_PERIOD, this::processAppUsageData));
+        trackFuture(appUsagePeriodFuture);
+        // Generates the final data once all the stages complete.
+        trackFuture(
+                CompletableFuture.allOf(
+                                currentBatteryHistoryFuture,
+                                batteryUsageSlotFuture,
+                                appUsagePeriodFuture)
+                        .thenApplyAsync(
+                                unused -> timeStage(STAGE_FINAL_DATA, this::generateFinalData),
+                                sExecutor)
+                        // Applies no usage data rather than leaving the page waiting for it.
+                        .exceptionally(
+                                throwable ->
+                                        onStageFailed(
+                                                STAGE_FINAL_DATA, throwable, new ArrayMap<>()))
+                        .thenAccept(this::applyCallback)
+                        .whenComplete(this::onLoadingCompleted));
+    }
+
+    /**
+     * Drops the pending stages and never applies the callback function, e.g. when the page
+     * requesting the data goes away. A stage which is already running completes in background.
+     */
+    public void cancel() {
+        final List<CompletableFuture<?>> futures;
+        synchronized (this) {
+            if (mIsCancelled) {
+                return;
+            }
+            mIsCancelled = true;
+            futures = new ArrayList<>(mFutures);
+        }
+        Log.d(TAG, "cancel() pending stages: " + futures.size());
+        for (CompletableFuture<?> future : futures) {
+            future.cancel(/* mayInterruptIfRunning= */ false);
+        }
+    }
+
+    /** Dumps the stage latencies of the latest loading into {@link PrintWriter}. */
+    public static void dump(PrintWriter writer) {
+        final String lastLoadingStats;
+        synchronized (DataProcessManager.class) {
+            lastLoadingStats = sLastLoadingStats;
+        }
+        writer.println("\n\tDataProcessManager latest loading:");
+        writer.println(lastLoadingStats != null ? lastLoadingStats : "\t\tnothing to dump");
     }
 
     @VisibleForTesting
@@ -224,252 +346,299 @@ public class DataProcessManager {
         return mShowScreenOnTime;
     }
 
-    private void loadCurrentBatteryHistoryMap() {
-        new AsyncTask<Void, Void, Map<String, BatteryHistEntry>>() {
-            @Override
-            protected Map<String, BatteryHistEntry> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                // Loads the current battery usage data from the battery stats service.
-                final Map<String, BatteryHistEntry> currentBatteryHistoryMap =
-                        DataProcessor.getCurrentBatteryHistoryMapFromStatsService(mContext);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadCurrentBatteryHistoryMap size=%d in %d/ms",
-                                currentBatteryHistoryMap.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return currentBatteryHistoryMap;
-            }
+    @VisibleForTesting
+    synchronized Map<String, Long> getStageLatencies() {
+        return new LinkedHashMap<>(mStageLatencies);
+    }
 
-            @Override
-            protected void onPostExecute(
-                    final Map<String, BatteryHistEntry> currentBatteryHistoryMap) {
-                if (mBatteryHistoryMap != null) {
-                    // Replaces the placeholder in mBatteryHistoryMap.
-                    for (Map.Entry<Long, Map<String, BatteryHistEntry>> mapEntry :
-                            mBatteryHistoryMap.entrySet()) {
-                        if (mapEntry.getValue()
-                                .containsKey(
-                                        DataProcessor.CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
-                            mapEntry.setValue(currentBatteryHistoryMap);
-                        }
-                    }
-                }
-                mIsCurrentBatteryHistoryLoaded = true;
-                tryToGenerateFinalDataAndApplyCallback();
-            }
-        }.execute();
+    @VisibleForTesting
+    boolean isCancelled() {
+        return mIsCancelled;
     }
 
-    private void loadCurrentAppUsageList() {
-        new AsyncTask<Void, Void, List<AppUsageEvent>>() {
-            @Override
-            protected List<AppUsageEvent> doInBackground(Void... voids) {
-                if (!shouldLoadAppUsageData()) {
-                    Log.d(TAG, "not loadCurrentAppUsageList");
-                    return null;
-                }
-                final long startTime = System.currentTimeMillis();
-                // Loads the current battery usage data from the battery stats service.
-                final int currentUserId = getCurrentUserId();
-                final int workProfileUserId = getWorkProfileUserId();
-                final UsageEvents usageEventsForCurrentUser =
-                        DataProcessor.getAppUsageEventsForUser(
-                                mContext, currentUserId, mRawStartTimestamp);
-                // If fail to load usage events for current user, return null directly and screen-on
-                // time will not be shown in the UI.
-                if (usageEventsForCurrentUser == null) {
-                    Log.w(TAG, "usageEventsForCurrentUser is null");
-                    return null;
-                }
-                UsageEvents usageEventsForWorkProfile = null;
-                if (workProfileUserId != Integer.MIN_VALUE) {
-                    usageEventsForWorkProfile =
-                            DataProcessor.getAppUsageEventsForUser(
-                                    mContext, workProfileUserId, mRawStartTimestamp);
-                } else {
-                    Log.d(TAG, "there is no work profile");
-                }
+    private static Executor createLoadingExecutor() {
+        final ThreadPoolExecutor executor =
+                new ThreadPoolExecutor(
+                        MAX_LOADING_THREADS,
+                        MAX_LOADING_THREADS,
+                        LOADING_THREAD_KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        runnable ->
+                                new Thread(
+                                        () -> {
+                                            Process.setThreadPriority(
+                                                    Process.THREAD_PRIORITY_BACKGROUND);
+                                            runnable.run();
+                                        },
+                                        TAG));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
-                final Map<Long, UsageEvents> usageEventsMap = new ArrayMap<>();
-                usageEventsMap.put(Long.valueOf(currentUserId), usageEventsForCurrentUser);
-                if (usageEventsForWorkProfile != null) {
-                    Log.d(TAG, "usageEventsForWorkProfile is null");
-                    usageEventsMap.put(Long.valueOf(workProfileUserId), usageEventsForWorkProfile);
-                }
+    private <T> CompletableFuture<T> runStage(String stage, Supplier<T> supplier) {
+        final CompletableFuture<T> future =
+                CompletableFuture.supplyAsync(() -> timeStage(stage, supplier), sExecutor);
+        trackFuture(future);
+        return future;
+    }
 
-                final List<AppUsageEvent> appUsageEventList =
-                        DataProcessor.generateAppUsageEventListFromUsageEvents(
-                                mContext, usageEventsMap);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadCurrentAppUsageList size=%d in %d/ms",
-                                appUsageEventList.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return appUsageEventList;
-            }
+    /**
+     * Same as {@link #runStage(String, Supplier)}, a failed stage completing with null so that the
+     * final data is generated from the data of the other stages.
+     */
+    private <T> CompletableFuture<T> runLoadingStage(String stage, Supplier<T> supplier) {
+        return runStage(stage, supplier)
+                .exceptionally(throwable -> onStageFailed(stage, throwable, /* fallback= */ null));
+    }
 
-            @Override
-            protected void onPostExecute(final List<AppUsageEvent> currentAppUsageList) {
-                if (currentAppUsageList == null || currentAppUsageList.isEmpty()) {
-                    Log.d(TAG, "currentAppUsageList is null or empty");
-                } else {
-                    mAppUsageEventList.addAll(currentAppUsageList);
-                }
-                mIsCurrentAppUsageLoaded = true;
-                tryToProcessAppUsageData();
+    private <T> T onStageFailed(String stage, Throwable throwable, T fallback) {
+        final Throwable cause =
+                throwable instanceof CompletionException ? throwable.getCause() : throwable;
+        if (mIsCancelled || cause instanceof CancellationException) {
+            throw throwable instanceof CompletionException
+                    ? (CompletionException) throwable
+                    : new CompletionException(throwable);
+        }
+        Log.e(TAG, stage + " failed, continue with the loaded data", cause);
+        return fallback;
+    }
+
+    private synchronized void trackFuture(CompletableFuture<?> future) {
+        mFutures.add(future);
+    }
+
+    private <T> T timeStage(String stage, Supplier<T> supplier) {
+        final long startTime = System.currentTimeMillis();
+        try {
+            return supplier.get();
+        } finally {
+            final long latency = System.currentTimeMillis() - startTime;
+            synchronized (this) {
+                mStageLatencies.put(stage, latency);
             }
-        }.execute();
+        }
     }
 
-    private void loadDatabaseAppUsageList() {
-        new AsyncTask<Void, Void, List<AppUsageEvent>>() {
-            @Override
-            protected List<AppUsageEvent> doInBackground(Void... voids) {
-                if (!shouldLoadAppUsageData()) {
-                    Log.d(TAG, "not loadDatabaseAppUsageList");
+    private void timeStage(String stage, Runnable runnable) {
+        timeStage(
+                stage,
+                () -> {
+                    runnable.run();
                     return null;
-                }
-                final long startTime = System.currentTimeMillis();
-                // Loads the app usage data from the database.
-                final List<AppUsageEvent> appUsageEventList =
-                        DatabaseUtils.getAppUsageEventForUsers(
-                                mContext,
-                                Calendar.getInstance(),
-                                getCurrentUserIds(),
-                                mRawStartTimestamp);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadDatabaseAppUsageList size=%d in %d/ms",
-                                appUsageEventList.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return appUsageEventList;
-            }
+                });
+    }
 
-            @Override
-            protected void onPostExecute(final List<AppUsageEvent> databaseAppUsageList) {
-                if (databaseAppUsageList == null || databaseAppUsageList.isEmpty()) {
-                    Log.d(TAG, "databaseAppUsageList is null or empty");
-                } else {
-                    mAppUsageEventList.addAll(databaseAppUsageList);
-                }
-                mIsDatabaseAppUsageLoaded = true;
-                tryToProcessAppUsageData();
-            }
-        }.execute();
-    }
-
-    private void loadPowerConnectionBatteryEventList() {
-        new AsyncTask<Void, Void, List<BatteryEvent>>() {
-            @Override
-            protected List<BatteryEvent> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                // Loads the battery event data from the database.
-                final List<BatteryEvent> batteryEventList =
-                        DatabaseUtils.getBatteryEvents(
-                                mContext,
-                                Calendar.getInstance(),
-                                mRawStartTimestamp,
-                                POWER_CONNECTION_EVENTS);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadPowerConnectionBatteryEventList size=%d in %d/ms",
-                                batteryEventList.size(), (System.currentTimeMillis() - startTime)));
-                return batteryEventList;
+    private void onLoadingCompleted(Void unused, Throwable throwable) {
+        final Throwable cause =
+                throwable instanceof CompletionException ? throwable.getCause() : throwable;
+        if (cause != null && !(cause instanceof CancellationException)) {
+            Log.e(TAG, "failed to load battery usage data", cause);
+        }
+        final StringBuilder builder = new StringBuilder();
+        synchronized (this) {
+            builder.append(
+                    String.format(
+                            "\t\t%s total=%d/ms cancelled=%b",
+                            ConvertUtils.utcToLocalTimeForLogging(mStartTimestamp),
+                            System.currentTimeMillis() - mStartTimestamp,
+                            mIsCancelled));
+            for (Map.Entry<String, Long> entry : mStageLatencies.entrySet()) {
+                builder.append(
+                        String.format("\n\t\t\t%s: %d/ms", entry.getKey(), entry.getValue()));
             }
+        }
+        final String lastLoadingStats = builder.toString();
+        Log.d(TAG, "onLoadingCompleted():\n" + lastLoadingStats);
+        synchronized (DataProcessManager.class) {
+            sLastLoadingStats = lastLoadingStats;
+        }
+    }
 
-            @Override
-            protected void onPostExecute(final List<BatteryEvent> batteryEventList) {
-                if (batteryEventList == null || batteryEventList.isEmpty()) {
-                    Log.d(TAG, "batteryEventList is null or empty");
-                } else {
-                    mBatteryEventList.clear();
-                    mBatteryEventList.addAll(batteryEventList);
-                }
-                mIsBatteryEventLoaded = true;
-                tryToProcessAppUsageData();
-            }
-        }.execute();
-    }
-
-    private void loadBatteryUsageSlotList() {
-        new AsyncTask<Void, Void, List<BatteryUsageSlot>>() {
-            @Override
-            protected List<BatteryUsageSlot> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                // Loads the battery usage slot data from the database.
-                final List<BatteryUsageSlot> batteryUsageSlotList =
-                        DatabaseUtils.getBatteryUsageSlots(
-                                mContext, Calendar.getInstance(), mLastFullChargeTimestamp);
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadBatteryUsageSlotList size=%d in %d/ms",
-                                batteryUsageSlotList.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return batteryUsageSlotList;
-            }
+    private Map<String, BatteryHistEntry> loadCurrentBatteryHistoryMap() {
+        final long startTime = System.currentTimeMillis();
+        // Loads the current battery usage data from the battery stats service.
+        final Map<String, BatteryHistEntry> currentBatteryHistoryMap =
+                DataProcessor.getCurrentBatteryHistoryMapFromStatsService(mContext);
+        Log.d(
+                TAG,
+                String.format(
+                        "execute loadCurrentBatteryHistoryMap size=%d in %d/ms",
+                        currentBatteryHistoryMap.size(),
+                        (System.currentTimeMillis() - startTime)));
+        return currentBatteryHistoryMap;
+    }
 
-            @Override
-            protected void onPostExecute(final List<BatteryUsageSlot> batteryUsageSlotList) {
-                if (batteryUsageSlotList == null || batteryUsageSlotList.isEmpty()) {
-                    Log.d(TAG, "batteryUsageSlotList is null or empty");
-                } else {
-                    mBatteryUsageSlotList.clear();
-                    mBatteryUsageSlotList.addAll(batteryUsageSlotList);
+    private synchronized void onCurrentBatteryHistoryMapLoaded(
+            @Nullable Map<String, BatteryHistEntry> currentBatteryHistoryMap) {
+        if (currentBatteryHistoryMap == null) {
+            currentBatteryHistoryMap = new ArrayMap<>();
+        }
+        if (mBatteryHistoryMap != null) {
+            // Replaces the placeholder in mBatteryHistoryMap.
+            for (Map.Entry<Long, Map<String, BatteryHistEntry>> mapEntry :
+                    mBatteryHistoryMap.entrySet()) {
+                if (mapEntry.getValue()
+                        .containsKey(DataProcessor.CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
+                    mapEntry.setValue(currentBatteryHistoryMap);
                 }
-                mIsBatteryUsageSlotLoaded = true;
-                tryToGenerateFinalDataAndApplyCallback();
-            }
-        }.execute();
-    }
-
-    private void loadAndApplyBatteryMapFromServiceOnly() {
-        new AsyncTask<Void, Void, Map<Long, BatteryDiffData>>() {
-            @Override
-            protected Map<Long, BatteryDiffData> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                final Map<Long, BatteryDiffData> batteryDiffDataMap =
-                        DataProcessor.getBatteryDiffDataMapFromStatsService(
-                                mContext,
-                                mRawStartTimestamp,
-                                getSystemAppsPackageNames(),
-                                getSystemAppsUids());
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute loadAndApplyBatteryMapFromServiceOnly size=%d in %d/ms",
-                                batteryDiffDataMap.size(),
-                                (System.currentTimeMillis() - startTime)));
-                return batteryDiffDataMap;
             }
+        }
+        mIsCurrentBatteryHistoryLoaded = true;
+    }
 
-            @Override
-            protected void onPostExecute(final Map<Long, BatteryDiffData> batteryDiffDataMap) {
-                // Post results back to main thread to refresh UI.
-                if (mHandler != null && mCallbackFunction != null) {
-                    mHandler.post(
-                            () -> {
-                                mCallbackFunction.onBatteryDiffDataMapLoaded(batteryDiffDataMap);
-                            });
-                }
-            }
-        }.execute();
+    private List<AppUsageEvent> loadCurrentAppUsageList() {
+        if (!shouldLoadAppUsageData()) {
+            Log.d(TAG, "not loadCurrentAppUsageList");
+            return null;
+        }
+        final long startTime = System.currentTimeMillis();
+        // Loads the current battery usage data from the battery stats service.
+        final int currentUserId = getCurrentUserId();
+        final int workProfileUserId = getWorkProfileUserId();
+        final UsageEvents usageEventsForCurrentUser =
+                DataProcessor.getAppUsageEventsForUser(
+                        mContext, currentUserId, mRawStartTimestamp);
+        // If fail to load usage events for current user, return null directly and screen-on time
+        // will not be shown in the UI.
+        if (usageEventsForCurrentUser == null) {
+            Log.w(TAG, "usageEventsForCurrentUser is null");
+            return null;
+        }
+        UsageEvents usageEventsForWorkProfile = null;
+        if (workProfileUserId != Integer.MIN_VALUE) {
+            usageEventsForWorkProfile =
+                    DataProcessor.getAppUsageEventsForUser(
+                            mContext, workProfileUserId, mRawStartTimestamp);
+        } else {
+            Log.d(TAG, "there is no work profile");
+        }
+
+        final Map<Long, UsageEvents> usageEventsMap = new ArrayMap<>();
+        usageEventsMap.put(Long.valueOf(currentUserId), usageEventsForCurrentUser);
+        if (usageEventsForWorkProfile != null) {
+            Log.d(TAG, "usageEventsForWorkProfile is null");
+            usageEventsMap.put(Long.valueOf(workProfileUserId), usageEventsForWorkProfile);
+        }
+
+        final List<AppUsageEvent> appUsageEventList =
+                DataProcessor.generateAppUsageEventListFromUsageEvents(mContext, usageEventsMap);
+        Log.d(
+                TAG,
+                String.format(
+                        "execute loadCurrentAppUsageList size=%d in %d/ms",
+                        appUsageEventList.size(), (System.currentTimeMillis() - startTime)));
+        return appUsageEventList;
     }
 
-    private void tryToProcessAppUsageData() {
-        // Ignore processing the data if any required data is not loaded.
-        if (!mIsCurrentAppUsageLoaded || !mIsDatabaseAppUsageLoaded || !mIsBatteryEventLoaded) {
-            return;
+    private synchronized void onCurrentAppUsageListLoaded(
+            final List<AppUsageEvent> currentAppUsageList) {
+        if (currentAppUsageList == null || currentAppUsageList.isEmpty()) {
+            Log.d(TAG, "currentAppUsageList is null or empty");
+        } else {
+            mAppUsageEventList.addAll(currentAppUsageList);
+        }
+        mIsCurrentAppUsageLoaded = true;
+    }
+
+    private List<AppUsageEvent> loadDatabaseAppUsageList() {
+        if (!shouldLoadAppUsageData()) {
+            Log.d(TAG, "not loadDatabaseAppUsageList");
+            return null;
+        }
+        final long startTime = System.currentTimeMillis();
+        // Loads the app usage data from the database.
+        final List<AppUsageEvent> appUsageEventList =
+                DatabaseUtils.getAppUsageEventForUsers(
+                        mContext, Calendar.getInstance(), getCurrentUserIds(), mRawStartTimestamp);
+        Log.d(
+                TAG,
+                String.format(
+                        "execute loadDatabaseAppUsageList size=%d in %d/ms",
+                        appUsageEventList.size(), (System.currentTimeMillis() - startTime)));
+        return appUsageEventList;
+    }
+
+    private synchronized void onDatabaseAppUsageListLoaded(
+            final List<AppUsageEvent> databaseAppUsageList) {
+        if (databaseAppUsageList == null || databaseAppUsageList.isEmpty()) {
+            Log.d(TAG, "databaseAppUsageList is null or empty");
+        } else {
+            mAppUsageEventList.addAll(databaseAppUsageList);
         }
-        processAppUsageData();
-        tryToGenerateFinalDataAndApplyCallback();
+        mIsDatabaseAppUsageLoaded = true;
+    }
+
+    private List<BatteryEvent> loadPowerConnectionBatteryEventList() {
+        final long startTime = System.currentTimeMillis();
+        // Loads the battery event data from the database.
+        final List<BatteryEvent> batteryEventList =
+                DatabaseUtils.getBatteryEvents(
+                        mContext,
+                        Calendar.getInstance(),
+                        mRawStartTimestamp,
+                        POWER_CONNECTION_EVENTS);
+        Log.d(
+                TAG,
+                String.format(
+                        "execute loadPowerConnectionBatteryEventList size=%d in %d/ms",
+                        batteryEventList.size(), (System.currentTimeMillis() - startTime)));
+        return batteryEventList;
+    }
+
+    private synchronized void onPowerConnectionBatteryEventListLoaded(
+            final List<BatteryEvent> batteryEventList) {
+        if (batteryEventList == null || batteryEventList.isEmpty()) {
+            Log.d(TAG, "batteryEventList is null or empty");
+        } else {
+            mBatteryEventList.clear();
+            mBatteryEventList.addAll(batteryEventList);
+        }
+        mIsBatteryEventLoaded = true;
+    }
+
+    private List<BatteryUsageSlot> loadBatteryUsageSlotList() {
+        final long startTime = System.currentTimeMillis();
+        // Loads the battery usage slot data from the database.
+        final List<BatteryUsageSlot> batteryUsageSlotList =
+                DatabaseUtils.getBatteryUsageSlots(
+                        mContext, Calendar.getInstance(), mLastFullChargeTimestamp);
+        Log.d(
+                TAG,
+                String.format(
+                        "execute loadBatteryUsageSlotList size=%d in %d/ms",
+                        batteryUsageSlotList.size(), (System.currentTimeMillis() - startTime)));
+        return batteryUsageSlotList;
     }
 
-    private void processAppUsageData() {
+    private synchronized void onBatteryUsageSlotListLoaded(
+            final List<BatteryUsageSlot> batteryUsageSlotList) {
+        if (batteryUsageSlotList == null || batteryUsageSlotList.isEmpty()) {
+            Log.d(TAG, "batteryUsageSlotList is null or empty");
+        } else {
+            mBatteryUsageSlotList.clear();
+            mBatteryUsageSlotList.addAll(batteryUsageSlotList);
+        }
+        mIsBatteryUsageSlotLoaded = true;
+    }
+
+    private Map<Long, BatteryDiffData> loadAndApplyBatteryMapFromServiceOnly() {
+        final long startTime = System.currentTimeMillis();
+        final Map<Long, BatteryDiffData> batteryDiffDataMap =
+                DataProcessor.getBatteryDiffDataMapFromStatsService(
+                        mContext,
+                        mRawStartTimestamp,
+                        getSystemAppsPackageNames(),
+                        getSystemAppsUids());
+        Log.d(
+                TAG,
+                String.format(
+                        "execute loadAndApplyBatteryMapFromServiceOnly size=%d in %d/ms",
+                        batteryDiffDataMap.size(), (System.currentTimeMillis() - startTime)));
+        return batteryDiffDataMap;
+    }
+
+    private synchronized void processAppUsageData() {
         // If there is no screen-on time data, no need to process.
         if (!mShowScreenOnTime) {
             return;
@@ -484,61 +653,45 @@ public class DataProcessManager {
                         mBatteryEventList);
     }
 
-    private void tryToGenerateFinalDataAndApplyCallback() {
-        // Ignore processing the data if any required data is not loaded.
-        if (!mIsCurrentBatteryHistoryLoaded
-                || !mIsCurrentAppUsageLoaded
-                || !mIsDatabaseAppUsageLoaded
-                || !mIsBatteryEventLoaded
-                || !mIsBatteryUsageSlotLoaded) {
-            return;
+    private synchronized Map<Long, BatteryDiffData> generateFinalData() {
+        final long startTime = System.currentTimeMillis();
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = new ArrayMap<>();
+        for (BatteryUsageSlot batteryUsageSlot : mBatteryUsageSlotList) {
+            batteryDiffDataMap.put(
+                    batteryUsageSlot.getStartTimestamp(),
+                    ConvertUtils.convertToBatteryDiffData(
+                            mContext,
+                            batteryUsageSlot,
+                            getSystemAppsPackageNames(),
+                            getSystemAppsUids()));
         }
-        generateFinalDataAndApplyCallback();
-    }
-
-    private synchronized void generateFinalDataAndApplyCallback() {
-        new AsyncTask<Void, Void, Map<Long, BatteryDiffData>>() {
-            @Override
-            protected Map<Long, BatteryDiffData> doInBackground(Void... voids) {
-                final long startTime = System.currentTimeMillis();
-                final Map<Long, BatteryDiffData> batteryDiffDataMap = new ArrayMap<>();
-                for (BatteryUsageSlot batteryUsageSlot : mBatteryUsageSlotList) {
-                    batteryDiffDataMap.put(
-                            batteryUsageSlot.getStartTimestamp(),
-                            ConvertUtils.convertToBatteryDiffData(
-                                    mContext,
-                                    batteryUsageSlot,
-                                    getSystemAppsPackageNames(),
-                                    getSystemAppsUids()));
-                }
-                batteryDiffDataMap.putAll(
-                        DataProcessor.getBatteryDiffDataMap(
-                                mContext,
-                                mHourlyBatteryLevelsPerDay,
-                                mBatteryHistoryMap,
-                                mAppUsagePeriodMap,
-                                getSystemAppsPackageNames(),
-                                getSystemAppsUids()));
-
-                Log.d(
-                        TAG,
-                        String.format(
-                                "execute generateFinalDataAndApplyCallback size=%d in %d/ms",
-                                batteryDiffDataMap.size(), System.currentTimeMillis() - startTime));
-                return batteryDiffDataMap;
-            }
+        batteryDiffDataMap.putAll(
+                DataProcessor.getBatteryDiffDataMap(
+                        mContext,
+                        mHourlyBatteryLevelsPerDay,
+                        mBatteryHistoryMap,
+                        mAppUsagePeriodMap,
+                        getSystemAppsPackageNames(),
+                        getSystemAppsUids()));
 
-            @Override
-            protected void onPostExecute(final Map<Long, BatteryDiffData> batteryDiffDataMap) {
-                // Post results back to main thread to refresh UI.
-                if (mHandler != null && mCallbackFunction != null) {
-                    mHandler.post(
-                            () -> {
-                                mCallbackFunction.onBatteryDiffDataMapLoaded(batteryDiffDataMap);
-                            });
-                }
-            }
-        }.execute();
+        Log.d(
+                TAG,
+                String.format(
+                        "execute generateFinalDataAndApplyCallback size=%d in %d/ms",
+                        batteryDiffDataMap.size(), System.currentTimeMillis() - startTime));
+        return batteryDiffDataMap;
+    }
+
+    private void applyCallback(final Map<Long, BatteryDiffData> batteryDiffDataMap) {
+        // Post results back to main thread to refresh UI.
+        if (mHandler != null && mCallbackFunction != null && !mIsCancelled) {
+            mHandler.post(
+                    () -> {
+                        if (!mIsCancelled) {
+                            mCallbackFunction.onBatteryDiffDataMapLoaded(batteryDiffDataMap);
+                        }
+                    });
+        }
     }
 
     // Whether we should load app usage data from service or database.
@@ -601,6 +754,26 @@ public class DataProcessManager {
             @Nullable Handler handler,
             final boolean isFromPeriodJob,
             final OnBatteryDiffDataMapLoadedListener onBatteryUsageMapLoadedListener) {
+        return getBatteryLevelData(
+                context,
+                handler,
+                isFromPeriodJob,
+                onBatteryUsageMapLoadedListener,
+                /* cancellationSignal= */ null);
+    }
+
+    /**
+     * Same as {@link #getBatteryLevelData(Context, Handler, boolean,
+     * OnBatteryDiffDataMapLoadedListener)}, the async loading being cancelled along with {@code
+     * cancellationSignal}.
+     */
+    @Nullable
+    public static BatteryLevelData getBatteryLevelData(
+            Context context,
+            @Nullable Handler handler,
+            final boolean isFromPeriodJob,
+            final OnBatteryDiffDataMapLoadedListener onBatteryUsageMapLoadedListener,
+            @Nullable final CancellationSignal cancellationSignal) {
         final long start = System.currentTimeMillis();
         final long lastFullChargeTime = DatabaseUtils.getLastFullChargeTime(context);
         final List<BatteryEvent> batteryLevelRecordEvents =
@@ -620,7 +793,8 @@ public class DataProcessManager {
                         startTimestamp,
                         lastFullChargeTime,
                         isFromPeriodJob,
-                        onBatteryUsageMapLoadedListener);
+                        onBatteryUsageMapLoadedListener,
+                        cancellationSignal);
         Log.d(
                 TAG,
                 String.format(
@@ -639,7 +813,8 @@ public class DataProcessManager {
             final long startTimestamp,
             final long lastFullChargeTime,
             final boolean isFromPeriodJob,
-            final OnBatteryDiffDataMapLoadedListener onBatteryDiffDataMapLoadedListener) {
+            final OnBatteryDiffDataMapLoadedListener onBatteryDiffDataMapLoadedListener,
+            @Nullable final CancellationSignal cancellationSignal) {
         final long currentTime = System.currentTimeMillis();
         Log.d(
                 TAG,
@@ -663,7 +838,10 @@ public class DataProcessManager {
                                 lastFullChargeTime);
         if (batteryHistoryMap == null || batteryHistoryMap.isEmpty()) {
             Log.d(TAG, "batteryHistoryMap is null in getPeriodBatteryLevelData()");
-            new DataProcessManager(context, handler, onBatteryDiffDataMapLoadedListener).start();
+            startDataProcessManager(
+                    new DataProcessManager(context, handler, onBatteryDiffDataMapLoadedListener),
+                    isFromPeriodJob,
+                    cancellationSignal);
             return null;
         }
 
@@ -675,22 +853,38 @@ public class DataProcessManager {
                 DataProcessor.getLevelDataThroughProcessedHistoryMap(
                         context, processedBatteryHistoryMap);
         if (batteryLevelData == null) {
-            new DataProcessManager(context, handler, onBatteryDiffDataMapLoadedListener).start();
+            startDataProcessManager(
+                    new DataProcessManager(context, handler, onBatteryDiffDataMapLoadedListener),
+                    isFromPeriodJob,
+                    cancellationSignal);
             Log.d(TAG, "getBatteryLevelData() returns null");
             return null;
         }
 
         // Start the async task to compute diff usage data and load labels and icons.
-        new DataProcessManager(
+        startDataProcessManager(
+                new DataProcessManager(
                         context,
                         handler,
                         startTimestamp,
                         lastFullChargeTime,
                         onBatteryDiffDataMapLoadedListener,
                         batteryLevelData.getHourlyBatteryLevelsPerDay(),
-                        processedBatteryHistoryMap)
-                .start(isFromPeriodJob);
+                        processedBatteryHistoryMap),
+                isFromPeriodJob,
+                cancellationSignal);
 
         return batteryLevelData;
     }
+
+    private static void startDataProcessManager(
+            DataProcessManager dataProcessManager,
+            final boolean isFromPeriodJob,
+            @Nullable final CancellationSignal cancellationSignal) {
+        if (cancellationSignal != null) {
+            // Cancels right away if the signal is already cancelled.
+            cancellationSignal.setOnCancelListener(dataProcessManager::cancel);
+        }
+        dataProcessManager.start(isFromPeriodJob);
+    }
 }
@@ -169,6 +169,100 @@ public final class DataProcessor {
                         batteryLevelData);
     }
 
+    /**
+     * @return Returns battery usage data of different entries since last full charge. <br>
+     *     The hourly slots persisted as {@link BatteryUsageSlot} by the periodic job are reused,
+     *     only the slots after the latest battery level record are computed from the raw battery
+     *     history, so the cost doesn't grow with the stored history. <br>
+     *     Returns null if there is no enough data.
+     */
+    @Nullable
+    public static Map<Integer, Map<Integer, BatteryDiffData>>
+            getBatteryUsageDataSinceLastFullCharge(Context context) {
+        final long start = System.currentTimeMillis();
+        final Calendar calendar = Calendar.getInstance();
+        final long lastFullChargeTime = DatabaseUtils.getLastFullChargeTime(context);
+        final List<BatteryEvent> batteryLevelRecordEvents =
+                DatabaseUtils.getBatteryEvents(
+                        context,
+                        calendar,
+                        lastFullChargeTime,
+                        DatabaseUtils.BATTERY_LEVEL_RECORD_EVENTS);
+        final long startTimestamp =
+                batteryLevelRecordEvents.isEmpty()
+                        ? lastFullChargeTime
+                        : batteryLevelRecordEvents.get(0).getTimestamp();
+        final Map<Integer, Map<Integer, BatteryDiffData>> batteryUsageMap =
+                getBatteryUsageDataSinceLastFullCharge(
+                        context,
+                        batteryLevelRecordEvents,
+                        DatabaseUtils.getBatteryUsageSlots(context, calendar, lastFullChargeTime),
+                        DatabaseUtils.getHistoryMapSinceLatestRecordBeforeQueryTimestamp(
+                                context, calendar, startTimestamp, lastFullChargeTime));
+        Log.d(
+                TAG,
+                String.format(
+                        "getBatteryUsageDataSinceLastFullCharge() in %d/ms",
+                        System.currentTimeMillis() - start));
+        return batteryUsageMap;
+    }
+
+    /**
+     * Combines the stored {@code batteryUsageSlots} with the usage computed from the raw {@code
+     * batteryHistoryMap} loaded since the latest of the {@code batteryLevelRecordEvents}, which are
+     * sorted from the latest to the earliest.
+     */
+    @VisibleForTesting
+    @Nullable
+    static Map<Integer, Map<Integer, BatteryDiffData>> getBatteryUsageDataSinceLastFullCharge(
+            Context context,
+            final List<BatteryEvent> batteryLevelRecordEvents,
+            final List<BatteryUsageSlot> batteryUsageSlots,
+            @Nullable final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap) {
+        final Set<String> systemAppsPackageNames = getSystemAppsPackageNames(context);
+        final Set<Integer> systemAppsUids = getSystemAppsUids(context);
+
+        final Map<Long, BatteryDiffData> batteryDiffDataMap = new ArrayMap<>();
+        for (BatteryUsageSlot batteryUsageSlot : batteryUsageSlots) {
+            batteryDiffDataMap.put(
+                    batteryUsageSlot.getStartTimestamp(),
+                    ConvertUtils.convertToBatteryDiffData(
+                            context, batteryUsageSlot, systemAppsPackageNames, systemAppsUids));
+        }
+        BatteryLevelData batteryLevelData = null;
+        if (batteryHistoryMap != null && !batteryHistoryMap.isEmpty()) {
+            final Map<Long, Map<String, BatteryHistEntry>> processedBatteryHistoryMap =
+                    getHistoryMapWithExpectedTimestamps(context, batteryHistoryMap);
+            batteryLevelData =
+                    getLevelDataThroughProcessedHistoryMap(context, processedBatteryHistoryMap);
+            if (batteryLevelData != null) {
+                for (Map.Entry<Long, Map<String, BatteryHistEntry>> mapEntry :
+                        processedBatteryHistoryMap.entrySet()) {
+                    if (mapEntry.getValue()
+                            .containsKey(CURRENT_TIME_BATTERY_HISTORY_PLACEHOLDER)) {
+                        mapEntry.setValue(getCurrentBatteryHistoryMapFromStatsService(context));
+                    }
+                }
+                batteryDiffDataMap.putAll(
+                        getBatteryDiffDataMap(
+                                context,
+                                batteryLevelData.getHourlyBatteryLevelsPerDay(),
+                                processedBatteryHistoryMap,
+                                /* appUsagePeriodMap= */ null,
+                                systemAppsPackageNames,
+                                systemAppsUids));
+            }
+        }
+        batteryLevelData = BatteryLevelData.combine(batteryLevelData, batteryLevelRecordEvents);
+        Log.d(
+                TAG,
+                "getBatteryUsageDataSinceLastFullCharge() diff data size="
+                        + batteryDiffDataMap.size());
+        return batteryLevelData == null
+                ? null
+                : generateBatteryUsageMap(context, batteryDiffDataMap, batteryLevelData);
+    }
+
     /** Gets the {@link BatteryUsageStats} from system service. */
     @Nullable
     public static BatteryUsageStats getBatteryUsageStats(final Context context) {
@@ -33,8 +33,6 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.BatteryManager;
 import android.os.BatteryUsageStats;
-import android.os.Handler;
-import android.os.Looper;
 import android.os.RemoteException;
 import android.os.SystemClock;
 import android.os.UserManager;
@@ -68,10 +66,6 @@ public final class DatabaseUtils {
     private static final String TAG = "DatabaseUtils";
     private static final String SHARED_PREFS_FILE = "battery_usage_shared_prefs";
 
-    /** Clear memory threshold for device booting phase. */
-    private static final long CLEAR_MEMORY_THRESHOLD_MS = Duration.ofMinutes(5).toMillis();
-
-    private static final long CLEAR_MEMORY_DELAYED_MS = Duration.ofSeconds(2).toMillis();
     private static final long INVALID_TIMESTAMP = 0L;
 
     static final int DATA_RETENTION_INTERVAL_DAY = 9;
@@ -107,6 +101,16 @@ public final class DatabaseUtils {
     /** Key for query parameter timestamp used in BATTERY_CONTENT_URI */
     public static final String QUERY_KEY_TIMESTAMP = "timestamp";
 
+    /**
+     * Key for query parameter contract version used in BATTERY_CONTENT_URI. Queries without it, or
+     * with a version older than {@link #BATTERY_STATE_BLOB_VERSION}, read the batteryInformation
+     * column as a Base64 encoded string, as before it was stored as a BLOB.
+     */
+    public static final String QUERY_KEY_VERSION = "version";
+
+    /** The contract version returning the batteryInformation column as serialized bytes. */
+    public static final int BATTERY_STATE_BLOB_VERSION = 2;
+
     /** Key for query parameter userid used in APP_USAGE_EVENT_URI */
     public static final String QUERY_KEY_USERID = "userid";
 
@@ -356,6 +360,8 @@ public final class DatabaseUtils {
                         .authority(AUTHORITY)
                         .appendPath(BATTERY_STATE_TABLE)
                         .appendQueryParameter(QUERY_KEY_TIMESTAMP, Long.toString(queryTimestamp))
+                        .appendQueryParameter(
+                                QUERY_KEY_VERSION, Integer.toString(BATTERY_STATE_BLOB_VERSION))
                         .build();
 
         final List<BatteryHistEntry> batteryHistEntryList =
@@ -509,7 +515,13 @@ public final class DatabaseUtils {
         return context;
     }
 
-    static List<ContentValues> sendAppUsageEventData(
+    /**
+     * Inserts the {@link AppUsageEvent} list into the provider in a single transaction, so either
+     * every event is inserted or none is.
+     *
+     * @return the number of inserted rows
+     */
+    static int sendAppUsageEventData(
             final Context context, final List<AppUsageEvent> appUsageEventList) {
         final long startTime = System.currentTimeMillis();
         // Creates the ContentValues list to insert them into provider.
@@ -528,10 +540,16 @@ public final class DatabaseUtils {
             final ContentValues[] valuesArray = new ContentValues[valuesList.size()];
             valuesList.toArray(valuesArray);
             try {
+                // The provider rolls back a failed transaction and reports no inserted row.
                 size = resolver.bulkInsert(APP_USAGE_EVENT_URI, valuesArray);
-                resolver.notifyChange(APP_USAGE_EVENT_URI, /* observer= */ null);
-                Log.d(TAG, "insert() app usage events data into database");
+                if (size == valuesArray.length) {
+                    resolver.notifyChange(APP_USAGE_EVENT_URI, /* observer= */ null);
+                    Log.d(TAG, "insert() app usage events data into database");
+                } else {
+                    Log.e(TAG, "bulkInsert() app usage data into database failed");
+                }
             } catch (Exception e) {
+                size = 0;
                 Log.e(TAG, "bulkInsert() app usage data into database error:", e);
             }
         }
@@ -540,8 +558,7 @@ public final class DatabaseUtils {
                 String.format(
                         "sendAppUsageEventData() size=%d in %d/ms",
                         size, (System.currentTimeMillis() - startTime)));
-        clearMemory();
-        return valuesList;
+        return size;
     }
 
     static ContentValues sendBatteryEventData(
@@ -560,7 +577,6 @@ public final class DatabaseUtils {
                 String.format(
                         "sendBatteryEventData() in %d/ms",
                         (System.currentTimeMillis() - startTime)));
-        clearMemory();
         return contentValues;
     }
 
@@ -594,7 +610,6 @@ public final class DatabaseUtils {
                 String.format(
                         "sendBatteryEventData() size=%d in %d/ms",
                         size, (System.currentTimeMillis() - startTime)));
-        clearMemory();
         return valuesList;
     }
 
@@ -628,11 +643,17 @@ public final class DatabaseUtils {
                 String.format(
                         "sendBatteryUsageSlotData() size=%d in %d/ms",
                         size, (System.currentTimeMillis() - startTime)));
-        clearMemory();
         return valuesList;
     }
 
-    static List<ContentValues> sendBatteryEntryData(
+    /**
+     * Inserts the {@link BatteryEntry} list of a snapshot into the provider in a single
+     * transaction, so readers never see a partial snapshot. Inserts a fake row instead if no
+     * entry consumed anything or the entries fail to be inserted.
+     *
+     * @return the number of inserted rows
+     */
+    static int sendBatteryEntryData(
             final Context context,
             final long snapshotTimestamp,
             final List<BatteryEntry> batteryEntryList,
@@ -642,8 +663,7 @@ public final class DatabaseUtils {
         final Intent intent = BatteryUtils.getBatteryIntent(context);
         if (intent == null) {
             Log.e(TAG, "sendBatteryEntryData(): cannot fetch battery intent");
-            clearMemory();
-            return null;
+            return 0;
         }
         final int batteryLevel = BatteryStatus.getBatteryLevel(intent);
         final int batteryStatus =
@@ -694,6 +714,7 @@ public final class DatabaseUtils {
         }
 
         int size = 1;
+        boolean hasData = false;
         final ContentResolver resolver = context.getContentResolver();
         String errorMessage = "";
         // Inserts all ContentValues into battery provider.
@@ -701,15 +722,24 @@ public final class DatabaseUtils {
             final ContentValues[] valuesArray = new ContentValues[valuesList.size()];
             valuesList.toArray(valuesArray);
             try {
-                size = resolver.bulkInsert(BATTERY_CONTENT_URI, valuesArray);
+                // The provider rolls back a failed transaction and reports no inserted row.
+                final int insertedCount = resolver.bulkInsert(BATTERY_CONTENT_URI, valuesArray);
+                if (insertedCount != valuesArray.length) {
+                    throw new IllegalStateException(
+                            "inserted " + insertedCount + "/" + valuesArray.length);
+                }
+                size = insertedCount;
+                hasData = true;
                 Log.d(
                         TAG,
                         "insert() battery states data into database with isFullChargeStart:"
                                 + isFullChargeStart);
             } catch (Exception e) {
+                errorMessage = e.toString();
                 Log.e(TAG, "bulkInsert() data into database error:", e);
             }
-        } else {
+        }
+        if (!hasData) {
             // Inserts one fake data into battery provider.
             final ContentValues contentValues =
                     ConvertUtils.convertBatteryEntryToContentValues(
@@ -730,7 +760,6 @@ public final class DatabaseUtils {
             } catch (Exception e) {
                 Log.e(TAG, "insert() data into database error:", e);
             }
-            valuesList.add(contentValues);
         }
         resolver.notifyChange(BATTERY_CONTENT_URI, /* observer= */ null);
         BatteryUsageLogUtils.writeLog(
@@ -743,8 +772,7 @@ public final class DatabaseUtils {
         if (isFullChargeStart) {
             recordDateTime(context, KEY_LAST_UPLOAD_FULL_CHARGE_TIME);
         }
-        clearMemory();
-        return valuesList;
+        return size;
     }
 
     /** Dump all required data into {@link PrintWriter}. */
@@ -940,19 +968,4 @@ public final class DatabaseUtils {
             writer.println(String.format("\t\t%s: %s", prefix, results.toString()));
         }
     }
-
-    private static void clearMemory() {
-        if (SystemClock.uptimeMillis() > CLEAR_MEMORY_THRESHOLD_MS) {
-            return;
-        }
-        final Handler mainHandler = new Handler(Looper.getMainLooper());
-        mainHandler.postDelayed(
-                () -> {
-                    System.gc();
-                    System.runFinalization();
-                    System.gc();
-                    Log.w(TAG, "invoke clearMemory()");
-                },
-                CLEAR_MEMORY_DELAYED_MS);
-    }
 }
@@ -23,6 +23,7 @@ import android.database.ContentObserver;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Looper;
 import android.provider.SearchIndexableResource;
@@ -70,6 +71,8 @@ public class PowerUsageAdvanced extends PowerUsageBase {
     private boolean mIsChartDataLoaded = false;
     private long mResumeTimestamp;
     private Map<Integer, Map<Integer, BatteryDiffData>> mBatteryUsageMap;
+    // Cancels the async loading of the battery diff data started by the latest loader.
+    private CancellationSignal mDataLoadingCancellationSignal;
 
     private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
     private final Handler mHandler = new Handler(Looper.getMainLooper());
@@ -105,6 +108,7 @@ public class PowerUsageAdvanced extends PowerUsageBase {
             BatteryEntry.clearUidCache();
         }
         mExecutor.shutdown();
+        cancelDataLoading();
     }
 
     @Override
@@ -441,6 +445,13 @@ public class PowerUsageAdvanced extends PowerUsageBase {
         Log.d(TAG, "anomalyEventList = [" + stringBuilder + "]");
     }
 
+    private void cancelDataLoading() {
+        if (mDataLoadingCancellationSignal != null) {
+            mDataLoadingCancellationSignal.cancel();
+            mDataLoadingCancellationSignal = null;
+        }
+    }
+
     private static BatteryDiffData getAllBatteryDiffData(
             Map<Integer, Map<Integer, BatteryDiffData>> batteryUsageMap) {
         return batteryUsageMap == null
@@ -483,6 +494,10 @@ public class PowerUsageAdvanced extends PowerUsageBase {
             implements LoaderManager.LoaderCallbacks<BatteryLevelData> {
         @Override
         public Loader<BatteryLevelData> onCreateLoader(int id, Bundle bundle) {
+            // The data loaded by the previous loader is stale.
+            cancelDataLoading();
+            final CancellationSignal cancellationSignal = new CancellationSignal();
+            mDataLoadingCancellationSignal = cancellationSignal;
             return new AsyncLoaderCompat<BatteryLevelData>(getContext().getApplicationContext()) {
                 @Override
                 protected void onDiscardResult(BatteryLevelData result) {}
@@ -493,7 +508,8 @@ public class PowerUsageAdvanced extends PowerUsageBase {
                             getContext(),
                             mHandler,
                             /* isFromPeriodJob= */ false,
-                            PowerUsageAdvanced.this::onBatteryDiffDataMapUpdate);
+                            PowerUsageAdvanced.this::onBatteryDiffDataMapUpdate,
+                            cancellationSignal);
                 }
             };
         }
@@ -108,7 +108,15 @@ public class PowerUsageSummary extends PowerUsageBase
 
                 @Override
                 public Loader<List<BatteryTip>> onCreateLoader(int id, Bundle args) {
-                    return new BatteryTipLoader(getContext(), mBatteryUsageStats);
+                    // Shows the cheap tips without waiting for the high usage detection.
+                    return new BatteryTipLoader(
+                            getContext(),
+                            mBatteryUsageStats,
+                            batteryTips ->
+                                    mBatteryHeaderPreferenceController.updateHeaderByBatteryTips(
+                                            mBatteryTipPreferenceController
+                                                    .updatePartialBatteryTips(batteryTips),
+                                            mBatteryInfo));
                 }
 
                 @Override
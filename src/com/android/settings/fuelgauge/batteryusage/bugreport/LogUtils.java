@@ -22,6 +22,7 @@ import android.util.Log;
 import com.android.settings.fuelgauge.BatteryUtils;
 import com.android.settings.fuelgauge.batteryusage.BatteryUsageSlot;
 import com.android.settings.fuelgauge.batteryusage.ConvertUtils;
+import com.android.settings.fuelgauge.batteryusage.DataProcessManager;
 import com.android.settings.fuelgauge.batteryusage.DatabaseUtils;
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventDao;
 import com.android.settings.fuelgauge.batteryusage.db.AppUsageEventEntity;
@@ -54,6 +55,7 @@ public final class LogUtils {
 
         // Dumps phenotype environments.
         DatabaseUtils.dump(context, writer);
+        DataProcessManager.dump(writer);
         writer.flush();
         final BatteryStateDao dao = BatteryStateDatabase.getInstance(context).batteryStateDao();
         final long timeOffset = Clock.systemUTC().millis() - DUMP_TIME_OFFSET.toMillis();
@@ -17,8 +17,10 @@
 package com.android.settings.fuelgauge.batteryusage.db;
 
 import android.content.ContentValues;
+import android.util.Base64;
 
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import com.android.settings.fuelgauge.BatteryUtils;
@@ -30,7 +32,7 @@ import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import java.util.Locale;
 
 /** A {@link Entity} class to save battery states snapshot into database. */
-@Entity
+@Entity(indices = {@Index("timestamp")})
 public class BatteryState {
     @PrimaryKey(autoGenerate = true)
     private long mId;
@@ -42,20 +44,12 @@ public class BatteryState {
     public final long timestamp;
     public final int consumerType;
     public final boolean isFullChargeCycleStart;
-    public final String batteryInformation;
 
     /**
-     * This field is filled only when build type is "userdebug".
-     *
-     * <p>For now, Java Proto Lite is recommended by the Android team as the more lightweight
-     * solution designed specifically for mobile apps to process protobuf. However, converting
-     * protobuf to string through Java Proto Lite needs to parse it into a bytes field first, which
-     * leads to the strings saved in our database are encoded and hard to understand.
-     *
-     * <p>To make it easier to debug in our daily development, this field is added. It will not be
-     * filled for the real users.
+     * The serialized {@link BatteryInformation}, stored as a BLOB rather than a Base64 encoded
+     * string to save space and decoding time. {@link #toString()} prints the parsed content.
      */
-    public final String batteryInformationDebug;
+    public final byte[] batteryInformation;
 
     public BatteryState(
             long uid,
@@ -64,8 +58,7 @@ public class BatteryState {
             long timestamp,
             int consumerType,
             boolean isFullChargeCycleStart,
-            String batteryInformation,
-            String batteryInformationDebug) {
+            byte[] batteryInformation) {
         // Records the app relative information.
         this.uid = uid;
         this.userId = userId;
@@ -74,7 +67,6 @@ public class BatteryState {
         this.consumerType = consumerType;
         this.isFullChargeCycleStart = isFullChargeCycleStart;
         this.batteryInformation = batteryInformation;
-        this.batteryInformationDebug = batteryInformationDebug;
     }
 
     /** Sets the auto-generated content ID. */
@@ -91,7 +83,7 @@ public class BatteryState {
     public String toString() {
         final String recordAtDateTime = ConvertUtils.utcToLocalTimeForLogging(timestamp);
         final BatteryInformation batteryInformationInstance =
-                BatteryUtils.parseProtoFromString(
+                BatteryUtils.parseProtoFromBytes(
                         batteryInformation, BatteryInformation.getDefaultInstance());
         final StringBuilder builder =
                 new StringBuilder()
@@ -137,11 +129,12 @@ public class BatteryState {
             builder.setIsFullChargeCycleStart(contentValues.getAsBoolean("isFullChargeCycleStart"));
         }
         if (contentValues.containsKey("batteryInformation")) {
-            builder.setBatteryInformation(contentValues.getAsString("batteryInformation"));
-        }
-        if (contentValues.containsKey("batteryInformationDebug")) {
-            builder.setBatteryInformationDebug(
-                    contentValues.getAsString("batteryInformationDebug"));
+            final Object batteryInformation = contentValues.get("batteryInformation");
+            // Also accepts the Base64 encoded string from older callers.
+            builder.setBatteryInformation(
+                    batteryInformation instanceof String
+                            ? Base64.decode((String) batteryInformation, Base64.DEFAULT)
+                            : contentValues.getAsByteArray("batteryInformation"));
         }
         return builder.build();
     }
@@ -159,8 +152,7 @@ public class BatteryState {
         private long mTimestamp;
         private int mConsumerType;
         private boolean mIsFullChargeCycleStart;
-        private String mBatteryInformation;
-        private String mBatteryInformationDebug;
+        private byte[] mBatteryInformation;
 
         /** Sets the uid. */
         @CanIgnoreReturnValue
@@ -204,20 +196,13 @@ public class BatteryState {
             return this;
         }
 
-        /** Sets the battery information. */
+        /** Sets the serialized battery information. */
         @CanIgnoreReturnValue
-        public Builder setBatteryInformation(String batteryInformation) {
+        public Builder setBatteryInformation(byte[] batteryInformation) {
             this.mBatteryInformation = batteryInformation;
             return this;
         }
 
-        /** Sets the battery information debug string. */
-        @CanIgnoreReturnValue
-        public Builder setBatteryInformationDebug(String batteryInformationDebug) {
-            this.mBatteryInformationDebug = batteryInformationDebug;
-            return this;
-        }
-
         /** Builds the BatteryState. */
         public BatteryState build() {
             return new BatteryState(
@@ -227,8 +212,7 @@ public class BatteryState {
                     mTimestamp,
                     mConsumerType,
                     mIsFullChargeCycleStart,
-                    mBatteryInformation,
-                    mBatteryInformationDebug);
+                    mBatteryInformation);
         }
 
         private Builder() {}
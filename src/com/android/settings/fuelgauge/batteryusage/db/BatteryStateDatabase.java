@@ -16,12 +16,20 @@
 
 package com.android.settings.fuelgauge.batteryusage.db;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Base64;
 import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 /** A {@link RoomDatabase} for battery usage states history. */
 @Database(
@@ -31,12 +39,97 @@ import androidx.room.RoomDatabase;
             BatteryState.class,
             BatteryUsageSlotEntity.class
         },
-        version = 1)
+        version = 3)
 public abstract class BatteryStateDatabase extends RoomDatabase {
     private static final String TAG = "BatteryStateDatabase";
 
     private static BatteryStateDatabase sBatteryStateDatabase;
 
+    /**
+     * Stores {@link BatteryState#batteryInformation} as serialized bytes instead of a Base64
+     * encoded string, and drops the batteryInformationDebug column.
+     */
+    @VisibleForTesting
+    static final Migration MIGRATION_1_2 =
+            new Migration(1, 2) {
+                @Override
+                public void migrate(@NonNull SupportSQLiteDatabase database) {
+                    database.execSQL(
+                            "CREATE TABLE IF NOT EXISTS `BatteryState_new` ("
+                                    + "`mId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                                    + "`uid` INTEGER NOT NULL, "
+                                    + "`userId` INTEGER NOT NULL, "
+                                    + "`packageName` TEXT, "
+                                    + "`timestamp` INTEGER NOT NULL, "
+                                    + "`consumerType` INTEGER NOT NULL, "
+                                    + "`isFullChargeCycleStart` INTEGER NOT NULL, "
+                                    + "`batteryInformation` BLOB)");
+                    // SQLite can't decode Base64, so the rows are copied one by one.
+                    try (Cursor cursor =
+                            database.query(
+                                    "SELECT mId, uid, userId, packageName, timestamp,"
+                                            + " consumerType, isFullChargeCycleStart,"
+                                            + " batteryInformation FROM BatteryState")) {
+                        final ContentValues values = new ContentValues();
+                        while (cursor.moveToNext()) {
+                            final byte[] batteryInformation;
+                            try {
+                                batteryInformation =
+                                        cursor.isNull(7)
+                                                ? null
+                                                : Base64.decode(
+                                                        cursor.getString(7), Base64.DEFAULT);
+                            } catch (IllegalArgumentException e) {
+                                Log.w(TAG, "drop undecodable battery state " + cursor.getLong(0));
+                                continue;
+                            }
+                            values.clear();
+                            values.put("mId", cursor.getLong(0));
+                            values.put("uid", cursor.getLong(1));
+                            values.put("userId", cursor.getLong(2));
+                            values.put("packageName", cursor.getString(3));
+                            values.put("timestamp", cursor.getLong(4));
+                            values.put("consumerType", cursor.getInt(5));
+                            values.put("isFullChargeCycleStart", cursor.getInt(6));
+                            values.put("batteryInformation", batteryInformation);
+                            database.insert(
+                                    "BatteryState_new", SQLiteDatabase.CONFLICT_REPLACE, values);
+                        }
+                    }
+                    database.execSQL("DROP TABLE BatteryState");
+                    database.execSQL("ALTER TABLE BatteryState_new RENAME TO BatteryState");
+                }
+            };
+
+    /** Adds the indices used by the timestamp and user ID filters of the DAO queries. */
+    @VisibleForTesting
+    static final Migration MIGRATION_2_3 =
+            new Migration(2, 3) {
+                @Override
+                public void migrate(@NonNull SupportSQLiteDatabase database) {
+                    database.execSQL(
+                            "CREATE INDEX IF NOT EXISTS `index_BatteryState_timestamp`"
+                                    + " ON `BatteryState` (`timestamp`)");
+                    database.execSQL(
+                            "CREATE INDEX IF NOT EXISTS `index_AppUsageEventEntity_timestamp`"
+                                    + " ON `AppUsageEventEntity` (`timestamp`)");
+                    database.execSQL(
+                            "CREATE INDEX IF NOT EXISTS"
+                                    + " `index_AppUsageEventEntity_userId_timestamp`"
+                                    + " ON `AppUsageEventEntity` (`userId`, `timestamp`)");
+                    database.execSQL(
+                            "CREATE INDEX IF NOT EXISTS `index_BatteryEventEntity_timestamp`"
+                                    + " ON `BatteryEventEntity` (`timestamp`)");
+                    database.execSQL(
+                            "CREATE INDEX IF NOT EXISTS"
+                                    + " `index_BatteryEventEntity_batteryEventType_timestamp`"
+                                    + " ON `BatteryEventEntity` (`batteryEventType`, `timestamp`)");
+                    database.execSQL(
+                            "CREATE INDEX IF NOT EXISTS `index_BatteryUsageSlotEntity_timestamp`"
+                                    + " ON `BatteryUsageSlotEntity` (`timestamp`)");
+                }
+            };
+
     /** Provides DAO for app usage event table. */
     public abstract AppUsageEventDao appUsageEventDao();
 
@@ -56,6 +149,7 @@ public abstract class BatteryStateDatabase extends RoomDatabase {
                     Room.databaseBuilder(context, BatteryStateDatabase.class, "battery-usage-db-v9")
                             // Allows accessing data in the main thread for dumping bugreport.
                             .allowMainThreadQueries()
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
                             .fallbackToDestructiveMigration()
                             .build();
             Log.d(TAG, "initialize battery states database");
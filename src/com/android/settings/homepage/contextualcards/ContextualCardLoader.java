@@ -26,6 +26,7 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 
@@ -40,11 +41,14 @@ import com.android.settingslib.utils.AsyncLoaderCompat;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeoutException;
 
 public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>> {
 
@@ -55,7 +59,15 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
     static final int CARD_CONTENT_LOADER_ID = 1;
 
     private static final String TAG = "ContextualCardLoader";
-    private static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
+    @VisibleForTesting
+    static final long ELIGIBILITY_CHECKER_TIMEOUT_MS = 400;
+    private static final long ELIGIBILITY_EXECUTOR_KEEP_ALIVE_SECONDS = 30;
+    // Checkers mostly block on slice provider binder calls, so the pool is sized to run a full
+    // page of candidates at once rather than by the number of cores.
+    @VisibleForTesting
+    static final int ELIGIBILITY_EXECUTOR_THREADS = 8;
+
+    private static ExecutorService sEligibilityExecutor;
 
     private final ContentObserver mObserver = new ContentObserver(
             new Handler(Looper.getMainLooper())) {
@@ -187,42 +199,131 @@ public class ContextualCardLoader extends AsyncLoaderCompat<List<ContextualCard>
             return candidates;
         }
 
-        final ExecutorService executor = Executors.newFixedThreadPool(candidates.size());
-        final List<ContextualCard> cards = new ArrayList<>();
-        List<Future<ContextualCard>> eligibleCards = new ArrayList<>();
-
-        final List<EligibleCardChecker> checkers = candidates.stream()
-                .map(card -> new EligibleCardChecker(mContext, card))
-                .collect(Collectors.toList());
-        try {
-            eligibleCards = executor.invokeAll(checkers, ELIGIBILITY_CHECKER_TIMEOUT_MS,
-                    TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Log.w(TAG, "Failed to get eligible states for all cards", e);
+        final ExecutorService executor = getEligibilityExecutor();
+        final List<EligibilityTask> tasks = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            final ContextualCard card = candidates.get(i);
+            final EligibilityTask task = new EligibilityTask(
+                    new EligibleCardChecker(mContext, card), card, i);
+            tasks.add(task);
+            executor.execute(task);
         }
-        executor.shutdown();
 
         // Collect future and eligible cards
-        for (int i = 0; i < eligibleCards.size(); i++) {
-            final Future<ContextualCard> cardFuture = eligibleCards.get(i);
-            if (cardFuture.isCancelled()) {
-                Log.w(TAG, "Timeout getting eligible state for card: "
-                        + candidates.get(i).getSliceUri());
-                continue;
-            }
-
+        final List<ContextualCard> cards = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            final EligibilityTask task = tasks.get(i);
             try {
-                final ContextualCard card = cardFuture.get();
+                final ContextualCard card = getWithinDeadline(task);
                 if (card != null) {
                     cards.add(card);
                 }
-            } catch (Exception e) {
+            } catch (TimeoutException e) {
+                task.cancel(true /* mayInterruptIfRunning */);
+                Log.w(TAG, "Timeout getting eligible state for card: "
+                        + task.mCard.getSliceUri() + ", " + task.getStateForLog());
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Failed to get eligible states for all cards", e);
+                for (int j = i; j < tasks.size(); j++) {
+                    tasks.get(j).cancel(true /* mayInterruptIfRunning */);
+                }
+                Thread.currentThread().interrupt();
+                return new ArrayList<>();
+            } catch (ExecutionException | CancellationException e) {
                 Log.w(TAG, "Failed to get eligible state for card", e);
             }
         }
         return cards;
     }
 
+    /**
+     * Waits for {@code task} until its own deadline, which moves out if the task starts running
+     * while being waited on.
+     */
+    private static ContextualCard getWithinDeadline(EligibilityTask task)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        while (true) {
+            final long remaining = task.getDeadline() - SystemClock.elapsedRealtime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            try {
+                return task.get(remaining, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Re-check, the task may have started and got a later deadline.
+            }
+        }
+    }
+
+    /**
+     * @return the executor shared by all loads to check card eligibility. It runs sticky and
+     * higher ranked cards first, and lets its threads exit when the homepage is idle.
+     */
+    @VisibleForTesting
+    static synchronized ExecutorService getEligibilityExecutor() {
+        if (sEligibilityExecutor == null) {
+            final int poolSize = ELIGIBILITY_EXECUTOR_THREADS;
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    ELIGIBILITY_EXECUTOR_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new PriorityBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            sEligibilityExecutor = executor;
+        }
+        return sEligibilityExecutor;
+    }
+
+    /**
+     * Runs an {@link EligibleCardChecker}, ordered in the shared queue by card priority. A task
+     * gets {@link #ELIGIBILITY_CHECKER_TIMEOUT_MS} to start and, once started, the same time to
+     * finish, so a card isn't timed out because others ahead of it were slow.
+     */
+    @VisibleForTesting
+    static class EligibilityTask extends FutureTask<ContextualCard>
+            implements Comparable<EligibilityTask> {
+
+        final ContextualCard mCard;
+        private final int mOrder;
+        private final long mQueuedTime;
+        private volatile long mStartTime;
+
+        EligibilityTask(EligibleCardChecker checker, ContextualCard card, int order) {
+            super(checker);
+            mCard = card;
+            mOrder = order;
+            mQueuedTime = SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void run() {
+            mStartTime = SystemClock.elapsedRealtime();
+            super.run();
+        }
+
+        @Override
+        public int compareTo(EligibilityTask other) {
+            final boolean sticky = mCard.getCategory() == STICKY_VALUE;
+            final boolean otherSticky = other.mCard.getCategory() == STICKY_VALUE;
+            if (sticky != otherSticky) {
+                return sticky ? -1 : 1;
+            }
+            final int byScore = Double.compare(other.mCard.getRankingScore(),
+                    mCard.getRankingScore());
+            return byScore != 0 ? byScore : Integer.compare(mOrder, other.mOrder);
+        }
+
+        long getDeadline() {
+            final long startTime = mStartTime;
+            return (startTime == 0 ? mQueuedTime : startTime) + ELIGIBILITY_CHECKER_TIMEOUT_MS;
+        }
+
+        String getStateForLog() {
+            final long now = SystemClock.elapsedRealtime();
+            return mStartTime == 0
+                    ? "still queued after " + (now - mQueuedTime) + "ms"
+                    : "running for " + (now - mStartTime) + "ms";
+        }
+    }
+
     private boolean isLargeCard(ContextualCard card) {
         return card.getSliceUri().equals(BLUETOOTH_DEVICES_SLICE_URI);
     }
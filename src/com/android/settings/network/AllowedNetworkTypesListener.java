@@ -17,6 +17,7 @@
 package com.android.settings.network;
 
 import android.content.Context;
+import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyCallback;
 import android.telephony.TelephonyManager;
 import android.util.Log;
@@ -39,6 +40,7 @@ public class AllowedNetworkTypesListener extends TelephonyCallback implements
     @VisibleForTesting
     OnAllowedNetworkTypesListener mListener;
     private Executor mExecutor;
+    private int mSubId = SubscriptionManager.INVALID_SUBSCRIPTION_ID;
 
     public AllowedNetworkTypesListener(Executor executor) {
         super();
@@ -55,6 +57,7 @@ public class AllowedNetworkTypesListener extends TelephonyCallback implements
      * @param subId the subscription id.
      */
     public void register(Context context, int subId) {
+        mSubId = subId;
         TelephonyManager telephonyManager = context.getSystemService(
                 TelephonyManager.class).createForSubscriptionId(subId);
         telephonyManager.registerTelephonyCallback(mExecutor, this);
@@ -77,6 +80,9 @@ public class AllowedNetworkTypesListener extends TelephonyCallback implements
                 && reason != TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_CARRIER) {
             return;
         }
+        // Listeners read the new types, which may still be cached until the repository's own
+        // callback runs.
+        MobileNetworkRepository.invalidateTelephonyState(mSubId);
         if (mListener != null) {
             mListener.onAllowedNetworkTypesChanged();
             Log.d(LOG_TAG, "onAllowedNetworkChanged: " + newAllowedNetworkType);
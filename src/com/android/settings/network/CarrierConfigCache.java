@@ -32,13 +32,23 @@ import android.util.Log;
 
 import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import com.android.settingslib.utils.ThreadUtils;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This is a singleton class for Carrier-Configuration cache.
+ *
+ * Configs are fetched under a lock striped by subscription ID, so a slow fetch for one
+ * subscription doesn't block lookups of the others. The configs of the active subscriptions are
+ * prefetched in the background when the cache is created and when subscriptions change.
  */
 public class CarrierConfigCache {
     private static final String TAG = "CarrConfCache";
@@ -62,9 +72,29 @@ public class CarrierConfigCache {
     @VisibleForTesting
     protected static final Map<Integer, PersistableBundle> sCarrierConfigs =
             new ConcurrentHashMap<>();
+    /**
+     * Partial Carrier-Configurations fetched by {@link #getConfigForSubId(int, String...)}, only
+     * holding the keys requested so far. Replaced, never modified, when more keys are fetched.
+     */
+    @VisibleForTesting
+    protected static final Map<Integer, PersistableBundle> sProjectedCarrierConfigs =
+            new ConcurrentHashMap<>();
     @VisibleForTesting
     protected static CarrierConfigManager sCarrierConfigManager;
 
+    private static final int LOCK_STRIPES = 8;
+    private static final Object[] sSubIdLocks = new Object[LOCK_STRIPES];
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            sSubIdLocks[i] = new Object();
+        }
+    }
+    /** Incremented when all configs are invalidated, to drop configs fetched before. */
+    private static final AtomicLong sGeneration = new AtomicLong();
+
+    @Nullable
+    private static SubscriptionManager sSubscriptionManager;
+
     /**
      * Static method to create a singleton class for Carrier-Configuration cache.
      *
@@ -88,6 +118,22 @@ public class CarrierConfigCache {
             sCarrierConfigManager = appContext.getSystemService(CarrierConfigManager.class);
             appContext.registerReceiver(receiver, new IntentFilter(ACTION_CARRIER_CONFIG_CHANGED),
                     Context.RECEIVER_EXPORTED/*UNAUDITED*/);
+            sSubscriptionManager = appContext.getSystemService(SubscriptionManager.class);
+            if (sCarrierConfigManager != null && sSubscriptionManager != null) {
+                final CarrierConfigCache instance = sInstance;
+                ThreadUtils.postOnMainThread(() -> new SubscriptionsChangeListener(appContext,
+                        new SubscriptionsChangeListener.SubscriptionsChangeListenerClient() {
+                            @Override
+                            public void onAirplaneModeChanged(boolean airplaneModeEnabled) {
+                            }
+
+                            @Override
+                            public void onSubscriptionsChanged() {
+                                instance.prefetchActiveSubscriptions();
+                            }
+                        }).start());
+                sInstance.prefetchActiveSubscriptions();
+            }
             return sInstance;
         }
     }
@@ -140,20 +186,99 @@ public class CarrierConfigCache {
     public PersistableBundle getConfigForSubId(int subId) {
         if (sCarrierConfigManager == null) return null;
 
-        synchronized (sCarrierConfigs) {
+        final PersistableBundle cachedConfig = sCarrierConfigs.get(subId);
+        if (cachedConfig != null) {
+            return cachedConfig;
+        }
+        synchronized (getSubIdLock(subId)) {
             if (sCarrierConfigs.containsKey(subId)) {
                 return sCarrierConfigs.get(subId);
             }
+            final long generation = sGeneration.get();
             final PersistableBundle config = sCarrierConfigManager.getConfigForSubId(subId);
             if (config == null) {
                 Log.e(TAG, "Could not get carrier config, subId:" + subId);
                 return null;
             }
-            sCarrierConfigs.put(subId, config);
+            if (generation == sGeneration.get()) {
+                sCarrierConfigs.put(subId, config);
+            }
             return config;
         }
     }
 
+    /**
+     * Gets the given keys of the Carrier-Configuration for a particular subscription. When the
+     * whole config isn't cached yet, only the given keys are fetched, which is cheaper.
+     *
+     * @param subId the subscription ID, normally obtained from {@link SubscriptionManager}.
+     * @param keys the config keys needed by the caller.
+     * @return A {@link PersistableBundle} containing at least the given keys, or {@code null} if
+     * the config can't be obtained.
+     */
+    public PersistableBundle getConfigForSubId(int subId, @NonNull String... keys) {
+        if (sCarrierConfigManager == null) return null;
+
+        final PersistableBundle cachedConfig = sCarrierConfigs.get(subId);
+        if (cachedConfig != null) {
+            return cachedConfig;
+        }
+        PersistableBundle projectedConfig = sProjectedCarrierConfigs.get(subId);
+        if (containsAllKeys(projectedConfig, keys)) {
+            return projectedConfig;
+        }
+        synchronized (getSubIdLock(subId)) {
+            if (sCarrierConfigs.containsKey(subId)) {
+                return sCarrierConfigs.get(subId);
+            }
+            projectedConfig = sProjectedCarrierConfigs.get(subId);
+            final List<String> missingKeys = new ArrayList<>(keys.length);
+            for (String key : keys) {
+                if (projectedConfig == null || !projectedConfig.containsKey(key)) {
+                    missingKeys.add(key);
+                }
+            }
+            if (missingKeys.isEmpty()) {
+                return projectedConfig;
+            }
+            final long generation = sGeneration.get();
+            final PersistableBundle config = sCarrierConfigManager.getConfigForSubId(subId,
+                    missingKeys.toArray(new String[0]));
+            if (config == null) {
+                Log.e(TAG, "Could not get carrier config keys, subId:" + subId);
+                return null;
+            }
+            final PersistableBundle merged = projectedConfig != null
+                    ? new PersistableBundle(projectedConfig) : new PersistableBundle();
+            merged.putAll(config);
+            if (generation == sGeneration.get()) {
+                sProjectedCarrierConfigs.put(subId, merged);
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Fetches the Carrier-Configurations of all active subscriptions in the background, so that
+     * mobile network pages find them cached.
+     */
+    public void prefetchActiveSubscriptions() {
+        if (sCarrierConfigManager == null || sSubscriptionManager == null) return;
+
+        ThreadUtils.postOnBackgroundThread(() -> {
+            final int[] subIds;
+            try {
+                subIds = sSubscriptionManager.getActiveSubscriptionIdList();
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Could not get active subscriptions", e);
+                return;
+            }
+            for (int subId : subIds) {
+                getConfigForSubId(subId);
+            }
+        });
+    }
+
     /**
      * Gets the Carrier-Configuration for the default subscription.
      *
@@ -171,13 +296,33 @@ public class CarrierConfigCache {
             if (!ACTION_CARRIER_CONFIG_CHANGED.equals(intent.getAction())) return;
 
             final int subId = intent.getIntExtra(EXTRA_SUBSCRIPTION_INDEX, INVALID_SUBSCRIPTION_ID);
-            synchronized (sCarrierConfigs) {
-                if (SubscriptionManager.isValidSubscriptionId(subId)) {
+            if (SubscriptionManager.isValidSubscriptionId(subId)) {
+                // Waits for an ongoing fetch of the same subscription, which may be stale.
+                synchronized (getSubIdLock(subId)) {
                     sCarrierConfigs.remove(subId);
-                } else {
-                    sCarrierConfigs.clear();
+                    sProjectedCarrierConfigs.remove(subId);
                 }
+            } else {
+                sGeneration.incrementAndGet();
+                sCarrierConfigs.clear();
+                sProjectedCarrierConfigs.clear();
+            }
+        }
+    }
+
+    private static Object getSubIdLock(int subId) {
+        return sSubIdLocks[Math.floorMod(subId, LOCK_STRIPES)];
+    }
+
+    private static boolean containsAllKeys(@Nullable PersistableBundle config, String[] keys) {
+        if (config == null) {
+            return false;
+        }
+        for (String key : keys) {
+            if (!config.containsKey(key)) {
+                return false;
             }
         }
+        return true;
     }
 }
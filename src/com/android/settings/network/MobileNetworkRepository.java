@@ -25,6 +25,7 @@ import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
 import android.provider.Settings;
+import android.telephony.ServiceState;
 import android.telephony.SubscriptionInfo;
 import android.telephony.SubscriptionManager;
 import android.telephony.TelephonyCallback;
@@ -38,6 +39,7 @@ import android.util.Log;
 
 import androidx.annotation.GuardedBy;
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LifecycleOwner;
 
 import com.android.internal.telephony.flags.Flags;
@@ -57,9 +59,12 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptionsChangedListener {
@@ -74,6 +79,14 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
             new ArrayMap<>();
     private static Map<Integer, UiccInfoEntity> sCacheUiccInfoEntityMap = new ArrayMap<>();
     private static Collection<MobileNetworkCallback> sCallbacks = new CopyOnWriteArrayList<>();
+    /**
+     * Telephony state of the subscriptions having registered telephony callbacks, dropped when
+     * the callbacks or observers report a change.
+     */
+    private static final Map<Integer, TelephonyState> sTelephonyStates =
+            new ConcurrentHashMap<>();
+    private static final Set<Integer> sWatchedSubIds = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong sTelephonyStateGeneration = new AtomicLong();
     private static final Object sInstanceLock = new Object();
     @GuardedBy("sInstanceLock")
     private static MobileNetworkRepository sInstance;
@@ -189,10 +202,12 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
             if (tm == null) {
                 return;
             }
+            invalidateTelephonyState(mRegSubId);
             sExecutor.execute(() -> {
                 insertMobileNetworkInfo(mContext, mRegSubId, tm);
             });
-            boolean isDataRoamingEnabled = tm.isDataRoamingEnabled();
+            boolean isDataRoamingEnabled =
+                    getTelephonyState(mContext, mRegSubId).isDataRoamingEnabled();
             for (MobileNetworkCallback callback : sCallbacks) {
                 callback.onDataRoamingChanged(mRegSubId, isDataRoamingEnabled);
             }
@@ -235,6 +250,7 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
         MobileDataContentObserver dataContentObserver = new MobileDataContentObserver(
                 new Handler(Looper.getMainLooper()));
         dataContentObserver.setOnMobileDataChangedListener(() -> {
+            invalidateTelephonyState(subId);
             sExecutor.execute(() -> {
                 insertMobileNetworkInfo(mContext, subId,
                         getTelephonyManagerBySubId(mContext, subId));
@@ -249,13 +265,14 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
             return;
         }
         PhoneCallStateTelephonyCallback
-                telephonyCallback = new PhoneCallStateTelephonyCallback();
+                telephonyCallback = new PhoneCallStateTelephonyCallback(subId);
         TelephonyManager telephonyManager = mContext.getSystemService(
                 TelephonyManager.class).createForSubscriptionId(subId);
         telephonyManager.registerTelephonyCallback(mContext.getMainExecutor(),
                 telephonyCallback);
         mTelephonyCallbackMap.put(subId, telephonyCallback);
         mTelephonyManagerMap.put(subId, telephonyManager);
+        watchTelephonyState(subId);
     }
 
     private TelephonyManager getTelephonyManagerBySubId(Context context, int subId) {
@@ -288,6 +305,7 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
                 }
             }
         }
+        unwatchTelephonyState(subId);
         if (mDataContentObserverMap.containsKey(subId)) {
             mDataContentObserverMap.get(subId).unRegister(mContext);
             mDataContentObserverMap.remove(subId);
@@ -313,6 +331,8 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
             });
             mTelephonyCallbackMap.clear();
             mTelephonyManagerMap.clear();
+            sWatchedSubIds.clear();
+            invalidateAllTelephonyStates();
             if (DEBUG) {
                 Log.d(TAG, "removeRegister done");
             }
@@ -321,6 +341,7 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
 
     public void updateEntity() {
         // Check the latest state after back to the UI.
+        invalidateAllTelephonyStates();
         if (sCacheSubscriptionInfoEntityMap != null || !sCacheSubscriptionInfoEntityMap.isEmpty()) {
             sExecutor.execute(() -> {
                 onSubscriptionsChanged();
@@ -684,6 +705,7 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
 
     @Override
     public void onSubscriptionsChanged() {
+        invalidateAllTelephonyStates();
         insertAvailableSubInfoToEntity(
                 SubscriptionUtil.getSelectableSubscriptionInfoList(mContext));
     }
@@ -763,8 +785,79 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
                 Settings.Global.AIRPLANE_MODE_ON, 0) != 0;
     }
 
-    private class PhoneCallStateTelephonyCallback extends TelephonyCallback implements
-            TelephonyCallback.CallStateListener {
+    /**
+     * Returns the telephony state of a subscription, shared by all the controllers of a page.
+     *
+     * While the subscription has registered telephony callbacks, see
+     * {@link #addRegister(LifecycleOwner, MobileNetworkCallback, int)}, each value is queried
+     * once and kept until a callback or observer reports a change. Otherwise the returned state
+     * isn't kept and queries the values again.
+     */
+    @NonNull
+    public static TelephonyState getTelephonyState(@NonNull Context context, int subId) {
+        final TelephonyState cachedState = sTelephonyStates.get(subId);
+        if (cachedState != null) {
+            return cachedState;
+        }
+        final long generation = sTelephonyStateGeneration.get();
+        final TelephonyState state = new TelephonyState(
+                context.getSystemService(TelephonyManager.class).createForSubscriptionId(subId));
+        if (!sWatchedSubIds.contains(subId)) {
+            return state;
+        }
+        synchronized (sTelephonyStates) {
+            if (generation != sTelephonyStateGeneration.get()) {
+                return state;
+            }
+            final TelephonyState previous = sTelephonyStates.putIfAbsent(subId, state);
+            return previous != null ? previous : state;
+        }
+    }
+
+    /**
+     * Drops the telephony state of a subscription, e.g. after changing one of its values.
+     */
+    public static void invalidateTelephonyState(int subId) {
+        synchronized (sTelephonyStates) {
+            sTelephonyStateGeneration.incrementAndGet();
+            sTelephonyStates.remove(subId);
+        }
+    }
+
+    /**
+     * Starts keeping the telephony state of a subscription, once a telephony callback reports
+     * its changes.
+     */
+    @VisibleForTesting
+    static void watchTelephonyState(int subId) {
+        invalidateTelephonyState(subId);
+        sWatchedSubIds.add(subId);
+    }
+
+    @VisibleForTesting
+    static void unwatchTelephonyState(int subId) {
+        sWatchedSubIds.remove(subId);
+        invalidateTelephonyState(subId);
+    }
+
+    private static void invalidateAllTelephonyStates() {
+        synchronized (sTelephonyStates) {
+            sTelephonyStateGeneration.incrementAndGet();
+            sTelephonyStates.clear();
+        }
+    }
+
+    @VisibleForTesting
+    static class PhoneCallStateTelephonyCallback extends TelephonyCallback implements
+            TelephonyCallback.CallStateListener, TelephonyCallback.AllowedNetworkTypesListener,
+            TelephonyCallback.DataEnabledListener, TelephonyCallback.RadioPowerStateListener,
+            TelephonyCallback.ServiceStateListener {
+
+        private final int mSubId;
+
+        PhoneCallStateTelephonyCallback(int subId) {
+            mSubId = subId;
+        }
 
         @Override
         public void onCallStateChanged(int state) {
@@ -772,6 +865,110 @@ public class MobileNetworkRepository extends SubscriptionManager.OnSubscriptions
                 callback.onCallStateChanged(state);
             }
         }
+
+        @Override
+        public void onAllowedNetworkTypesChanged(int reason, long allowedNetworkType) {
+            invalidateTelephonyState(mSubId);
+        }
+
+        @Override
+        public void onDataEnabledChanged(boolean enabled, int reason) {
+            invalidateTelephonyState(mSubId);
+        }
+
+        @Override
+        public void onRadioPowerStateChanged(int state) {
+            // The phone type and radio access family may change with the radio.
+            invalidateTelephonyState(mSubId);
+        }
+
+        @Override
+        public void onServiceStateChanged(@NonNull ServiceState serviceState) {
+            // The phone type may change with the radio technology.
+            invalidateTelephonyState(mSubId);
+        }
+    }
+
+    /**
+     * Telephony values of a subscription, each queried on first use.
+     */
+    public static class TelephonyState {
+        private final TelephonyManager mTelephonyManager;
+        private Integer mPhoneType;
+        private Long mAllowedNetworkTypes;
+        private Long mCarrierAllowedNetworkTypes;
+        private Long mSupportedRadioAccessFamily;
+        private Boolean mDataEnabled;
+        private Boolean mDataRoamingEnabled;
+
+        @VisibleForTesting
+        TelephonyState(TelephonyManager telephonyManager) {
+            mTelephonyManager = telephonyManager;
+        }
+
+        /**
+         * @see TelephonyManager#getPhoneType()
+         */
+        public synchronized int getPhoneType() {
+            if (mPhoneType == null) {
+                mPhoneType = mTelephonyManager.getPhoneType();
+            }
+            return mPhoneType;
+        }
+
+        /**
+         * @return the network types allowed by the user, see
+         * {@link TelephonyManager#getAllowedNetworkTypesForReason(int)}.
+         */
+        public synchronized long getAllowedNetworkTypes() {
+            if (mAllowedNetworkTypes == null) {
+                mAllowedNetworkTypes = mTelephonyManager.getAllowedNetworkTypesForReason(
+                        TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER);
+            }
+            return mAllowedNetworkTypes;
+        }
+
+        /**
+         * @return the network types allowed by the carrier, see
+         * {@link TelephonyManager#getAllowedNetworkTypesForReason(int)}.
+         */
+        public synchronized long getCarrierAllowedNetworkTypes() {
+            if (mCarrierAllowedNetworkTypes == null) {
+                mCarrierAllowedNetworkTypes = mTelephonyManager.getAllowedNetworkTypesForReason(
+                        TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_CARRIER);
+            }
+            return mCarrierAllowedNetworkTypes;
+        }
+
+        /**
+         * @see TelephonyManager#getSupportedRadioAccessFamily()
+         */
+        public synchronized long getSupportedRadioAccessFamily() {
+            if (mSupportedRadioAccessFamily == null) {
+                mSupportedRadioAccessFamily = mTelephonyManager.getSupportedRadioAccessFamily();
+            }
+            return mSupportedRadioAccessFamily;
+        }
+
+        /**
+         * @see TelephonyManager#isDataEnabled()
+         */
+        public synchronized boolean isDataEnabled() {
+            if (mDataEnabled == null) {
+                mDataEnabled = mTelephonyManager.isDataEnabled();
+            }
+            return mDataEnabled;
+        }
+
+        /**
+         * @see TelephonyManager#isDataRoamingEnabled()
+         */
+        public synchronized boolean isDataRoamingEnabled() {
+            if (mDataRoamingEnabled == null) {
+                mDataRoamingEnabled = mTelephonyManager.isDataRoamingEnabled();
+            }
+            return mDataRoamingEnabled;
+        }
     }
 
     /**
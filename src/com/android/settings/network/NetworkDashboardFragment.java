@@ -60,6 +60,13 @@ public class NetworkDashboardFragment extends DashboardFragment implements
 
         use(AirplaneModePreferenceController.class).setFragment(this);
         use(NetworkProviderCallsSmsController.class).init(this);
+        // Mobile network pages are usually opened from here, have their carrier configs ready.
+        CarrierConfigCache.getInstance(context).prefetchActiveSubscriptions();
+    }
+
+    @Override
+    protected boolean isAsyncPreferenceStateEnabled() {
+        return true;
     }
 
     @Override
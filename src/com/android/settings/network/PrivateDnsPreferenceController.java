@@ -56,7 +56,8 @@ import java.net.InetAddress;
 import java.util.List;
 
 public class PrivateDnsPreferenceController extends BasePreferenceController
-        implements PreferenceControllerMixin, LifecycleObserver, OnStart, OnStop {
+        implements PreferenceControllerMixin, LifecycleObserver, OnStart, OnStop,
+        BasePreferenceController.BackgroundSafe {
     private static final String KEY_PRIVATE_DNS_SETTINGS = "private_dns_settings";
 
     private static final Uri[] SETTINGS_URIS = new Uri[]{
@@ -70,6 +71,8 @@ public class PrivateDnsPreferenceController extends BasePreferenceController
     private final ConnectivityManager mConnectivityManager;
     private LinkProperties mLatestLinkProperties;
     private Preference mPreference;
+    // Admin enforcement loaded off the main thread, used by the next updateState() only.
+    private volatile Boolean mLoadedManagedByAdmin;
 
     public PrivateDnsPreferenceController(Context context) {
         super(context, KEY_PRIVATE_DNS_SETTINGS);
@@ -142,10 +145,20 @@ public class PrivateDnsPreferenceController extends BasePreferenceController
         return "";
     }
 
+    @Override
+    public void loadStateInBackground() {
+        // Checking the enforcing admin goes through UserManager and DevicePolicyManager.
+        mLoadedManagedByAdmin = isManagedByAdmin();
+    }
+
     @Override
     public void updateState(Preference preference) {
         super.updateState(preference);
-        preference.setEnabled(!isManagedByAdmin());
+        final Boolean loadedManagedByAdmin = mLoadedManagedByAdmin;
+        mLoadedManagedByAdmin = null;
+        final boolean managedByAdmin = loadedManagedByAdmin != null
+                ? loadedManagedByAdmin : isManagedByAdmin();
+        preference.setEnabled(!managedByAdmin);
     }
 
     private boolean isManagedByAdmin() {
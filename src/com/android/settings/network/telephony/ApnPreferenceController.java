@@ -46,6 +46,12 @@ import com.android.settingslib.core.lifecycle.events.OnStop;
 public class ApnPreferenceController extends TelephonyBasePreferenceController implements
         LifecycleObserver, OnStart, OnStop {
 
+    @VisibleForTesting
+    static final String[] CARRIER_CONFIG_KEYS = {
+            CarrierConfigManager.KEY_SHOW_APN_SETTING_CDMA_BOOL,
+            CarrierConfigManager.KEY_APN_EXPAND_BOOL,
+            CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL};
+
     @VisibleForTesting
     CarrierConfigCache mCarrierConfigCache;
     private Preference mPreference;
@@ -59,7 +65,8 @@ public class ApnPreferenceController extends TelephonyBasePreferenceController i
 
     @Override
     public int getAvailabilityStatus(int subId) {
-        final PersistableBundle carrierConfig = mCarrierConfigCache.getConfigForSubId(subId);
+        final PersistableBundle carrierConfig =
+                mCarrierConfigCache.getConfigForSubId(subId, CARRIER_CONFIG_KEYS);
         final boolean isCdmaApn = MobileNetworkUtils.isCdmaOptions(mContext, subId)
                 && carrierConfig != null
                 && carrierConfig.getBoolean(CarrierConfigManager.KEY_SHOW_APN_SETTING_CDMA_BOOL);
@@ -35,6 +35,11 @@ import com.android.settings.network.CarrierConfigCache;
  */
 public class CarrierPreferenceController extends TelephonyBasePreferenceController {
 
+    @VisibleForTesting
+    static final String[] CARRIER_CONFIG_KEYS = {
+            CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL,
+            CarrierConfigManager.KEY_CARRIER_SETTINGS_ACTIVITY_COMPONENT_NAME_STRING};
+
     @VisibleForTesting
     CarrierConfigCache mCarrierConfigCache;
 
@@ -49,7 +54,8 @@ public class CarrierPreferenceController extends TelephonyBasePreferenceControll
 
     @Override
     public int getAvailabilityStatus(int subId) {
-        final PersistableBundle carrierConfig = mCarrierConfigCache.getConfigForSubId(subId);
+        final PersistableBundle carrierConfig =
+                mCarrierConfigCache.getConfigForSubId(subId, CARRIER_CONFIG_KEYS);
 
         // Return available if it is in CDMA or GSM mode, and the flag is on
         return carrierConfig != null
@@ -74,7 +80,8 @@ public class CarrierPreferenceController extends TelephonyBasePreferenceControll
     }
 
     private Intent getCarrierSettingsActivityIntent(int subId) {
-        final PersistableBundle config = mCarrierConfigCache.getConfigForSubId(subId);
+        final PersistableBundle config =
+                mCarrierConfigCache.getConfigForSubId(subId, CARRIER_CONFIG_KEYS);
         final ComponentName cn = ComponentName.unflattenFromString(
                 config == null ? "" : config.getString(
                         CarrierConfigManager.KEY_CARRIER_SETTINGS_ACTIVITY_COMPONENT_NAME_STRING,
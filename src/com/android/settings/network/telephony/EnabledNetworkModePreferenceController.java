@@ -46,6 +46,7 @@ import com.android.internal.telephony.flags.Flags;
 import com.android.settings.R;
 import com.android.settings.network.AllowedNetworkTypesListener;
 import com.android.settings.network.CarrierConfigCache;
+import com.android.settings.network.MobileNetworkRepository;
 import com.android.settings.network.SubscriptionsChangeListener;
 import com.android.settings.network.telephony.NetworkModeChoicesProto.EnabledNetworks;
 import com.android.settings.network.telephony.NetworkModeChoicesProto.UiOptions;
@@ -250,12 +251,12 @@ public class EnabledNetworkModePreferenceController extends
             mTelephonyManager = mTelephonyManager.createForSubscriptionId(mSubId);
             final PersistableBundle carrierConfig = mCarrierConfigCache.getConfigForSubId(mSubId);
             final boolean flagHidePrefer3gItem = Flags.hidePrefer3gItem();
+            final MobileNetworkRepository.TelephonyState telephonyState = getTelephonyState();
             mAllowed5gNetworkType = checkSupportedRadioBitmask(
-                    mTelephonyManager.getAllowedNetworkTypesForReason(
-                            TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_CARRIER),
+                    telephonyState.getCarrierAllowedNetworkTypes(),
                     TelephonyManager.NETWORK_TYPE_BITMASK_NR);
             mSupported5gRadioAccessFamily = checkSupportedRadioBitmask(
-                    mTelephonyManager.getSupportedRadioAccessFamily(),
+                    telephonyState.getSupportedRadioAccessFamily(),
                     TelephonyManager.NETWORK_TYPE_BITMASK_NR);
             if (carrierConfig != null) {
                 mIsGlobalCdma = mTelephonyManager.isLteCdmaEvdoGsmWcdmaEnabled()
@@ -460,10 +461,13 @@ public class EnabledNetworkModePreferenceController extends
             });
         }
 
+        private MobileNetworkRepository.TelephonyState getTelephonyState() {
+            return MobileNetworkRepository.getTelephonyState(mContext, mSubId);
+        }
+
         private int getPreferredNetworkMode() {
             int networkMode = MobileNetworkUtils.getNetworkTypeFromRaf(
-                    (int) mTelephonyManager.getAllowedNetworkTypesForReason(
-                            TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER));
+                    (int) getTelephonyState().getAllowedNetworkTypes());
             if (!showNrList()) {
                 Log.d(LOG_TAG, "Network mode :" + networkMode + " reduce NR");
                 networkMode = reduceNrToLteNetworkType(networkMode);
@@ -474,7 +478,7 @@ public class EnabledNetworkModePreferenceController extends
 
         private EnabledNetworks getEnabledNetworkType() {
             EnabledNetworks enabledNetworkType = EnabledNetworks.ENABLED_NETWORKS_UNKNOWN;
-            final int phoneType = mTelephonyManager.getPhoneType();
+            final int phoneType = getTelephonyState().getPhoneType();
 
             if (phoneType == TelephonyManager.PHONE_TYPE_CDMA) {
                 final int lteForced = android.provider.Settings.Global.getInt(
@@ -651,7 +655,7 @@ public class EnabledNetworkModePreferenceController extends
                     } else {
                         setSelectedEntry(
                                 TelephonyManagerConstants.NETWORK_MODE_LTE_CDMA_EVDO_GSM_WCDMA);
-                        if (mTelephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA
+                        if (getTelephonyState().getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA
                                 || mIsGlobalCdma
                                 || MobileNetworkUtils.isWorldMode(mContext, mSubId)) {
                             setSummary(R.string.network_global);
@@ -691,7 +695,7 @@ public class EnabledNetworkModePreferenceController extends
                 case TelephonyManagerConstants.NETWORK_MODE_NR_LTE_CDMA_EVDO_GSM_WCDMA:
                     setSelectedEntry(
                             TelephonyManagerConstants.NETWORK_MODE_NR_LTE_CDMA_EVDO_GSM_WCDMA);
-                    if (mTelephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA
+                    if (getTelephonyState().getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA
                             || mIsGlobalCdma
                             || MobileNetworkUtils.isWorldMode(mContext, mSubId)) {
                         setSummary(R.string.network_global);
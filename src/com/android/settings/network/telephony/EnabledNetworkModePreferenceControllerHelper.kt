@@ -19,6 +19,7 @@ package com.android.settings.network.telephony
 import android.telephony.TelephonyManager
 import androidx.lifecycle.LifecycleOwner
 import androidx.lifecycle.lifecycleScope
+import com.android.settings.network.MobileNetworkRepository
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.launch
 
@@ -31,5 +32,6 @@ fun TelephonyManager.setAllowedNetworkTypes(
             TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER,
             MobileNetworkUtils.getRafFromNetworkType(newPreferredNetworkMode),
         )
+        MobileNetworkRepository.invalidateTelephonyState(subscriptionId)
     }
 }
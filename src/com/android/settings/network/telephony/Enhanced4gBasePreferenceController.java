@@ -36,6 +36,7 @@ import androidx.preference.TwoStatePreference;
 import com.android.internal.telephony.flags.Flags;
 import com.android.internal.telephony.util.ArrayUtils;
 import com.android.settings.R;
+import com.android.settings.network.MobileNetworkRepository;
 import com.android.settings.network.ims.VolteQueryImsState;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnStart;
@@ -248,7 +249,10 @@ public class Enhanced4gBasePreferenceController extends TelephonyTogglePreferenc
             mTelephonyManager.registerTelephonyCallback(
                     mContext.getMainExecutor(), mTelephonyCallback);
 
-            final long supportedRadioBitmask = mTelephonyManager.getSupportedRadioAccessFamily();
+            final long supportedRadioBitmask = SubscriptionManager.isValidSubscriptionId(subId)
+                    ? MobileNetworkRepository.getTelephonyState(context, subId)
+                            .getSupportedRadioAccessFamily()
+                    : mTelephonyManager.getSupportedRadioAccessFamily();
             mHas5gCapability =
                     (supportedRadioBitmask & TelephonyManager.NETWORK_TYPE_BITMASK_NR) > 0;
         }
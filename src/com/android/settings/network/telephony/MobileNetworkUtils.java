@@ -77,6 +77,7 @@ import com.android.settings.Utils;
 import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.SubSettingLauncher;
 import com.android.settings.network.CarrierConfigCache;
+import com.android.settings.network.MobileNetworkRepository;
 import com.android.settings.network.SubscriptionUtil;
 import com.android.settings.network.ims.WifiCallingQueryImsState;
 import com.android.settings.network.telephony.TelephonyConstants.TelephonyManagerConstants;
@@ -395,16 +396,15 @@ public class MobileNetworkUtils {
             return true;
         }
 
-        final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
-                .createForSubscriptionId(subId);
-        if (telephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA) {
+        final MobileNetworkRepository.TelephonyState telephonyState =
+                MobileNetworkRepository.getTelephonyState(context, subId);
+        if (telephonyState.getPhoneType() == TelephonyManager.PHONE_TYPE_CDMA) {
             return true;
         }
 
         if (isWorldMode(context, subId)) {
             final int settingsNetworkMode = getNetworkTypeFromRaf(
-                    (int) telephonyManager.getAllowedNetworkTypesForReason(
-                            TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER));
+                    (int) telephonyState.getAllowedNetworkTypes());
 
             if (settingsNetworkMode == NETWORK_MODE_LTE_GSM_WCDMA
                     || settingsNetworkMode == NETWORK_MODE_LTE_CDMA_EVDO
@@ -431,11 +431,8 @@ public class MobileNetworkUtils {
         if (isGsmBasicOptions(context, subId)) {
             return true;
         }
-        final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
-                .createForSubscriptionId(subId);
-        final int networkMode = getNetworkTypeFromRaf(
-                (int) telephonyManager.getAllowedNetworkTypesForReason(
-                        TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER));
+        final int networkMode = getNetworkTypeFromRaf((int) MobileNetworkRepository
+                .getTelephonyState(context, subId).getAllowedNetworkTypes());
         if (isWorldMode(context, subId)) {
             if (networkMode == NETWORK_MODE_LTE_CDMA_EVDO
                     || networkMode == NETWORK_MODE_LTE_GSM_WCDMA
@@ -460,9 +457,8 @@ public class MobileNetworkUtils {
             return true;
         }
 
-        final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
-                .createForSubscriptionId(subId);
-        if (telephonyManager.getPhoneType() == TelephonyManager.PHONE_TYPE_GSM) {
+        if (MobileNetworkRepository.getTelephonyState(context, subId).getPhoneType()
+                == TelephonyManager.PHONE_TYPE_GSM) {
             return true;
         }
 
@@ -501,9 +497,8 @@ public class MobileNetworkUtils {
         }
 
         if (isWorldMode(context, subId)) {
-            final int networkMode = getNetworkTypeFromRaf(
-                    (int) telephonyManager.getAllowedNetworkTypesForReason(
-                            TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER));
+            final int networkMode = getNetworkTypeFromRaf((int) MobileNetworkRepository
+                    .getTelephonyState(context, subId).getAllowedNetworkTypes());
             if (networkMode == TelephonyManagerConstants.NETWORK_MODE_LTE_CDMA_EVDO) {
                 return false;
             }
@@ -614,11 +609,8 @@ public class MobileNetworkUtils {
         if (!isWorldMode(context, subId)) {
             return false;
         }
-        final TelephonyManager telephonyManager = context.getSystemService(TelephonyManager.class)
-                .createForSubscriptionId(subId);
-        final int networkMode = getNetworkTypeFromRaf(
-                (int) telephonyManager.getAllowedNetworkTypesForReason(
-                        TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER));
+        final int networkMode = getNetworkTypeFromRaf((int) MobileNetworkRepository
+                .getTelephonyState(context, subId).getAllowedNetworkTypes());
         if (networkMode == TelephonyManagerConstants.NETWORK_MODE_LTE_TDSCDMA_GSM
                 || networkMode == TelephonyManagerConstants.NETWORK_MODE_LTE_TDSCDMA_GSM_WCDMA
                 || networkMode == TelephonyManagerConstants.NETWORK_MODE_LTE_TDSCDMA
@@ -33,6 +33,7 @@ import androidx.preference.TwoStatePreference;
 
 import com.android.internal.telephony.flags.Flags;
 import com.android.internal.telephony.util.ArrayUtils;
+import com.android.settings.network.MobileNetworkRepository;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnStart;
 import com.android.settingslib.core.lifecycle.events.OnStop;
@@ -83,7 +84,10 @@ public class NrAdvancedCallingPreferenceController extends TelephonyTogglePrefer
         if (SubscriptionManager.isValidSubscriptionId(subId)) {
             mTelephonyManager = mTelephonyManager.createForSubscriptionId(subId);
         }
-        long supportedRadioBitmask = mTelephonyManager.getSupportedRadioAccessFamily();
+        long supportedRadioBitmask = SubscriptionManager.isValidSubscriptionId(subId)
+                ? MobileNetworkRepository.getTelephonyState(mContext, subId)
+                        .getSupportedRadioAccessFamily()
+                : mTelephonyManager.getSupportedRadioAccessFamily();
         mHas5gCapability =
                 (supportedRadioBitmask & TelephonyManager.NETWORK_TYPE_BITMASK_NR) > 0;
 
@@ -25,6 +25,7 @@ import androidx.preference.Preference;
 
 import com.android.settings.R;
 import com.android.settings.core.BasePreferenceController;
+import com.android.settings.network.MobileNetworkRepository;
 import com.android.settings.utils.AnnotationSpan;
 import com.android.settingslib.HelpUtils;
 
@@ -85,6 +86,8 @@ public class NrDisabledInDsdsFooterPreferenceController extends BasePreferenceCo
             return CONDITIONALLY_UNAVAILABLE;
         }
 
+        final MobileNetworkRepository.TelephonyState telephonyState =
+                MobileNetworkRepository.getTelephonyState(mContext, mSubId);
         final TelephonyManager teleManager = ((TelephonyManager)
                 mContext.getSystemService(Context.TELEPHONY_SERVICE))
                 .createForSubscriptionId(mSubId);
@@ -94,7 +97,8 @@ public class NrDisabledInDsdsFooterPreferenceController extends BasePreferenceCo
         final int activeSubCount = activeSubIdList == null ? 0 : activeSubIdList.length;
         // Show the footer only when DSDS is enabled, and mobile data is enabled on this SIM, and
         // 5G is supported on this device.
-        if (teleManager.isDataEnabled() && activeSubCount >= 2 && is5GSupportedByRadio(teleManager)
+        if (telephonyState.isDataEnabled() && activeSubCount >= 2
+                && is5GSupportedByRadio(telephonyState)
                 && !teleManager.canConnectTo5GInDsdsMode()) {
             return AVAILABLE;
         } else {
@@ -102,7 +106,8 @@ public class NrDisabledInDsdsFooterPreferenceController extends BasePreferenceCo
         }
     }
 
-    private boolean is5GSupportedByRadio(TelephonyManager tm) {
-        return (tm.getSupportedRadioAccessFamily() & TelephonyManager.NETWORK_TYPE_BITMASK_NR) > 0;
+    private boolean is5GSupportedByRadio(MobileNetworkRepository.TelephonyState telephonyState) {
+        return (telephonyState.getSupportedRadioAccessFamily()
+                & TelephonyManager.NETWORK_TYPE_BITMASK_NR) > 0;
     }
 }
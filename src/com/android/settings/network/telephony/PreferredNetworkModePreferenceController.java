@@ -28,6 +28,7 @@ import androidx.preference.Preference;
 
 import com.android.settings.R;
 import com.android.settings.network.CarrierConfigCache;
+import com.android.settings.network.MobileNetworkRepository;
 import com.android.settings.network.telephony.TelephonyConstants.TelephonyManagerConstants;
 
 /**
@@ -84,6 +85,7 @@ public class PreferredNetworkModePreferenceController extends TelephonyBasePrefe
         mTelephonyManager.setAllowedNetworkTypesForReason(
                 TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER,
                 MobileNetworkUtils.getRafFromNetworkType(newPreferredNetworkMode));
+        MobileNetworkRepository.invalidateTelephonyState(mSubId);
 
             final ListPreference listPreference = (ListPreference) preference;
             listPreference.setSummary(getPreferredNetworkModeSummaryResId(newPreferredNetworkMode));
@@ -30,6 +30,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceScreen;
 import androidx.preference.SwitchPreferenceCompat;
 
+import com.android.settings.network.MobileNetworkRepository;
 import com.android.settingslib.core.lifecycle.LifecycleObserver;
 import com.android.settingslib.core.lifecycle.events.OnStart;
 import com.android.settingslib.core.lifecycle.events.OnStop;
@@ -72,7 +73,10 @@ public class Smart5gPreferenceController extends TelephonyTogglePreferenceContro
         if (SubscriptionManager.isValidSubscriptionId(subId)) {
             mTelephonyManager = mTelephonyManager.createForSubscriptionId(subId);
         }
-        long supportedRadioBitmask = mTelephonyManager.getSupportedRadioAccessFamily();
+        long supportedRadioBitmask = SubscriptionManager.isValidSubscriptionId(subId)
+                ? MobileNetworkRepository.getTelephonyState(mContext, subId)
+                        .getSupportedRadioAccessFamily()
+                : mTelephonyManager.getSupportedRadioAccessFamily();
         mHas5gCapability =
                 (supportedRadioBitmask & TelephonyManager.NETWORK_TYPE_BITMASK_NR) > 0;
 
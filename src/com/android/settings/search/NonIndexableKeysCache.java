@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.app.admin.DevicePolicyManager;
+import android.bluetooth.BluetoothAdapter;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.net.wifi.WifiManager;
+import android.nfc.NfcAdapter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.UserManager;
+import android.provider.DeviceConfig;
+import android.provider.Settings;
+import android.telephony.CarrierConfigManager;
+import android.telephony.SubscriptionManager;
+import android.telephony.TelephonyManager;
+import android.text.format.DateUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the non-indexable keys of each search index provider so that repeated queries from the
+ * search app don't re-instantiate every controller.
+ *
+ * The whole cache is dropped on the signals that commonly change a provider's answer: package,
+ * user restriction, configuration and locale changes, SIM, carrier config and subscription
+ * changes, device policy changes, radio state changes, DeviceConfig updates and a few settings
+ * that gate whole screens. Providers can depend on other state too, so each entry also expires
+ * {@link #ENTRY_TTL_MS} after it was computed.
+ */
+public class NonIndexableKeysCache {
+
+    private static final String REASON_PACKAGE = "package";
+    private static final String REASON_USER_RESTRICTIONS = "user_restrictions";
+    private static final String REASON_CONFIGURATION = "configuration";
+    private static final String REASON_SETTINGS = "settings";
+    private static final String REASON_TELEPHONY = "telephony";
+    private static final String REASON_DEVICE_POLICY = "device_policy";
+    private static final String REASON_RADIO = "radio";
+    private static final String REASON_DEVICE_CONFIG = "device_config";
+
+    @VisibleForTesting
+    static final long ENTRY_TTL_MS = DateUtils.MINUTE_IN_MILLIS;
+
+    /**
+     * Settings that show or hide whole screens. Observing entire settings tables would drop the
+     * cache on every brightness or volume change.
+     */
+    private static final Uri[] OBSERVED_SETTINGS = {
+            Settings.Global.getUriFor(Settings.Global.DEVELOPMENT_SETTINGS_ENABLED),
+            Settings.Global.getUriFor(Settings.Global.DEVICE_PROVISIONED),
+            Settings.Global.getUriFor(Settings.Global.AIRPLANE_MODE_ON),
+            Settings.Secure.getUriFor(Settings.Secure.USER_SETUP_COMPLETE),
+    };
+
+    private static NonIndexableKeysCache sInstance;
+
+    private final Map<String, Entry> mEntries = new ArrayMap<>();
+    private long mGeneration;
+    private long mHits;
+    private long mMisses;
+    private String mLastInvalidationReason;
+    private long mLastInvalidationTime;
+
+    public static synchronized NonIndexableKeysCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new NonIndexableKeysCache();
+            sInstance.registerInvalidationSignals(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    NonIndexableKeysCache() {
+    }
+
+    /**
+     * @return a copy of the cached keys of {@code provider}, or {@code null} if not cached or
+     * expired.
+     */
+    @Nullable
+    public synchronized List<String> get(String provider) {
+        final Entry entry = mEntries.get(provider);
+        if (entry == null || SystemClock.elapsedRealtime() - entry.mTime >= ENTRY_TTL_MS) {
+            mEntries.remove(provider);
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        return new ArrayList<>(entry.mKeys);
+    }
+
+    /**
+     * @return a token to pass to {@link #put(String, List, long)}, taken before computing keys.
+     */
+    public synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Caches {@code keys} for {@code provider}, unless the cache was invalidated since
+     * {@code generation} was obtained, in which case the keys may already be stale.
+     */
+    public synchronized void put(String provider, List<String> keys, long generation) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mEntries.put(provider, new Entry(new ArrayList<>(keys), SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Drops every cached entry.
+     */
+    public synchronized void invalidate(String reason) {
+        mEntries.clear();
+        mGeneration++;
+        mLastInvalidationReason = reason;
+        mLastInvalidationTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return cache size, hit/miss counters and the last invalidation, for dumpsys.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        obj.put("providers", mEntries.size());
+        obj.put("hits", mHits);
+        obj.put("misses", mMisses);
+        obj.put("generation", mGeneration);
+        obj.put("lastInvalidationReason", mLastInvalidationReason);
+        obj.put("lastInvalidationTime", mLastInvalidationTime);
+        return obj;
+    }
+
+    private void registerInvalidationSignals(Context context) {
+        final IntentFilter packageFilter = new IntentFilter();
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        packageFilter.addDataScheme("package");
+        context.registerReceiver(new InvalidationReceiver(REASON_PACKAGE), packageFilter);
+
+        context.registerReceiver(new InvalidationReceiver(REASON_USER_RESTRICTIONS),
+                new IntentFilter(UserManager.ACTION_USER_RESTRICTIONS_CHANGED));
+
+        final IntentFilter configurationFilter = new IntentFilter();
+        configurationFilter.addAction(Intent.ACTION_CONFIGURATION_CHANGED);
+        configurationFilter.addAction(Intent.ACTION_LOCALE_CHANGED);
+        context.registerReceiver(new InvalidationReceiver(REASON_CONFIGURATION),
+                configurationFilter);
+
+        final IntentFilter telephonyFilter = new IntentFilter();
+        telephonyFilter.addAction(TelephonyManager.ACTION_SIM_CARD_STATE_CHANGED);
+        telephonyFilter.addAction(TelephonyManager.ACTION_SIM_APPLICATION_STATE_CHANGED);
+        telephonyFilter.addAction(CarrierConfigManager.ACTION_CARRIER_CONFIG_CHANGED);
+        telephonyFilter.addAction(SubscriptionManager.ACTION_DEFAULT_SUBSCRIPTION_CHANGED);
+        context.registerReceiver(new InvalidationReceiver(REASON_TELEPHONY), telephonyFilter);
+
+        context.registerReceiver(new InvalidationReceiver(REASON_DEVICE_POLICY),
+                new IntentFilter(DevicePolicyManager.ACTION_DEVICE_POLICY_MANAGER_STATE_CHANGED));
+
+        final IntentFilter radioFilter = new IntentFilter();
+        radioFilter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+        radioFilter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        radioFilter.addAction(NfcAdapter.ACTION_ADAPTER_STATE_CHANGED);
+        context.registerReceiver(new InvalidationReceiver(REASON_RADIO), radioFilter);
+
+        final Handler handler = new Handler(Looper.getMainLooper());
+        final ContentObserver settingsObserver = new InvalidationObserver(handler, REASON_SETTINGS);
+        for (Uri uri : OBSERVED_SETTINGS) {
+            context.getContentResolver().registerContentObserver(uri,
+                    false /* notifyForDescendants */, settingsObserver);
+        }
+        context.getContentResolver().registerContentObserver(DeviceConfig.CONTENT_URI,
+                true /* notifyForDescendants */,
+                new InvalidationObserver(handler, REASON_DEVICE_CONFIG));
+    }
+
+    private static class Entry {
+        final List<String> mKeys;
+        final long mTime;
+
+        Entry(List<String> keys, long time) {
+            mKeys = keys;
+            mTime = time;
+        }
+    }
+
+    private class InvalidationObserver extends ContentObserver {
+        private final String mReason;
+
+        InvalidationObserver(Handler handler, String reason) {
+            super(handler);
+            mReason = reason;
+        }
+
+        @Override
+        public void onChange(boolean selfChange, @Nullable Uri uri) {
+            invalidate(mReason + (uri != null ? ":" + uri : ""));
+        }
+    }
+
+    private class InvalidationReceiver extends BroadcastReceiver {
+        private final String mReason;
+
+        InvalidationReceiver(String reason) {
+            mReason = reason;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            invalidate(mReason + ":" + intent.getAction());
+        }
+    }
+}
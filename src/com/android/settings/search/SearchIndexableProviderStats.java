@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import android.util.ArrayMap;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-provider timing of the queries served by {@link SettingsSearchIndexablesProvider}, kept
+ * for the lifetime of the process and reported by {@link com.android.settings.SettingsDumpService}
+ * so that the providers dominating search indexing can be identified.
+ */
+public class SearchIndexableProviderStats {
+
+    private static final String TAG = "SearchProviderStats";
+
+    public static final String QUERY_XML_RESOURCES = "xml_resources";
+    public static final String QUERY_RAW_DATA = "raw_data";
+    public static final String QUERY_NON_INDEXABLE_KEYS = "non_indexable_keys";
+    public static final String QUERY_DYNAMIC_RAW_DATA = "dynamic_raw_data";
+
+    /**
+     * A single provider call taking longer than this is logged as it happens.
+     */
+    @VisibleForTesting
+    static final long SLOW_PROVIDER_THRESHOLD_MILLIS = 500;
+
+    /**
+     * Number of providers listed per query type in the dump.
+     */
+    @VisibleForTesting
+    static final int TOP_N = 10;
+
+    /**
+     * Upper bounds (exclusive) of the histogram buckets. A last bucket holds everything slower.
+     */
+    private static final long[] BUCKET_UPPER_BOUNDS_MILLIS = {10, 50, 100, 500, 1000, 5000};
+
+    private static SearchIndexableProviderStats sInstance;
+
+    private final Map<String, QueryStats> mQueryStats = new ArrayMap<>();
+
+    public static synchronized SearchIndexableProviderStats getInstance() {
+        if (sInstance == null) {
+            sInstance = new SearchIndexableProviderStats();
+        }
+        return sInstance;
+    }
+
+    @VisibleForTesting
+    SearchIndexableProviderStats() {
+    }
+
+    /**
+     * Records one call of {@code queryType} on {@code provider}.
+     *
+     * @param itemCount number of items (resources, raws or keys) the provider returned
+     */
+    public synchronized void record(String queryType, String provider, long durationMillis,
+            int itemCount) {
+        QueryStats queryStats = mQueryStats.get(queryType);
+        if (queryStats == null) {
+            queryStats = new QueryStats();
+            mQueryStats.put(queryType, queryStats);
+        }
+        queryStats.record(provider, durationMillis, itemCount);
+        if (durationMillis >= SLOW_PROVIDER_THRESHOLD_MILLIS) {
+            Log.w(TAG, "Slow " + queryType + " in " + provider + ": " + durationMillis + "ms");
+        }
+    }
+
+    /**
+     * @return per query type histogram, totals and the {@link #TOP_N} slowest providers.
+     */
+    public synchronized JSONObject dump() throws JSONException {
+        final JSONObject obj = new JSONObject();
+        for (Map.Entry<String, QueryStats> entry : mQueryStats.entrySet()) {
+            obj.put(entry.getKey(), entry.getValue().dump());
+        }
+        return obj;
+    }
+
+    @VisibleForTesting
+    synchronized List<String> getSlowestProviders(String queryType) {
+        final QueryStats queryStats = mQueryStats.get(queryType);
+        final List<String> providers = new ArrayList<>();
+        if (queryStats != null) {
+            for (Map.Entry<String, ProviderStats> entry : queryStats.getSlowest()) {
+                providers.add(entry.getKey());
+            }
+        }
+        return providers;
+    }
+
+    @VisibleForTesting
+    synchronized void reset() {
+        mQueryStats.clear();
+    }
+
+    private static class QueryStats {
+        private final long[] mHistogram = new long[BUCKET_UPPER_BOUNDS_MILLIS.length + 1];
+        private final Map<String, ProviderStats> mProviders = new ArrayMap<>();
+
+        void record(String provider, long durationMillis, int itemCount) {
+            int bucket = 0;
+            while (bucket < BUCKET_UPPER_BOUNDS_MILLIS.length
+                    && durationMillis >= BUCKET_UPPER_BOUNDS_MILLIS[bucket]) {
+                bucket++;
+            }
+            mHistogram[bucket]++;
+
+            ProviderStats providerStats = mProviders.get(provider);
+            if (providerStats == null) {
+                providerStats = new ProviderStats();
+                mProviders.put(provider, providerStats);
+            }
+            providerStats.mCount++;
+            providerStats.mTotalMillis += durationMillis;
+            providerStats.mMaxMillis = Math.max(providerStats.mMaxMillis, durationMillis);
+            providerStats.mLastMillis = durationMillis;
+            providerStats.mTotalItems += itemCount;
+        }
+
+        List<Map.Entry<String, ProviderStats>> getSlowest() {
+            final List<Map.Entry<String, ProviderStats>> entries =
+                    new ArrayList<>(mProviders.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue().mMaxMillis, a.getValue().mMaxMillis));
+            return entries.subList(0, Math.min(TOP_N, entries.size()));
+        }
+
+        JSONObject dump() throws JSONException {
+            final JSONObject obj = new JSONObject();
+            final JSONObject histogram = new JSONObject();
+            long totalMillis = 0;
+            long calls = 0;
+            for (int i = 0; i < mHistogram.length; i++) {
+                final String label = i < BUCKET_UPPER_BOUNDS_MILLIS.length
+                        ? "<" + BUCKET_UPPER_BOUNDS_MILLIS[i] + "ms"
+                        : ">=" + BUCKET_UPPER_BOUNDS_MILLIS[i - 1] + "ms";
+                histogram.put(label, mHistogram[i]);
+                calls += mHistogram[i];
+            }
+            for (ProviderStats providerStats : mProviders.values()) {
+                totalMillis += providerStats.mTotalMillis;
+            }
+            obj.put("calls", calls);
+            obj.put("totalMillis", totalMillis);
+            obj.put("histogram", histogram);
+
+            final JSONArray slowest = new JSONArray();
+            for (Map.Entry<String, ProviderStats> entry : getSlowest()) {
+                final ProviderStats providerStats = entry.getValue();
+                final JSONObject provider = new JSONObject();
+                provider.put("provider", entry.getKey());
+                provider.put("count", providerStats.mCount);
+                provider.put("maxMillis", providerStats.mMaxMillis);
+                provider.put("lastMillis", providerStats.mLastMillis);
+                provider.put("totalMillis", providerStats.mTotalMillis);
+                provider.put("totalItems", providerStats.mTotalItems);
+                slowest.put(provider);
+            }
+            obj.put("slowest", slowest);
+            return obj;
+        }
+    }
+
+    private static class ProviderStats {
+        long mCount;
+        long mTotalMillis;
+        long mMaxMillis;
+        long mLastMillis;
+        long mTotalItems;
+    }
+}
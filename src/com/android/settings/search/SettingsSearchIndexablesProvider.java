@@ -17,19 +17,6 @@
 package com.android.settings.search;
 
 import static android.provider.SearchIndexablesContract.COLUMN_INDEX_NON_INDEXABLE_KEYS_KEY_VALUE;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_CLASS_NAME;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_ENTRIES;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_ICON_RESID;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_INTENT_ACTION;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_INTENT_TARGET_CLASS;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_INTENT_TARGET_PACKAGE;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_KEY;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_KEYWORDS;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_SCREEN_TITLE;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_SUMMARY_OFF;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_SUMMARY_ON;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_TITLE;
-import static android.provider.SearchIndexablesContract.COLUMN_INDEX_RAW_USER_ID;
 import static android.provider.SearchIndexablesContract.COLUMN_INDEX_XML_RES_CLASS_NAME;
 import static android.provider.SearchIndexablesContract.COLUMN_INDEX_XML_RES_ICON_RESID;
 import static android.provider.SearchIndexablesContract.COLUMN_INDEX_XML_RES_INTENT_ACTION;
@@ -50,8 +37,10 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.provider.SearchIndexableResource;
 import android.provider.SearchIndexablesContract;
+import android.provider.SearchIndexablesContract.RawData;
 import android.provider.SearchIndexablesProvider;
 import android.provider.SettingsSlicesContract;
 import android.text.TextUtils;
@@ -81,6 +70,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
@@ -97,9 +92,13 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
     private static final Collection<String> INVALID_KEYS;
 
+    private static final long EXECUTOR_KEEP_ALIVE_SECONDS = 30;
+
     // Search enabled states for injection (key: category key, value: search enabled)
     private Map<String, Boolean> mSearchEnabledByCategoryKeyMap;
 
+    private ExecutorService mQueryExecutor;
+
     static {
         INVALID_KEYS = new ArraySet<>();
         INVALID_KEYS.add(null);
@@ -140,7 +139,7 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
         final List<SearchIndexableRaw> raws = getSearchIndexableRawFromProvider(getContext());
         for (SearchIndexableRaw val : raws) {
-            cursor.addRow(createIndexableRawColumnObjects(val));
+            addIndexableRawRow(cursor, val);
         }
 
         return cursor;
@@ -172,12 +171,38 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     @Override
     public Cursor queryDynamicRawData(String[] projection) {
         final Context context = getContext();
-        final List<SearchIndexableRaw> rawList = new ArrayList<>();
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
+        // Building dynamic raw data instantiates controllers and often hits binder services, so
+        // let providers run concurrently and write each one's rows as soon as it's done instead
+        // of holding every provider's list until the end.
+        final List<Future<List<SearchIndexableRaw>>> futures = new ArrayList<>(bundles.size());
+        final ExecutorService executor = getQueryExecutor();
         for (SearchIndexableData bundle : bundles) {
-            rawList.addAll(getDynamicSearchIndexableRawData(context, bundle));
+            futures.add(executor.submit(() -> getDynamicSearchIndexableRawData(context, bundle)));
+        }
+
+        final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
+        int index = 0;
+        for (SearchIndexableData bundle : bundles) {
+            final Future<List<SearchIndexableRaw>> future = futures.get(index++);
+            try {
+                for (SearchIndexableRaw raw : future.get()) {
+                    addIndexableRawRow(cursor, raw);
+                }
+            } catch (ExecutionException e) {
+                if (System.getProperty(SYSPROP_CRASH_ON_ERROR) != null) {
+                    throw new RuntimeException(e.getCause());
+                }
+                Log.e(TAG, "Error trying to get dynamic raw data from: "
+                        + bundle.getTargetClass().getName(), e.getCause());
+            } catch (InterruptedException e) {
+                Log.w(TAG, "Interrupted while getting dynamic raw data", e);
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true /* mayInterruptIfRunning */));
+                return cursor;
+            }
 
             // Refresh the search enabled state for indexing injection raw data
             final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
@@ -185,11 +210,8 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 refreshSearchEnabledState(context, (BaseSearchIndexProvider) provider);
             }
         }
-        rawList.addAll(getInjectionIndexableRawData(context));
-
-        final MatrixCursor cursor = new MatrixCursor(INDEXABLES_RAW_COLUMNS);
-        for (SearchIndexableRaw raw : rawList) {
-            cursor.addRow(createIndexableRawColumnObjects(raw));
+        for (SearchIndexableRaw raw : getInjectionIndexableRawData(context)) {
+            addIndexableRawRow(cursor, raw);
         }
 
         return cursor;
@@ -275,13 +297,23 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
         final List<String> nonIndexableKeys = new ArrayList<>();
+        final NonIndexableKeysCache cache = NonIndexableKeysCache.getInstance(context);
 
         for (SearchIndexableData bundle : bundles) {
-            final long startTime = System.currentTimeMillis();
+            final String providerName = bundle.getTargetClass().getName();
+            final List<String> cachedKeys = cache.get(providerName);
+            if (cachedKeys != null) {
+                nonIndexableKeys.addAll(cachedKeys);
+                continue;
+            }
+            final long generation = cache.getGeneration();
+            final long startTime = SystemClock.elapsedRealtime();
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
             List<String> providerNonIndexableKeys;
             try {
                 providerNonIndexableKeys = provider.getNonIndexableKeys(context);
+                recordProviderStats(SearchIndexableProviderStats.QUERY_NON_INDEXABLE_KEYS, bundle,
+                        startTime, providerNonIndexableKeys);
             } catch (Exception e) {
                 // Catch a generic crash. In the absence of the catch, the background thread will
                 // silently fail anyway, so we aren't losing information by catching the exception.
@@ -298,8 +330,9 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
             }
 
             if (providerNonIndexableKeys == null || providerNonIndexableKeys.isEmpty()) {
+                cache.put(providerName, new ArrayList<>(), generation);
                 if (DEBUG) {
-                    final long totalTime = System.currentTimeMillis() - startTime;
+                    final long totalTime = SystemClock.elapsedRealtime() - startTime;
                     Log.d(TAG, "No indexable, total time " + totalTime);
                 }
                 continue;
@@ -310,11 +343,12 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
             }
 
             if (DEBUG) {
-                final long totalTime = System.currentTimeMillis() - startTime;
+                final long totalTime = SystemClock.elapsedRealtime() - startTime;
                 Log.d(TAG, "Non-indexables " + providerNonIndexableKeys.size() + ", total time "
                         + totalTime);
             }
 
+            cache.put(providerName, providerNonIndexableKeys, generation);
             nonIndexableKeys.addAll(providerNonIndexableKeys);
         }
 
@@ -328,8 +362,11 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
         for (SearchIndexableData bundle : bundles) {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+            final long startTime = SystemClock.elapsedRealtime();
             final List<SearchIndexableResource> resList =
                     provider.getXmlResourcesToIndex(context, true);
+            recordProviderStats(SearchIndexableProviderStats.QUERY_XML_RESOURCES, bundle,
+                    startTime, resList);
 
             if (resList == null) {
                 continue;
@@ -354,8 +391,11 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
 
         for (SearchIndexableData bundle : bundles) {
             Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+            final long startTime = SystemClock.elapsedRealtime();
             final List<SearchIndexableRaw> providerRaws = provider.getRawDataToIndex(context,
                     true /* enabled */);
+            recordProviderStats(SearchIndexableProviderStats.QUERY_RAW_DATA, bundle, startTime,
+                    providerRaws);
 
             if (providerRaws == null) {
                 continue;
@@ -375,8 +415,11 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
     private List<SearchIndexableRaw> getDynamicSearchIndexableRawData(Context context,
             SearchIndexableData bundle) {
         final Indexable.SearchIndexProvider provider = bundle.getSearchIndexProvider();
+        final long startTime = SystemClock.elapsedRealtime();
         final List<SearchIndexableRaw> providerRaws =
                 provider.getDynamicRawDataToIndex(context, true /* enabled */);
+        recordProviderStats(SearchIndexableProviderStats.QUERY_DYNAMIC_RAW_DATA, bundle,
+                startTime, providerRaws);
         if (providerRaws == null) {
             return new ArrayList<>();
         }
@@ -457,21 +500,45 @@ public class SettingsSearchIndexablesProvider extends SearchIndexablesProvider {
         return tile.isSearchable();
     }
 
-    private static Object[] createIndexableRawColumnObjects(SearchIndexableRaw raw) {
-        final Object[] ref = new Object[INDEXABLES_RAW_COLUMNS.length];
-        ref[COLUMN_INDEX_RAW_TITLE] = raw.title;
-        ref[COLUMN_INDEX_RAW_SUMMARY_ON] = raw.summaryOn;
-        ref[COLUMN_INDEX_RAW_SUMMARY_OFF] = raw.summaryOff;
-        ref[COLUMN_INDEX_RAW_ENTRIES] = raw.entries;
-        ref[COLUMN_INDEX_RAW_KEYWORDS] = raw.keywords;
-        ref[COLUMN_INDEX_RAW_SCREEN_TITLE] = raw.screenTitle;
-        ref[COLUMN_INDEX_RAW_CLASS_NAME] = raw.className;
-        ref[COLUMN_INDEX_RAW_ICON_RESID] = raw.iconResId;
-        ref[COLUMN_INDEX_RAW_INTENT_ACTION] = raw.intentAction;
-        ref[COLUMN_INDEX_RAW_INTENT_TARGET_PACKAGE] = raw.intentTargetPackage;
-        ref[COLUMN_INDEX_RAW_INTENT_TARGET_CLASS] = raw.intentTargetClass;
-        ref[COLUMN_INDEX_RAW_KEY] = raw.key;
-        ref[COLUMN_INDEX_RAW_USER_ID] = raw.userId;
-        return ref;
+    private static void recordProviderStats(String queryType, SearchIndexableData bundle,
+            long startTime, @Nullable List<?> result) {
+        SearchIndexableProviderStats.getInstance().record(queryType,
+                bundle.getTargetClass().getName(), SystemClock.elapsedRealtime() - startTime,
+                result != null ? result.size() : 0);
+    }
+
+    /**
+     * Appends {@code raw} to {@code cursor} in place, without allocating an intermediate row.
+     */
+    private static void addIndexableRawRow(MatrixCursor cursor, SearchIndexableRaw raw) {
+        cursor.newRow()
+                .add(RawData.COLUMN_TITLE, raw.title)
+                .add(RawData.COLUMN_SUMMARY_ON, raw.summaryOn)
+                .add(RawData.COLUMN_SUMMARY_OFF, raw.summaryOff)
+                .add(RawData.COLUMN_ENTRIES, raw.entries)
+                .add(RawData.COLUMN_KEYWORDS, raw.keywords)
+                .add(RawData.COLUMN_SCREEN_TITLE, raw.screenTitle)
+                .add(RawData.COLUMN_CLASS_NAME, raw.className)
+                .add(RawData.COLUMN_ICON_RESID, raw.iconResId)
+                .add(RawData.COLUMN_INTENT_ACTION, raw.intentAction)
+                .add(RawData.COLUMN_INTENT_TARGET_PACKAGE, raw.intentTargetPackage)
+                .add(RawData.COLUMN_INTENT_TARGET_CLASS, raw.intentTargetClass)
+                .add(RawData.COLUMN_KEY, raw.key)
+                .add(RawData.COLUMN_USER_ID, raw.userId);
+    }
+
+    /**
+     * @return a pool bounded by the number of cores, whose threads exit when idle so that the
+     * provider doesn't hold on to them between indexing passes.
+     */
+    private synchronized ExecutorService getQueryExecutor() {
+        if (mQueryExecutor == null) {
+            final int poolSize = Math.max(1, Runtime.getRuntime().availableProcessors());
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                    EXECUTOR_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+            executor.allowCoreThreadTimeOut(true);
+            mQueryExecutor = executor;
+        }
+        return mQueryExecutor;
     }
 }
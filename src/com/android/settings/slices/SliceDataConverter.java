@@ -44,6 +44,7 @@ import android.util.Log;
 import android.view.accessibility.AccessibilityManager;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.settings.R;
@@ -65,9 +66,20 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Converts all Slice sources into {@link SliceData}.
@@ -79,6 +91,11 @@ class SliceDataConverter {
 
     private static final String TAG = "SliceDataConverter";
 
+    /**
+     * Fragment under which accessibility service slices are indexed.
+     */
+    static final String ACCESSIBILITY_FRAGMENT = AccessibilitySettings.class.getName();
+
     private final MetricsFeatureProvider mMetricsFeatureProvider;
     private Context mContext;
 
@@ -98,13 +115,40 @@ class SliceDataConverter {
      * {@link com.android.settings.core.BasePreferenceController}.
      */
     public List<SliceData> getSliceData() {
-        List<SliceData> sliceData = new ArrayList<>();
+        return getSliceData(null /* fragments */);
+    }
+
+    /**
+     * @return a list of {@link SliceData} hosted by {@code fragments}, collected the same way as
+     * {@link #getSliceData()}. A {@code null} set collects the slices of every fragment.
+     */
+    public List<SliceData> getSliceData(@Nullable Set<String> fragments) {
+        final List<SliceData> sliceData = new ArrayList<>();
+        getSliceData(fragments, sliceData::addAll);
+        return sliceData;
+    }
+
+    /**
+     * Collects the {@link SliceData} hosted by {@code fragments} the same way as
+     * {@link #getSliceData(Set)}, but parses fragments concurrently on a pool bounded by the
+     * number of available cores. Each fragment's slices are handed to {@code consumer} on the
+     * calling thread as soon as they are converted, in no particular order.
+     *
+     * @return the fragments whose slices could not be converted, and so were not handed to
+     * {@code consumer}.
+     */
+    public Set<String> getSliceData(@Nullable Set<String> fragments,
+            Consumer<List<SliceData>> consumer) {
+        final Map<Callable<List<SliceData>>, String> tasks = new LinkedHashMap<>();
 
         final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
                 .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
 
         for (SearchIndexableData bundle : bundles) {
             final String fragmentName = bundle.getTargetClass().getName();
+            if (fragments != null && !fragments.contains(fragmentName)) {
+                continue;
+            }
 
             final SearchIndexProvider provider = bundle.getSearchIndexProvider();
 
@@ -114,14 +158,95 @@ class SliceDataConverter {
                 continue;
             }
 
-            final List<SliceData> providerSliceData = getSliceDataFromProvider(provider,
-                    fragmentName);
-            sliceData.addAll(providerSliceData);
+            tasks.put(() -> getSliceDataFromProvider(provider, fragmentName), fragmentName);
         }
 
-        final List<SliceData> a11ySliceData = getAccessibilitySliceData();
-        sliceData.addAll(a11ySliceData);
-        return sliceData;
+        if (fragments == null || fragments.contains(ACCESSIBILITY_FRAGMENT)) {
+            tasks.put(this::getAccessibilitySliceData, ACCESSIBILITY_FRAGMENT);
+        }
+
+        final Set<String> failedFragments = new HashSet<>();
+        if (tasks.isEmpty()) {
+            return failedFragments;
+        }
+
+        final int poolSize = Math.min(tasks.size(),
+                Math.max(1, Runtime.getRuntime().availableProcessors()));
+        final ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        final CompletionService<List<SliceData>> completionService =
+                new ExecutorCompletionService<>(executor);
+        final Map<Future<List<SliceData>>, String> pending = new HashMap<>();
+        try {
+            for (Map.Entry<Callable<List<SliceData>>, String> task : tasks.entrySet()) {
+                pending.put(completionService.submit(task.getKey()), task.getValue());
+            }
+            while (!pending.isEmpty()) {
+                final Future<List<SliceData>> future = completionService.take();
+                final String fragmentName = pending.remove(future);
+                try {
+                    final List<SliceData> batch = future.get();
+                    if (!batch.isEmpty()) {
+                        consumer.accept(batch);
+                    }
+                } catch (ExecutionException e) {
+                    Log.w(TAG, "Failed to convert slice data of " + fragmentName, e);
+                    failedFragments.add(fragmentName);
+                }
+            }
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Interrupted while converting slice data", e);
+            Thread.currentThread().interrupt();
+            failedFragments.addAll(pending.values());
+        } finally {
+            executor.shutdownNow();
+        }
+        return failedFragments;
+    }
+
+    /**
+     * @return a map from fragment classname to a fingerprint of the fragment's own sources: the
+     * class of its {@link SearchIndexProvider} and the XML resources it indexes. Accessibility
+     * service slices are folded into the fingerprint of {@link AccessibilitySettings}.
+     *
+     * Fingerprints don't cover the build or the locale, which invalidate every fragment at once
+     * through {@link SlicesDatabaseHelper#getIndexKey()}. They are cheap to compute, as no
+     * resource is read.
+     */
+    public Map<String, String> getFingerprints() {
+        final Map<String, StringBuilder> fingerprints = new HashMap<>();
+
+        final Collection<SearchIndexableData> bundles = FeatureFactory.getFeatureFactory()
+                .getSearchFeatureProvider().getSearchIndexableResources().getProviderValues();
+
+        for (SearchIndexableData bundle : bundles) {
+            final SearchIndexProvider provider = bundle.getSearchIndexProvider();
+            if (provider == null) {
+                continue;
+            }
+            final StringBuilder fingerprint = fingerprints.computeIfAbsent(
+                    bundle.getTargetClass().getName(), name -> new StringBuilder());
+            fingerprint.append(provider.getClass().getName());
+            final List<SearchIndexableResource> resList =
+                    provider.getXmlResourcesToIndex(mContext, true /* enabled */);
+            if (resList == null) {
+                continue;
+            }
+            for (SearchIndexableResource resource : resList) {
+                fingerprint.append(',').append(Integer.toHexString(resource.xmlResId));
+            }
+        }
+
+        final StringBuilder a11yFingerprint = fingerprints.computeIfAbsent(
+                ACCESSIBILITY_FRAGMENT, name -> new StringBuilder());
+        for (AccessibilityServiceInfo a11yServiceInfo : getAccessibilityServiceInfoList()) {
+            a11yFingerprint.append(',').append(a11yServiceInfo.getId());
+        }
+
+        final Map<String, String> result = new HashMap<>();
+        for (Map.Entry<String, StringBuilder> entry : fingerprints.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toString());
+        }
+        return result;
     }
 
     private List<SliceData> getSliceDataFromProvider(SearchIndexProvider provider,
@@ -255,7 +380,7 @@ class SliceDataConverter {
 
         final String accessibilityControllerClassName =
                 AccessibilitySlicePreferenceController.class.getName();
-        final String fragmentClassName = AccessibilitySettings.class.getName();
+        final String fragmentClassName = ACCESSIBILITY_FRAGMENT;
         final CharSequence screenTitle = mContext.getText(R.string.accessibility_settings);
 
         final SliceData.Builder sliceDataBuilder = new SliceData.Builder()
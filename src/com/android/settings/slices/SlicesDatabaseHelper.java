@@ -16,15 +16,21 @@
 
 package com.android.settings.slices;
 
+import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Build;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * Defines the schema for the Slices database.
@@ -36,10 +42,17 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "slices_index.db";
     private static final String SHARED_PREFS_TAG = "slices_shared_prefs";
 
-    private static final int DATABASE_VERSION = 10;
+    private static final int DATABASE_VERSION = 11;
+
+    /**
+     * {@link FingerprintColumns#FRAGMENT} of the row holding {@link #getIndexKey()} as of the
+     * last index. No fragment classname is empty.
+     */
+    private static final String INDEX_KEY_FRAGMENT = "";
 
     public interface Tables {
         String TABLE_SLICES_INDEX = "slices_index";
+        String TABLE_SLICES_FINGERPRINTS = "slices_fingerprints";
     }
 
     public interface IndexColumns {
@@ -115,6 +128,19 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
         String USER_RESTRICTION = "user_restriction";
     }
 
+    public interface FingerprintColumns {
+        /**
+         * Primary key of the table. Classname of the fragment whose slices were indexed.
+         */
+        String FRAGMENT = "fragment";
+
+        /**
+         * Fingerprint of the sources the fragment's slices were built from, as computed by
+         * {@link SliceDataConverter#getFingerprints()}.
+         */
+        String FINGERPRINT = "fingerprint";
+    }
+
     private static final String CREATE_SLICES_TABLE =
             "CREATE VIRTUAL TABLE " + Tables.TABLE_SLICES_INDEX + " USING fts4"
                     + "("
@@ -148,6 +174,15 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
                     + " INTEGER DEFAULT 0 "
                     + ");";
 
+    private static final String CREATE_FINGERPRINTS_TABLE =
+            "CREATE TABLE " + Tables.TABLE_SLICES_FINGERPRINTS
+                    + "("
+                    + FingerprintColumns.FRAGMENT
+                    + " TEXT PRIMARY KEY, "
+                    + FingerprintColumns.FINGERPRINT
+                    + " TEXT"
+                    + ");";
+
     private final Context mContext;
 
     private static SlicesDatabaseHelper sSingleton;
@@ -183,17 +218,100 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
      * {@link#isNewIndexingState(Context)} will return {@code true}.
      */
     void reconstruct(SQLiteDatabase db) {
+        clearIndexedState();
+        dropTables(db);
+        createDatabases(db);
+    }
+
+    /**
+     * Un-marks the state of the data without touching the stored slices, such that a stale
+     * build or locale entry can't mark a partially updated index as valid.
+     */
+    void clearIndexedState() {
         mContext.getSharedPreferences(SHARED_PREFS_TAG, Context.MODE_PRIVATE)
                 .edit()
                 .clear()
                 .apply();
-        dropTables(db);
-        createDatabases(db);
+    }
+
+    /**
+     * @return the key of everything every fragment's slices depend on: the build and the locale.
+     */
+    String getIndexKey() {
+        return getBuildTag() + "/" + Locale.getDefault();
+    }
+
+    /**
+     * @return the {@link #getIndexKey()} the stored slices were indexed with, or {@code null} if
+     * none were.
+     */
+    @Nullable
+    String getIndexedKey(SQLiteDatabase db) {
+        try (Cursor cursor = db.query(Tables.TABLE_SLICES_FINGERPRINTS,
+                new String[]{FingerprintColumns.FINGERPRINT},
+                FingerprintColumns.FRAGMENT + " = ?", new String[]{INDEX_KEY_FRAGMENT},
+                null /* groupBy */, null /* having */, null /* orderBy */)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    /**
+     * Records the {@link #getIndexKey()} the stored slices were indexed with.
+     */
+    void setIndexedKey(SQLiteDatabase db, String indexKey) {
+        setFragmentFingerprint(db, INDEX_KEY_FRAGMENT, indexKey);
+    }
+
+    /**
+     * Deletes every indexed slice, fingerprint and the indexed key.
+     */
+    void deleteAllFragments(SQLiteDatabase db) {
+        db.delete(Tables.TABLE_SLICES_INDEX, null /* whereClause */, null /* whereArgs */);
+        db.delete(Tables.TABLE_SLICES_FINGERPRINTS, null /* whereClause */, null /* whereArgs */);
+    }
+
+    /**
+     * @return a map from fragment classname to the fingerprint its slices were last indexed with.
+     */
+    Map<String, String> getFragmentFingerprints(SQLiteDatabase db) {
+        final Map<String, String> fingerprints = new HashMap<>();
+        try (Cursor cursor = db.query(Tables.TABLE_SLICES_FINGERPRINTS,
+                new String[]{FingerprintColumns.FRAGMENT, FingerprintColumns.FINGERPRINT},
+                FingerprintColumns.FRAGMENT + " != ?", new String[]{INDEX_KEY_FRAGMENT},
+                null /* groupBy */, null /* having */, null /* orderBy */)) {
+            while (cursor.moveToNext()) {
+                fingerprints.put(cursor.getString(0), cursor.getString(1));
+            }
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Records the fingerprint {@code fragment} was indexed with.
+     */
+    void setFragmentFingerprint(SQLiteDatabase db, String fragment, String fingerprint) {
+        final ContentValues values = new ContentValues();
+        values.put(FingerprintColumns.FRAGMENT, fragment);
+        values.put(FingerprintColumns.FINGERPRINT, fingerprint);
+        db.replaceOrThrow(Tables.TABLE_SLICES_FINGERPRINTS, null /* nullColumnHack */, values);
+    }
+
+    /**
+     * Deletes every indexed slice and the stored fingerprint of each of {@code fragments}.
+     */
+    void deleteFragments(SQLiteDatabase db, Collection<String> fragments) {
+        final String[] whereArgs = new String[1];
+        for (String fragment : fragments) {
+            whereArgs[0] = fragment;
+            db.delete(Tables.TABLE_SLICES_INDEX, IndexColumns.FRAGMENT + " = ?", whereArgs);
+            db.delete(Tables.TABLE_SLICES_FINGERPRINTS, FingerprintColumns.FRAGMENT + " = ?",
+                    whereArgs);
+        }
     }
 
     /**
      * Marks the current state of the device for the validity of the data. Should be called after
-     * a full index of the TABLE_SLICES_INDEX.
+     * the TABLE_SLICES_INDEX has been brought up to date with the current build and locale.
      */
     public void setIndexedState() {
         setBuildIndexed();
@@ -211,11 +329,13 @@ public class SlicesDatabaseHelper extends SQLiteOpenHelper {
 
     private void createDatabases(SQLiteDatabase db) {
         db.execSQL(CREATE_SLICES_TABLE);
+        db.execSQL(CREATE_FINGERPRINTS_TABLE);
         Log.d(TAG, "Created databases");
     }
 
     private void dropTables(SQLiteDatabase db) {
         db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_INDEX);
+        db.execSQL("DROP TABLE IF EXISTS " + Tables.TABLE_SLICES_FINGERPRINTS);
     }
 
     private void setBuildIndexed() {
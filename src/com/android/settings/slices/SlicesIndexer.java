@@ -19,6 +19,8 @@ package com.android.settings.slices;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.ArraySet;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
@@ -29,7 +31,12 @@ import com.android.settings.overlay.FeatureFactory;
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
 import com.android.settings.slices.SlicesDatabaseHelper.Tables;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Manages the conversion of {@link DashboardFragment} and {@link BasePreferenceController} to
@@ -39,6 +46,47 @@ class SlicesIndexer implements Runnable {
 
     private static final String TAG = "SlicesIndexer";
 
+    // Bind indices of INSERT_SLICE_SQL.
+    private static final int COLUMN_KEY = 1;
+    private static final int COLUMN_SLICE_URI = 2;
+    private static final int COLUMN_TITLE = 3;
+    private static final int COLUMN_SUMMARY = 4;
+    private static final int COLUMN_SCREENTITLE = 5;
+    private static final int COLUMN_KEYWORDS = 6;
+    private static final int COLUMN_ICON_RESOURCE = 7;
+    private static final int COLUMN_FRAGMENT = 8;
+    private static final int COLUMN_CONTROLLER = 9;
+    private static final int COLUMN_SLICE_TYPE = 10;
+    private static final int COLUMN_UNAVAILABLE_SLICE_SUBTITLE = 11;
+    private static final int COLUMN_PUBLIC_SLICE = 12;
+    private static final int COLUMN_HIGHLIGHT_MENU_RESOURCE = 13;
+    private static final int COLUMN_USER_RESTRICTION = 14;
+
+    private static final String INSERT_SLICE_SQL =
+            "INSERT OR REPLACE INTO " + Tables.TABLE_SLICES_INDEX
+                    + "("
+                    + IndexColumns.KEY + ", "
+                    + IndexColumns.SLICE_URI + ", "
+                    + IndexColumns.TITLE + ", "
+                    + IndexColumns.SUMMARY + ", "
+                    + IndexColumns.SCREENTITLE + ", "
+                    + IndexColumns.KEYWORDS + ", "
+                    + IndexColumns.ICON_RESOURCE + ", "
+                    + IndexColumns.FRAGMENT + ", "
+                    + IndexColumns.CONTROLLER + ", "
+                    + IndexColumns.SLICE_TYPE + ", "
+                    + IndexColumns.UNAVAILABLE_SLICE_SUBTITLE + ", "
+                    + IndexColumns.PUBLIC_SLICE + ", "
+                    + IndexColumns.HIGHLIGHT_MENU_RESOURCE + ", "
+                    + IndexColumns.USER_RESTRICTION
+                    + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Number of rows inserted at once, whatever fragments they come from.
+     */
+    @VisibleForTesting
+    static final int INSERT_CHUNK_SIZE = 64;
+
     private Context mContext;
 
     private SlicesDatabaseHelper mHelper;
@@ -58,7 +106,15 @@ class SlicesIndexer implements Runnable {
 
     /**
      * Synchronously takes data obtained from {@link SliceDataConverter} and indexes it into a
-     * SQLite database
+     * SQLite database.
+     *
+     * A change of build or locale re-parses every fragment. Otherwise only fragments whose
+     * fingerprint differs from the one recorded at the last index are re-parsed; fragments that
+     * no longer exist have their slices removed.
+     *
+     * A fragment that fails to parse is recorded as indexed without slices, so it isn't parsed
+     * again until its fingerprint, the build or the locale changes. If indexing gets interrupted,
+     * the data is not marked as indexed so the next call retries the fragments left over.
      */
     protected void indexSliceData() {
         if (mHelper.isSliceDataIndexed()) {
@@ -71,15 +127,68 @@ class SlicesIndexer implements Runnable {
         long startTime = System.currentTimeMillis();
         database.beginTransaction();
         try {
-            mHelper.reconstruct(database);
-            List<SliceData> indexData = getSliceData();
-            insertSliceData(database, indexData);
+            mHelper.clearIndexedState();
+            final String indexKey = mHelper.getIndexKey();
+            if (!indexKey.equals(mHelper.getIndexedKey(database))) {
+                // The build or the locale changed, so every stored slice is stale.
+                mHelper.deleteAllFragments(database);
+                mHelper.setIndexedKey(database, indexKey);
+            }
+            final Map<String, String> indexedFingerprints =
+                    mHelper.getFragmentFingerprints(database);
+            final Map<String, String> fingerprints = getFingerprints();
+
+            final Set<String> changedFragments = new ArraySet<>();
+            for (Map.Entry<String, String> entry : fingerprints.entrySet()) {
+                final String fragment = entry.getKey();
+                final String fingerprint = entry.getValue();
+                if (!fingerprint.equals(indexedFingerprints.remove(fragment))) {
+                    changedFragments.add(fragment);
+                }
+            }
 
-            mHelper.setIndexedState();
+            // Whatever is left was indexed before but is no longer provided.
+            mHelper.deleteFragments(database, indexedFingerprints.keySet());
+            mHelper.deleteFragments(database, changedFragments);
+
+            Set<String> failedFragments = Collections.emptySet();
+            if (!changedFragments.isEmpty()) {
+                // Batches are delivered on this thread, so inserts stay within the transaction.
+                try (SQLiteStatement statement = compileInsertStatement(database)) {
+                    final List<SliceData> chunk = new ArrayList<>(INSERT_CHUNK_SIZE);
+                    failedFragments = collectSliceData(changedFragments, batch -> {
+                        for (SliceData dataRow : batch) {
+                            chunk.add(dataRow);
+                            if (chunk.size() == INSERT_CHUNK_SIZE) {
+                                bulkInsertSliceData(statement, chunk);
+                                chunk.clear();
+                            }
+                        }
+                    });
+                    if (!chunk.isEmpty()) {
+                        bulkInsertSliceData(statement, chunk);
+                    }
+                }
+            }
+            // Conversion failures would repeat until something changes, whereas the fragments
+            // left over by an interruption must be parsed again.
+            final boolean interrupted = Thread.currentThread().isInterrupted();
+            for (String fragment : changedFragments) {
+                if (!interrupted || !failedFragments.contains(fragment)) {
+                    mHelper.setFragmentFingerprint(database, fragment, fingerprints.get(fragment));
+                }
+            }
+            if (!failedFragments.isEmpty()) {
+                Log.w(TAG, "Failed to index slices of " + failedFragments);
+            }
+            if (!interrupted) {
+                mHelper.setIndexedState();
+            }
 
             // TODO (b/71503044) Log indexing time.
-            Log.d(TAG,
-                    "Indexing slices database took: " + (System.currentTimeMillis() - startTime));
+            Log.d(TAG, "Indexing slices database took: "
+                    + (System.currentTimeMillis() - startTime) + ", re-indexed "
+                    + changedFragments.size() + " of " + fingerprints.size() + " fragments");
             database.setTransactionSuccessful();
         } finally {
             database.endTransaction();
@@ -87,13 +196,28 @@ class SlicesIndexer implements Runnable {
     }
 
     @VisibleForTesting
-    List<SliceData> getSliceData() {
+    Map<String, String> getFingerprints() {
+        return FeatureFactory.getFeatureFactory()
+                .getSlicesFeatureProvider()
+                .getSliceDataConverter(mContext)
+                .getFingerprints();
+    }
+
+    /**
+     * @return the fragments whose slices could not be collected.
+     */
+    @VisibleForTesting
+    Set<String> collectSliceData(Set<String> fragments, Consumer<List<SliceData>> consumer) {
         return FeatureFactory.getFeatureFactory()
                 .getSlicesFeatureProvider()
                 .getSliceDataConverter(mContext)
-                .getSliceData();
+                .getSliceData(fragments, consumer);
     }
 
+    /**
+     * Inserts {@code indexData} with one {@link ContentValues} per row. Kept to compare against
+     * {@link #bulkInsertSliceData(SQLiteStatement, List)}, which indexing uses.
+     */
     @VisibleForTesting
     void insertSliceData(SQLiteDatabase database, List<SliceData> indexData) {
         ContentValues values;
@@ -123,4 +247,52 @@ class SlicesIndexer implements Runnable {
                     values);
         }
     }
+
+    /**
+     * Compiles the statement used by {@link #bulkInsertSliceData(SQLiteStatement, List)}. The
+     * caller owns the statement and must close it.
+     */
+    @VisibleForTesting
+    SQLiteStatement compileInsertStatement(SQLiteDatabase database) {
+        return database.compileStatement(INSERT_SLICE_SQL);
+    }
+
+    /**
+     * Same as {@link #insertSliceData(SQLiteDatabase, List)}, but re-binds a single compiled
+     * statement for every row instead of building {@link ContentValues} and re-compiling the
+     * insert each time. Should be called within the indexing transaction.
+     */
+    @VisibleForTesting
+    void bulkInsertSliceData(SQLiteStatement statement, List<SliceData> indexData) {
+        for (SliceData dataRow : indexData) {
+            statement.clearBindings();
+            bindString(statement, COLUMN_KEY, dataRow.getKey());
+            bindString(statement, COLUMN_SLICE_URI, dataRow.getUri().toString());
+            bindString(statement, COLUMN_TITLE, dataRow.getTitle());
+            bindString(statement, COLUMN_SUMMARY, dataRow.getSummary());
+            final CharSequence screenTitle = dataRow.getScreenTitle();
+            bindString(statement, COLUMN_SCREENTITLE,
+                    screenTitle != null ? screenTitle.toString() : null);
+            bindString(statement, COLUMN_KEYWORDS, dataRow.getKeywords());
+            statement.bindLong(COLUMN_ICON_RESOURCE, dataRow.getIconResource());
+            bindString(statement, COLUMN_FRAGMENT, dataRow.getFragmentClassName());
+            bindString(statement, COLUMN_CONTROLLER, dataRow.getPreferenceController());
+            statement.bindLong(COLUMN_SLICE_TYPE, dataRow.getSliceType());
+            bindString(statement, COLUMN_UNAVAILABLE_SLICE_SUBTITLE,
+                    dataRow.getUnavailableSliceSubtitle());
+            statement.bindLong(COLUMN_PUBLIC_SLICE, dataRow.isPublicSlice() ? 1 : 0);
+            statement.bindLong(COLUMN_HIGHLIGHT_MENU_RESOURCE, dataRow.getHighlightMenuRes());
+            bindString(statement, COLUMN_USER_RESTRICTION, dataRow.getUserRestriction());
+
+            statement.executeInsert();
+        }
+    }
+
+    private static void bindString(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
 }
@@ -98,6 +98,11 @@ public class UsageView extends FrameLayout {
         }
     }
 
+    /** Returns the width of the graph in pixels, 0 until it is laid out. */
+    public int getGraphWidth() {
+        return mUsageGraph.getWidth();
+    }
+
     public void clearPaths() {
         mUsageGraph.clearPaths();
     }
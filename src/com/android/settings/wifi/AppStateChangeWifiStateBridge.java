@@ -20,6 +20,8 @@ import android.Manifest;
 import android.app.AppOpsManager;
 import android.content.Context;
 
+import androidx.annotation.Nullable;
+
 import com.android.internal.util.ArrayUtils;
 import com.android.settings.applications.AppStateAppOpsBridge;
 import com.android.settingslib.applications.ApplicationsState;
@@ -62,6 +64,13 @@ public class AppStateChangeWifiStateBridge extends AppStateAppOpsBridge {
         }
     }
 
+    @Override
+    @Nullable
+    protected Object copyExtraInfo(Object extraInfo) {
+        return extraInfo instanceof WifiSettingsState
+                ? new WifiSettingsState((PermissionState) extraInfo) : null;
+    }
+
     public WifiSettingsState getWifiSettingsInfo(String pkg, int uid) {
         PermissionState permissionState = super.getPermissionInfo(pkg, uid);
         return new WifiSettingsState(permissionState);
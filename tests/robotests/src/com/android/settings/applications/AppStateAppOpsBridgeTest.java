@@ -16,18 +16,28 @@
 
 package com.android.settings.applications;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.Manifest;
 import android.app.AppOpsManager;
 import android.content.Context;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.IPackageManager;
+import android.content.pm.PackageInfo;
+import android.content.pm.ParceledListSlice;
+import android.os.Looper;
 import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.UserManager;
 
+import com.android.settingslib.applications.ApplicationsState;
 import com.android.settingslib.applications.ApplicationsState.AppEntry;
 
 import com.google.common.truth.Truth;
@@ -38,6 +48,10 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 
 @RunWith(RobolectricTestRunner.class)
 public final class AppStateAppOpsBridgeTest {
@@ -46,6 +60,8 @@ public final class AppStateAppOpsBridgeTest {
     @Mock private UserManager mUserManager;
     @Mock private IPackageManager mPackageManagerService;
     @Mock private AppOpsManager mAppOpsManager;
+    @Mock private ApplicationsState mAppState;
+    @Mock private ApplicationsState.Session mSession;
 
     @Before
     public void setUp() {
@@ -63,6 +79,91 @@ public final class AppStateAppOpsBridgeTest {
         // should not crash
     }
 
+    @Test
+    public void createPermissionSnapshot_loadsStaticStateFromInstalledPackages()
+            throws RemoteException {
+        when(mUserManager.getUserProfiles()).thenReturn(Arrays.asList(UserHandle.of(0)));
+        final PackageInfo requesting = createPackageInfo("pkg1",
+                Manifest.permission.SYSTEM_ALERT_WINDOW, PackageInfo.REQUESTED_PERMISSION_GRANTED);
+        final PackageInfo other = createPackageInfo("pkg2", Manifest.permission.CAMERA, 0);
+        when(mPackageManagerService.getInstalledPackages(anyLong(), eq(0)))
+                .thenReturn(new ParceledListSlice<>(Arrays.asList(requesting, other)));
+        final int uid = UserHandle.getUid(0, 10001);
+
+        final AppStateAppOpsBridge.PermissionSnapshot snapshot =
+                new TestAppStateAppOpsBridge().createPermissionSnapshot();
+
+        final AppStateAppOpsBridge.PermissionState state = snapshot.get("pkg1", uid);
+        Truth.assertThat(state.permissionDeclared).isTrue();
+        Truth.assertThat(state.staticPermissionGranted).isTrue();
+        Truth.assertThat(state.appOpMode).isEqualTo(AppOpsManager.MODE_DEFAULT);
+        Truth.assertThat(snapshot.get("pkg2", uid).permissionDeclared).isFalse();
+        Truth.assertThat(snapshot.get("missing", uid)).isNull();
+        verify(mPackageManagerService, never()).getPackageInfo(anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void performLoadAllExtraInfo_warmCache_newAppNotDeclaringPermission_notListed()
+            throws RemoteException {
+        when(mUserManager.getUserProfiles()).thenReturn(Arrays.asList(UserHandle.of(0)));
+        when(mContext.getApplicationContext()).thenReturn(RuntimeEnvironment.application);
+        when(mAppState.newSession(any())).thenReturn(mSession);
+        when(mAppState.getBackgroundLooper()).thenReturn(Looper.getMainLooper());
+        AppStateExtraInfoCache.getInstance(mContext).clear();
+        final ArrayList<PackageInfo> packageInfos = new ArrayList<>();
+        final ArrayList<AppEntry> apps = new ArrayList<>();
+        for (String packageName : new String[] {"pkg1", "pkg2", "pkg3"}) {
+            packageInfos.add(createPackageInfo(packageName,
+                    Manifest.permission.SYSTEM_ALERT_WINDOW, 0));
+            apps.add(createAppEntry(packageName));
+        }
+        when(mPackageManagerService.getInstalledPackages(anyLong(), eq(0)))
+                .thenReturn(new ParceledListSlice<>(packageInfos));
+        when(mSession.getAllApps()).thenReturn(apps);
+        new TestAppStateAppOpsBridge(mAppState).performLoadAllExtraInfo();
+
+        final PackageInfo installed = createPackageInfo("pkg4", Manifest.permission.CAMERA, 0);
+        packageInfos.add(installed);
+        when(mPackageManagerService.getPackageInfo(eq("pkg4"), anyLong(), anyInt()))
+                .thenReturn(installed);
+        final AppEntry installedApp = createAppEntry("pkg4");
+        apps.add(installedApp);
+        new TestAppStateAppOpsBridge(mAppState).performLoadAllExtraInfo();
+
+        Truth.assertThat(installedApp.extraInfo).isNull();
+        Truth.assertThat(apps.get(0).extraInfo).isNotNull();
+    }
+
+    @Test
+    public void performLoadAllExtraInfo_warmCache_servesCopiesOfCachedStates()
+            throws RemoteException {
+        when(mUserManager.getUserProfiles()).thenReturn(Arrays.asList(UserHandle.of(0)));
+        when(mContext.getApplicationContext()).thenReturn(RuntimeEnvironment.application);
+        when(mAppState.newSession(any())).thenReturn(mSession);
+        when(mAppState.getBackgroundLooper()).thenReturn(Looper.getMainLooper());
+        AppStateExtraInfoCache.getInstance(mContext).clear();
+        when(mPackageManagerService.getInstalledPackages(anyLong(), eq(0)))
+                .thenReturn(new ParceledListSlice<>(Arrays.asList(createPackageInfo("pkg1",
+                        Manifest.permission.SYSTEM_ALERT_WINDOW, 0))));
+        final AppEntry app = createAppEntry("pkg1");
+        when(mSession.getAllApps()).thenReturn(new ArrayList<>(Arrays.asList(app)));
+        new TestAppStateAppOpsBridge(mAppState).performLoadAllExtraInfo();
+        final AppStateAppOpsBridge.PermissionState loadedState =
+                (AppStateAppOpsBridge.PermissionState) app.extraInfo;
+        // A screen updating its own entry in place.
+        loadedState.appOpMode = AppOpsManager.MODE_ALLOWED;
+
+        final AppEntry otherScreenApp = createAppEntry("pkg1");
+        when(mSession.getAllApps()).thenReturn(new ArrayList<>(Arrays.asList(otherScreenApp)));
+        new TestAppStateAppOpsBridge(mAppState).performLoadAllExtraInfo();
+
+        final AppStateAppOpsBridge.PermissionState cachedState =
+                (AppStateAppOpsBridge.PermissionState) otherScreenApp.extraInfo;
+        Truth.assertThat(cachedState).isNotSameInstanceAs(loadedState);
+        Truth.assertThat(cachedState.permissionDeclared).isTrue();
+        Truth.assertThat(cachedState.appOpMode).isEqualTo(AppOpsManager.MODE_DEFAULT);
+    }
+
     @Test
     public void permissionState_modeDefault_IsPermissible() {
         AppStateAppOpsBridge.PermissionState permissionState =
@@ -115,15 +216,36 @@ public final class AppStateAppOpsBridgeTest {
         Truth.assertThat(permissionState.isPermissible()).isFalse();
     }
 
+    private static PackageInfo createPackageInfo(String packageName, String permission,
+            int flags) {
+        final PackageInfo packageInfo = new PackageInfo();
+        packageInfo.packageName = packageName;
+        packageInfo.requestedPermissions = new String[] {permission};
+        packageInfo.requestedPermissionsFlags = new int[] {flags};
+        return packageInfo;
+    }
+
+    private static AppEntry createAppEntry(String packageName) {
+        final ApplicationInfo info = new ApplicationInfo();
+        info.packageName = packageName;
+        info.uid = UserHandle.getUid(0, 10001);
+        return new AppEntry(RuntimeEnvironment.application, info, 0);
+    }
+
     private class TestAppStateAppOpsBridge extends AppStateAppOpsBridge {
         private TestAppStateAppOpsBridge() {
-            super(mContext, null, null, AppOpsManager.OP_SYSTEM_ALERT_WINDOW,
+            this(null);
+        }
+
+        private TestAppStateAppOpsBridge(ApplicationsState appState) {
+            super(mContext, appState, null, AppOpsManager.OP_SYSTEM_ALERT_WINDOW,
                 new String[] {Manifest.permission.SYSTEM_ALERT_WINDOW},
                 mPackageManagerService);
         }
 
         @Override
         protected void updateExtraInfo(AppEntry app, String pkg, int uid) {
+            app.extraInfo = getPermissionInfo(pkg, uid);
         }
     }
 }
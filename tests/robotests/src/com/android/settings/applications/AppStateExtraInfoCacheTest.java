@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppStateExtraInfoCacheTest {
+
+    private static final String TYPE = "type";
+    private static final String OTHER_TYPE = "other_type";
+    private static final int UID = 10001;
+
+    private AppStateExtraInfoCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new AppStateExtraInfoCache(ApplicationProvider.getApplicationContext());
+    }
+
+    @Test
+    public void put_cachedPerTypeAndUid() {
+        mCache.put(TYPE, "pkg", UID, "info", mCache.getGeneration());
+
+        assertThat(mCache.get(TYPE, "pkg", UID)).isEqualTo("info");
+        assertThat(mCache.contains(TYPE, "pkg", UID + 1)).isFalse();
+        assertThat(mCache.contains(OTHER_TYPE, "pkg", UID)).isFalse();
+    }
+
+    @Test
+    public void put_nullExtraInfo_cached() {
+        mCache.put(TYPE, "pkg", UID, null, mCache.getGeneration());
+
+        assertThat(mCache.contains(TYPE, "pkg", UID)).isTrue();
+        assertThat(mCache.get(TYPE, "pkg", UID)).isNull();
+    }
+
+    @Test
+    public void put_invalidatedSinceGeneration_notCached() {
+        final long generation = mCache.getGeneration();
+        mCache.invalidatePackage("other");
+
+        mCache.put(TYPE, "pkg", UID, "info", generation);
+
+        assertThat(mCache.contains(TYPE, "pkg", UID)).isFalse();
+    }
+
+    @Test
+    public void invalidatePackage_dropsOnlyThatPackageForAllTypes() {
+        mCache.put(TYPE, "pkg", UID, "info", mCache.getGeneration());
+        mCache.put(OTHER_TYPE, "pkg", UID, "info", mCache.getGeneration());
+        mCache.put(TYPE, "com.pkg", UID, "info", mCache.getGeneration());
+
+        mCache.invalidatePackage("pkg");
+
+        assertThat(mCache.contains(TYPE, "pkg", UID)).isFalse();
+        assertThat(mCache.contains(OTHER_TYPE, "pkg", UID)).isFalse();
+        assertThat(mCache.contains(TYPE, "com.pkg", UID)).isTrue();
+    }
+
+    @Test
+    public void packageAdded_dropsEveryEntry() {
+        final Context context = ApplicationProvider.getApplicationContext();
+        final AppStateExtraInfoCache cache = AppStateExtraInfoCache.getInstance(context);
+        cache.clear();
+        cache.put(TYPE, "pkg", UID, "info", cache.getGeneration());
+        cache.put(OTHER_TYPE, "other", UID, "info", cache.getGeneration());
+
+        context.sendBroadcast(new Intent(Intent.ACTION_PACKAGE_ADDED,
+                Uri.fromParts("package", "new", null /* fragment */)));
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertThat(cache.contains(TYPE, "pkg", UID)).isFalse();
+        assertThat(cache.contains(OTHER_TYPE, "other", UID)).isFalse();
+    }
+
+    @Test
+    public void remove_dropsOnlyThatType() {
+        mCache.put(TYPE, "pkg", UID, "info", mCache.getGeneration());
+        mCache.put(OTHER_TYPE, "pkg", UID, "info", mCache.getGeneration());
+
+        mCache.remove(TYPE, "pkg", UID);
+
+        assertThat(mCache.contains(TYPE, "pkg", UID)).isFalse();
+        assertThat(mCache.contains(OTHER_TYPE, "pkg", UID)).isTrue();
+    }
+
+    @Test
+    public void invalidateUid_dropsOnlyThatUid() {
+        mCache.put(TYPE, "pkg", UID, "info", mCache.getGeneration());
+        mCache.put(TYPE, "pkg", UID + 1, "info", mCache.getGeneration());
+
+        mCache.invalidateUid(UID);
+
+        assertThat(mCache.contains(TYPE, "pkg", UID)).isFalse();
+        assertThat(mCache.contains(TYPE, "pkg", UID + 1)).isTrue();
+    }
+}
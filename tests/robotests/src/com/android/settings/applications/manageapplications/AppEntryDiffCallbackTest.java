@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.content.pm.ApplicationInfo;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppEntryDiffCallbackTest {
+
+    private static final int DISPLAY_CONFIG = 1;
+
+    @Test
+    public void areItemsTheSame_keyedOnPackageAndUid() {
+        final AppEntry app = createEntry("com.app", 10001, "App");
+        final AppEntry sameAppOtherUser = createEntry("com.app", 1010001, "App");
+        final AppEntryDiffCallback callback = createCallback(Arrays.asList(app),
+                Arrays.asList(app, sameAppOtherUser));
+
+        assertThat(callback.areItemsTheSame(0, 0)).isTrue();
+        assertThat(callback.areItemsTheSame(0, 1)).isFalse();
+    }
+
+    @Test
+    public void sizeChangedOnly_payloadIsSize() {
+        final AppEntry app = createEntry("com.app", 10001, "App");
+        app.sizeStr = "1 MB";
+        final List<AppEntryDiffCallback.EntryState> oldStates =
+                captureStates(Arrays.asList(app), DISPLAY_CONFIG);
+        app.sizeStr = "2 MB";
+        final AppEntryDiffCallback callback = new AppEntryDiffCallback(oldStates,
+                captureStates(Arrays.asList(app), DISPLAY_CONFIG));
+
+        assertThat(callback.areContentsTheSame(0, 0)).isFalse();
+        assertThat(callback.getChangePayload(0, 0)).isSameInstanceAs(
+                AppEntryDiffCallback.PAYLOAD_SIZE);
+    }
+
+    @Test
+    public void labelChanged_noPayload() {
+        final AppEntry app = createEntry("com.app", 10001, "App");
+        final List<AppEntryDiffCallback.EntryState> oldStates =
+                captureStates(Arrays.asList(app), DISPLAY_CONFIG);
+        app.label = "Renamed";
+        final AppEntryDiffCallback callback = new AppEntryDiffCallback(oldStates,
+                captureStates(Arrays.asList(app), DISPLAY_CONFIG));
+
+        assertThat(callback.areContentsTheSame(0, 0)).isFalse();
+        assertThat(callback.getChangePayload(0, 0)).isNull();
+    }
+
+    @Test
+    public void displayConfigChanged_noPayload() {
+        final AppEntry app = createEntry("com.app", 10001, "App");
+        final AppEntryDiffCallback callback = new AppEntryDiffCallback(
+                captureStates(Arrays.asList(app), DISPLAY_CONFIG),
+                captureStates(Arrays.asList(app), DISPLAY_CONFIG + 1));
+
+        assertThat(callback.areContentsTheSame(0, 0)).isFalse();
+        assertThat(callback.getChangePayload(0, 0)).isNull();
+    }
+
+    @Test
+    public void extraInfoMutatedInPlace_noPayload() {
+        final AppEntry app = createEntry("com.app", 10001, "App");
+        final StringBuilder extraInfo = new StringBuilder("Allowed");
+        app.extraInfo = extraInfo;
+        final Function<AppEntry, String> extraInfoDisplay = entry -> entry.extraInfo.toString();
+        final List<AppEntryDiffCallback.EntryState> oldStates =
+                AppEntryDiffCallback.captureStates(Arrays.asList(app), DISPLAY_CONFIG,
+                        extraInfoDisplay);
+        extraInfo.replace(0, extraInfo.length(), "Not allowed");
+        final AppEntryDiffCallback callback = new AppEntryDiffCallback(oldStates,
+                AppEntryDiffCallback.captureStates(Arrays.asList(app), DISPLAY_CONFIG,
+                        extraInfoDisplay));
+
+        assertThat(callback.areContentsTheSame(0, 0)).isFalse();
+        assertThat(callback.getChangePayload(0, 0)).isNull();
+    }
+
+    @Test
+    public void extraInfoReplacedWithEqualDisplay_contentsTheSame() {
+        final AppEntry app = createEntry("com.app", 10001, "App");
+        final Function<AppEntry, String> extraInfoDisplay = entry -> entry.extraInfo.toString();
+        app.extraInfo = new StringBuilder("Allowed");
+        final List<AppEntryDiffCallback.EntryState> oldStates =
+                AppEntryDiffCallback.captureStates(Arrays.asList(app), DISPLAY_CONFIG,
+                        extraInfoDisplay);
+        app.extraInfo = new StringBuilder("Allowed");
+        final AppEntryDiffCallback callback = new AppEntryDiffCallback(oldStates,
+                AppEntryDiffCallback.captureStates(Arrays.asList(app), DISPLAY_CONFIG,
+                        extraInfoDisplay));
+
+        assertThat(callback.areContentsTheSame(0, 0)).isTrue();
+    }
+
+    @Test
+    public void unchangedEntry_contentsTheSame() {
+        final AppEntry app = createEntry("com.app", 10001, "App");
+        final AppEntryDiffCallback callback = createCallback(Arrays.asList(app),
+                Arrays.asList(app));
+
+        assertThat(callback.areContentsTheSame(0, 0)).isTrue();
+    }
+
+    private static AppEntryDiffCallback createCallback(List<AppEntry> oldEntries,
+            List<AppEntry> newEntries) {
+        return new AppEntryDiffCallback(
+                captureStates(oldEntries, DISPLAY_CONFIG),
+                captureStates(newEntries, DISPLAY_CONFIG));
+    }
+
+    private static List<AppEntryDiffCallback.EntryState> captureStates(List<AppEntry> entries,
+            int displayConfig) {
+        return AppEntryDiffCallback.captureStates(entries, displayConfig, entry -> null);
+    }
+
+    private static AppEntry createEntry(String packageName, int uid, String label) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = packageName;
+        entry.info.uid = uid;
+        entry.label = label;
+        return entry;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppLabelIndexTest {
+
+    @Test
+    public void search_emptyQuery_returnsAllEntries() {
+        final ArrayList<AppEntry> entries = createEntries("Maps", "Mail");
+        final AppLabelIndex index = new AppLabelIndex(entries, Locale.US);
+
+        assertThat(index.search("")).isSameInstanceAs(entries);
+    }
+
+    @Test
+    public void search_ignoresCaseAndDiacritics() {
+        final AppLabelIndex index = new AppLabelIndex(
+                createEntries("Café", "CALENDAR", "Clock"), Locale.US);
+
+        assertThat(labels(index.search("cafe"))).containsExactly("Café");
+        assertThat(labels(index.search("Cal"))).containsExactly("CALENDAR");
+    }
+
+    @Test
+    public void search_shortAndLongQueries_keepListOrder() {
+        final AppLabelIndex index = new AppLabelIndex(
+                createEntries("Apricot", "Banana", "Cantaloupe", "Fig", "Mango"), Locale.US);
+
+        assertThat(labels(index.search("an"))).containsExactly("Banana", "Cantaloupe", "Mango")
+                .inOrder();
+        assertThat(labels(index.search("ang"))).containsExactly("Mango");
+        assertThat(labels(index.search("orange"))).isEmpty();
+    }
+
+    @Test
+    public void search_extendedThenUnrelatedQuery_matchesFullList() {
+        final AppLabelIndex index = new AppLabelIndex(
+                createEntries("Settings", "Camera", "Setup wizard"), Locale.US);
+
+        assertThat(labels(index.search("set"))).containsExactly("Settings", "Setup wizard");
+        assertThat(labels(index.search("sett"))).containsExactly("Settings");
+        assertThat(labels(index.search("cam"))).containsExactly("Camera");
+    }
+
+    @Test
+    public void normalize_latinAccents_removed() {
+        assertThat(AppLabelIndex.normalize("Crème Brûlée", Locale.FRANCE))
+                .isEqualTo("creme brulee");
+    }
+
+    @Test
+    public void normalize_marksOfOtherScripts_kept() {
+        // Japanese dakuten, Devanagari and Thai vowel signs, Hebrew points, Cyrillic breve.
+        for (String label : new String[]{"ガイド", "हिंदी", "ภาษาไทย", "עִבְרִית", "Китай"}) {
+            assertThat(AppLabelIndex.normalize(label, Locale.ROOT))
+                    .isEqualTo(label.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    @Test
+    public void search_dakuten_notMatchedByBaseKana() {
+        final AppLabelIndex index = new AppLabelIndex(createEntries("ガイド"), Locale.JAPAN);
+
+        assertThat(index.search("カイト")).isEmpty();
+        assertThat(index.search("ガイド")).hasSize(1);
+    }
+
+    @Test
+    public void normalize_turkishLocale_usesLocaleRules() {
+        assertThat(AppLabelIndex.normalize("TITLE", new Locale("tr")))
+                .isEqualTo("TITLE".toLowerCase(new Locale("tr")));
+    }
+
+    private static ArrayList<AppEntry> createEntries(String... labels) {
+        final ArrayList<AppEntry> entries = new ArrayList<>();
+        for (String label : labels) {
+            final AppEntry entry = mock(AppEntry.class);
+            entry.label = label;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private static List<String> labels(List<AppEntry> entries) {
+        final List<String> labels = new ArrayList<>();
+        for (AppEntry entry : entries) {
+            labels.add(entry.label);
+        }
+        return labels;
+    }
+}
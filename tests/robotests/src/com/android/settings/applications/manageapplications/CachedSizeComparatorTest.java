@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.applications.manageapplications;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.mock;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.os.UserHandle;
+
+import com.android.settings.deviceinfo.storage.StorageCacheHelper;
+import com.android.settingslib.applications.ApplicationsState;
+import com.android.settingslib.applications.ApplicationsState.AppEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class CachedSizeComparatorTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void cacheSizes_appRemoved_dropsItsCachedSize() {
+        CachedSizeComparator.cacheSizes(mContext, List.of(
+                newAppEntry("com.test.kept", 100L), newAppEntry("com.test.removed", 200L)));
+
+        CachedSizeComparator.cacheSizes(mContext, List.of(newAppEntry("com.test.kept", 300L)));
+
+        assertThat(new StorageCacheHelper(mContext, UserHandle.myUserId()).retrieveAppSizes())
+                .containsExactly("com.test.kept", 300L);
+    }
+
+    @Test
+    public void cacheSizes_sizeNotComputed_keepsCachedSize() {
+        CachedSizeComparator.cacheSizes(mContext, List.of(newAppEntry("com.test.app", 100L)));
+
+        CachedSizeComparator.cacheSizes(mContext,
+                List.of(newAppEntry("com.test.app", ApplicationsState.SIZE_UNKNOWN)));
+
+        assertThat(new StorageCacheHelper(mContext, UserHandle.myUserId()).retrieveAppSizes())
+                .containsExactly("com.test.app", 100L);
+    }
+
+    private static AppEntry newAppEntry(String packageName, long size) {
+        final AppEntry entry = mock(AppEntry.class);
+        entry.info = new ApplicationInfo();
+        entry.info.packageName = packageName;
+        entry.info.uid = UserHandle.getUid(UserHandle.myUserId(), 10001);
+        entry.size = size;
+        return entry;
+    }
+}
@@ -33,6 +33,7 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -55,6 +56,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.android.settings.R;
 import com.android.settings.testutils.shadow.ShadowAppUtils;
+import com.android.settings.testutils.shadow.ShadowThreadUtils;
 import com.android.settings.testutils.shadow.ShadowUserManager;
 import com.android.settings.widget.LoadingViewController;
 import com.android.settingslib.applications.ApplicationsState;
@@ -314,6 +316,72 @@ public class ManageApplicationsTest {
         verify(adapter).filterSearch(query);
     }
 
+    @Test
+    @Config(shadows = ShadowThreadUtils.class)
+    public void onRebuildComplete_diffWhileSearching_showsMatchedEntriesOnly() {
+        final RecyclerView recyclerView = mock(RecyclerView.class);
+        ReflectionHelpers.setField(mFragment, "mRecyclerView", recyclerView);
+        ReflectionHelpers.setField(mFragment, "mEmptyView", mock(View.class));
+        ReflectionHelpers.setField(mFragment, "mLoadingContainer", mock(View.class));
+        final SearchView searchView = mock(SearchView.class);
+        ReflectionHelpers.setField(mFragment, "mSearchView", searchView);
+        when(searchView.isVisibleToUser()).thenReturn(true);
+        when(searchView.getQuery()).thenReturn("an");
+        ReflectionHelpers.setField(
+                mFragment, "mFilterAdapter", mock(ManageApplications.FilterSpinnerAdapter.class));
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL),
+                        null /* savedInstanceState */));
+        ReflectionHelpers.setField(adapter, "mLoadingViewController",
+                mock(LoadingViewController.class));
+        // Something is already displayed, so the rebuild is diffed against it.
+        ReflectionHelpers.setField(adapter, "mEntryStates", new ArrayList<>());
+        final String[] appNames = {"Apricot", "Banana", "Cantaloupe", "Fig", "Mango"};
+
+        adapter.onRebuildComplete(getTestAppList(appNames));
+
+        assertThat(adapter.getItemCount()).isEqualTo(3);
+        verify(adapter, never()).filterSearch(any());
+    }
+
+    @Test
+    public void getCachedExtraInfoDisplay_extraInfoUnchanged_computesOnce() {
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL),
+                        null /* savedInstanceState */));
+        final AppEntry entry = mock(AppEntry.class);
+        entry.extraInfo = new Object();
+        final int displayConfig = 1;
+        doReturn("summary").when(adapter).getExtraInfoDisplay(entry);
+
+        adapter.getCachedExtraInfoDisplay(displayConfig).apply(entry);
+        final String display = adapter.getCachedExtraInfoDisplay(displayConfig).apply(entry);
+
+        assertThat(display).isEqualTo("summary");
+        verify(adapter, times(1)).getExtraInfoDisplay(entry);
+    }
+
+    @Test
+    public void getCachedExtraInfoDisplay_extraInfoReplaced_computesAgain() {
+        final ManageApplications.ApplicationsAdapter adapter =
+                spy(new ManageApplications.ApplicationsAdapter(mState, mFragment,
+                        AppFilterRegistry.getInstance().get(FILTER_APPS_ALL),
+                        null /* savedInstanceState */));
+        final AppEntry entry = mock(AppEntry.class);
+        entry.extraInfo = new Object();
+        final int displayConfig = 1;
+        doReturn("summary").when(adapter).getExtraInfoDisplay(entry);
+
+        adapter.getCachedExtraInfoDisplay(displayConfig).apply(entry);
+        entry.extraInfo = new Object();
+        adapter.getCachedExtraInfoDisplay(displayConfig).apply(entry);
+        adapter.getCachedExtraInfoDisplay(displayConfig + 1).apply(entry);
+
+        verify(adapter, times(3)).getExtraInfoDisplay(entry);
+    }
+
     @Ignore("b/313583754")
     @Test
     public void notifyItemChange_recyclerViewIdle_shouldNotify() {
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.core;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.settings.core.PreferenceXmlParserUtils.METADATA_KEY;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+
+import com.android.settings.R;
+import com.android.settings.core.PreferenceXmlParserUtils.MetadataFlag;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class PreferenceXmlMetadataCacheTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = getApplicationContext();
+        PreferenceXmlMetadataCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        PreferenceXmlMetadataCache.clear();
+    }
+
+    @Test
+    public void extractMetadata_calledTwice_secondCallIsCacheHit() throws Exception {
+        final List<Bundle> first = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, MetadataFlag.FLAG_NEED_KEY);
+        final List<Bundle> second = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(second).hasSize(first.size());
+        assertThat(second.get(0).getString(METADATA_KEY))
+                .isEqualTo(first.get(0).getString(METADATA_KEY));
+        assertThat(PreferenceXmlMetadataCache.dump().getInt("hits")).isEqualTo(1);
+    }
+
+    @Test
+    public void extractMetadata_differentFlags_cachedSeparately() throws Exception {
+        PreferenceXmlParserUtils.extractMetadata(mContext, R.xml.top_level_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+        PreferenceXmlParserUtils.extractMetadata(mContext, R.xml.top_level_settings,
+                MetadataFlag.FLAG_NEED_KEY | MetadataFlag.FLAG_NEED_PREF_TITLE);
+
+        assertThat(PreferenceXmlMetadataCache.dump().getInt("hits")).isEqualTo(0);
+        assertThat(PreferenceXmlMetadataCache.dump().getInt("size")).isEqualTo(2);
+    }
+
+    @Test
+    public void extractMetadata_callerMutatesResult_cacheUnaffected() throws Exception {
+        final List<Bundle> first = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, MetadataFlag.FLAG_NEED_KEY);
+        final String key = first.get(0).getString(METADATA_KEY);
+        first.get(0).putString(METADATA_KEY, "mutated");
+
+        final List<Bundle> second = PreferenceXmlParserUtils.extractMetadata(mContext,
+                R.xml.top_level_settings, MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(second.get(0).getString(METADATA_KEY)).isEqualTo(key);
+    }
+
+    @Test
+    public void extractMetadata_configurationChanged_notServedFromCache() throws Exception {
+        PreferenceXmlParserUtils.extractMetadata(mContext, R.xml.top_level_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+        final Configuration config = new Configuration(mContext.getResources().getConfiguration());
+        config.fontScale = config.fontScale * 2;
+        final Context fontScaledContext = mContext.createConfigurationContext(config);
+
+        PreferenceXmlParserUtils.extractMetadata(fontScaledContext, R.xml.top_level_settings,
+                MetadataFlag.FLAG_NEED_KEY);
+
+        assertThat(PreferenceXmlMetadataCache.dump().getInt("hits")).isEqualTo(0);
+        assertThat(PreferenceXmlMetadataCache.dump().getInt("size")).isEqualTo(2);
+    }
+}
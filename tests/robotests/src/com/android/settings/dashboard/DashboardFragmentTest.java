@@ -54,6 +54,7 @@ import androidx.test.core.app.ApplicationProvider;
 
 import com.android.internal.logging.nano.MetricsProto.MetricsEvent;
 import com.android.settings.R;
+import com.android.settings.core.BasePreferenceController;
 import com.android.settings.core.PreferenceControllerMixin;
 import com.android.settings.slices.BlockingSlicePrefController;
 import com.android.settings.testutils.FakeFeatureFactory;
@@ -77,6 +78,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowLooper;
 import org.robolectric.util.ReflectionHelpers;
 
 import java.util.ArrayList;
@@ -325,6 +327,92 @@ public class DashboardFragmentTest {
         verify(mockController2).getPreferenceKey();
     }
 
+    @Test
+    public void applyBackgroundPreferenceStates_updatesAvailableControllersOnly() {
+        final Preference preference = new Preference(mContext);
+        final BackgroundSafeController available = spy(new BackgroundSafeController(mContext,
+                "available"));
+        final BackgroundSafeController unavailable = spy(new BackgroundSafeController(mContext,
+                "unavailable"));
+        when(mTestFragment.mScreen.findPreference("available")).thenReturn(preference);
+        final Map<AbstractPreferenceController, Boolean> availability = new HashMap<>();
+        availability.put(available, true);
+        availability.put(unavailable, false);
+        final int generation = ReflectionHelpers.getField(mTestFragment,
+                "mPreferenceStateGeneration");
+
+        mTestFragment.applyBackgroundPreferenceStates(generation,
+                Arrays.asList(available, unavailable), availability);
+
+        verify(available).updateState(preference);
+        verify(unavailable, never()).updateState(any());
+        // Results computed in background are used, not re-evaluated on the main thread.
+        verify(available, never()).isAvailable();
+    }
+
+    @Test
+    public void updatePreferenceStates_clearsBackgroundAvailability() {
+        final BackgroundSafeController controller = spy(new BackgroundSafeController(mContext,
+                "key"));
+        final Map<AbstractPreferenceController, Boolean> availability = new HashMap<>();
+        availability.put(controller, false);
+        final int generation = ReflectionHelpers.getField(mTestFragment,
+                "mPreferenceStateGeneration");
+        mTestFragment.applyBackgroundPreferenceStates(generation, Arrays.asList(controller),
+                availability);
+
+        mTestFragment.updatePreferenceStates();
+
+        final Map<AbstractPreferenceController, Boolean> backgroundAvailability =
+                ReflectionHelpers.getField(mTestFragment, "mBackgroundAvailability");
+        assertThat(backgroundAvailability).isEmpty();
+    }
+
+    @Test
+    @Config(shadows = ShadowPreferenceFragmentCompat.class)
+    public void applyBackgroundPreferenceStates_staleGeneration_ignored() {
+        final BackgroundSafeController controller = spy(new BackgroundSafeController(mContext,
+                "key"));
+        final int generation = ReflectionHelpers.getField(mTestFragment,
+                "mPreferenceStateGeneration");
+        mTestFragment.onStop();
+
+        mTestFragment.applyBackgroundPreferenceStates(generation,
+                Arrays.asList(controller), new HashMap<>());
+
+        verify(controller, never()).updateState(any());
+    }
+
+    @Test
+    public void reportTimedOutObservers_countsObserversWithoutData() {
+        final DynamicDataObserver loaded = new TestDynamicDataObserver() {
+            @Override
+            public void onDataChanged() {
+                post(() -> {});
+            }
+        };
+        final DynamicDataObserver pending = new TestDynamicDataObserver();
+
+        mTestFragment.reportTimedOutObservers("TEST_FRAG", Arrays.asList(loaded, pending));
+
+        assertThat(loaded.isDataLoaded()).isTrue();
+        assertThat(pending.isDataLoaded()).isFalse();
+        assertThat(mTestFragment.mTimedOutTileObserverCount).isEqualTo(1);
+    }
+
+    @Test
+    public void dynamicDataObserver_dataPostedAfterUpdateUi_appliedOnMainThread() {
+        final List<String> applied = new ArrayList<>();
+        final TestDynamicDataObserver observer = new TestDynamicDataObserver();
+        observer.updateUi();
+
+        observer.post(() -> applied.add("data"));
+        ShadowLooper.idleMainLooper();
+
+        assertThat(applied).containsExactly("data");
+        assertThat(observer.isDataLoaded()).isTrue();
+    }
+
     @Test
     public void onExpandButtonClick_shouldLogAdvancedButtonExpand() {
         final MetricsFeatureProvider metricsFeatureProvider
@@ -515,6 +603,19 @@ public class DashboardFragmentTest {
         }
     }
 
+    public static class BackgroundSafeController extends BasePreferenceController
+            implements BasePreferenceController.BackgroundSafe {
+
+        private BackgroundSafeController(Context context, String key) {
+            super(context, key);
+        }
+
+        @Override
+        public int getAvailabilityStatus() {
+            return AVAILABLE;
+        }
+    }
+
     public static class SubTestPreferenceController extends TestPreferenceController {
 
         private SubTestPreferenceController(Context context) {
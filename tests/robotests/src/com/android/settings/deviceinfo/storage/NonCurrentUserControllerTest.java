@@ -37,6 +37,7 @@ import androidx.preference.Preference;
 import androidx.preference.PreferenceGroup;
 import androidx.preference.PreferenceScreen;
 
+import com.android.settings.deviceinfo.StorageItemPreference;
 import com.android.settings.testutils.shadow.ShadowActivityManager;
 import com.android.settingslib.applications.StorageStatsSource;
 import com.android.settingslib.drawable.UserIconDrawable;
@@ -212,6 +213,38 @@ public class NonCurrentUserControllerTest {
         assertThat(preference.getSummary()).isEqualTo("30 MB");
     }
 
+    @Test
+    public void handleResult_profileNotLoaded_shouldKeepSize() {
+        mPrimaryUser.name = TEST_NAME;
+        mPrimaryUser.id = 10;
+        int[] profiles = {mPrimaryUser.id, 11};
+        mController = new NonCurrentUserController(mContext, mPrimaryUser, profiles);
+        mController.displayPreference(mScreen);
+        final SparseArray<StorageAsyncLoader.StorageResult> result = new SparseArray<>();
+        result.put(10, newStorageResult(MEGABYTE_IN_BYTES * 30));
+        result.put(11, newStorageResult(MEGABYTE_IN_BYTES * 20));
+        // Both profiles loaded at first time
+        mController.handleResult(result);
+
+        // Profile 11 isn't loaded this time, the summed size must not change
+        result.put(10, newStorageResult(MEGABYTE_IN_BYTES * 40));
+        result.put(11, new StorageAsyncLoader.StorageResult());
+        mController.handleResult(result);
+
+        final ArgumentCaptor<Preference> argumentCaptor = ArgumentCaptor.forClass(Preference.class);
+        verify(mGroup).addPreference(argumentCaptor.capture());
+        final StorageItemPreference preference =
+                (StorageItemPreference) argumentCaptor.getValue();
+        assertThat(preference.getStorageSize()).isEqualTo(MEGABYTE_IN_BYTES * 50);
+    }
+
+    private static StorageAsyncLoader.StorageResult newStorageResult(long totalBytes) {
+        final StorageAsyncLoader.StorageResult result = new StorageAsyncLoader.StorageResult();
+        result.externalStats = new StorageStatsSource.ExternalStorageStats(
+                totalBytes, totalBytes / 3, totalBytes / 3, totalBytes / 3, 0);
+        return result;
+    }
+
     @Test
     public void dontAddPrimaryProfileAsASecondaryProfile() {
         final ArrayList<UserInfo> userInfos = new ArrayList<>();
@@ -28,6 +28,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Map;
+
 @RunWith(AndroidJUnit4.class)
 public class StorageCacheHelperTest {
     private static final long FAKE_IMAGES_SIZE = 7000L;
@@ -48,6 +50,7 @@ public class StorageCacheHelperTest {
     @Before
     public void setUp() {
         mContext = ApplicationProvider.getApplicationContext();
+        StorageCacheHelper.clearSnapshots();
         mHelper = new StorageCacheHelper(mContext, UserHandle.myUserId());
     }
 
@@ -64,7 +67,7 @@ public class StorageCacheHelperTest {
     }
 
     @Test
-    public void cacheSizeInfo_shouldSaveToSharedPreference() {
+    public void cacheSizeInfo_shouldSaveToSnapshot() {
         mHelper.cacheSizeInfo(getFakeStorageCache());
 
         StorageCacheHelper.StorageCache storageCache = mHelper.retrieveCachedSize();
@@ -74,7 +77,7 @@ public class StorageCacheHelperTest {
     }
 
     @Test
-    public void cacheTotalSizeAndUsedSize_shouldSaveToSharedPreference() {
+    public void cacheTotalSizeAndUsedSize_shouldSaveToSnapshot() {
         mHelper.cacheTotalSizeAndTotalUsedSize(FAKE_TOTAL_SIZE, FAKE_TOTAL_USED_SIZE);
 
         StorageCacheHelper.StorageCache storageCache = mHelper.retrieveCachedSize();
@@ -84,12 +87,63 @@ public class StorageCacheHelperTest {
     }
 
     @Test
-    public void cacheUsedSize_shouldSaveToSharedPreference() {
+    public void cacheUsedSize_shouldSaveToSnapshot() {
         mHelper.cacheUsedSize(FAKE_USED_SIZE);
 
         assertThat(mHelper.retrieveUsedSize()).isEqualTo(FAKE_USED_SIZE);
     }
 
+    @Test
+    public void cacheAppSizes_shouldRetrieveAppSizes() {
+        mHelper.cacheAppSizes(Map.of("com.test.app", FAKE_APPS_SIZE));
+
+        assertThat(mHelper.retrieveAppSizes()).containsExactly("com.test.app", FAKE_APPS_SIZE);
+        assertThat(mHelper.hasCachedSizeInfo()).isTrue();
+    }
+
+    @Test
+    public void snapshot_shouldBeRestoredFromDisk() {
+        mHelper.cacheSizeInfo(getFakeStorageCache());
+        mHelper.cacheUsedSize(FAKE_USED_SIZE);
+        mHelper.cacheAppSizes(Map.of("com.test.app", FAKE_APPS_SIZE));
+        mHelper.flush();
+        StorageCacheHelper.clearSnapshots();
+
+        final StorageCacheHelper helper =
+                new StorageCacheHelper(mContext, UserHandle.myUserId());
+
+        assertThat(helper.retrieveCachedSize().imagesSize).isEqualTo(FAKE_IMAGES_SIZE);
+        assertThat(helper.retrieveUsedSize()).isEqualTo(FAKE_USED_SIZE);
+        assertThat(helper.retrieveAppSizes()).containsExactly("com.test.app", FAKE_APPS_SIZE);
+    }
+
+    @Test
+    public void snapshot_legacyPreferences_shouldBeMigrated() {
+        final String legacyName = "StorageCache" + UserHandle.myUserId();
+        mContext.getSharedPreferences(legacyName, Context.MODE_PRIVATE)
+                .edit()
+                .putLong("images_size_key", FAKE_IMAGES_SIZE)
+                .putLong("total_size_key", FAKE_TOTAL_SIZE)
+                .putLong("used_size_key", FAKE_USED_SIZE)
+                .commit();
+        StorageCacheHelper.clearSnapshots();
+
+        final StorageCacheHelper helper =
+                new StorageCacheHelper(mContext, UserHandle.myUserId());
+
+        assertThat(helper.hasCachedSizeInfo()).isTrue();
+        assertThat(helper.retrieveCachedSize().imagesSize).isEqualTo(FAKE_IMAGES_SIZE);
+        assertThat(helper.retrieveCachedSize().totalSize).isEqualTo(FAKE_TOTAL_SIZE);
+        assertThat(helper.retrieveUsedSize()).isEqualTo(FAKE_USED_SIZE);
+
+        helper.flush();
+        StorageCacheHelper.clearSnapshots();
+        mContext.deleteSharedPreferences(legacyName);
+
+        assertThat(new StorageCacheHelper(mContext, UserHandle.myUserId()).retrieveUsedSize())
+                .isEqualTo(FAKE_USED_SIZE);
+    }
+
     private StorageCacheHelper.StorageCache getFakeStorageCache() {
         StorageCacheHelper.StorageCache result = new StorageCacheHelper.StorageCache();
         result.trashSize = FAKE_TRASH_SIZE;
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.BatteryStats.HistoryItem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class BatteryHistoryRecordsTest {
+
+    private BatteryHistoryRecords mRecords;
+
+    @Before
+    public void setUp() {
+        mRecords = new BatteryHistoryRecords();
+    }
+
+    @Test
+    public void add_sameDataRun_keepsFirstAndLastRecords() {
+        for (int time = 1; time <= 5; time++) {
+            mRecords.add(createRecord(HistoryItem.CMD_UPDATE, time, /* batteryLevel= */ 90));
+        }
+
+        assertThat(mRecords.size()).isEqualTo(2);
+        assertThat(mRecords.get(0, new HistoryItem()).time).isEqualTo(1);
+        assertThat(mRecords.get(1, new HistoryItem()).time).isEqualTo(5);
+    }
+
+    @Test
+    public void add_differentData_keepsAllRecords() {
+        mRecords.add(createRecord(HistoryItem.CMD_UPDATE, 1, /* batteryLevel= */ 90));
+        mRecords.add(createRecord(HistoryItem.CMD_UPDATE, 2, /* batteryLevel= */ 90));
+        mRecords.add(createRecord(HistoryItem.CMD_START, 3, /* batteryLevel= */ 90));
+        mRecords.add(createRecord(HistoryItem.CMD_UPDATE, 4, /* batteryLevel= */ 90));
+        mRecords.add(createRecord(HistoryItem.CMD_UPDATE, 5, /* batteryLevel= */ 89));
+
+        assertThat(mRecords.size()).isEqualTo(5);
+        final HistoryItem record = mRecords.get(2, new HistoryItem());
+        assertThat(record.cmd).isEqualTo(HistoryItem.CMD_START);
+        assertThat(record.time).isEqualTo(3);
+        assertThat(mRecords.get(4, record).batteryLevel).isEqualTo(89);
+    }
+
+    @Test
+    public void add_moreThanInitialCapacity_keepsAllRecords() {
+        final int count = 1000;
+        for (int time = 0; time < count; time++) {
+            mRecords.add(createRecord(HistoryItem.CMD_UPDATE, time, /* batteryLevel= */ time));
+        }
+
+        assertThat(mRecords.size()).isEqualTo(count);
+        assertThat(mRecords.get(count - 1, new HistoryItem()).time).isEqualTo(count - 1);
+    }
+
+    private static HistoryItem createRecord(byte cmd, long time, int batteryLevel) {
+        final HistoryItem record = new HistoryItem();
+        record.cmd = cmd;
+        record.time = time;
+        record.batteryLevel = (byte) batteryLevel;
+        return record;
+    }
+}
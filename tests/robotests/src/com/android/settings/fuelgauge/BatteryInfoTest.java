@@ -531,4 +531,17 @@ public class BatteryInfoTest {
         info = getBatteryInfo(true /* charging */, true /* enhanced */, true /* estimate */);
         assertHistoryAndLinearProjection(info);
     }
+
+    @Test
+    public void parseBatteryHistory_iteratesHistoryOnce() {
+        final BatteryInfo info =
+                getBatteryInfo(false /* charging */, false /* enhanced */, false /* estimate */);
+        mockBatteryStatsHistory();
+        final BatteryFlagParser parser = new BatteryFlagParser(0, false, 0);
+
+        info.parseBatteryHistory(parser);
+
+        verify(mBatteryUsageStats, times(1)).iterateBatteryStatsHistory();
+        assertThat(parser.getPeriod()).isEqualTo(2000);
+    }
 }
@@ -21,10 +21,12 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.robolectric.Shadows.shadowOf;
 
 import android.content.Context;
 import android.content.Intent;
 import android.os.BatteryUsageStats;
+import android.os.Looper;
 import android.os.PowerManager;
 
 import com.android.settings.fuelgauge.BatteryInfo;
@@ -44,6 +46,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.util.ReflectionHelpers;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @RunWith(RobolectricTestRunner.class)
@@ -94,4 +97,36 @@ public class BatteryTipLoaderTest {
             assertThat(batteryTips.get(i).getType()).isEqualTo(TIP_ORDER[i]);
         }
     }
+
+    @Test
+    public void loadInBackground_recordsLatencyOfEachDetector() {
+        mBatteryTipLoader.loadInBackground();
+
+        assertThat(mBatteryTipLoader.getDetectorLatencies().keySet())
+                .containsExactly(
+                        "HighUsageDetector",
+                        "BatteryDefenderDetector",
+                        "IncompatibleChargerDetector",
+                        "BatterySettingsFeatureProvider");
+    }
+
+    @Test
+    public void loadInBackground_withListener_publishesTipsExceptHighUsage() {
+        final List<List<BatteryTip>> partialTipsList = new ArrayList<>();
+        final BatteryTipLoader batteryTipLoader =
+                new BatteryTipLoader(mContext, mBatteryUsageStats, partialTipsList::add);
+        batteryTipLoader.mBatteryUtils = mBatteryUtils;
+        // Partial tips are only published while the loader is started.
+        ReflectionHelpers.setField(batteryTipLoader, "mReset", false);
+
+        batteryTipLoader.loadInBackground();
+        shadowOf(Looper.getMainLooper()).idle();
+
+        assertThat(partialTipsList).hasSize(1);
+        final List<BatteryTip> partialTips = partialTipsList.get(0);
+        assertThat(partialTips).hasSize(TIP_ORDER.length - 1);
+        for (BatteryTip batteryTip : partialTips) {
+            assertThat(batteryTip.getType()).isNotEqualTo(BatteryTip.TipType.HIGH_DEVICE_USAGE);
+        }
+    }
 }
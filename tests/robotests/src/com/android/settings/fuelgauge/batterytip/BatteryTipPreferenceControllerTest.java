@@ -19,7 +19,9 @@ import static com.android.settings.fuelgauge.batterytip.tips.BatteryTip.TipType.
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -131,6 +133,20 @@ public class BatteryTipPreferenceControllerTest {
         verify(mBatteryTipListener).onBatteryTipHandled(mBatteryTip);
     }
 
+    @Test
+    public void updatePartialBatteryTips_visibleTip_showsTipWithoutLogging() {
+        final List<BatteryTip> batteryTips = new ArrayList<>();
+        batteryTips.add(mBatteryTip);
+        doReturn(KEY_TIP).when(mBatteryTip).getKey();
+
+        final BatteryTip shownTip =
+                mBatteryTipPreferenceController.updatePartialBatteryTips(batteryTips);
+
+        assertThat(shownTip).isEqualTo(mBatteryTip);
+        assertThat(mCardPreference.isVisible()).isTrue();
+        verify(mBatteryTip, never()).log(any(), any());
+    }
+
     @Test
     public void getAvailabilityStatus_returnAvailableUnsearchable() {
         assertThat(mBatteryTipPreferenceController.getAvailabilityStatus())
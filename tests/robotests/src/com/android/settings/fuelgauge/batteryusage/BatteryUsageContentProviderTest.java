@@ -25,6 +25,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.util.Base64;
 
 import androidx.test.core.app.ApplicationProvider;
 
@@ -58,6 +59,8 @@ public final class BatteryUsageContentProviderTest {
     private static final String PACKAGE_NAME3 = "com.android.settings3";
     private static final long USER_ID1 = 1;
     private static final long USER_ID2 = 2;
+    private static final int SIX_DAYS_HOURS = 6 * 24;
+    private static final int ENTRIES_PER_HOUR = 50;
 
     private Context mContext;
     private BatteryUsageContentProvider mProvider;
@@ -196,6 +199,49 @@ public final class BatteryUsageContentProviderTest {
         cursor.close();
     }
 
+    @Test
+    public void query_batteryStateWithoutVersion_returnsBase64BatteryInformation() {
+        mProvider.onCreate();
+        BatteryTestUtils.insertDataToBatteryStateTable(mContext, TIMESTAMP1, PACKAGE_NAME1);
+        final byte[] expectedBatteryInformation =
+                BatteryStateDatabase.getInstance(mContext)
+                        .batteryStateDao()
+                        .getAllAfter(0)
+                        .get(0)
+                        .batteryInformation;
+
+        final Cursor cursor = query(getBatteryStateUri(/* version= */ null));
+
+        cursor.moveToFirst();
+        final int index = cursor.getColumnIndex(BatteryHistEntry.KEY_BATTERY_INFORMATION);
+        assertThat(cursor.getType(index)).isEqualTo(Cursor.FIELD_TYPE_STRING);
+        assertThat(Base64.decode(cursor.getString(index), Base64.DEFAULT))
+                .isEqualTo(expectedBatteryInformation);
+        cursor.close();
+    }
+
+    @Test
+    public void query_batteryStateWithBlobVersion_returnsBatteryInformationBytes() {
+        mProvider.onCreate();
+        BatteryTestUtils.insertDataToBatteryStateTable(mContext, TIMESTAMP1, PACKAGE_NAME1);
+        final byte[] expectedBatteryInformation =
+                BatteryStateDatabase.getInstance(mContext)
+                        .batteryStateDao()
+                        .getAllAfter(0)
+                        .get(0)
+                        .batteryInformation;
+
+        final Cursor cursor =
+                query(getBatteryStateUri(
+                        Integer.toString(DatabaseUtils.BATTERY_STATE_BLOB_VERSION)));
+
+        cursor.moveToFirst();
+        final int index = cursor.getColumnIndex(BatteryHistEntry.KEY_BATTERY_INFORMATION);
+        assertThat(cursor.getType(index)).isEqualTo(Cursor.FIELD_TYPE_BLOB);
+        assertThat(cursor.getBlob(index)).isEqualTo(expectedBatteryInformation);
+        cursor.close();
+    }
+
     @Test
     public void query_getBatteryStateLatestTimestamp_returnsExpectedResult() throws Exception {
         mProvider.onCreate();
@@ -293,8 +339,6 @@ public final class BatteryUsageContentProviderTest {
                         .setForegroundServiceUsageTimeInMs(1500)
                         .setDrainType(1)
                         .build();
-        final String expectedBatteryInformationString =
-                ConvertUtils.convertBatteryInformationToString(batteryInformation);
         ContentValues values = new ContentValues();
         values.put(BatteryHistEntry.KEY_UID, Long.valueOf(101L));
         values.put(BatteryHistEntry.KEY_USER_ID, Long.valueOf(1001L));
@@ -302,7 +346,7 @@ public final class BatteryUsageContentProviderTest {
         values.put(BatteryHistEntry.KEY_TIMESTAMP, Long.valueOf(2100021L));
         values.put(BatteryHistEntry.KEY_CONSUMER_TYPE, Integer.valueOf(2));
         values.put(BatteryHistEntry.KEY_IS_FULL_CHARGE_CYCLE_START, true);
-        values.put(BatteryHistEntry.KEY_BATTERY_INFORMATION, expectedBatteryInformationString);
+        values.put(BatteryHistEntry.KEY_BATTERY_INFORMATION, batteryInformation.toByteArray());
 
         final Uri uri = mProvider.insert(VALID_BATTERY_STATE_CONTENT_URI, values);
 
@@ -317,7 +361,7 @@ public final class BatteryUsageContentProviderTest {
         assertThat(states.get(0).timestamp).isEqualTo(2100021L);
         assertThat(states.get(0).consumerType).isEqualTo(2);
         assertThat(states.get(0).isFullChargeCycleStart).isTrue();
-        assertThat(states.get(0).batteryInformation).isEqualTo(expectedBatteryInformationString);
+        assertThat(states.get(0).batteryInformation).isEqualTo(batteryInformation.toByteArray());
     }
 
     @Test
@@ -347,7 +391,7 @@ public final class BatteryUsageContentProviderTest {
         assertThat(states).hasSize(1);
         assertThat(states.get(0).packageName).isEqualTo("fake_data");
         assertThat(states.get(0).timestamp).isEqualTo(2100022L);
-        assertThat(states.get(0).batteryInformation).isEqualTo(expectedBatteryInformationString);
+        assertThat(states.get(0).batteryInformation).isEqualTo(batteryInformation.toByteArray());
     }
 
     @Test
@@ -450,6 +494,86 @@ public final class BatteryUsageContentProviderTest {
         assertThat(cursor2.getCount()).isEqualTo(0);
     }
 
+    @Test
+    public void bulkInsert_sixDaysOfBatteryStates_insertsAllRows() {
+        mProvider.onCreate();
+        final ContentValues[] valuesArray = createSixDaysOfBatteryStates(/* startTimestamp= */ 0);
+
+        assertThat(mProvider.bulkInsert(VALID_BATTERY_STATE_CONTENT_URI, valuesArray))
+                .isEqualTo(valuesArray.length);
+        assertThat(
+                        BatteryStateDatabase.getInstance(mContext)
+                                .batteryStateDao()
+                                .getDistinctTimestampCount(/* timestamp= */ -1))
+                .isEqualTo(SIX_DAYS_HOURS);
+        assertThat(
+                        BatteryStateDatabase.getInstance(mContext)
+                                .batteryStateDao()
+                                .getAllAfter(/* timestamp= */ -1))
+                .hasSize(valuesArray.length);
+    }
+
+    @Test
+    public void bulkInsert_sixDaysOfBatteryStates_fasterThanInsertPerRow() {
+        mProvider.onCreate();
+        final ContentValues[] perRowValues =
+                createSixDaysOfBatteryStates(/* startTimestamp= */ 0);
+        final ContentValues[] bulkValues =
+                createSixDaysOfBatteryStates(Duration.ofDays(7).toMillis());
+
+        long startTime = System.nanoTime();
+        for (ContentValues values : perRowValues) {
+            mProvider.insert(VALID_BATTERY_STATE_CONTENT_URI, values);
+        }
+        final long perRowNanos = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        mProvider.bulkInsert(VALID_BATTERY_STATE_CONTENT_URI, bulkValues);
+        final long bulkNanos = System.nanoTime() - startTime;
+
+        System.out.println("insert() per row: " + perRowNanos / 1_000_000 + " ms, bulkInsert(): "
+                + bulkNanos / 1_000_000 + " ms for " + bulkValues.length + " rows");
+        assertThat(
+                        BatteryStateDatabase.getInstance(mContext)
+                                .batteryStateDao()
+                                .getAllAfter(/* timestamp= */ -1))
+                .hasSize(perRowValues.length + bulkValues.length);
+        assertThat(bulkNanos).isLessThan(perRowNanos);
+    }
+
+    @Test
+    public void bulkInsert_batteryEvents_insertsAllRows() {
+        mProvider.onCreate();
+        final ContentValues[] valuesArray = new ContentValues[2];
+        for (int i = 0; i < valuesArray.length; i++) {
+            valuesArray[i] = new ContentValues();
+            valuesArray[i].put(BatteryEventEntity.KEY_TIMESTAMP, 10001L + i);
+            valuesArray[i].put(
+                    BatteryEventEntity.KEY_BATTERY_EVENT_TYPE,
+                    BatteryEventType.POWER_CONNECTED.getNumber());
+            valuesArray[i].put(BatteryEventEntity.KEY_BATTERY_LEVEL, 66);
+        }
+
+        assertThat(mProvider.bulkInsert(DatabaseUtils.BATTERY_EVENT_URI, valuesArray))
+                .isEqualTo(2);
+        assertThat(BatteryStateDatabase.getInstance(mContext).batteryEventDao().getAll())
+                .hasSize(2);
+    }
+
+    @Test
+    public void bulkInsert_incorrectContentUri_throwsIllegalArgumentException() {
+        final Uri uri =
+                new Uri.Builder()
+                        .scheme(ContentResolver.SCHEME_CONTENT)
+                        .authority(DatabaseUtils.AUTHORITY)
+                        .appendPath(DatabaseUtils.BATTERY_STATE_TABLE + "/0")
+                        .build();
+        mProvider.onCreate();
+
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> mProvider.bulkInsert(uri, new ContentValues[0]));
+    }
+
     @Test
     public void delete_throwsUnsupportedOperationException() {
         assertThrows(
@@ -496,6 +620,19 @@ public final class BatteryUsageContentProviderTest {
         return cursor;
     }
 
+    private static Uri getBatteryStateUri(String version) {
+        final Uri.Builder builder =
+                new Uri.Builder()
+                        .scheme(ContentResolver.SCHEME_CONTENT)
+                        .authority(DatabaseUtils.AUTHORITY)
+                        .appendPath(DatabaseUtils.BATTERY_STATE_TABLE)
+                        .appendQueryParameter(DatabaseUtils.QUERY_KEY_TIMESTAMP, "0");
+        if (version != null) {
+            builder.appendQueryParameter(DatabaseUtils.QUERY_KEY_VERSION, version);
+        }
+        return builder.build();
+    }
+
     private Cursor getCursorOfLastFullChargeTimestamp() {
         final Uri lastFullChargeTimestampContentUri =
                 new Uri.Builder()
@@ -598,4 +735,29 @@ public final class BatteryUsageContentProviderTest {
         return mProvider.query(
                 uri, /* strings= */ null, /* s= */ null, /* strings1= */ null, /* s1= */ null);
     }
+
+    private static ContentValues[] createSixDaysOfBatteryStates(long startTimestamp) {
+        final byte[] batteryInformation =
+                BatteryInformation.newBuilder()
+                        .setAppLabel("Settings")
+                        .setConsumePower(1.5)
+                        .build()
+                        .toByteArray();
+        final ContentValues[] valuesArray =
+                new ContentValues[SIX_DAYS_HOURS * ENTRIES_PER_HOUR];
+        for (int hour = 0; hour < SIX_DAYS_HOURS; hour++) {
+            for (int entry = 0; entry < ENTRIES_PER_HOUR; entry++) {
+                final ContentValues values = new ContentValues();
+                values.put(BatteryHistEntry.KEY_UID, 10000L + entry);
+                values.put(BatteryHistEntry.KEY_USER_ID, USER_ID1);
+                values.put(BatteryHistEntry.KEY_PACKAGE_NAME, "com.android.app" + entry);
+                values.put(
+                        BatteryHistEntry.KEY_TIMESTAMP,
+                        startTimestamp + hour * Duration.ofHours(1).toMillis());
+                values.put(BatteryHistEntry.KEY_BATTERY_INFORMATION, batteryInformation);
+                valuesArray[hour * ENTRIES_PER_HOUR + entry] = values;
+            }
+        }
+        return valuesArray;
+    }
 }
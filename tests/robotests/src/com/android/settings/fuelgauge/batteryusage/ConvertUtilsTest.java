@@ -478,6 +478,36 @@ public final class ConvertUtilsTest {
         assertThat(appUsageEvent).isNull();
     }
 
+    @Test
+    public void getBatteryInformation_blobCursor_returnsExpectedResult() {
+        final BatteryInformation expected =
+                BatteryInformation.newBuilder().setAppLabel("Settings").setTotalPower(5.1).build();
+        final MatrixCursor cursor =
+                new MatrixCursor(new String[] {BatteryHistEntry.KEY_BATTERY_INFORMATION});
+        cursor.addRow(new Object[] {expected.toByteArray()});
+        cursor.moveToFirst();
+
+        assertThat(
+                        ConvertUtils.getBatteryInformation(
+                                cursor, BatteryHistEntry.KEY_BATTERY_INFORMATION))
+                .isEqualTo(expected);
+    }
+
+    @Test
+    public void getBatteryInformation_legacyStringCursor_returnsExpectedResult() {
+        final BatteryInformation expected =
+                BatteryInformation.newBuilder().setAppLabel("Settings").setTotalPower(5.1).build();
+        final MatrixCursor cursor =
+                new MatrixCursor(new String[] {BatteryHistEntry.KEY_BATTERY_INFORMATION});
+        cursor.addRow(new Object[] {ConvertUtils.convertBatteryInformationToString(expected)});
+        cursor.moveToFirst();
+
+        assertThat(
+                        ConvertUtils.getBatteryInformation(
+                                cursor, BatteryHistEntry.KEY_BATTERY_INFORMATION))
+                .isEqualTo(expected);
+    }
+
     @Test
     public void convertToAppUsageEvent_returnExpectedResult() {
         final MatrixCursor cursor =
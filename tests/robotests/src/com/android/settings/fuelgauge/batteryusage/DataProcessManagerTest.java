@@ -36,6 +36,8 @@ import android.os.BatteryManager;
 import android.os.BatteryStatsManager;
 import android.os.BatteryUsageStats;
 import android.os.BatteryUsageStatsQuery;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.RemoteException;
 import android.os.UserManager;
@@ -54,13 +56,17 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadows.ShadowLooper;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Supplier;
 
 @RunWith(RobolectricTestRunner.class)
@@ -69,6 +75,7 @@ public final class DataProcessManagerTest {
 
     private Context mContext;
     private DataProcessManager mDataProcessManager;
+    private Executor mOriginalExecutor;
 
     @Mock private IUsageStatsManager mUsageStatsManager;
     @Mock private UserManager mUserManager;
@@ -80,6 +87,9 @@ public final class DataProcessManagerTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        // Runs all the loading stages synchronously.
+        mOriginalExecutor = DataProcessManager.sExecutor;
+        DataProcessManager.sExecutor = Runnable::run;
 
         mContext = spy(RuntimeEnvironment.application);
         DataProcessor.sTestSystemAppsPackageNames = Set.of();
@@ -111,6 +121,7 @@ public final class DataProcessManagerTest {
     public void cleanUp() {
         DatabaseUtils.sFakeSupplier = null;
         DataProcessManager.sFakeBatteryHistoryMap = null;
+        DataProcessManager.sExecutor = mOriginalExecutor;
     }
 
     @Test
@@ -144,6 +155,96 @@ public final class DataProcessManagerTest {
         assertThat(mDataProcessManager.getAppUsagePeriodMap()).isNull();
     }
 
+    @Test
+    @LooperMode(LooperMode.Mode.LEGACY)
+    public void start_recordsStageLatencies() {
+        DatabaseUtils.sFakeSupplier = () -> null;
+        doReturn(true).when(mUserManager).isUserUnlocked(anyInt());
+
+        mDataProcessManager.start();
+
+        assertThat(mDataProcessManager.getStageLatencies().keySet())
+                .containsExactly(
+                        "loadCurrentBatteryHistoryMap",
+                        "loadCurrentAppUsageList",
+                        "loadBatteryUsageSlotList",
+                        "loadDatabaseAppUsageList",
+                        "loadPowerConnectionBatteryEventList",
+                        "processAppUsageData",
+                        "generateFinalData");
+        final StringWriter stringWriter = new StringWriter();
+        DataProcessManager.dump(new PrintWriter(stringWriter));
+        assertThat(stringWriter.toString()).contains("generateFinalData");
+    }
+
+    @Test
+    @LooperMode(LooperMode.Mode.LEGACY)
+    public void start_afterCancel_notLoadAnyData() {
+        DatabaseUtils.sFakeSupplier = () -> null;
+
+        mDataProcessManager.cancel();
+        mDataProcessManager.start();
+
+        assertThat(mDataProcessManager.isCancelled()).isTrue();
+        assertThat(mDataProcessManager.getIsCurrentBatteryHistoryLoaded()).isFalse();
+        assertThat(mDataProcessManager.getIsDatabaseAppUsageLoaded()).isFalse();
+        assertThat(mDataProcessManager.getStageLatencies()).isEmpty();
+    }
+
+    @Test
+    @LooperMode(LooperMode.Mode.LEGACY)
+    public void cancel_pendingStages_notApplyCallback() {
+        final List<Runnable> pendingStages = new ArrayList<>();
+        DataProcessManager.sExecutor = pendingStages::add;
+        final List<Map<Long, BatteryDiffData>> results = new ArrayList<>();
+        final DataProcessManager dataProcessManager =
+                new DataProcessManager(
+                        mContext,
+                        new Handler(Looper.getMainLooper()),
+                        /* rawStartTimestamp= */ 0L,
+                        /* lastFullChargeTimestamp= */ 0L,
+                        results::add,
+                        /* hourlyBatteryLevelsPerDay= */ new ArrayList<>(),
+                        /* batteryHistoryMap= */ new HashMap<>());
+        DatabaseUtils.sFakeSupplier = () -> null;
+
+        dataProcessManager.start();
+        dataProcessManager.cancel();
+        pendingStages.forEach(Runnable::run);
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(results).isEmpty();
+        assertThat(dataProcessManager.getStageLatencies()).isEmpty();
+    }
+
+    @Test
+    @LooperMode(LooperMode.Mode.LEGACY)
+    public void start_databaseStagesFail_applyCallbackWithLoadedData() {
+        final List<Map<Long, BatteryDiffData>> results = new ArrayList<>();
+        final DataProcessManager dataProcessManager =
+                new DataProcessManager(
+                        mContext,
+                        new Handler(Looper.getMainLooper()),
+                        /* rawStartTimestamp= */ 0L,
+                        /* lastFullChargeTimestamp= */ 0L,
+                        results::add,
+                        /* hourlyBatteryLevelsPerDay= */ new ArrayList<>(),
+                        /* batteryHistoryMap= */ new HashMap<>());
+        DatabaseUtils.sFakeSupplier =
+                () -> {
+                    throw new IllegalStateException("database unavailable");
+                };
+        doReturn(true).when(mUserManager).isUserUnlocked(anyInt());
+
+        dataProcessManager.start();
+        ShadowLooper.runUiThreadTasks();
+
+        assertThat(results).hasSize(1);
+        assertThat(dataProcessManager.getIsCurrentBatteryHistoryLoaded()).isTrue();
+        assertThat(dataProcessManager.getIsDatabaseAppUsageLoaded()).isTrue();
+        assertThat(dataProcessManager.getIsBatteryEventLoaded()).isTrue();
+    }
+
     @Test
     @LooperMode(LooperMode.Mode.LEGACY)
     public void start_loadExpectedAppUsageData() throws RemoteException {
@@ -41,6 +41,7 @@ import android.content.IntentFilter;
 import android.content.pm.UserInfo;
 import android.os.BatteryConsumer;
 import android.os.BatteryManager;
+import android.os.BatteryStatsManager;
 import android.os.BatteryUsageStats;
 import android.os.Parcel;
 import android.os.RemoteException;
@@ -79,6 +80,7 @@ public final class DataProcessorTest {
 
     @Mock private Intent mIntent;
     @Mock private BatteryUsageStats mBatteryUsageStats;
+    @Mock private BatteryStatsManager mBatteryStatsManager;
     @Mock private UserManager mUserManager;
     @Mock private IUsageStatsManager mUsageStatsManager;
     @Mock private BatteryEntry mMockBatteryEntry1;
@@ -106,6 +108,7 @@ public final class DataProcessorTest {
         doReturn(mContext).when(mContext).getApplicationContext();
         doReturn(mUserManager).when(mContext).getSystemService(UserManager.class);
         doReturn(new int[] {0}).when(mUserManager).getProfileIdsWithDisabled(anyInt());
+        doReturn(mBatteryStatsManager).when(mContext).getSystemService(BatteryStatsManager.class);
     }
 
     @Test
@@ -951,6 +954,92 @@ public final class DataProcessorTest {
         assertThat(batteryDiffData.getEndTimestamp()).isEqualTo(batteryHistoryKeys[2]);
     }
 
+    @Test
+    public void getBatteryUsageDataSinceLastFullCharge_storedSlotsAndRawHistory_combinesBoth() {
+        final long[] timestamps =
+                new long[] {
+                    1700006400000L, // 2023-11-15 08:00:00
+                    1700013600000L, // 2023-11-15 10:00:00
+                    1700017200000L, // 2023-11-15 11:00:00
+                    1700020800000L, // 2023-11-15 12:00:00
+                    1700024400000L, // 2023-11-15 13:00:00
+                    1700028000000L, // 2023-11-15 14:00:00
+                };
+        DataProcessor.sTestCurrentTimeMillis = timestamps[5];
+        final List<BatteryEvent> batteryLevelRecordEvents =
+                List.of(
+                        createBatteryLevelRecordEvent(timestamps[1], /* batteryLevel= */ 90),
+                        createBatteryLevelRecordEvent(timestamps[0], /* batteryLevel= */ 100));
+        final List<BatteryUsageSlot> batteryUsageSlots =
+                List.of(createBatteryUsageSlot(timestamps[0], timestamps[1], /* uid= */ 1L));
+        // Raw history is only loaded since the latest battery level record.
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap =
+                Map.of(
+                        timestamps[1], createBatteryHistoryMap(/* uid= */ 2L, 0),
+                        timestamps[2], createBatteryHistoryMap(/* uid= */ 2L, 5),
+                        timestamps[3], createBatteryHistoryMap(/* uid= */ 2L, 10),
+                        timestamps[4], createBatteryHistoryMap(/* uid= */ 2L, 15));
+
+        final Map<Integer, Map<Integer, BatteryDiffData>> resultMap =
+                DataProcessor.getBatteryUsageDataSinceLastFullCharge(
+                        mContext, batteryLevelRecordEvents, batteryUsageSlots, batteryHistoryMap);
+
+        assertThat(resultMap).isNotNull();
+        assertThat(getAppUids(resultMap.get(0).get(0))).containsExactly(1L);
+        assertThat(getAppUids(resultMap.get(0).get(1))).containsExactly(2L);
+        assertThat(
+                        getAppUids(
+                                resultMap
+                                        .get(DataProcessor.SELECTED_INDEX_ALL)
+                                        .get(DataProcessor.SELECTED_INDEX_ALL)))
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    public void getBatteryUsageDataSinceLastFullCharge_noBatteryLevelRecord_usesRawHistory() {
+        final long[] timestamps =
+                new long[] {
+                    1700006400000L, // 2023-11-15 08:00:00
+                    1700010000000L, // 2023-11-15 09:00:00
+                    1700013600000L, // 2023-11-15 10:00:00
+                    1700017200000L, // 2023-11-15 11:00:00
+                    1700020800000L, // 2023-11-15 12:00:00
+                };
+        DataProcessor.sTestCurrentTimeMillis = timestamps[4];
+        final Map<Long, Map<String, BatteryHistEntry>> batteryHistoryMap =
+                Map.of(
+                        timestamps[0], createBatteryHistoryMap(/* uid= */ 2L, 0),
+                        timestamps[1], createBatteryHistoryMap(/* uid= */ 2L, 5),
+                        timestamps[2], createBatteryHistoryMap(/* uid= */ 2L, 10),
+                        timestamps[3], createBatteryHistoryMap(/* uid= */ 2L, 15));
+
+        final Map<Integer, Map<Integer, BatteryDiffData>> resultMap =
+                DataProcessor.getBatteryUsageDataSinceLastFullCharge(
+                        mContext,
+                        /* batteryLevelRecordEvents= */ List.of(),
+                        /* batteryUsageSlots= */ List.of(),
+                        batteryHistoryMap);
+
+        assertThat(resultMap).isNotNull();
+        assertThat(
+                        getAppUids(
+                                resultMap
+                                        .get(DataProcessor.SELECTED_INDEX_ALL)
+                                        .get(DataProcessor.SELECTED_INDEX_ALL)))
+                .containsExactly(2L);
+    }
+
+    @Test
+    public void getBatteryUsageDataSinceLastFullCharge_noData_returnNull() {
+        assertThat(
+                        DataProcessor.getBatteryUsageDataSinceLastFullCharge(
+                                mContext,
+                                /* batteryLevelRecordEvents= */ List.of(),
+                                /* batteryUsageSlots= */ List.of(),
+                                /* batteryHistoryMap= */ Map.of()))
+                .isNull();
+    }
+
     @Test
     public void generateBatteryUsageMap_returnsExpectedResult() {
         final long[] batteryHistoryKeys =
@@ -2388,6 +2477,61 @@ public final class DataProcessorTest {
         return new BatteryHistEntry(values);
     }
 
+    private Map<String, BatteryHistEntry> createBatteryHistoryMap(
+            final long uid, final double consumePower) {
+        final BatteryHistEntry entry =
+                createBatteryHistEntry(
+                        "package" + uid,
+                        "label" + uid,
+                        consumePower,
+                        /* foregroundUsageConsumePower= */ 0,
+                        /* foregroundServiceUsageConsumePower= */ 0,
+                        /* backgroundUsageConsumePower= */ 0,
+                        /* cachedUsageConsumePower= */ 0,
+                        uid,
+                        mContext.getUserId(),
+                        ConvertUtils.CONSUMER_TYPE_UID_BATTERY,
+                        /* foregroundUsageTimeInMs= */ 0L,
+                        /* backgroundUsageTimeInMs= */ 0L,
+                        /* isHidden= */ false);
+        return Map.of(entry.getKey(), entry);
+    }
+
+    private BatteryUsageSlot createBatteryUsageSlot(
+            final long startTimestamp, final long endTimestamp, final long uid) {
+        return BatteryUsageSlot.newBuilder()
+                .setStartTimestamp(startTimestamp)
+                .setEndTimestamp(endTimestamp)
+                .addAppUsage(
+                        BatteryUsageDiff.newBuilder()
+                                .setUid(uid)
+                                .setUserId(mContext.getUserId())
+                                .setPackageName("package" + uid)
+                                .setLabel("label" + uid)
+                                .setKey(String.valueOf(uid))
+                                .setConsumerType(ConvertUtils.CONSUMER_TYPE_UID_BATTERY)
+                                .setConsumePower(5)
+                                .build())
+                .build();
+    }
+
+    private static BatteryEvent createBatteryLevelRecordEvent(
+            final long timestamp, final int batteryLevel) {
+        return BatteryEvent.newBuilder()
+                .setTimestamp(timestamp)
+                .setType(BatteryEventType.EVEN_HOUR)
+                .setBatteryLevel(batteryLevel)
+                .build();
+    }
+
+    private static List<Long> getAppUids(final BatteryDiffData batteryDiffData) {
+        final List<Long> uids = new ArrayList<>();
+        for (BatteryDiffEntry entry : batteryDiffData.getAppDiffEntryList()) {
+            uids.add(entry.mUid);
+        }
+        return uids;
+    }
+
     private UsageEvents getUsageEvents(final List<Event> events) {
         UsageEvents usageEvents = new UsageEvents(events, new String[] {"package"});
         Parcel parcel = Parcel.obtain();
@@ -24,7 +24,9 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -52,6 +54,7 @@ import com.android.settings.testutils.BatteryTestUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
@@ -85,6 +88,8 @@ public final class DatabaseUtilsTest {
         mContext = spy(RuntimeEnvironment.application);
         doReturn(mMockContentResolver2).when(mMockContext).getContentResolver();
         doReturn(mMockContentResolver).when(mContext).getContentResolver();
+        when(mMockContentResolver.bulkInsert(any(), any()))
+                .thenAnswer(invocation -> ((ContentValues[]) invocation.getArgument(1)).length);
         doReturn(mPackageManager).when(mMockContext).getPackageManager();
         doReturn(mPackageManager).when(mContext).getPackageManager();
         DatabaseUtils.getSharedPreferences(mContext).edit().clear().apply();
@@ -111,27 +116,38 @@ public final class DatabaseUtilsTest {
         appUsageEventList.add(appUsageEvent2);
         appUsageEventList.add(appUsageEvent3);
 
-        final List<ContentValues> valuesList =
-                DatabaseUtils.sendAppUsageEventData(mContext, appUsageEventList);
+        assertThat(DatabaseUtils.sendAppUsageEventData(mContext, appUsageEventList)).isEqualTo(2);
 
-        assertThat(valuesList).hasSize(2);
-        assertThat(valuesList.get(0).getAsInteger(AppUsageEventEntity.KEY_APP_USAGE_EVENT_TYPE))
+        // Verifies the inserted ContentValues into content provider.
+        final ArgumentCaptor<ContentValues[]> captor =
+                ArgumentCaptor.forClass(ContentValues[].class);
+        verify(mMockContentResolver)
+                .bulkInsert(eq(DatabaseUtils.APP_USAGE_EVENT_URI), captor.capture());
+        final ContentValues[] valuesArray = captor.getValue();
+        assertThat(valuesArray).hasLength(2);
+        assertThat(valuesArray[0].getAsInteger(AppUsageEventEntity.KEY_APP_USAGE_EVENT_TYPE))
                 .isEqualTo(1);
-        assertThat(valuesList.get(1).getAsInteger(AppUsageEventEntity.KEY_APP_USAGE_EVENT_TYPE))
+        assertThat(valuesArray[1].getAsInteger(AppUsageEventEntity.KEY_APP_USAGE_EVENT_TYPE))
                 .isEqualTo(2);
-        // Verifies the inserted ContentValues into content provider.
-        final ContentValues[] valuesArray =
-                new ContentValues[] {valuesList.get(0), valuesList.get(1)};
-        verify(mMockContentResolver).bulkInsert(DatabaseUtils.APP_USAGE_EVENT_URI, valuesArray);
         verify(mMockContentResolver)
                 .notifyChange(DatabaseUtils.APP_USAGE_EVENT_URI, /* observer= */ null);
     }
 
+    @Test
+    public void sendAppUsageEventData_bulkInsertFailed_returnsZeroAndNotNotify() {
+        doReturn(0).when(mMockContentResolver).bulkInsert(any(), any());
+        final List<AppUsageEvent> appUsageEventList =
+                List.of(AppUsageEvent.newBuilder().setUid(101L).build());
+
+        assertThat(DatabaseUtils.sendAppUsageEventData(mContext, appUsageEventList)).isEqualTo(0);
+
+        verify(mMockContentResolver, never())
+                .notifyChange(eq(DatabaseUtils.APP_USAGE_EVENT_URI), any());
+    }
+
     @Test
     public void sendAppUsageEventData_emptyAppUsageEventList_notSend() {
-        final List<ContentValues> valuesList =
-                DatabaseUtils.sendAppUsageEventData(mContext, new ArrayList<>());
-        assertThat(valuesList).hasSize(0);
+        assertThat(DatabaseUtils.sendAppUsageEventData(mContext, new ArrayList<>())).isEqualTo(0);
         verifyNoMoreInteractions(mMockContentResolver);
     }
 
@@ -165,7 +181,7 @@ public final class DatabaseUtilsTest {
                                 /* batteryEntryList= */ null,
                                 mBatteryUsageStats,
                                 /* isFullChargeStart= */ false))
-                .isNull();
+                .isEqualTo(0);
     }
 
     @Test
@@ -181,7 +197,7 @@ public final class DatabaseUtilsTest {
         doReturn(0.0).when(mMockBatteryEntry3).getConsumedPower();
         doReturn(1L).when(mMockBatteryEntry3).getTimeInForegroundMs();
 
-        final List<ContentValues> valuesList =
+        final int size =
                 DatabaseUtils.sendBatteryEntryData(
                         mContext,
                         System.currentTimeMillis(),
@@ -189,23 +205,50 @@ public final class DatabaseUtilsTest {
                         mBatteryUsageStats,
                         /* isFullChargeStart= */ false);
 
-        assertThat(valuesList).hasSize(2);
-        // Verifies the ContentValues content.
-        verifyBatteryEntryContentValues(0.5, valuesList.get(0));
-        verifyBatteryEntryContentValues(0.0, valuesList.get(1));
+        assertThat(size).isEqualTo(2);
         // Verifies the inserted ContentValues into content provider.
-        final ContentValues[] valuesArray =
-                new ContentValues[] {valuesList.get(0), valuesList.get(1)};
-        verify(mMockContentResolver).bulkInsert(DatabaseUtils.BATTERY_CONTENT_URI, valuesArray);
+        final ArgumentCaptor<ContentValues[]> captor =
+                ArgumentCaptor.forClass(ContentValues[].class);
+        verify(mMockContentResolver)
+                .bulkInsert(eq(DatabaseUtils.BATTERY_CONTENT_URI), captor.capture());
+        final ContentValues[] valuesArray = captor.getValue();
+        assertThat(valuesArray).hasLength(2);
+        verifyBatteryEntryContentValues(0.5, valuesArray[0]);
+        verifyBatteryEntryContentValues(0.0, valuesArray[1]);
         verify(mMockContentResolver)
                 .notifyChange(DatabaseUtils.BATTERY_CONTENT_URI, /* observer= */ null);
     }
 
+    @Test
+    public void sendBatteryEntryData_bulkInsertFailed_sendFakeDataIntoProvider() {
+        doReturn(getBatteryIntent()).when(mContext).registerReceiver(any(), any());
+        doReturn(0).when(mMockContentResolver).bulkInsert(any(), any());
+        doReturn(0.5).when(mMockBatteryEntry1).getConsumedPower();
+        doReturn(0.5).when(mMockBatteryEntry2).getConsumedPower();
+
+        final int size =
+                DatabaseUtils.sendBatteryEntryData(
+                        mContext,
+                        System.currentTimeMillis(),
+                        List.of(mMockBatteryEntry1, mMockBatteryEntry2),
+                        mBatteryUsageStats,
+                        /* isFullChargeStart= */ false);
+
+        assertThat(size).isEqualTo(1);
+        // The whole snapshot is sent in one transaction, nothing is left to delete.
+        verify(mMockContentResolver).bulkInsert(eq(DatabaseUtils.BATTERY_CONTENT_URI), any());
+        verify(mMockContentResolver, never()).delete(any(), any(), any());
+        final ArgumentCaptor<ContentValues> captor = ArgumentCaptor.forClass(ContentValues.class);
+        verify(mMockContentResolver)
+                .insert(eq(DatabaseUtils.BATTERY_CONTENT_URI), captor.capture());
+        verifyFakeBatteryEntryContentValues(captor.getValue());
+    }
+
     @Test
     public void sendBatteryEntryData_emptyBatteryEntryList_sendFakeDataIntoProvider() {
         doReturn(getBatteryIntent()).when(mContext).registerReceiver(any(), any());
 
-        final List<ContentValues> valuesList =
+        final int size =
                 DatabaseUtils.sendBatteryEntryData(
                         mContext,
                         System.currentTimeMillis(),
@@ -213,10 +256,13 @@ public final class DatabaseUtilsTest {
                         mBatteryUsageStats,
                         /* isFullChargeStart= */ false);
 
-        assertThat(valuesList).hasSize(1);
-        verifyFakeBatteryEntryContentValues(valuesList.get(0));
+        assertThat(size).isEqualTo(1);
         // Verifies the inserted ContentValues into content provider.
-        verify(mMockContentResolver).insert(any(), any());
+        final ArgumentCaptor<ContentValues> captor = ArgumentCaptor.forClass(ContentValues.class);
+        verify(mMockContentResolver)
+                .insert(eq(DatabaseUtils.BATTERY_CONTENT_URI), captor.capture());
+        verifyFakeBatteryEntryContentValues(captor.getValue());
+        verify(mMockContentResolver, never()).bulkInsert(any(), any());
         verify(mMockContentResolver)
                 .notifyChange(DatabaseUtils.BATTERY_CONTENT_URI, /* observer= */ null);
     }
@@ -225,7 +271,7 @@ public final class DatabaseUtilsTest {
     public void sendBatteryEntryData_nullBatteryEntryList_sendFakeDataIntoProvider() {
         doReturn(getBatteryIntent()).when(mContext).registerReceiver(any(), any());
 
-        final List<ContentValues> valuesList =
+        final int size =
                 DatabaseUtils.sendBatteryEntryData(
                         mContext,
                         System.currentTimeMillis(),
@@ -233,10 +279,13 @@ public final class DatabaseUtilsTest {
                         mBatteryUsageStats,
                         /* isFullChargeStart= */ false);
 
-        assertThat(valuesList).hasSize(1);
-        verifyFakeBatteryEntryContentValues(valuesList.get(0));
+        assertThat(size).isEqualTo(1);
         // Verifies the inserted ContentValues into content provider.
-        verify(mMockContentResolver).insert(any(), any());
+        final ArgumentCaptor<ContentValues> captor = ArgumentCaptor.forClass(ContentValues.class);
+        verify(mMockContentResolver)
+                .insert(eq(DatabaseUtils.BATTERY_CONTENT_URI), captor.capture());
+        verifyFakeBatteryEntryContentValues(captor.getValue());
+        verify(mMockContentResolver, never()).bulkInsert(any(), any());
         verify(mMockContentResolver)
                 .notifyChange(DatabaseUtils.BATTERY_CONTENT_URI, /* observer= */ null);
     }
@@ -245,7 +294,7 @@ public final class DatabaseUtilsTest {
     public void sendBatteryEntryData_nullBatteryUsageStats_sendFakeDataIntoProvider() {
         doReturn(getBatteryIntent()).when(mContext).registerReceiver(any(), any());
 
-        final List<ContentValues> valuesList =
+        final int size =
                 DatabaseUtils.sendBatteryEntryData(
                         mContext,
                         System.currentTimeMillis(),
@@ -253,10 +302,13 @@ public final class DatabaseUtilsTest {
                         /* batteryUsageStats= */ null,
                         /* isFullChargeStart= */ false);
 
-        assertThat(valuesList).hasSize(1);
-        verifyFakeBatteryEntryContentValues(valuesList.get(0));
+        assertThat(size).isEqualTo(1);
         // Verifies the inserted ContentValues into content provider.
-        verify(mMockContentResolver).insert(any(), any());
+        final ArgumentCaptor<ContentValues> captor = ArgumentCaptor.forClass(ContentValues.class);
+        verify(mMockContentResolver)
+                .insert(eq(DatabaseUtils.BATTERY_CONTENT_URI), captor.capture());
+        verifyFakeBatteryEntryContentValues(captor.getValue());
+        verify(mMockContentResolver, never()).bulkInsert(any(), any());
         verify(mMockContentResolver)
                 .notifyChange(DatabaseUtils.BATTERY_CONTENT_URI, /* observer= */ null);
     }
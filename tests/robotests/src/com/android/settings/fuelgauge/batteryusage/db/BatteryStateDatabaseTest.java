@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.fuelgauge.batteryusage.db;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Base64;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for the migrations of {@link BatteryStateDatabase}. */
+@RunWith(RobolectricTestRunner.class)
+public final class BatteryStateDatabaseTest {
+    private static final String DATABASE_NAME = "battery-usage-migration-test";
+    private static final String PACKAGE_NAME1 = "com.android.apps.settings";
+    private static final String PACKAGE_NAME2 = "com.android.apps.calendar";
+    private static final byte[] BATTERY_INFORMATION = {1, 2, 3, 4};
+
+    private Context mContext;
+    private BatteryStateDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (mDatabase != null) {
+            mDatabase.close();
+        }
+        mContext.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void migrate1To3_convertsBatteryInformationAndValidatesSchema() {
+        final SQLiteDatabase database = createVersion1Database();
+        insertVersion1BatteryState(
+                database,
+                1L,
+                PACKAGE_NAME1,
+                Base64.encodeToString(BATTERY_INFORMATION, Base64.DEFAULT));
+        insertVersion1BatteryState(database, 2L, PACKAGE_NAME2, /* batteryInformation= */ null);
+        insertVersion1BatteryState(database, 3L, "undecodable", "not base64!");
+        database.close();
+
+        // Room validates the migrated schema against the entities when opening it.
+        mDatabase = openMigratedDatabase();
+        final List<BatteryState> states = mDatabase.batteryStateDao().getAllAfter(0);
+
+        assertThat(states).hasSize(2);
+        assertThat(states.get(0).packageName).isEqualTo(PACKAGE_NAME2);
+        assertThat(states.get(0).batteryInformation).isNull();
+        assertThat(states.get(1).packageName).isEqualTo(PACKAGE_NAME1);
+        assertThat(states.get(1).uid).isEqualTo(1001L);
+        assertThat(states.get(1).userId).isEqualTo(100L);
+        assertThat(states.get(1).consumerType).isEqualTo(2);
+        assertThat(states.get(1).isFullChargeCycleStart).isTrue();
+        assertThat(states.get(1).batteryInformation).isEqualTo(BATTERY_INFORMATION);
+    }
+
+    @Test
+    public void migrate1To3_createsIndicesNamedAsRoomGeneratesThem() {
+        createVersion1Database().close();
+        mDatabase = openMigratedDatabase();
+        final List<String> migratedIndexNames = getIndexNames(mDatabase);
+        mDatabase.close();
+        mContext.deleteDatabase(DATABASE_NAME);
+
+        // Room creates a new database from the entity declarations.
+        mDatabase = openMigratedDatabase();
+
+        assertThat(migratedIndexNames).isNotEmpty();
+        assertThat(migratedIndexNames).containsExactlyElementsIn(getIndexNames(mDatabase));
+    }
+
+    private BatteryStateDatabase openMigratedDatabase() {
+        final BatteryStateDatabase database =
+                Room.databaseBuilder(mContext, BatteryStateDatabase.class, DATABASE_NAME)
+                        .allowMainThreadQueries()
+                        .addMigrations(
+                                BatteryStateDatabase.MIGRATION_1_2,
+                                BatteryStateDatabase.MIGRATION_2_3)
+                        .build();
+        // Opens the database, which runs the migrations.
+        database.getOpenHelper().getWritableDatabase();
+        return database;
+    }
+
+    private static List<String> getIndexNames(BatteryStateDatabase database) {
+        final List<String> indexNames = new ArrayList<>();
+        try (Cursor cursor =
+                database.getOpenHelper()
+                        .getReadableDatabase()
+                        .query(
+                                "SELECT name FROM sqlite_master"
+                                        + " WHERE type = 'index' AND sql IS NOT NULL")) {
+            while (cursor.moveToNext()) {
+                indexNames.add(cursor.getString(0));
+            }
+        }
+        return indexNames;
+    }
+
+    /** Creates the tables as version 1 of the database declared them. */
+    private SQLiteDatabase createVersion1Database() {
+        final SQLiteDatabase database =
+                mContext.openOrCreateDatabase(DATABASE_NAME, Context.MODE_PRIVATE, null);
+        database.execSQL(
+                "CREATE TABLE IF NOT EXISTS `AppUsageEventEntity` ("
+                        + "`mId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                        + "`uid` INTEGER NOT NULL, "
+                        + "`userId` INTEGER NOT NULL, "
+                        + "`timestamp` INTEGER NOT NULL, "
+                        + "`appUsageEventType` INTEGER NOT NULL, "
+                        + "`packageName` TEXT, "
+                        + "`instanceId` INTEGER NOT NULL, "
+                        + "`taskRootPackageName` TEXT)");
+        database.execSQL(
+                "CREATE TABLE IF NOT EXISTS `BatteryEventEntity` ("
+                        + "`mId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                        + "`timestamp` INTEGER NOT NULL, "
+                        + "`batteryEventType` INTEGER NOT NULL, "
+                        + "`batteryLevel` INTEGER NOT NULL)");
+        database.execSQL(
+                "CREATE TABLE IF NOT EXISTS `BatteryState` ("
+                        + "`mId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                        + "`uid` INTEGER NOT NULL, "
+                        + "`userId` INTEGER NOT NULL, "
+                        + "`packageName` TEXT, "
+                        + "`timestamp` INTEGER NOT NULL, "
+                        + "`consumerType` INTEGER NOT NULL, "
+                        + "`isFullChargeCycleStart` INTEGER NOT NULL, "
+                        + "`batteryInformation` TEXT, "
+                        + "`batteryInformationDebug` TEXT)");
+        database.execSQL(
+                "CREATE TABLE IF NOT EXISTS `BatteryUsageSlotEntity` ("
+                        + "`mId` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, "
+                        + "`timestamp` INTEGER NOT NULL, "
+                        + "`batteryUsageSlot` TEXT)");
+        database.setVersion(1);
+        return database;
+    }
+
+    private static void insertVersion1BatteryState(
+            SQLiteDatabase database, long timestamp, String packageName,
+            String batteryInformation) {
+        final ContentValues values = new ContentValues();
+        values.put("uid", 1001L);
+        values.put("userId", 100L);
+        values.put("packageName", packageName);
+        values.put("timestamp", timestamp);
+        values.put("consumerType", 2);
+        values.put("isFullChargeCycleStart", 1);
+        values.put("batteryInformation", batteryInformation);
+        values.put("batteryInformationDebug", "debug");
+        database.insertOrThrow("BatteryState", /* nullColumnHack= */ null, values);
+    }
+}
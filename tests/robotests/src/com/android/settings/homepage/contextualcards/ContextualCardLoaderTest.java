@@ -32,6 +32,7 @@ import static org.mockito.Mockito.verify;
 import android.app.settings.SettingsEnums;
 import android.content.Context;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.provider.Settings;
 
 import com.android.settings.R;
@@ -46,6 +47,7 @@ import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.stream.Collectors;
 
 @RunWith(RobolectricTestRunner.class)
@@ -151,6 +153,54 @@ public class ContextualCardLoaderTest {
         assertThat(mContextualCardLoader.getCardCount()).isEqualTo(configCount);
     }
 
+    @Test
+    public void eligibilityTask_stickyAndHigherRankedCardsRunFirst() {
+        final List<ContextualCard> cards = getContextualCardList();
+        final ContextualCard lowRanked = cards.get(0).mutate().setRankingScore(0.1).build();
+        final ContextualCard highRanked = cards.get(1).mutate().setRankingScore(0.9).build();
+        final ContextualCard sticky = cards.get(2);
+        final List<ContextualCardLoader.EligibilityTask> tasks = new ArrayList<>();
+        tasks.add(newEligibilityTask(lowRanked, 0));
+        tasks.add(newEligibilityTask(highRanked, 1));
+        tasks.add(newEligibilityTask(sticky, 2));
+
+        tasks.sort(null);
+
+        assertThat(tasks.stream().map(task -> task.mCard).collect(Collectors.toList()))
+                .containsExactly(sticky, highRanked, lowRanked).inOrder();
+    }
+
+    @Test
+    public void getEligibilityExecutor_sharedAcrossLoads() {
+        assertThat(ContextualCardLoader.getEligibilityExecutor())
+                .isSameInstanceAs(ContextualCardLoader.getEligibilityExecutor());
+    }
+
+    @Test
+    public void getEligibilityExecutor_notBoundedByCoreCount() {
+        final ThreadPoolExecutor executor =
+                (ThreadPoolExecutor) ContextualCardLoader.getEligibilityExecutor();
+
+        assertThat(executor.getMaximumPoolSize())
+                .isEqualTo(ContextualCardLoader.ELIGIBILITY_EXECUTOR_THREADS);
+    }
+
+    @Test
+    public void eligibilityTask_notStarted_deadlineCountsFromQueueTime() {
+        final long queuedTime = SystemClock.elapsedRealtime();
+        final ContextualCardLoader.EligibilityTask task =
+                newEligibilityTask(getContextualCardList().get(0), 0);
+
+        assertThat(task.getDeadline()).isAtLeast(
+                queuedTime + ContextualCardLoader.ELIGIBILITY_CHECKER_TIMEOUT_MS);
+    }
+
+    private ContextualCardLoader.EligibilityTask newEligibilityTask(ContextualCard card,
+            int order) {
+        return new ContextualCardLoader.EligibilityTask(new EligibleCardChecker(mContext, card),
+                card, order);
+    }
+
     private List<ContextualCard> getContextualCardList() {
         final List<ContextualCard> cards = new ArrayList<>();
         cards.add(new ContextualCard.Builder()
@@ -313,6 +313,30 @@ public class PrivateDnsPreferenceControllerTest {
         verify(mPreference).setEnabled(false);
     }
 
+    @Test
+    public void updateState_afterLoadStateInBackground_usesLoadedAdminState() {
+        final int userId = UserHandle.myUserId();
+        mShadowUserManager.setUserRestrictionSources(
+                UserManager.DISALLOW_CONFIG_PRIVATE_DNS,
+                UserHandle.of(userId),
+                Collections.singletonList(new UserManager.EnforcingUser(userId,
+                        UserManager.RESTRICTION_SOURCE_DEVICE_OWNER)));
+        ShadowDevicePolicyManager.getShadow().setDeviceOwnerComponentOnAnyUser(
+                new ComponentName("test", "test"));
+        mController.loadStateInBackground();
+        mShadowUserManager.setUserRestrictionSources(
+                UserManager.DISALLOW_CONFIG_PRIVATE_DNS,
+                UserHandle.of(userId),
+                Collections.emptyList());
+
+        mController.updateState(mPreference);
+        verify(mPreference).setEnabled(false);
+
+        // The loaded state is only used once, later updates check again.
+        mController.updateState(mPreference);
+        verify(mPreference).setEnabled(true);
+    }
+
     @Test
     public void isEnabled_isEnabledByDefault() {
         mController.updateState(mPreference);
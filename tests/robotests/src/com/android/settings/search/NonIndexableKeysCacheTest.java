@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class NonIndexableKeysCacheTest {
+
+    private static final String PROVIDER = "provider";
+    private static final List<String> KEYS = List.of("key1", "key2");
+
+    private NonIndexableKeysCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new NonIndexableKeysCache();
+    }
+
+    @Test
+    public void get_afterPut_returnsKeys() {
+        mCache.put(PROVIDER, KEYS, mCache.getGeneration());
+
+        assertThat(mCache.get(PROVIDER)).containsExactlyElementsIn(KEYS);
+    }
+
+    @Test
+    public void put_invalidatedSinceGeneration_notCached() {
+        final long generation = mCache.getGeneration();
+        mCache.invalidate("test");
+
+        mCache.put(PROVIDER, KEYS, generation);
+
+        assertThat(mCache.get(PROVIDER)).isNull();
+    }
+
+    @Test
+    public void get_entryOlderThanTtl_returnsNull() {
+        mCache.put(PROVIDER, KEYS, mCache.getGeneration());
+
+        ShadowSystemClock.advanceBy(Duration.ofMillis(NonIndexableKeysCache.ENTRY_TTL_MS));
+
+        assertThat(mCache.get(PROVIDER)).isNull();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.search;
+
+import static com.android.settings.search.SearchIndexableProviderStats.QUERY_NON_INDEXABLE_KEYS;
+import static com.android.settings.search.SearchIndexableProviderStats.QUERY_RAW_DATA;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexableProviderStatsTest {
+
+    private SearchIndexableProviderStats mStats;
+
+    @Before
+    public void setUp() {
+        mStats = new SearchIndexableProviderStats();
+    }
+
+    @Test
+    public void getSlowestProviders_sortedByMaxDuration() {
+        mStats.record(QUERY_NON_INDEXABLE_KEYS, "fast", 5, 1);
+        mStats.record(QUERY_NON_INDEXABLE_KEYS, "slow", 2000, 1);
+        mStats.record(QUERY_NON_INDEXABLE_KEYS, "medium", 200, 1);
+
+        assertThat(mStats.getSlowestProviders(QUERY_NON_INDEXABLE_KEYS))
+                .containsExactly("slow", "medium", "fast").inOrder();
+    }
+
+    @Test
+    public void getSlowestProviders_limitedToTopN() {
+        for (int i = 0; i < SearchIndexableProviderStats.TOP_N + 5; i++) {
+            mStats.record(QUERY_RAW_DATA, "provider" + i, i, 0);
+        }
+
+        assertThat(mStats.getSlowestProviders(QUERY_RAW_DATA))
+                .hasSize(SearchIndexableProviderStats.TOP_N);
+    }
+
+    @Test
+    public void dump_containsHistogramAndTotals() throws Exception {
+        mStats.record(QUERY_RAW_DATA, "a", 5, 3);
+        mStats.record(QUERY_RAW_DATA, "a", 7000, 4);
+
+        final JSONObject rawData = mStats.dump().getJSONObject(QUERY_RAW_DATA);
+
+        assertThat(rawData.getLong("calls")).isEqualTo(2);
+        assertThat(rawData.getLong("totalMillis")).isEqualTo(7005);
+        assertThat(rawData.getJSONObject("histogram").getLong("<10ms")).isEqualTo(1);
+        assertThat(rawData.getJSONObject("histogram").getLong(">=5000ms")).isEqualTo(1);
+        final JSONObject provider = rawData.getJSONArray("slowest").getJSONObject(0);
+        assertThat(provider.getLong("count")).isEqualTo(2);
+        assertThat(provider.getLong("totalItems")).isEqualTo(7);
+    }
+
+    @Test
+    public void dump_unknownQueryType_notReported() throws Exception {
+        assertThat(mStats.dump().has(QUERY_RAW_DATA)).isFalse();
+        assertThat(mStats.getSlowestProviders(QUERY_RAW_DATA)).isEmpty();
+    }
+}
@@ -84,6 +84,7 @@ public class SettingsSearchIndexablesProviderTest {
                 .thenReturn(Arrays.asList(category));
         category.addTile(new ActivityTile(activityInfo, category.key));
         ShadowCategoryManager.setDashboardCategory(category);
+        NonIndexableKeysCache.getInstance(mContext).invalidate("test");
     }
 
     @After
@@ -114,6 +115,22 @@ public class SettingsSearchIndexablesProviderTest {
         assertThat(cursor.getString(12)).isEqualTo(FakeSettingsFragment.KEY);
     }
 
+    @Test
+    public void queryDynamicRawData_appendsInjectionRawDataAfterProviders() {
+        final List<String> titles = new ArrayList<>();
+
+        try (Cursor cursor = mProvider.queryDynamicRawData(
+                SearchIndexablesContract.INDEXABLES_RAW_COLUMNS)) {
+            while (cursor.moveToNext()) {
+                titles.add(cursor.getString(
+                        SearchIndexablesContract.COLUMN_INDEX_RAW_TITLE));
+            }
+        }
+
+        assertThat(titles).isNotEmpty();
+        assertThat(titles.get(titles.size() - 1)).isEqualTo("title");
+    }
+
     @Test
     public void testResourcesColumnFetched() {
         Uri rawUri = Uri.parse(BASE_AUTHORITY + SearchIndexablesContract.INDEXABLES_XML_RES_PATH);
@@ -150,6 +167,27 @@ public class SettingsSearchIndexablesProviderTest {
         assertThat(keys).containsAtLeast("pref_key_1", "pref_key_3", "pref_key_5");
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void queryNonIndexableKeys_calledTwice_servedFromCache() {
+        final Uri rawUri = Uri.parse(
+                BASE_AUTHORITY + SearchIndexablesContract.NON_INDEXABLES_KEYS_PATH);
+        mProvider.query(rawUri, SearchIndexablesContract.NON_INDEXABLES_KEYS_COLUMNS, null,
+                null, null).close();
+
+        final List<String> keys = new ArrayList<>();
+        try (Cursor cursor = mProvider.query(rawUri,
+                SearchIndexablesContract.NON_INDEXABLES_KEYS_COLUMNS, null, null, null)) {
+            while (cursor.moveToNext()) {
+                keys.add(cursor.getString(0));
+            }
+        }
+
+        assertThat(keys).containsExactly("pref_key_1", "pref_key_3", "pref_key_5");
+        assertThat(NonIndexableKeysCache.getInstance(mContext).get(
+                FakeSettingsFragment.class.getName())).hasSize(3);
+    }
+
     @Test
     public void refreshSearchEnabledState_classNotFoundInCategoryMap_hasInjectionRawData() {
         mProvider.refreshSearchEnabledState(mContext,
@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 
@@ -46,9 +47,13 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowBuild;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 @RunWith(RobolectricTestRunner.class)
 public class SliceDataConverterTest {
@@ -114,6 +119,83 @@ public class SliceDataConverterTest {
         }
     }
 
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getSliceData_withConsumer_deliversOneBatchPerFragment() {
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues().clear();
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(FakeIndexProvider.class,
+                        FakeIndexProvider.SEARCH_INDEX_DATA_PROVIDER));
+        doReturn(getFakeService()).when(mSliceDataConverter).getAccessibilityServiceInfoList();
+        final List<List<SliceData>> batches = new ArrayList<>();
+
+        mSliceDataConverter.getSliceData(null /* fragments */, batches::add);
+
+        assertThat(batches).hasSize(2);
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getSliceData_withConsumer_fragmentThrows_returnsFailedFragment() {
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues().clear();
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(FakeIndexProvider.class,
+                        FakeIndexProvider.SEARCH_INDEX_DATA_PROVIDER));
+        doThrow(new IllegalStateException()).when(mSliceDataConverter)
+                .getAccessibilityServiceInfoList();
+        final List<List<SliceData>> batches = new ArrayList<>();
+
+        final Set<String> failedFragments =
+                mSliceDataConverter.getSliceData(null /* fragments */, batches::add);
+
+        assertThat(failedFragments).containsExactly(ACCESSIBILITY_FRAGMENT);
+        assertThat(batches).hasSize(1);
+        assertFakeSlice(batches.get(0).get(0));
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getSliceData_fragmentFilter_skipsOtherFragments() {
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues().clear();
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(FakeIndexProvider.class,
+                        FakeIndexProvider.SEARCH_INDEX_DATA_PROVIDER));
+        doReturn(getFakeService()).when(mSliceDataConverter).getAccessibilityServiceInfoList();
+
+        final List<SliceData> sliceDataList =
+                mSliceDataConverter.getSliceData(Set.of(FAKE_FRAGMENT_CLASSNAME));
+
+        assertThat(sliceDataList).hasSize(1);
+        assertFakeSlice(sliceDataList.get(0));
+    }
+
+    @Test
+    @Config(qualifiers = "mcc999")
+    public void getFingerprints_buildAndLocaleChanged_keepsEveryFingerprint() {
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues().clear();
+        mSearchFeatureProvider.getSearchIndexableResources().getProviderValues()
+                .add(new SearchIndexableData(FakeIndexProvider.class,
+                        FakeIndexProvider.SEARCH_INDEX_DATA_PROVIDER));
+        doReturn(getFakeService()).when(mSliceDataConverter).getAccessibilityServiceInfoList();
+        final Locale locale = Locale.getDefault();
+        ShadowBuild.setFingerprint("build/old");
+        final Map<String, String> oldFingerprints = mSliceDataConverter.getFingerprints();
+
+        ShadowBuild.setFingerprint("build/new");
+        Locale.setDefault(Locale.FRANCE);
+        final Map<String, String> newFingerprints;
+        try {
+            newFingerprints = mSliceDataConverter.getFingerprints();
+        } finally {
+            Locale.setDefault(locale);
+        }
+
+        // Those are covered once by the index key, not by each fragment.
+        assertThat(newFingerprints.keySet())
+                .containsExactly(FAKE_FRAGMENT_CLASSNAME, ACCESSIBILITY_FRAGMENT);
+        assertThat(newFingerprints).isEqualTo(oldFingerprints);
+    }
+
     private void assertFakeSlice(SliceData fakeSlice) {
         assertThat(fakeSlice.getKey()).isEqualTo(FAKE_KEY);
         assertThat(fakeSlice.getTitle()).isEqualTo(FAKE_TITLE);
@@ -18,13 +18,19 @@ package com.android.settings.slices;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 
 import com.android.settings.slices.SlicesDatabaseHelper.IndexColumns;
@@ -39,7 +45,12 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @RunWith(RobolectricTestRunner.class)
 public class SlicesIndexerTest {
@@ -50,12 +61,14 @@ public class SlicesIndexerTest {
     private static final String SCREEN_TITLE = "screen title";
     private static final String KEYWORDS = "a, b, c";
     private static final String FRAGMENT_NAME = "fragment name";
+    private static final String FINGERPRINT = "fingerprint";
     private static final int ICON = 1234; // I declare a thumb war
     private static final Uri URI = Uri.parse("content://com.android.settings.slices/test");
     private static final String PREF_CONTROLLER = "com.android.settings.slices.tester";
     private static final int SLICE_TYPE = SliceData.SliceType.SLIDER;
     private static final String UNAVAILABLE_SLICE_SUBTITLE = "subtitleOfUnavailableSlice";
     private static final int HIGHLIGHT_MENU_KEY = 5678; // I declare a thumb war
+    private static final int LARGE_ROW_COUNT = 1000;
 
     private Context mContext;
 
@@ -100,7 +113,7 @@ public class SlicesIndexerTest {
     public void testInsertSliceData_indexedStateSet() {
         final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
         helper.setIndexedState();
-        doReturn(new ArrayList<SliceData>()).when(mManager).getSliceData();
+        doReturn(new HashMap<String, String>()).when(mManager).getFingerprints();
 
         mManager.run();
 
@@ -111,7 +124,8 @@ public class SlicesIndexerTest {
     @Ignore
     public void testInsertSliceData_nonPublicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(false);
-        doReturn(sliceData).when(mManager).getSliceData();
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT)).when(mManager).getFingerprints();
+        stubSliceData(sliceData);
 
         mManager.run();
 
@@ -160,7 +174,8 @@ public class SlicesIndexerTest {
     @Ignore
     public void insertSliceData_publicSlice_mockDataInserted() {
         final List<SliceData> sliceData = getMockIndexableData(true);
-        doReturn(sliceData).when(mManager).getSliceData();
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT)).when(mManager).getFingerprints();
+        stubSliceData(sliceData);
 
         mManager.run();
 
@@ -205,6 +220,321 @@ public class SlicesIndexerTest {
         }
     }
 
+    @Test
+    public void indexSliceData_fingerprintUnchanged_doesNotReparseFragment() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        helper.setIndexedKey(db, helper.getIndexKey());
+        helper.setFragmentFingerprint(db, FRAGMENT_NAME, FINGERPRINT);
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT)).when(mManager).getFingerprints();
+
+        mManager.run();
+
+        verify(mManager, never()).collectSliceData(any(), any());
+        assertThat(helper.getFragmentFingerprints(db))
+                .containsExactly(FRAGMENT_NAME, FINGERPRINT);
+        assertThat(helper.isSliceDataIndexed()).isTrue();
+    }
+
+    @Test
+    public void indexSliceData_nothingChangedSinceLastIndex_doesNotReparseAnyFragment() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT)).when(mManager).getFingerprints();
+        stubSliceData(getMockIndexableData(false));
+        mManager.run();
+        helper.clearIndexedState();
+
+        mManager.run();
+
+        verify(mManager).collectSliceData(eq(Set.of(FRAGMENT_NAME)), any());
+        try (Cursor cursor = helper.getWritableDatabase()
+                .rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(KEYS.length);
+        }
+        assertThat(helper.isSliceDataIndexed()).isTrue();
+    }
+
+    @Test
+    public void indexSliceData_indexKeyChanged_reparsesEveryFragment() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        helper.setIndexedKey(db, "old build/old locale");
+        helper.setFragmentFingerprint(db, FRAGMENT_NAME, FINGERPRINT);
+        try (SQLiteStatement statement = mManager.compileInsertStatement(db)) {
+            mManager.bulkInsertSliceData(statement, getMockIndexableData(false));
+        }
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT)).when(mManager).getFingerprints();
+        stubSliceData(getMockIndexableData(false));
+
+        mManager.run();
+
+        verify(mManager).collectSliceData(eq(Set.of(FRAGMENT_NAME)), any());
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(KEYS.length);
+        }
+        assertThat(helper.getIndexedKey(db)).isEqualTo(helper.getIndexKey());
+    }
+
+    @Test
+    public void indexSliceData_fingerprintChanged_reparsesOnlyChangedFragment() {
+        final String unchangedFragment = "unchanged fragment";
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        helper.setIndexedKey(db, helper.getIndexKey());
+        helper.setFragmentFingerprint(db, FRAGMENT_NAME, "old fingerprint");
+        helper.setFragmentFingerprint(db, unchangedFragment, FINGERPRINT);
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT, unchangedFragment, FINGERPRINT))
+                .when(mManager).getFingerprints();
+        stubSliceData(getMockIndexableData(false));
+
+        mManager.run();
+
+        verify(mManager).collectSliceData(eq(Set.of(FRAGMENT_NAME)), any());
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(KEYS.length);
+        }
+        assertThat(helper.getFragmentFingerprints(db)).containsExactly(
+                FRAGMENT_NAME, FINGERPRINT, unchangedFragment, FINGERPRINT);
+    }
+
+    @Test
+    public void indexSliceData_fragmentFailed_notReparsedUntilItChanges() {
+        final String failedFragment = "failed fragment";
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT, failedFragment, FINGERPRINT))
+                .when(mManager).getFingerprints();
+        doAnswer(invocation -> {
+            final Consumer<List<SliceData>> consumer = invocation.getArgument(1);
+            consumer.accept(getMockIndexableData(false));
+            return Set.of(failedFragment);
+        }).when(mManager).collectSliceData(any(), any());
+        mManager.run();
+        helper.clearIndexedState();
+
+        mManager.run();
+
+        verify(mManager).collectSliceData(eq(Set.of(FRAGMENT_NAME, failedFragment)), any());
+        assertThat(helper.getFragmentFingerprints(db))
+                .containsExactly(FRAGMENT_NAME, FINGERPRINT, failedFragment, FINGERPRINT);
+        assertThat(helper.isSliceDataIndexed()).isTrue();
+    }
+
+    @Test
+    public void indexSliceData_interrupted_keepsNoFingerprintOfLeftOverAndStaysUnindexed() {
+        final String leftOverFragment = "left over fragment";
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT, leftOverFragment, FINGERPRINT))
+                .when(mManager).getFingerprints();
+        doAnswer(invocation -> {
+            final Consumer<List<SliceData>> consumer = invocation.getArgument(1);
+            consumer.accept(getMockIndexableData(false));
+            Thread.currentThread().interrupt();
+            return Set.of(leftOverFragment);
+        }).when(mManager).collectSliceData(any(), any());
+
+        try {
+            mManager.run();
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertThat(helper.getFragmentFingerprints(db))
+                .containsExactly(FRAGMENT_NAME, FINGERPRINT);
+        assertThat(helper.isSliceDataIndexed()).isFalse();
+    }
+
+    @Test
+    public void indexSliceData_fragmentRemoved_deletesItsSlices() {
+        final SlicesDatabaseHelper helper = SlicesDatabaseHelper.getInstance(mContext);
+        final SQLiteDatabase db = helper.getWritableDatabase();
+        helper.setIndexedKey(db, helper.getIndexKey());
+        helper.setFragmentFingerprint(db, FRAGMENT_NAME, FINGERPRINT);
+        try (SQLiteStatement statement = mManager.compileInsertStatement(db)) {
+            mManager.bulkInsertSliceData(statement, getMockIndexableData(false));
+        }
+        doReturn(new HashMap<String, String>()).when(mManager).getFingerprints();
+
+        mManager.run();
+
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(0);
+        }
+        assertThat(helper.getFragmentFingerprints(db)).isEmpty();
+    }
+
+    @Test
+    public void bulkInsertSliceData_insertsEveryColumn() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        final List<SliceData> sliceData = getMockIndexableData(true);
+
+        try (SQLiteStatement statement = mManager.compileInsertStatement(db)) {
+            mManager.bulkInsertSliceData(statement, sliceData);
+        }
+
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(sliceData.size());
+            cursor.moveToFirst();
+            for (int i = 0; i < sliceData.size(); i++) {
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.KEY)))
+                        .isEqualTo(KEYS[i]);
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.SLICE_URI)))
+                        .isEqualTo(URI.toString());
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.TITLE)))
+                        .isEqualTo(TITLES[i]);
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.SUMMARY)))
+                        .isEqualTo(SUMMARY);
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.SCREENTITLE)))
+                        .isEqualTo(SCREEN_TITLE);
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.KEYWORDS)))
+                        .isEqualTo(KEYWORDS);
+                assertThat(cursor.getInt(cursor.getColumnIndex(IndexColumns.ICON_RESOURCE)))
+                        .isEqualTo(ICON);
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.FRAGMENT)))
+                        .isEqualTo(FRAGMENT_NAME);
+                assertThat(cursor.getString(cursor.getColumnIndex(IndexColumns.CONTROLLER)))
+                        .isEqualTo(PREF_CONTROLLER);
+                assertThat(cursor.getInt(cursor.getColumnIndex(IndexColumns.SLICE_TYPE)))
+                        .isEqualTo(SLICE_TYPE);
+                assertThat(cursor.getString(
+                        cursor.getColumnIndex(IndexColumns.UNAVAILABLE_SLICE_SUBTITLE)))
+                        .isEqualTo(UNAVAILABLE_SLICE_SUBTITLE);
+                assertThat(cursor.getInt(cursor.getColumnIndex(IndexColumns.PUBLIC_SLICE)))
+                        .isEqualTo(1);
+                assertThat(cursor.getInt(
+                        cursor.getColumnIndex(IndexColumns.HIGHLIGHT_MENU_RESOURCE)))
+                        .isEqualTo(HIGHLIGHT_MENU_KEY);
+                assertThat(cursor.isNull(cursor.getColumnIndex(IndexColumns.USER_RESTRICTION)))
+                        .isTrue();
+                cursor.moveToNext();
+            }
+        }
+    }
+
+    @Test
+    public void bulkInsertSliceData_matchesContentValuesInsert() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        final List<SliceData> sliceData = getMockIndexableData(true);
+
+        mManager.insertSliceData(db, sliceData);
+        final List<String> expected = dumpSlicesIndex(db);
+        db.delete(SlicesDatabaseHelper.Tables.TABLE_SLICES_INDEX, null, null);
+        try (SQLiteStatement statement = mManager.compileInsertStatement(db)) {
+            mManager.bulkInsertSliceData(statement, sliceData);
+        }
+
+        assertThat(dumpSlicesIndex(db)).containsExactlyElementsIn(expected);
+    }
+
+    @Test
+    public void indexSliceData_rowsOfSeveralFragments_insertsInBoundedChunks() {
+        final String otherFragment = "other fragment";
+        final int rowCount = SlicesIndexer.INSERT_CHUNK_SIZE * 2 + 1;
+        doReturn(Map.of(FRAGMENT_NAME, FINGERPRINT, otherFragment, FINGERPRINT))
+                .when(mManager).getFingerprints();
+        doAnswer(invocation -> {
+            final Consumer<List<SliceData>> consumer = invocation.getArgument(1);
+            // Fragments deliver their rows in batches unrelated to the chunk size.
+            final List<SliceData> sliceData = getLargeIndexableData(rowCount);
+            consumer.accept(sliceData.subList(0, 3));
+            consumer.accept(sliceData.subList(3, rowCount));
+            return Collections.emptySet();
+        }).when(mManager).collectSliceData(any(), any());
+        final List<Integer> chunkSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            chunkSizes.add(((List<?>) invocation.getArgument(1)).size());
+            return invocation.callRealMethod();
+        }).when(mManager).bulkInsertSliceData(any(), any());
+
+        mManager.run();
+
+        assertThat(chunkSizes).containsExactly(
+                SlicesIndexer.INSERT_CHUNK_SIZE, SlicesIndexer.INSERT_CHUNK_SIZE, 1).inOrder();
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(rowCount);
+        }
+    }
+
+    /**
+     * Not a strict performance gate, but logs how the two insert paths compare on a data set
+     * about the size of the full Settings index.
+     */
+    @Test
+    public void benchmarkInsertSliceData() {
+        final SQLiteDatabase db = SlicesDatabaseHelper.getInstance(mContext).getWritableDatabase();
+        final List<SliceData> sliceData = getLargeIndexableData(LARGE_ROW_COUNT);
+
+        db.beginTransaction();
+        long startTime = System.nanoTime();
+        try {
+            mManager.insertSliceData(db, sliceData);
+        } finally {
+            db.endTransaction();
+        }
+        final long contentValuesNanos = System.nanoTime() - startTime;
+
+        db.beginTransaction();
+        startTime = System.nanoTime();
+        try (SQLiteStatement statement = mManager.compileInsertStatement(db)) {
+            mManager.bulkInsertSliceData(statement, sliceData);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        final long statementNanos = System.nanoTime() - startTime;
+
+        System.out.println("SlicesIndexer insert of " + LARGE_ROW_COUNT + " rows: "
+                + "ContentValues=" + contentValuesNanos / 1000 + "us, "
+                + "SQLiteStatement=" + statementNanos / 1000 + "us");
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            assertThat(cursor.getCount()).isEqualTo(LARGE_ROW_COUNT);
+        }
+    }
+
+    private List<String> dumpSlicesIndex(SQLiteDatabase db) {
+        final List<String> rows = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT * FROM slices_index", null)) {
+            while (cursor.moveToNext()) {
+                final StringBuilder row = new StringBuilder();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    row.append(cursor.getString(i)).append('|');
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+
+    private List<SliceData> getLargeIndexableData(int count) {
+        final List<SliceData> sliceData = new ArrayList<>();
+        final SliceData.Builder builder = new SliceData.Builder()
+                .setSummary(SUMMARY)
+                .setScreenTitle(SCREEN_TITLE)
+                .setKeywords(KEYWORDS)
+                .setFragmentName(FRAGMENT_NAME)
+                .setIcon(ICON)
+                .setUri(URI)
+                .setPreferenceControllerClassName(PREF_CONTROLLER)
+                .setSliceType(SLICE_TYPE)
+                .setUnavailableSliceSubtitle(UNAVAILABLE_SLICE_SUBTITLE)
+                .setHighlightMenuRes(HIGHLIGHT_MENU_KEY);
+        for (int i = 0; i < count; i++) {
+            builder.setKey("key" + i).setTitle("title" + i);
+            sliceData.add(builder.build());
+        }
+        return sliceData;
+    }
+
+    private void stubSliceData(List<SliceData> sliceData) {
+        doAnswer(invocation -> {
+            final Consumer<List<SliceData>> consumer = invocation.getArgument(1);
+            consumer.accept(sliceData);
+            return Collections.emptySet();
+        }).when(mManager).collectSliceData(any(), any());
+    }
+
     private void insertSpecialCase(String key, String title) {
         final ContentValues values = new ContentValues();
         values.put(IndexColumns.KEY, key);
@@ -32,7 +32,6 @@ import androidx.room.Room;
 import com.android.settings.DisplaySettings;
 import com.android.settings.display.ScreenTimeoutSettings;
 import com.android.settings.fuelgauge.batteryusage.BatteryInformation;
-import com.android.settings.fuelgauge.batteryusage.ConvertUtils;
 import com.android.settings.fuelgauge.batteryusage.DeviceBatteryState;
 import com.android.settings.fuelgauge.batteryusage.PowerAnomalyEvent;
 import com.android.settings.fuelgauge.batteryusage.PowerAnomalyEventList;
@@ -151,8 +150,7 @@ public class BatteryTestUtils {
                         timestamp,
                         /*consumerType=*/ 2,
                         isFullChargeStart,
-                        ConvertUtils.convertBatteryInformationToString(batteryInformation),
-                        "");
+                        batteryInformation.toByteArray());
         BatteryStateDao dao =
                 BatteryStateDatabase.getInstance(context).batteryStateDao();
         if (multiple) {
@@ -18,6 +18,8 @@ package com.android.settings.network;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -44,6 +46,10 @@ public class CarrierConfigCacheTest {
 
     static final int ONCE_SUB_ID = 11;
     static final int TWICE_SUB_ID = 12;
+    static final int PROJECTED_SUB_ID = 13;
+    static final int FULL_THEN_PROJECTED_SUB_ID = 14;
+    static final String KEY_A = "key_a_bool";
+    static final String KEY_B = "key_b_bool";
 
     @Rule
     public final MockitoRule mMockitoRule = MockitoJUnit.rule();
@@ -98,4 +104,38 @@ public class CarrierConfigCacheTest {
 
         verify(mCarrierConfigManager, times(1)).getConfigForSubId(TWICE_SUB_ID);
     }
+
+    @Test
+    public void getConfigForSubId_withKeys_onlyFetchMissingKeys() {
+        final PersistableBundle configA = new PersistableBundle();
+        configA.putBoolean(KEY_A, true);
+        final PersistableBundle configB = new PersistableBundle();
+        configB.putBoolean(KEY_B, true);
+        when(mCarrierConfigManager.getConfigForSubId(PROJECTED_SUB_ID, KEY_A)).thenReturn(configA);
+        when(mCarrierConfigManager.getConfigForSubId(PROJECTED_SUB_ID, KEY_B)).thenReturn(configB);
+
+        mCarrierConfigCache.getConfigForSubId(PROJECTED_SUB_ID, KEY_A);
+        final PersistableBundle config =
+                mCarrierConfigCache.getConfigForSubId(PROJECTED_SUB_ID, KEY_A, KEY_B);
+
+        assertThat(config.getBoolean(KEY_A)).isTrue();
+        assertThat(config.getBoolean(KEY_B)).isTrue();
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(PROJECTED_SUB_ID, KEY_A);
+        verify(mCarrierConfigManager, times(1)).getConfigForSubId(PROJECTED_SUB_ID, KEY_B);
+        verify(mCarrierConfigManager, never()).getConfigForSubId(PROJECTED_SUB_ID);
+    }
+
+    @Test
+    public void getConfigForSubId_withKeys_fullConfigCached_noFetch() {
+        when(mCarrierConfigManager.getConfigForSubId(FULL_THEN_PROJECTED_SUB_ID))
+                .thenReturn(mCarrierConfig);
+
+        mCarrierConfigCache.getConfigForSubId(FULL_THEN_PROJECTED_SUB_ID);
+        final PersistableBundle config =
+                mCarrierConfigCache.getConfigForSubId(FULL_THEN_PROJECTED_SUB_ID, KEY_A);
+
+        assertThat(config).isEqualTo(mCarrierConfig);
+        verify(mCarrierConfigManager, never())
+                .getConfigForSubId(FULL_THEN_PROJECTED_SUB_ID, anyString());
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.settings.network;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.telephony.ServiceState;
+import android.telephony.TelephonyManager;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+@RunWith(AndroidJUnit4.class)
+public class MobileNetworkRepositoryTest {
+
+    private static final int SUB_ID = 1;
+
+    @Rule
+    public final MockitoRule mMockitoRule = MockitoJUnit.rule();
+    @Mock
+    private TelephonyManager mTelephonyManager;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = spy(ApplicationProvider.getApplicationContext());
+        when(mContext.getSystemService(TelephonyManager.class)).thenReturn(mTelephonyManager);
+        doReturn(mTelephonyManager).when(mTelephonyManager).createForSubscriptionId(SUB_ID);
+        when(mTelephonyManager.getPhoneType()).thenReturn(TelephonyManager.PHONE_TYPE_GSM);
+        when(mTelephonyManager.getAllowedNetworkTypesForReason(
+                TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER)).thenReturn(3L);
+        MobileNetworkRepository.invalidateTelephonyState(SUB_ID);
+    }
+
+    @After
+    public void tearDown() {
+        MobileNetworkRepository.unwatchTelephonyState(SUB_ID);
+    }
+
+    @Test
+    public void telephonyState_readTwice_queriesOnce() {
+        final MobileNetworkRepository.TelephonyState state =
+                new MobileNetworkRepository.TelephonyState(mTelephonyManager);
+
+        assertThat(state.getPhoneType()).isEqualTo(TelephonyManager.PHONE_TYPE_GSM);
+        assertThat(state.getPhoneType()).isEqualTo(TelephonyManager.PHONE_TYPE_GSM);
+        assertThat(state.getAllowedNetworkTypes()).isEqualTo(3L);
+        assertThat(state.getAllowedNetworkTypes()).isEqualTo(3L);
+
+        verify(mTelephonyManager, times(1)).getPhoneType();
+        verify(mTelephonyManager, times(1)).getAllowedNetworkTypesForReason(
+                TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER);
+    }
+
+    @Test
+    public void getTelephonyState_subNotRegistered_queriesEachTime() {
+        MobileNetworkRepository.getTelephonyState(mContext, SUB_ID).getPhoneType();
+        MobileNetworkRepository.getTelephonyState(mContext, SUB_ID).getPhoneType();
+
+        verify(mTelephonyManager, times(2)).getPhoneType();
+    }
+
+    @Test
+    public void getTelephonyState_subWatched_sharedAcrossCallers() {
+        MobileNetworkRepository.watchTelephonyState(SUB_ID);
+
+        final MobileNetworkRepository.TelephonyState state =
+                MobileNetworkRepository.getTelephonyState(mContext, SUB_ID);
+        state.getPhoneType();
+        final MobileNetworkRepository.TelephonyState otherState =
+                MobileNetworkRepository.getTelephonyState(mContext, SUB_ID);
+        otherState.getPhoneType();
+
+        assertThat(otherState).isSameInstanceAs(state);
+        verify(mTelephonyManager, times(1)).getPhoneType();
+    }
+
+    @Test
+    public void getTelephonyState_allowedNetworkTypesChanged_queriesAgain() {
+        MobileNetworkRepository.watchTelephonyState(SUB_ID);
+        assertThat(MobileNetworkRepository.getTelephonyState(mContext, SUB_ID)
+                .getAllowedNetworkTypes()).isEqualTo(3L);
+        doReturn(5L).when(mTelephonyManager).getAllowedNetworkTypesForReason(
+                TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER);
+
+        new MobileNetworkRepository.PhoneCallStateTelephonyCallback(SUB_ID)
+                .onAllowedNetworkTypesChanged(
+                        TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER, 5L);
+
+        assertThat(MobileNetworkRepository.getTelephonyState(mContext, SUB_ID)
+                .getAllowedNetworkTypes()).isEqualTo(5L);
+        verify(mTelephonyManager, times(2)).getAllowedNetworkTypesForReason(
+                TelephonyManager.ALLOWED_NETWORK_TYPES_REASON_USER);
+    }
+
+    @Test
+    public void getTelephonyState_radioPowerStateChanged_queriesAgain() {
+        MobileNetworkRepository.watchTelephonyState(SUB_ID);
+        assertThat(MobileNetworkRepository.getTelephonyState(mContext, SUB_ID).getPhoneType())
+                .isEqualTo(TelephonyManager.PHONE_TYPE_GSM);
+        doReturn(TelephonyManager.PHONE_TYPE_CDMA).when(mTelephonyManager).getPhoneType();
+
+        new MobileNetworkRepository.PhoneCallStateTelephonyCallback(SUB_ID)
+                .onRadioPowerStateChanged(TelephonyManager.RADIO_POWER_ON);
+
+        assertThat(MobileNetworkRepository.getTelephonyState(mContext, SUB_ID).getPhoneType())
+                .isEqualTo(TelephonyManager.PHONE_TYPE_CDMA);
+    }
+
+    @Test
+    public void getTelephonyState_serviceStateChanged_queriesAgain() {
+        MobileNetworkRepository.watchTelephonyState(SUB_ID);
+        assertThat(MobileNetworkRepository.getTelephonyState(mContext, SUB_ID).getPhoneType())
+                .isEqualTo(TelephonyManager.PHONE_TYPE_GSM);
+        doReturn(TelephonyManager.PHONE_TYPE_CDMA).when(mTelephonyManager).getPhoneType();
+
+        new MobileNetworkRepository.PhoneCallStateTelephonyCallback(SUB_ID)
+                .onServiceStateChanged(new ServiceState());
+
+        assertThat(MobileNetworkRepository.getTelephonyState(mContext, SUB_ID).getPhoneType())
+                .isEqualTo(TelephonyManager.PHONE_TYPE_CDMA);
+    }
+
+    @Test
+    public void getTelephonyState_dataEnabledChanged_queriesAgain() {
+        MobileNetworkRepository.watchTelephonyState(SUB_ID);
+        when(mTelephonyManager.isDataEnabled()).thenReturn(true);
+        assertThat(MobileNetworkRepository.getTelephonyState(mContext, SUB_ID).isDataEnabled())
+                .isTrue();
+        when(mTelephonyManager.isDataEnabled()).thenReturn(false);
+
+        new MobileNetworkRepository.PhoneCallStateTelephonyCallback(SUB_ID)
+                .onDataEnabledChanged(false, TelephonyManager.DATA_ENABLED_REASON_USER);
+
+        assertThat(MobileNetworkRepository.getTelephonyState(mContext, SUB_ID).isDataEnabled())
+                .isFalse();
+    }
+}
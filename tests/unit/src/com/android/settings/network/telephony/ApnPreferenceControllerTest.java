@@ -89,7 +89,8 @@ public class ApnPreferenceControllerTest {
         doReturn(TelephonyManager.PHONE_TYPE_CDMA).when(mTelephonyManager).getPhoneType();
         final PersistableBundle bundle = new PersistableBundle();
         bundle.putBoolean(CarrierConfigManager.KEY_SHOW_APN_SETTING_CDMA_BOOL, false);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                ApnPreferenceController.CARRIER_CONFIG_KEYS);
 
         assertThat(mController.getAvailabilityStatus()).isEqualTo(CONDITIONALLY_UNAVAILABLE);
     }
@@ -99,7 +100,8 @@ public class ApnPreferenceControllerTest {
         doReturn(TelephonyManager.PHONE_TYPE_CDMA).when(mTelephonyManager).getPhoneType();
         final PersistableBundle bundle = new PersistableBundle();
         bundle.putBoolean(CarrierConfigManager.KEY_SHOW_APN_SETTING_CDMA_BOOL, true);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                ApnPreferenceController.CARRIER_CONFIG_KEYS);
 
         assertThat(mController.getAvailabilityStatus()).isEqualTo(AVAILABLE);
     }
@@ -109,7 +111,8 @@ public class ApnPreferenceControllerTest {
         doReturn(TelephonyManager.PHONE_TYPE_GSM).when(mTelephonyManager).getPhoneType();
         final PersistableBundle bundle = new PersistableBundle();
         bundle.putBoolean(CarrierConfigManager.KEY_APN_EXPAND_BOOL, true);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                ApnPreferenceController.CARRIER_CONFIG_KEYS);
 
         assertThat(mController.getAvailabilityStatus()).isEqualTo(AVAILABLE);
     }
@@ -117,7 +120,8 @@ public class ApnPreferenceControllerTest {
     @Test
     public void getAvailabilityStatus_carrierConfigNull_returnUnavailable() {
         doReturn(TelephonyManager.PHONE_TYPE_GSM).when(mTelephonyManager).getPhoneType();
-        when(mCarrierConfigCache.getConfigForSubId(SUB_ID)).thenReturn(null);
+        when(mCarrierConfigCache.getConfigForSubId(SUB_ID,
+                ApnPreferenceController.CARRIER_CONFIG_KEYS)).thenReturn(null);
 
         assertThat(mController.getAvailabilityStatus()).isEqualTo(CONDITIONALLY_UNAVAILABLE);
     }
@@ -128,7 +132,8 @@ public class ApnPreferenceControllerTest {
         final PersistableBundle bundle = new PersistableBundle();
         bundle.putBoolean(CarrierConfigManager.KEY_APN_EXPAND_BOOL, true);
         bundle.putBoolean(CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL, true);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                ApnPreferenceController.CARRIER_CONFIG_KEYS);
 
         assertThat(mController.getAvailabilityStatus()).isEqualTo(CONDITIONALLY_UNAVAILABLE);
     }
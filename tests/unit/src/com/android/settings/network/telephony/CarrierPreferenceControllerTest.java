@@ -95,7 +95,8 @@ public class CarrierPreferenceControllerTest {
         doReturn(TelephonyManager.PHONE_TYPE_CDMA).when(mTelephonyManager).getPhoneType();
         final PersistableBundle bundle = new PersistableBundle();
         bundle.putBoolean(CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, false);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                CarrierPreferenceController.CARRIER_CONFIG_KEYS);
 
         assertThat(mController.getAvailabilityStatus()).isEqualTo(CONDITIONALLY_UNAVAILABLE);
     }
@@ -105,7 +106,8 @@ public class CarrierPreferenceControllerTest {
         doReturn(TelephonyManager.PHONE_TYPE_CDMA).when(mTelephonyManager).getPhoneType();
         final PersistableBundle bundle = new PersistableBundle();
         bundle.putBoolean(CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, true);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                CarrierPreferenceController.CARRIER_CONFIG_KEYS);
 
         assertThat(mController.getAvailabilityStatus()).isEqualTo(AVAILABLE);
     }
@@ -115,7 +117,8 @@ public class CarrierPreferenceControllerTest {
         doReturn(TelephonyManager.PHONE_TYPE_GSM).when(mTelephonyManager).getPhoneType();
         final PersistableBundle bundle = new PersistableBundle();
         bundle.putBoolean(CarrierConfigManager.KEY_CARRIER_SETTINGS_ENABLE_BOOL, true);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                CarrierPreferenceController.CARRIER_CONFIG_KEYS);
 
         assertThat(mController.getAvailabilityStatus()).isEqualTo(AVAILABLE);
     }
@@ -126,7 +129,8 @@ public class CarrierPreferenceControllerTest {
         bundle.putString(
                 CarrierConfigManager.KEY_CARRIER_SETTINGS_ACTIVITY_COMPONENT_NAME_STRING,
                 CARRIER_SETTINGS_COMPONENT);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                CarrierPreferenceController.CARRIER_CONFIG_KEYS);
         PackageManager pm = Mockito.mock(PackageManager.class);
         doReturn(pm).when(mContext).getPackageManager();
         doReturn(new ResolveInfo()).when(pm).resolveActivity(any(Intent.class), anyInt());
@@ -147,7 +151,8 @@ public class CarrierPreferenceControllerTest {
         bundle.putString(
                 CarrierConfigManager.KEY_CARRIER_SETTINGS_ACTIVITY_COMPONENT_NAME_STRING,
                 CARRIER_SETTINGS_COMPONENT);
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                CarrierPreferenceController.CARRIER_CONFIG_KEYS);
         PackageManager pm = Mockito.mock(PackageManager.class);
         doReturn(pm).when(mContext).getPackageManager();
         doReturn(null).when(pm).resolveActivity(any(Intent.class), anyInt());
@@ -161,7 +166,8 @@ public class CarrierPreferenceControllerTest {
     @Test
     public void handlePreferenceClick_activityNotConfigured_DoNothing() {
         final PersistableBundle bundle = new PersistableBundle();
-        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(bundle).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                CarrierPreferenceController.CARRIER_CONFIG_KEYS);
         PackageManager pm = Mockito.mock(PackageManager.class);
         doReturn(pm).when(mContext).getPackageManager();
         doReturn(new ResolveInfo()).when(pm).resolveActivity(any(Intent.class), anyInt());
@@ -82,7 +82,8 @@ public class DataServiceSetupPreferenceControllerTest {
                 Settings.Global.SETUP_PREPAID_DATA_SERVICE_URL, SETUP_URL);
 
         mCarrierConfig = new PersistableBundle();
-        doReturn(mCarrierConfig).when(mCarrierConfigCache).getConfigForSubId(SUB_ID);
+        doReturn(mCarrierConfig).when(mCarrierConfigCache).getConfigForSubId(SUB_ID,
+                CarrierConfigManager.KEY_HIDE_CARRIER_NETWORK_SETTINGS_BOOL);
 
         mPreference = new RestrictedPreference(mContext);
         mController = new DataServiceSetupPreferenceController(mContext, "data_service_setup");